@@ -0,0 +1,92 @@
+package org.pd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.pd.database.ArmazenamentoColunar;
+import org.pd.gateway.AgregadorDashboard;
+import org.pd.gateway.AgregadorJanelas;
+import org.pd.gateway.BufferCircular;
+import org.pd.gateway.DadosClimaticos;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disputa entre threads anexando leituras nas estruturas por região: séries colunares do
+ * {@code ServicoBaseDados}, buffer circular e agregados do Gateway. Com {@code regioes=mesma} todas
+ * as threads escrevem na mesma região; com {@code distintas}, cada uma na sua.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ArmazenamentoBenchmark {
+    private static final String[] REGIOES = {"norte", "sul", "leste", "oeste"};
+
+    @Param({"mesma", "distintas"})
+    public String regioes;
+
+    private ArmazenamentoColunar colunar;
+    private BufferCircular<DadosClimaticos> buffer;
+    private AgregadorDashboard agregador;
+    private AgregadorJanelas janelas;
+
+    @State(Scope.Thread)
+    public static class Leitura {
+        DadosClimaticos dados;
+
+        @Setup
+        public void preparar(ArmazenamentoBenchmark benchmark, ThreadParams thread) {
+            String regiao = "mesma".equals(benchmark.regioes) ? REGIOES[0]
+                    : REGIOES[thread.getThreadIndex() % REGIOES.length];
+            dados = new DadosClimaticos(regiao, 1013.25, 512.5, 27.75, 64.1, System.currentTimeMillis());
+        }
+    }
+
+    /** Estruturas novas a cada iteração, para a série colunar não crescer sem limite. */
+    @Setup(Level.Iteration)
+    public void preparar() {
+        colunar = new ArmazenamentoColunar();
+        buffer = new BufferCircular<>(65536);
+        agregador = new AgregadorDashboard();
+        janelas = new AgregadorJanelas();
+        for (String regiao : REGIOES) {
+            colunar.registrarRegiao(regiao);
+            agregador.regiao(regiao);
+        }
+    }
+
+    @Benchmark
+    public void colunarAnexar(Leitura leitura) {
+        colunar.anexar(leitura.dados);
+    }
+
+    @Benchmark
+    public void bufferCircularAnexar(Leitura leitura) {
+        buffer.anexar(leitura.dados);
+    }
+
+    @Benchmark
+    public void agregadorRegistrar(Leitura leitura) {
+        agregador.registrar(leitura.dados);
+    }
+
+    @Benchmark
+    public void janelasRegistrar(Leitura leitura) {
+        janelas.registrar(leitura.dados);
+    }
+}
@@ -0,0 +1,64 @@
+package org.pd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pd.database.ArmazenamentoDuravel;
+import org.pd.gateway.DadosClimaticos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Escrita no log durável como em {@code ServicoBaseDados.armazenarDados}, num diretório temporário,
+ * com fsync em grupo ({@code intervaloFsyncMs > 0}) ou a cada registro ({@code 0}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArmazenamentoDuravelBenchmark {
+    @Param({"20"})
+    public long intervaloFsyncMs;
+
+    private Path diretorio;
+    private ArmazenamentoDuravel armazenamento;
+    private DadosClimaticos dados;
+
+    @Setup(Level.Trial)
+    public void abrir() throws IOException {
+        diretorio = Files.createTempDirectory("pd-bench-duravel");
+        armazenamento = new ArmazenamentoDuravel(diretorio, 16L * 1024 * 1024, 2, intervaloFsyncMs, 1024);
+        armazenamento.abrir(recuperada -> { });
+        dados = new DadosClimaticos("norte", 1013.25, 512.5, 27.75, 64.1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long anexar() throws IOException {
+        return armazenamento.anexar(dados);
+    }
+
+    @TearDown(Level.Trial)
+    public void fechar() throws IOException {
+        armazenamento.close();
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            arquivos.sorted(Comparator.reverseOrder()).forEach(arquivo -> arquivo.toFile().delete());
+        }
+    }
+}
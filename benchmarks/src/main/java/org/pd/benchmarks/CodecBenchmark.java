@@ -0,0 +1,81 @@
+package org.pd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pd.gateway.CodecBinario;
+import org.pd.gateway.CodecJson;
+import org.pd.gateway.DadosClimaticos;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificação e decodificação de uma leitura: JSON (o que o Gateway publica e o
+ * {@code ServicoBaseDados.parseJson} lê) e o formato binário.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"false", "true"})
+    public boolean rastreio;
+
+    private final CodecJson json = new CodecJson();
+    private final CodecBinario binario = new CodecBinario();
+    private DadosClimaticos dados;
+    private byte[] bytesJson;
+    private byte[] bytesBinario;
+
+    @Setup
+    public void preparar() {
+        dados = rastreio
+                ? new DadosClimaticos("leste", 1013.25, 512.5, 27.75, 64.1, 1_760_000_000_100L,
+                        123_456, 789, 1_760_000_000_000L)
+                : new DadosClimaticos("leste", 1013.25, 512.5, 27.75, 64.1, 1_760_000_000_100L);
+        bytesJson = json.codificarCopia(dados);
+        bytesBinario = binario.codificarCopia(dados);
+    }
+
+    /** Escrita no buffer reaproveitado, sem cópia. */
+    @Benchmark
+    public int jsonCodificar() {
+        return json.codificar(dados);
+    }
+
+    /** O que o publicador RabbitMQ envia. */
+    @Benchmark
+    public byte[] jsonCodificarCopia() {
+        return json.codificarCopia(dados);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return dados.toJson();
+    }
+
+    @Benchmark
+    public DadosClimaticos jsonDecodificar() {
+        return json.decodificar(bytesJson);
+    }
+
+    @Benchmark
+    public byte[] binarioCodificarCopia() {
+        return binario.codificarCopia(dados);
+    }
+
+    @Benchmark
+    public DadosClimaticos binarioDecodificar() {
+        return binario.decodificar(bytesBinario);
+    }
+}
@@ -0,0 +1,63 @@
+package org.pd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pd.gateway.AgregadorDashboard;
+import org.pd.gateway.DadosClimaticos;
+import org.pd.gateway.RelatorioDashboard;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geração do dashboard do Gateway (texto e JSON) depois de {@code leituras} leituras registradas no
+ * {@link AgregadorDashboard}, de 10^3 a 10^7: o instantâneo dos agregados e o
+ * {@link RelatorioDashboard}, como em {@code /dashboard}. O custo deve depender do número de regiões,
+ * não do de leituras.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class DashboardBenchmark {
+    private static final String[] REGIOES = {"norte", "sul", "leste", "oeste"};
+
+    @Param({"1000", "100000", "10000000"})
+    public int leituras;
+
+    private AgregadorDashboard agregador;
+
+    @Setup(Level.Trial)
+    public void preencher() {
+        agregador = new AgregadorDashboard();
+        Random random = new Random(42);
+        long inicio = System.currentTimeMillis() - leituras;
+        for (int i = 0; i < leituras; i++) {
+            agregador.registrar(new DadosClimaticos(REGIOES[i & 3], 950 + 100 * random.nextDouble(),
+                    100 + 900 * random.nextDouble(), 15 + 25 * random.nextDouble(), 30 + 50 * random.nextDouble(),
+                    inicio + i));
+        }
+    }
+
+    @Benchmark
+    public String texto() {
+        return RelatorioDashboard.texto(new StringBuilder(), agregador.instantaneo());
+    }
+
+    @Benchmark
+    public String json() {
+        return RelatorioDashboard.json(new StringBuilder("{"), agregador.instantaneo());
+    }
+}
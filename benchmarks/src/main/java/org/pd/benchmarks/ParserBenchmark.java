@@ -0,0 +1,59 @@
+package org.pd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pd.drone.CodificadorPayload;
+import org.pd.gateway.DadosClimaticos;
+import org.pd.gateway.InterpretadorPayload;
+import org.pd.gateway.ParserPayload;
+import org.pd.gateway.RegistroParsers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing do payload de cada região pelo mesmo {@link InterpretadorPayload} que o Gateway usa: parser
+ * da região, rastreio opcional no fim e criação da {@link DadosClimaticos}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"norte", "sul", "leste", "oeste"})
+    public String regiao;
+
+    @Param({"false", "true"})
+    public boolean rastreio;
+
+    private ParserPayload parser;
+    private byte[] payload;
+
+    @Setup
+    public void preparar() {
+        parser = RegistroParsers.comFormatosPadrao().buscar(regiao);
+        CodificadorPayload codificador = CodificadorPayload.daRegiao(regiao);
+        payload = rastreio
+                ? codificador.codificar(1013.25, 512.5, 27.75, 64.1, 123_456, 789, 1_760_000_000_000L)
+                : codificador.codificar(1013.25, 512.5, 27.75, 64.1);
+    }
+
+    @Benchmark
+    public DadosClimaticos interpretar() {
+        DadosClimaticos dados = InterpretadorPayload.interpretar(parser, payload, 1_760_000_000_100L);
+        if (dados == null) {
+            throw new IllegalStateException("payload inválido");
+        }
+        return dados;
+    }
+}
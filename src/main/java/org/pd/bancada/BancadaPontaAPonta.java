@@ -0,0 +1,176 @@
+package org.pd.bancada;
+
+import org.pd.database.ServicoBaseDados;
+import org.pd.drone.GeradorCarga;
+import org.pd.gateway.Gateway;
+import org.pd.gateway.ParticaoGateway;
+import org.pd.metricas.HistogramaLatencia;
+import org.pd.transporte.AmqpMemoria;
+import org.pd.transporte.MqttMemoria;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Capacidade da pipeline inteira numa JVM, sem Mosquitto nem RabbitMQ: o {@link GeradorCarga}
+ * publica num {@link MqttMemoria}, o {@link Gateway} consome, processa e publica num
+ * {@link AmqpMemoria}, e o {@link ServicoBaseDados} consome e persiste (em disco, num diretório
+ * temporário se {@code pd.bd.diretorio} não for dado; o log de texto, {@code pd.bd.log}, vai para o
+ * mesmo diretório).
+ * <p>
+ * A carga usa as propriedades do gerador ({@code pd.carga.taxa}, {@code pd.carga.duracaoMs},
+ * {@code pd.carga.dronesPorRegiao}...). A cada {@code pd.carga.relatorioMs} sai a taxa publicada e
+ * a armazenada; no fim, a vazão sustentada (armazenadas durante a carga), o que se perdeu e os
+ * percentis drone->bd. Essa latência vem do timestamp de origem do rastreio, com resolução de 1 ms.
+ * <p>
+ * Com {@code pd.bancada.gateways=N} sobem N Gateways dividindo os drones pelo modo de
+ * {@code pd.bancada.particao} (compartilhada, o padrão, ou regiao), cada um com o servidor HTTP numa
+ * porta livre; no fim sai quanto cada um recebeu e o dashboard global, que deve somar o mesmo que as
+ * instâncias juntas.
+ * <p>
+ * {@code java -Dpd.carga.taxa=50000 -cp target/Trabalho2Distribuidos-1.0-SNAPSHOT.jar org.pd.bancada.BancadaPontaAPonta}
+ */
+public final class BancadaPontaAPonta {
+    private static final long DURACAO_MS = Long.getLong("pd.carga.duracaoMs", 60_000);
+    private static final long RELATORIO_MS = Long.getLong("pd.carga.relatorioMs", 1_000);
+    // Depois da carga, quanto esperar o que ainda está nas filas chegar à base de dados.
+    private static final long ESPERA_ESVAZIAR_MS = Long.getLong("pd.bancada.esperaMs", 10_000);
+    private static final int GATEWAYS = Integer.getInteger("pd.bancada.gateways", 1);
+    private static final ParticaoGateway.Modo PARTICAO = ParticaoGateway.Modo.valueOf(
+            System.getProperty("pd.bancada.particao", "compartilhada").toUpperCase());
+
+    private BancadaPontaAPonta() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path diretorioTemporario = prepararPropriedades();
+        MqttMemoria mqtt = new MqttMemoria();
+        AmqpMemoria amqp = new AmqpMemoria();
+
+        // A base de dados primeiro: a fila precisa existir antes da primeira publicação do Gateway.
+        ServicoBaseDados bd = new ServicoBaseDados(amqp);
+        bd.iniciar();
+        List<Gateway> gateways = new ArrayList<>();
+        for (int i = 0; i < GATEWAYS; i++) {
+            Gateway gateway = GATEWAYS == 1 ? new Gateway(mqtt, amqp)
+                    : new Gateway(mqtt, amqp, new ParticaoGateway(PARTICAO, "bancada", i, GATEWAYS, List.of(), null));
+            gateway.iniciar();
+            gateways.add(gateway);
+        }
+        GeradorCarga gerador = new GeradorCarga(mqtt);
+        gerador.conectar();
+
+        System.out.println("\n🏁 Bancada ponta a ponta: " + DURACAO_MS / 1000 + "s de carga, " + GATEWAYS
+                + (GATEWAYS == 1 ? " Gateway" : " Gateways (" + PARTICAO.name().toLowerCase() + ")")
+                + ", transportes em memória\n");
+        long inicio = System.nanoTime();
+        gerador.iniciar();
+        long prazo = inicio + TimeUnit.MILLISECONDS.toNanos(DURACAO_MS);
+        long enviadasAntes = 0;
+        long armazenadasAntes = 0;
+        long instanteAntes = inicio;
+        while (System.nanoTime() < prazo) {
+            long restanteMs = TimeUnit.NANOSECONDS.toMillis(prazo - System.nanoTime());
+            Thread.sleep(Math.max(1, Math.min(RELATORIO_MS, restanteMs)));
+            long agora = System.nanoTime();
+            long enviadas = gerador.getEnviadas();
+            long armazenadas = bd.getArmazenadas();
+            double segundos = (agora - instanteAntes) / 1e9;
+            System.out.printf("⏱️ %6.1fs publicadas=%.0f msg/s armazenadas=%.0f msg/s em trânsito=%d | drone->bd p50=%dms"
+                            + " p99=%dms%n", (agora - inicio) / 1e9, (enviadas - enviadasAntes) / segundos,
+                    (armazenadas - armazenadasAntes) / segundos, enviadas - armazenadas,
+                    TimeUnit.NANOSECONDS.toMillis(bd.getLatenciaDroneBd().percentilNanos(50)),
+                    TimeUnit.NANOSECONDS.toMillis(bd.getLatenciaDroneBd().percentilNanos(99)));
+            enviadasAntes = enviadas;
+            armazenadasAntes = armazenadas;
+            instanteAntes = agora;
+        }
+        long armazenadasNaCarga = bd.getArmazenadas();
+        double segundosCarga = (System.nanoTime() - inicio) / 1e9;
+        gerador.parar();
+
+        long limite = System.currentTimeMillis() + ESPERA_ESVAZIAR_MS;
+        while (bd.getArmazenadas() < gerador.getEnviadas() && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        relatar(gerador, bd, gateways, mqtt, armazenadasNaCarga, segundosCarga);
+
+        for (Gateway gateway : gateways) {
+            gateway.parar();
+        }
+        bd.parar();
+        if (diretorioTemporario != null) {
+            apagar(diretorioTemporario);
+        }
+        System.exit(0);
+    }
+
+    /** Padrões da bancada, sem sobrescrever o que foi passado com -D. */
+    private static Path prepararPropriedades() throws IOException {
+        Path temporario = null;
+        if (System.getProperty("pd.bd.diretorio") == null) {
+            temporario = Files.createTempDirectory("pd-bancada");
+            System.setProperty("pd.bd.diretorio", temporario.toString());
+        }
+        // O log de texto da base de dados vai junto, para não crescer o base_dados.log do projeto.
+        if (System.getProperty("pd.bd.log") == null) {
+            Path log = Path.of(System.getProperty("pd.bd.diretorio"), "base_dados.log");
+            System.setProperty("pd.bd.log", log.toString());
+        }
+        // Os resumos de cada serviço se misturariam com os relatórios da bancada.
+        if (System.getProperty("pd.log.resumoMs") == null) {
+            System.setProperty("pd.log.resumoMs", "0");
+        }
+        // Vários Gateways no mesmo processo não podem dividir a porta HTTP.
+        if (GATEWAYS > 1 && System.getProperty("pd.gateway.http.porta") == null) {
+            System.setProperty("pd.gateway.http.porta", "0");
+        }
+        return temporario;
+    }
+
+    private static void relatar(GeradorCarga gerador, ServicoBaseDados bd, List<Gateway> gateways, MqttMemoria mqtt,
+                                long armazenadasNaCarga, double segundosCarga) throws InterruptedException {
+        long enviadas = gerador.getEnviadas();
+        long armazenadas = bd.getArmazenadas();
+        HistogramaLatencia latencia = bd.getLatenciaDroneBd();
+        System.out.println("\n" + "=".repeat(60));
+        System.out.printf("✅ Vazão sustentada: %.0f msg/s armazenadas durante %.1fs de carga%n",
+                armazenadasNaCarga / segundosCarga, segundosCarga);
+        System.out.printf("   publicadas=%d armazenadas=%d perdidas=%d (%.3f%%), descartadas no broker MQTT=%d%n",
+                enviadas, armazenadas, enviadas - armazenadas,
+                enviadas == 0 ? 0 : (enviadas - armazenadas) * 100.0 / enviadas, mqtt.getDescartadas());
+        System.out.printf("   drone->bd: p50=%dms p90=%dms p99=%dms p99.9=%dms máx=%dms%n",
+                TimeUnit.NANOSECONDS.toMillis(latencia.percentilNanos(50)),
+                TimeUnit.NANOSECONDS.toMillis(latencia.percentilNanos(90)),
+                TimeUnit.NANOSECONDS.toMillis(latencia.percentilNanos(99)),
+                TimeUnit.NANOSECONDS.toMillis(latencia.percentilNanos(99.9)),
+                TimeUnit.NANOSECONDS.toMillis(latencia.getMaximoNanos()));
+        System.out.println("=".repeat(60) + "\n");
+        System.out.print(gateways.get(0).gerarRelatorioPipeline());
+        if (gateways.size() > 1) {
+            for (Gateway gateway : gateways) {
+                System.out.printf("   Gateway na porta %d: %d leituras recebidas%n", gateway.getPortaHttp(),
+                        gateway.getRecebidas());
+            }
+            // Os agregados das outras instâncias chegam a cada pd.gateway.agregados.intervaloMs.
+            Thread.sleep(2 * Long.getLong("pd.gateway.agregados.intervaloMs", 1000));
+            System.out.println();
+            System.out.print(gateways.get(0).gerarRelatorioDashboardGlobal());
+        }
+        bd.exibirEstatisticas();
+    }
+
+    private static void apagar(Path diretorio) {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("⚠️ Não foi possível apagar " + diretorio + ": " + e.getMessage());
+        }
+    }
+}
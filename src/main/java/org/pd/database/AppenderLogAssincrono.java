@@ -0,0 +1,298 @@
+package org.pd.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escrita assíncrona do arquivo de log no formato {@code [yyyy-MM-dd HH:mm:ss] [CATEGORIA] mensagem}.
+ * <p>
+ * Quem registra só enfileira numa fila sem trava; a mensagem é um {@code Object} e seu
+ * {@code toString()} só é chamado na thread de escrita. Essa thread esvazia a fila em lotes para um
+ * buffer reaproveitado e grava com um único {@code FileChannel.write} por lote. O arquivo é rotacionado
+ * por tamanho e por tempo; os arquivos rotacionados podem ser compactados com gzip em segundo plano.
+ */
+public class AppenderLogAssincrono implements Closeable {
+    public enum PoliticaCheio { BLOQUEAR, DESCARTAR }
+
+    private static final DateTimeFormatter FORMATO_DATA =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter FORMATO_ROTACAO =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+    private static final long ESPERA_ESCRITOR_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Depois de uma rotação que falhou, quanto esperar para tentar de novo.
+    private static final long ESPERA_NOVA_ROTACAO_MS = 1000;
+
+    private static final class Entrada {
+        final long instante;
+        final String categoria;
+        final Object mensagem;
+
+        Entrada(long instante, String categoria, Object mensagem) {
+            this.instante = instante;
+            this.categoria = categoria;
+            this.mensagem = mensagem;
+        }
+    }
+
+    /** Data formatada por segundo, reaproveitada enquanto o segundo não muda. */
+    private static final class DataEmCache {
+        final long segundo;
+        final byte[] texto;
+
+        DataEmCache(long segundo, byte[] texto) {
+            this.segundo = segundo;
+            this.texto = texto;
+        }
+    }
+
+    private final Path arquivo;
+    private final int capacidade;
+    private final PoliticaCheio politica;
+    private final long maxBytes;
+    private final long intervaloRotacaoMs;
+    private final boolean compactar;
+
+    private final ConcurrentLinkedQueue<Entrada> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamanhoFila = new AtomicInteger();
+    private final LongAdder descartadas = new LongAdder();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ExecutorService compactador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bd-log-compactador");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile DataEmCache dataEmCache = new DataEmCache(Long.MIN_VALUE, new byte[0]);
+    private volatile boolean ativo = true;
+    private volatile Thread escritor;
+    private FileChannel canal;
+    private long tamanhoAtual;
+    private long proximaRotacao;
+    private long rotacaoAdiadaAte = Long.MIN_VALUE;
+
+    public AppenderLogAssincrono(Path arquivo, int capacidade, PoliticaCheio politica, long maxBytes,
+                                 long intervaloRotacaoMs, boolean compactar) {
+        this.arquivo = arquivo;
+        this.capacidade = capacidade;
+        this.politica = politica;
+        this.maxBytes = maxBytes;
+        this.intervaloRotacaoMs = intervaloRotacaoMs;
+        this.compactar = compactar;
+    }
+
+    public void abrir() throws IOException {
+        abrirArquivo();
+        escritor = new Thread(this::executar, "bd-log-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Enfileira uma linha; retorna falso se ela foi descartada por fila cheia. Sem a thread de
+     * escrita (se {@link #abrir()} falhou) a fila nunca esvazia, então mesmo com {@code BLOQUEAR} a
+     * linha é descartada em vez de travar quem registra.
+     */
+    public boolean registrar(String categoria, Object mensagem) {
+        if (!ativo) {
+            return false;
+        }
+        while (tamanhoFila.incrementAndGet() > capacidade) {
+            tamanhoFila.decrementAndGet();
+            Thread atual = escritor;
+            if (politica == PoliticaCheio.DESCARTAR || atual == null || !atual.isAlive()) {
+                descartadas.increment();
+                return false;
+            }
+            LockSupport.unpark(atual);
+            LockSupport.parkNanos(ESPERA_ESCRITOR_NANOS / 10);
+        }
+        fila.add(new Entrada(System.currentTimeMillis(), categoria, mensagem));
+        return true;
+    }
+
+    public long getDescartadas() {
+        return descartadas.sum();
+    }
+
+    public int getProfundidadeFila() {
+        return tamanhoFila.get();
+    }
+
+    private void executar() {
+        while (ativo || !fila.isEmpty()) {
+            try {
+                if (!escreverLote()) {
+                    LockSupport.parkNanos(ESPERA_ESCRITOR_NANOS);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("❌ [BD] Erro ao escrever log: " + e.getMessage());
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private boolean escreverLote() throws IOException {
+        Entrada entrada = fila.poll();
+        if (entrada == null) {
+            return false;
+        }
+        do {
+            tamanhoFila.decrementAndGet();
+            if (entrada.instante >= rotacaoAdiadaAte
+                    && (entrada.instante >= proximaRotacao || tamanhoAtual >= maxBytes)) {
+                descarregar();
+                rotacionar();
+            }
+            escreverLinha(entrada);
+        } while ((entrada = fila.poll()) != null);
+        descarregar();
+        return true;
+    }
+
+    private void escreverLinha(Entrada entrada) throws IOException {
+        byte[] categoria = entrada.categoria.toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        byte[] mensagem = String.valueOf(entrada.mensagem).getBytes(StandardCharsets.UTF_8);
+        byte[] data = formatarData(entrada.instante);
+
+        int tamanhoLinha = data.length + categoria.length + mensagem.length + 7;
+        if (buffer.remaining() < tamanhoLinha) {
+            descarregar();
+        }
+        if (buffer.remaining() < tamanhoLinha) {
+            // Linha maior que o buffer inteiro: grava direto.
+            ByteBuffer linha = ByteBuffer.allocate(tamanhoLinha);
+            montarLinha(linha, data, categoria, mensagem);
+            linha.flip();
+            gravar(linha);
+            return;
+        }
+        montarLinha(buffer, data, categoria, mensagem);
+    }
+
+    private static void montarLinha(ByteBuffer destino, byte[] data, byte[] categoria, byte[] mensagem) {
+        destino.put((byte) '[').put(data).put((byte) ']').put((byte) ' ')
+                .put((byte) '[').put(categoria).put((byte) ']').put((byte) ' ')
+                .put(mensagem).put((byte) '\n');
+    }
+
+    private byte[] formatarData(long instante) {
+        long segundo = Math.floorDiv(instante, 1000);
+        DataEmCache cache = dataEmCache;
+        if (cache.segundo != segundo) {
+            cache = new DataEmCache(segundo,
+                    FORMATO_DATA.format(Instant.ofEpochSecond(segundo)).getBytes(StandardCharsets.US_ASCII));
+            dataEmCache = cache;
+        }
+        return cache.texto;
+    }
+
+    /** Se a gravação falhar, o que não foi gravado fica no começo do buffer para a próxima tentativa. */
+    private void descarregar() throws IOException {
+        buffer.flip();
+        try {
+            gravar(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void gravar(ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            tamanhoAtual += canal.write(dados);
+        }
+    }
+
+    private void abrirArquivo() throws IOException {
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        tamanhoAtual = canal.size();
+        proximaRotacao = intervaloRotacaoMs > 0 ? System.currentTimeMillis() + intervaloRotacaoMs : Long.MAX_VALUE;
+    }
+
+    private void rotacionar() throws IOException {
+        if (tamanhoAtual == 0) {
+            proximaRotacao = intervaloRotacaoMs > 0 ? System.currentTimeMillis() + intervaloRotacaoMs : Long.MAX_VALUE;
+            return;
+        }
+        canal.close();
+        String base = arquivo.getFileName() + "." + FORMATO_ROTACAO.format(Instant.now());
+        Path rotacionado = arquivo.resolveSibling(base);
+        for (int i = 1; Files.exists(rotacionado)
+                || Files.exists(rotacionado.resolveSibling(rotacionado.getFileName() + ".gz")); i++) {
+            rotacionado = arquivo.resolveSibling(base + "-" + i);
+        }
+        try {
+            Files.move(arquivo, rotacionado);
+        } catch (IOException e) {
+            // Segue no mesmo arquivo em vez de ficar com o canal fechado.
+            System.err.println("❌ [BD] Erro ao rotacionar " + arquivo + ": " + e.getMessage());
+            abrirArquivo();
+            rotacaoAdiadaAte = System.currentTimeMillis() + ESPERA_NOVA_ROTACAO_MS;
+            return;
+        }
+        abrirArquivo();
+        if (compactar) {
+            Path paraCompactar = rotacionado;
+            compactador.execute(() -> compactar(paraCompactar));
+        }
+    }
+
+    private static void compactar(Path origem) {
+        Path destino = origem.resolveSibling(origem.getFileName() + ".gz");
+        try (InputStream entrada = Files.newInputStream(origem);
+             OutputStream saida = new GZIPOutputStream(Files.newOutputStream(destino))) {
+            entrada.transferTo(saida);
+        } catch (IOException e) {
+            System.err.println("❌ [BD] Erro ao compactar " + origem + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.delete(origem);
+        } catch (IOException e) {
+            System.err.println("❌ [BD] Erro ao remover " + origem + ": " + e.getMessage());
+        }
+    }
+
+    /** Grava tudo o que já foi enfileirado e fecha o arquivo. */
+    @Override
+    public void close() throws IOException {
+        ativo = false;
+        if (escritor != null) {
+            LockSupport.unpark(escritor);
+            try {
+                escritor.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (canal != null) {
+            canal.close();
+        }
+        compactador.shutdown();
+        try {
+            compactador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
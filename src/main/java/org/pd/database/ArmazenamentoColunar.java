@@ -0,0 +1,154 @@
+package org.pd.database;
+
+import org.pd.gateway.DadosClimaticos;
+import org.pd.gateway.PoliticaRetencao;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Armazenamento em memória das leituras, uma {@link SerieColunar} por região.
+ */
+public class ArmazenamentoColunar {
+    private final Map<String, SerieColunar> series = new ConcurrentHashMap<>();
+
+    public SerieColunar registrarRegiao(String regiao) {
+        return series.computeIfAbsent(regiao, SerieColunar::new);
+    }
+
+    public void anexar(DadosClimaticos dados) {
+        registrarRegiao(dados.getRegiao()).anexar(dados.getTimestamp(), dados.getPressao(),
+                dados.getRadiacao(), dados.getTemperatura(), dados.getUmidade());
+    }
+
+    public SerieColunar serie(String regiao) {
+        return series.get(regiao);
+    }
+
+    public Collection<SerieColunar> series() {
+        return series.values();
+    }
+
+    public long contar(String regiao) {
+        SerieColunar serie = series.get(regiao);
+        return serie != null ? serie.tamanho() : 0;
+    }
+
+    public long contarTotal() {
+        long total = 0;
+        for (SerieColunar serie : series.values()) {
+            total += serie.tamanho();
+        }
+        return total;
+    }
+
+    public long contarDescartados() {
+        long total = 0;
+        for (SerieColunar serie : series.values()) {
+            total += serie.getDescartados();
+        }
+        return total;
+    }
+
+    public long bytesEmUso() {
+        long total = 0;
+        for (SerieColunar serie : series.values()) {
+            total += serie.bytesEmUso();
+        }
+        return total;
+    }
+
+    /**
+     * Descarta blocos inteiros do começo das séries até respeitar a política: primeiro os que
+     * passaram da capacidade da região ou da idade máxima e, se a memória total ainda passa do
+     * limite, o bloco mais antigo entre todas as regiões, um de cada vez. Retorna as leituras
+     * descartadas.
+     */
+    public long aplicarRetencao(PoliticaRetencao politica, long agora) {
+        long descartados = 0;
+        for (SerieColunar serie : series.values()) {
+            if (politica.limitaCapacidade()) {
+                long excesso = serie.tamanho() - politica.getCapacidadePorRegiao();
+                if (excesso >= SerieColunar.TAMANHO_BLOCO) {
+                    descartados += serie.descartarBlocos((int) (excesso / SerieColunar.TAMANHO_BLOCO));
+                }
+            }
+            if (politica.limitaIdade()) {
+                int antigos = serie.blocosAnterioresA(agora - politica.getIdadeMaximaMs());
+                if (antigos > 0) {
+                    descartados += serie.descartarBlocos(antigos);
+                }
+            }
+        }
+        if (politica.limitaBytes()) {
+            while (bytesEmUso() > politica.getMaxBytes()) {
+                SerieColunar maisAntiga = null;
+                for (SerieColunar serie : series.values()) {
+                    if (serie.blocosAnterioresA(Long.MAX_VALUE) > 0 && (maisAntiga == null
+                            || serie.timestampMaisAntigo() < maisAntiga.timestampMaisAntigo())) {
+                        maisAntiga = serie;
+                    }
+                }
+                long removidos = maisAntiga != null ? maisAntiga.descartarBlocos(1) : 0;
+                if (removidos == 0) {
+                    break; // só restam blocos em escrita
+                }
+                descartados += removidos;
+            }
+        }
+        return descartados;
+    }
+
+    public List<DadosClimaticos> listar(String regiao) {
+        SerieColunar serie = series.get(regiao);
+        return serie != null ? serie.visao() : Collections.emptyList();
+    }
+
+    public List<DadosClimaticos> listarTodos() {
+        List<List<DadosClimaticos>> partes = new ArrayList<>();
+        for (SerieColunar serie : series.values()) {
+            partes.add(serie.visao());
+        }
+        return new Concatenacao(partes);
+    }
+
+    private static final class Concatenacao extends AbstractList<DadosClimaticos> implements RandomAccess {
+        private final List<List<DadosClimaticos>> partes;
+        private final int tamanho;
+
+        Concatenacao(List<List<DadosClimaticos>> partes) {
+            this.partes = partes;
+            long soma = 0;
+            for (List<DadosClimaticos> parte : partes) {
+                soma += parte.size();
+            }
+            this.tamanho = (int) Math.min(Integer.MAX_VALUE, soma);
+        }
+
+        @Override
+        public DadosClimaticos get(int indice) {
+            if (indice < 0 || indice >= tamanho) {
+                throw new IndexOutOfBoundsException("Índice " + indice + " fora de " + tamanho);
+            }
+            int restante = indice;
+            for (List<DadosClimaticos> parte : partes) {
+                if (restante < parte.size()) {
+                    return parte.get(restante);
+                }
+                restante -= parte.size();
+            }
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora de " + tamanho);
+        }
+
+        @Override
+        public int size() {
+            return tamanho;
+        }
+    }
+}
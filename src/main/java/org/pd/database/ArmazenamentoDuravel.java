@@ -0,0 +1,198 @@
+package org.pd.database;
+
+import org.pd.gateway.DadosClimaticos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Persistência das leituras em um {@link LogSegmentado} por região, com fsync em grupo.
+ * <p>
+ * Cada {@link #anexar} recebe um número de sequência. Uma thread de sincronização força os logs
+ * ao disco a cada {@code intervaloSincronizacaoMs} ou assim que {@code registrosPorSincronizacao}
+ * registros estiverem pendentes; depois disso {@link #getSequenciaDuravel()} cobre todos eles.
+ * Com intervalo zero, cada registro é sincronizado antes de {@code anexar} retornar.
+ */
+public class ArmazenamentoDuravel implements Closeable {
+    private static final Pattern NOME_REGIAO = Pattern.compile("[a-z0-9_-]{1,64}");
+
+    private final Path diretorio;
+    private final long tamanhoSegmentoBytes;
+    private final int retencaoSegmentos;
+    private final long intervaloSincronizacaoMs;
+    private final int registrosPorSincronizacao;
+
+    private final Map<String, LogSegmentado> logs = new ConcurrentHashMap<>();
+    private final AtomicLong sequencia = new AtomicLong();
+    private volatile long sequenciaDuravel;
+    private final CopyOnWriteArrayList<LongConsumer> ouvintesDuravel = new CopyOnWriteArrayList<>();
+    private final Object sinal = new Object();
+    private volatile boolean ativo = true;
+    private Thread sincronizador;
+
+    public ArmazenamentoDuravel(Path diretorio, long tamanhoSegmentoBytes, int retencaoSegmentos,
+                                long intervaloSincronizacaoMs, int registrosPorSincronizacao) {
+        this.diretorio = diretorio;
+        this.tamanhoSegmentoBytes = tamanhoSegmentoBytes;
+        this.retencaoSegmentos = retencaoSegmentos;
+        this.intervaloSincronizacaoMs = intervaloSincronizacaoMs;
+        this.registrosPorSincronizacao = Math.max(1, registrosPorSincronizacao);
+    }
+
+    /**
+     * Abre os logs existentes, entregando a {@code destino} cada registro recuperado, e inicia a
+     * sincronização em segundo plano. Retorna quantos registros foram recuperados.
+     */
+    public long abrir(Consumer<DadosClimaticos> destino) throws IOException {
+        Files.createDirectories(diretorio);
+        long[] recuperados = {0};
+        try (DirectoryStream<Path> regioes = Files.newDirectoryStream(diretorio, Files::isDirectory)) {
+            for (Path pasta : regioes) {
+                String regiao = pasta.getFileName().toString();
+                if (!NOME_REGIAO.matcher(regiao).matches()) {
+                    continue;
+                }
+                logs.put(regiao, LogSegmentado.abrir(pasta, regiao, tamanhoSegmentoBytes, retencaoSegmentos,
+                        dados -> {
+                            recuperados[0]++;
+                            destino.accept(dados);
+                        }));
+            }
+        }
+
+        if (intervaloSincronizacaoMs > 0) {
+            sincronizador = new Thread(this::executarSincronizacao, "bd-sincronizador");
+            sincronizador.setDaemon(true);
+            sincronizador.start();
+        }
+        return recuperados[0];
+    }
+
+    public long anexar(DadosClimaticos dados) throws IOException {
+        LogSegmentado log = log(dados.getRegiao());
+        log.anexar(dados.getTimestamp(), dados.getPressao(), dados.getRadiacao(),
+                dados.getTemperatura(), dados.getUmidade(), dados.getOrigem(), dados.getSequencia());
+        // A sequência só é atribuída depois que o registro está no buffer do log, então quem
+        // sincroniza tudo até a sequência lida também leva este registro para o disco.
+        long numero = sequencia.incrementAndGet();
+
+        if (intervaloSincronizacaoMs <= 0) {
+            // Todos os logs, não só o desta região: outra pode ter um registro de número menor ainda
+            // fora do disco. Um log sem nada pendente retorna sem force.
+            sincronizar();
+        } else if (numero - sequenciaDuravel == registrosPorSincronizacao) {
+            synchronized (sinal) {
+                sinal.notifyAll();
+            }
+        }
+        return numero;
+    }
+
+    public long getSequenciaDuravel() {
+        return sequenciaDuravel;
+    }
+
+    /** Chamado, na thread que sincronizou, sempre que a sequência durável avança. */
+    public void aoTornarDuravel(LongConsumer ouvinte) {
+        ouvintesDuravel.add(ouvinte);
+    }
+
+    public Path getDiretorio() {
+        return diretorio;
+    }
+
+    /** Pasta dos segmentos da região; o nome é validado para não sair de {@link #getDiretorio()}. */
+    public Path diretorioDaRegiao(String regiao) throws IOException {
+        if (!NOME_REGIAO.matcher(regiao).matches()) {
+            throw new IOException("Nome de região inválido para armazenamento: " + regiao);
+        }
+        return diretorio.resolve(regiao);
+    }
+
+    public void sincronizar() throws IOException {
+        long alvo = sequencia.get();
+        for (LogSegmentado log : logs.values()) {
+            log.sincronizar();
+        }
+        avancarDuravel(alvo);
+    }
+
+    private void avancarDuravel(long numero) {
+        synchronized (this) {
+            if (numero <= sequenciaDuravel) {
+                return;
+            }
+            sequenciaDuravel = numero;
+        }
+        for (LongConsumer ouvinte : ouvintesDuravel) {
+            ouvinte.accept(numero);
+        }
+    }
+
+    private LogSegmentado log(String regiao) throws IOException {
+        LogSegmentado log = logs.get(regiao);
+        if (log != null) {
+            return log;
+        }
+        Path pasta = diretorioDaRegiao(regiao);
+        synchronized (logs) {
+            log = logs.get(regiao);
+            if (log == null) {
+                log = LogSegmentado.abrir(pasta, regiao, tamanhoSegmentoBytes,
+                        retencaoSegmentos, dados -> { });
+                logs.put(regiao, log);
+            }
+            return log;
+        }
+    }
+
+    private void executarSincronizacao() {
+        while (ativo) {
+            try {
+                synchronized (sinal) {
+                    if (sequencia.get() - sequenciaDuravel < registrosPorSincronizacao) {
+                        sinal.wait(intervaloSincronizacaoMs);
+                    }
+                }
+                if (sequencia.get() != sequenciaDuravel) {
+                    sincronizar();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                System.err.println("❌ [BD] Erro ao sincronizar armazenamento: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ativo = false;
+        if (sincronizador != null) {
+            // Sem interrupt: interromper um force() fecharia o FileChannel.
+            synchronized (sinal) {
+                sinal.notifyAll();
+            }
+            try {
+                sincronizador.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (LogSegmentado log : logs.values()) {
+            log.close();
+        }
+        avancarDuravel(sequencia.get());
+    }
+}
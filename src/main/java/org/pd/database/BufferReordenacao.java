@@ -0,0 +1,150 @@
+package org.pd.database;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Segura as leituras de uma região por até {@code atrasoMs} e as entrega em ordem de timestamp,
+ * para que a série em memória e o log em disco continuem ordenados (e as buscas por intervalo,
+ * binárias) mesmo com vários consumidores e reentregas.
+ * <p>
+ * A marca d'água é o maior timestamp já recebido, avançando com o relógio local desde que ele
+ * chegou, menos {@code atrasoMs}: o que está abaixo dela sai. Com ack manual, nada do que chegou
+ * no canal depois de uma leitura retida pode ser confirmado enquanto ela não sai, de qualquer região;
+ * por isso as chegadas são contadas num contador que os buffers das regiões compartilham, e quando a
+ * retida que chegou primeiro já tem {@code capacidade} chegadas desde ela (contando ela mesma), as de
+ * menor timestamp saem antes da marca até ela sair também. Uma leitura que chega com timestamp
+ * menor que o da última entregue não tem mais como entrar na ordem; ela é entregue na hora, com o
+ * timestamp original, e contada em {@link #getAtrasadas()}. Na {@link SerieColunar} e no log em
+ * disco ela fica fora de ordem; a série marca o bloco para que as buscas por tempo a encontrem.
+ * <p>
+ * As entregas acontecem dentro da trava do buffer, então o destino recebe as leituras de uma região
+ * uma de cada vez. Inserir e retirar custam O(log capacidade).
+ */
+final class BufferReordenacao<T> {
+    private static final class Retida<T> {
+        final T item;
+        final long instante;
+        final long chegada;
+        boolean entregue;
+
+        Retida(T item, long instante, long chegada) {
+            this.item = item;
+            this.instante = instante;
+            this.chegada = chegada;
+        }
+    }
+
+    private final long atrasoMs;
+    private final int capacidade;
+    private final ToLongFunction<T> timestamp;
+    private final Consumer<T> destino;
+    private final AtomicLong chegadas;
+    private final PriorityQueue<Retida<T>> retidas;
+    // As mesmas retidas em ordem de chegada; as já entregues saem do começo quando aparecem.
+    private final ArrayDeque<Retida<T>> porChegada = new ArrayDeque<>();
+
+    private long maiorTimestamp = Long.MIN_VALUE;
+    private long maiorRecebidoNanos;
+    private long ultimoEntregue = Long.MIN_VALUE;
+    private long atrasadas;
+
+    BufferReordenacao(long atrasoMs, int capacidade, ToLongFunction<T> timestamp, Consumer<T> destino) {
+        this(atrasoMs, capacidade, new AtomicLong(), timestamp, destino);
+    }
+
+    /** @param chegadas contador de chegadas compartilhado com os buffers das outras regiões */
+    BufferReordenacao(long atrasoMs, int capacidade, AtomicLong chegadas, ToLongFunction<T> timestamp,
+                      Consumer<T> destino) {
+        this.atrasoMs = atrasoMs;
+        this.capacidade = Math.max(1, capacidade);
+        this.chegadas = chegadas;
+        this.timestamp = timestamp;
+        this.destino = destino;
+        this.retidas = new PriorityQueue<>(Math.min(this.capacidade, 1024) + 1,
+                Comparator.comparingLong(retida -> retida.instante));
+    }
+
+    synchronized void adicionar(T item) {
+        long instante = timestamp.applyAsLong(item);
+        long chegada = chegadas.incrementAndGet();
+        if (instante < ultimoEntregue) {
+            atrasadas++;
+            entregar(item, instante);
+            return;
+        }
+        if (atrasoMs <= 0) {
+            entregar(item, instante);
+            return;
+        }
+        Retida<T> retida = new Retida<>(item, instante, chegada);
+        retidas.add(retida);
+        porChegada.add(retida);
+        if (instante > maiorTimestamp) {
+            maiorTimestamp = instante;
+            maiorRecebidoNanos = System.nanoTime();
+        }
+        liberar();
+    }
+
+    /**
+     * Chamado periodicamente, e a cada tantas chegadas nas outras regiões: entrega o que passou da
+     * marca d'água ou da capacidade mesmo sem chegadas novas nesta região.
+     */
+    synchronized void drenar() {
+        liberar();
+    }
+
+    /** Entrega tudo o que está retido, em ordem; usado ao encerrar. */
+    synchronized void esvaziar() {
+        Retida<T> retida;
+        while ((retida = retidas.poll()) != null) {
+            entregar(retida);
+        }
+        porChegada.clear();
+    }
+
+    synchronized int getRetidas() {
+        return retidas.size();
+    }
+
+    synchronized long getAtrasadas() {
+        return atrasadas;
+    }
+
+    private void liberar() {
+        long marca = maiorTimestamp == Long.MIN_VALUE ? Long.MIN_VALUE : maiorTimestamp - atrasoMs
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - maiorRecebidoNanos);
+        Retida<T> primeira;
+        while ((primeira = retidas.peek()) != null) {
+            if (primeira.instante > marca && !segurandoDemais()) {
+                break;
+            }
+            entregar(retidas.poll());
+        }
+    }
+
+    /** Se a retida que chegou primeiro já segura {@code capacidade} leituras. */
+    private boolean segurandoDemais() {
+        Retida<T> maisAntiga;
+        while ((maisAntiga = porChegada.peek()) != null && maisAntiga.entregue) {
+            porChegada.poll();
+        }
+        return maisAntiga != null && chegadas.get() - maisAntiga.chegada >= capacidade;
+    }
+
+    private void entregar(Retida<T> retida) {
+        retida.entregue = true;
+        entregar(retida.item, retida.instante);
+    }
+
+    private void entregar(T item, long instante) {
+        ultimoEntregue = Math.max(ultimoEntregue, instante);
+        destino.accept(item);
+    }
+}
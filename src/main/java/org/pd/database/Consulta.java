@@ -0,0 +1,121 @@
+package org.pd.database;
+
+import org.pd.gateway.Grandeza;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parâmetros de uma consulta ao {@link MotorConsulta}: regiões (vazio = todas), intervalo de tempo
+ * {@code [inicio, fim)}, filtros por grandeza combinados com "e", deslocamento e limite.
+ */
+public final class Consulta {
+    public enum Operador {
+        MAIOR(">"), MAIOR_IGUAL(">="), MENOR("<"), MENOR_IGUAL("<="), IGUAL("="), DIFERENTE("!=");
+
+        private final String simbolo;
+
+        Operador(String simbolo) {
+            this.simbolo = simbolo;
+        }
+
+        public String getSimbolo() { return simbolo; }
+
+        boolean aceita(double valor, double referencia) {
+            switch (this) {
+                case MAIOR: return valor > referencia;
+                case MAIOR_IGUAL: return valor >= referencia;
+                case MENOR: return valor < referencia;
+                case MENOR_IGUAL: return valor <= referencia;
+                case IGUAL: return valor == referencia;
+                default: return valor != referencia;
+            }
+        }
+    }
+
+    /** Condição sobre uma grandeza, como {@code temperatura > 35}. */
+    public static final class Filtro {
+        private final Grandeza grandeza;
+        private final Operador operador;
+        private final double valor;
+
+        public Filtro(Grandeza grandeza, Operador operador, double valor) {
+            this.grandeza = grandeza;
+            this.operador = operador;
+            this.valor = valor;
+        }
+
+        /**
+         * Interpreta textos como {@code temperatura>35}, {@code umidade<=40.5} ou {@code pressao!=0}.
+         * O separador decimal é só o ponto: a vírgula separa filtros na URL de consulta.
+         */
+        public static Filtro interpretar(String texto) {
+            // Operadores de dois caracteres primeiro, para ">=" não ser lido como ">".
+            Operador[] ordem = {Operador.MAIOR_IGUAL, Operador.MENOR_IGUAL, Operador.DIFERENTE,
+                    Operador.MAIOR, Operador.MENOR, Operador.IGUAL};
+            for (Operador operador : ordem) {
+                int posicao = texto.indexOf(operador.simbolo);
+                if (posicao > 0) {
+                    Grandeza grandeza = Grandeza.porNome(texto.substring(0, posicao));
+                    String numero = texto.substring(posicao + operador.simbolo.length()).trim();
+                    try {
+                        return new Filtro(grandeza, operador, Double.parseDouble(numero));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Valor inválido no filtro: " + texto);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Filtro sem operador: " + texto);
+        }
+
+        public Grandeza getGrandeza() { return grandeza; }
+        public Operador getOperador() { return operador; }
+        public double getValor() { return valor; }
+
+        @Override
+        public String toString() {
+            return grandeza.getNome() + operador.simbolo + valor;
+        }
+    }
+
+    private final List<String> regioes = new ArrayList<>();
+    private final List<Filtro> filtros = new ArrayList<>();
+    private long inicio = Long.MIN_VALUE;
+    private long fim = Long.MAX_VALUE;
+    private long deslocamento;
+    private long limite = Long.MAX_VALUE;
+
+    public Consulta regiao(String regiao) {
+        regioes.add(regiao.toLowerCase());
+        return this;
+    }
+
+    public Consulta intervalo(long inicio, long fim) {
+        this.inicio = inicio;
+        this.fim = fim;
+        return this;
+    }
+
+    public Consulta filtro(Filtro filtro) {
+        filtros.add(filtro);
+        return this;
+    }
+
+    public Consulta deslocamento(long deslocamento) {
+        this.deslocamento = Math.max(0, deslocamento);
+        return this;
+    }
+
+    public Consulta limite(long limite) {
+        this.limite = limite < 0 ? Long.MAX_VALUE : limite;
+        return this;
+    }
+
+    public List<String> getRegioes() { return Collections.unmodifiableList(regioes); }
+    public List<Filtro> getFiltros() { return Collections.unmodifiableList(filtros); }
+    public long getInicio() { return inicio; }
+    public long getFim() { return fim; }
+    public long getDeslocamento() { return deslocamento; }
+    public long getLimite() { return limite; }
+}
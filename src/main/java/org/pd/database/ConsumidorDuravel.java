@@ -0,0 +1,106 @@
+package org.pd.database;
+
+import org.pd.transporte.TransporteAmqp;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Acks de um canal de consumo que só saem depois que a leitura está no disco.
+ * <p>
+ * O RabbitMQ entrega as mensagens de um canal em ordem, uma de cada vez, então os pares
+ * (delivery tag, sequência do {@link ArmazenamentoDuravel}) chegam aqui em ordem crescente dos dois
+ * números. Quando a sequência durável avança, todas as mensagens cobertas são confirmadas com um
+ * único {@code confirmar(multiplas=true)} na maior tag.
+ * <p>
+ * Com o {@link BufferReordenacao} a sequência só é conhecida quando a leitura sai do buffer, então a
+ * mensagem é registrada na entrega, em ordem de tag, e recebe a sequência depois
+ * ({@link #persistida}). Uma pendente sem sequência segura as seguintes, para que o ack
+ * múltiplo nunca cubra uma mensagem que ainda não está no disco. Uma pendente rejeitada sai da fila
+ * sem entrar no ack múltiplo.
+ */
+final class ConsumidorDuravel {
+    static final class Pendente {
+        private static final long SEM_SEQUENCIA = Long.MAX_VALUE;
+
+        final long tag;
+        private volatile long sequencia = SEM_SEQUENCIA;
+        private volatile boolean rejeitada;
+
+        Pendente(long tag) {
+            this.tag = tag;
+        }
+
+    }
+
+    private final TransporteAmqp.Canal canal;
+    private final LongSupplier sequenciaDuravel;
+    private final ConcurrentLinkedQueue<Pendente> pendentes = new ConcurrentLinkedQueue<>();
+
+    /** @param sequenciaDuravel a {@link ArmazenamentoDuravel#getSequenciaDuravel()} atual */
+    ConsumidorDuravel(TransporteAmqp.Canal canal, LongSupplier sequenciaDuravel) {
+        this.canal = canal;
+        this.sequenciaDuravel = sequenciaDuravel;
+    }
+
+    TransporteAmqp.Canal getCanal() {
+        return canal;
+    }
+
+    Pendente registrar(long tag) {
+        Pendente pendente = new Pendente(tag);
+        pendentes.add(pendente);
+        return pendente;
+    }
+
+    /**
+     * A leitura da pendente foi anexada ao armazenamento com esta sequência. Se o fsync já a cobriu,
+     * o aviso de durabilidade pode ter passado antes da sequência ser ligada à mensagem, então a
+     * confirmação sai daqui; senão sai no próximo {@link #confirmarAte}.
+     */
+    void persistida(Pendente pendente, long sequencia) throws IOException {
+        pendente.sequencia = sequencia;
+        long duravel = sequenciaDuravel.getAsLong();
+        if (sequencia <= duravel) {
+            confirmarAte(duravel);
+        }
+    }
+
+    /** Confirma na hora uma reentrega de algo já guardado; ela nunca entra na fila de pendentes. */
+    synchronized void confirmarDuplicata(long tag) throws IOException {
+        canal.confirmar(tag, false);
+    }
+
+    /** Mensagem que não decodifica: nack sem reenfileirar, e o broker a move para a dead-letter. */
+    synchronized void rejeitarInvalida(long tag) throws IOException {
+        canal.rejeitar(tag, false, false);
+    }
+
+    /** Devolve a mensagem ao broker (nack com reenfileiramento) e a tira do próximo ack múltiplo. */
+    synchronized void rejeitar(Pendente pendente) throws IOException {
+        pendente.rejeitada = true;
+        pendente.sequencia = 0;
+        if (canal.isAberto()) {
+            canal.rejeitar(pendente.tag, false, true);
+        }
+    }
+
+    int getPendentes() {
+        return pendentes.size();
+    }
+
+    synchronized void confirmarAte(long sequenciaDuravel) throws IOException {
+        long maiorTag = -1;
+        Pendente pendente;
+        while ((pendente = pendentes.peek()) != null && pendente.sequencia <= sequenciaDuravel) {
+            pendentes.poll();
+            if (!pendente.rejeitada) {
+                maiorTag = pendente.tag;
+            }
+        }
+        if (maiorTag >= 0 && canal.isAberto()) {
+            canal.confirmar(maiorTag, true);
+        }
+    }
+}
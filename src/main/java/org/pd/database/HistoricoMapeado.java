@@ -0,0 +1,170 @@
+package org.pd.database;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitura do histórico de uma região direto dos segmentos em disco, via {@link FileChannel#map}.
+ * <p>
+ * Os registros nunca viram {@code DadosClimaticos}: o {@link Cursor} lê os campos primitivos das
+ * páginas mapeadas, que ficam no page cache do sistema e não no heap. O mapeamento é um retrato dos
+ * arquivos no momento da abertura; o que ainda estiver no buffer de escrita do log não aparece.
+ * Segmentos antigos, sem rastreio, e atuais podem se misturar; cada um é lido com o seu tamanho de
+ * registro. Consultas por intervalo assumem timestamps não decrescentes dentro da região, que é a
+ * ordem de anexação do log; uma leitura que chegou depois da reordenação fica fora de ordem e só é
+ * encontrada se estiver entre os limites que a busca binária localizou.
+ */
+public final class HistoricoMapeado {
+    private final String regiao;
+    private final MappedByteBuffer[] segmentos;
+    private final int[] tamanhosRegistro;
+    // inicios[i] é o índice global do primeiro registro do segmento i; inicios[n] é o total.
+    private final long[] inicios;
+
+    private HistoricoMapeado(String regiao, MappedByteBuffer[] segmentos, int[] tamanhosRegistro, long[] inicios) {
+        this.regiao = regiao;
+        this.segmentos = segmentos;
+        this.tamanhosRegistro = tamanhosRegistro;
+        this.inicios = inicios;
+    }
+
+    public static HistoricoMapeado abrir(Path diretorioRegiao, String regiao) throws IOException {
+        List<MappedByteBuffer> mapeados = new ArrayList<>();
+        List<Integer> tamanhos = new ArrayList<>();
+        List<Long> inicios = new ArrayList<>();
+        long total = 0;
+        for (Path segmento : LogSegmentado.listarSegmentos(diretorioRegiao)) {
+            int tamanhoRegistro = LogSegmentado.tamanhoRegistro(segmento);
+            try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+                long registros = canal.size() / tamanhoRegistro;
+                if (registros == 0) {
+                    continue;
+                }
+                mapeados.add(canal.map(FileChannel.MapMode.READ_ONLY, 0, registros * tamanhoRegistro));
+                tamanhos.add(tamanhoRegistro);
+                inicios.add(total);
+                total += registros;
+            }
+        }
+        inicios.add(total);
+
+        int[] vetorTamanhos = new int[tamanhos.size()];
+        for (int i = 0; i < vetorTamanhos.length; i++) {
+            vetorTamanhos[i] = tamanhos.get(i);
+        }
+        long[] vetorInicios = new long[inicios.size()];
+        for (int i = 0; i < vetorInicios.length; i++) {
+            vetorInicios[i] = inicios.get(i);
+        }
+        return new HistoricoMapeado(regiao, mapeados.toArray(new MappedByteBuffer[0]), vetorTamanhos, vetorInicios);
+    }
+
+    public String getRegiao() { return regiao; }
+
+    public long tamanho() {
+        return inicios[inicios.length - 1];
+    }
+
+    public Cursor cursor() {
+        return new Cursor(0, tamanho());
+    }
+
+    /** Cursor sobre os registros com {@code inicio <= timestamp <= fim}, localizados por busca binária. */
+    public Cursor intervalo(long inicio, long fim) {
+        long de = inicio == Long.MIN_VALUE ? 0 : primeiroComTimestampMaiorQue(inicio - 1);
+        return new Cursor(de, Math.max(de, primeiroComTimestampMaiorQue(fim)));
+    }
+
+    private long primeiroComTimestampMaiorQue(long limite) {
+        long baixo = 0;
+        long alto = tamanho();
+        while (baixo < alto) {
+            long meio = (baixo + alto) >>> 1;
+            if (lerLong(meio, LogSegmentado.OFFSET_TIMESTAMP) <= limite) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private int segmentoDe(long indice) {
+        int baixo = 0;
+        int alto = segmentos.length - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (inicios[meio] <= indice) {
+                baixo = meio;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo;
+    }
+
+    private long lerLong(long indice, int offset) {
+        int s = segmentoDe(indice);
+        return segmentos[s].getLong((int) ((indice - inicios[s]) * tamanhosRegistro[s]) + offset);
+    }
+
+    /**
+     * Iterador sobre registros consecutivos. Chame {@link #proximo()} antes de cada leitura.
+     */
+    public final class Cursor {
+        private final long fim;
+        private long indice;
+        private int segmento;
+        private MappedByteBuffer atual;
+        private int base;
+
+        private Cursor(long inicio, long fim) {
+            this.fim = fim;
+            this.indice = inicio - 1;
+            if (inicio < fim) {
+                segmento = segmentoDe(inicio);
+                atual = segmentos[segmento];
+            }
+        }
+
+        public boolean proximo() {
+            if (indice + 1 >= fim) {
+                indice = fim;
+                return false;
+            }
+            indice++;
+            while (indice >= inicios[segmento + 1]) {
+                segmento++;
+                atual = segmentos[segmento];
+            }
+            base = (int) ((indice - inicios[segmento]) * tamanhosRegistro[segmento]);
+            return true;
+        }
+
+        public long restantes() { return Math.max(0, fim - indice - 1); }
+
+        public long indice() { return indice; }
+
+        public long timestamp() { return atual.getLong(base + LogSegmentado.OFFSET_TIMESTAMP); }
+        public double pressao() { return atual.getDouble(base + LogSegmentado.OFFSET_PRESSAO); }
+        public double radiacao() { return atual.getDouble(base + LogSegmentado.OFFSET_RADIACAO); }
+        public double temperatura() { return atual.getDouble(base + LogSegmentado.OFFSET_TEMPERATURA); }
+        public double umidade() { return atual.getDouble(base + LogSegmentado.OFFSET_UMIDADE); }
+
+        /** Origem do rastreio; -1 sem rastreio ou num segmento anterior a ele. */
+        public long origem() {
+            return tamanhosRegistro[segmento] == LogSegmentado.TAMANHO_REGISTRO
+                    ? atual.getLong(base + LogSegmentado.OFFSET_ORIGEM) : -1;
+        }
+
+        public long sequencia() {
+            return tamanhosRegistro[segmento] == LogSegmentado.TAMANHO_REGISTRO
+                    ? atual.getLong(base + LogSegmentado.OFFSET_SEQUENCIA) : -1;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.pd.database;
+
+import org.pd.gateway.DadosClimaticos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Log binário somente-anexação de uma região, dividido em arquivos de segmento.
+ * <p>
+ * Cada registro tem tamanho fixo ({@link #TAMANHO_REGISTRO} bytes): CRC32C dos 56 bytes seguintes,
+ * timestamp, as quatro grandezas e o par de rastreio (origem e sequência, -1 quando a leitura não o
+ * trouxe), em big-endian. Segmentos se chamam {@code segmento-NNNNNNNNNN.v2.log} e são abertos em
+ * ordem numérica na recuperação. Os {@code segmento-NNNNNNNNNN.log} de antes do rastreio, com
+ * registros de {@link #TAMANHO_REGISTRO_V1} bytes sem o par, continuam sendo lidos, mas não recebem
+ * registros novos: a primeira escrita depois deles abre um segmento no formato atual.
+ */
+final class LogSegmentado implements Closeable {
+    static final int TAMANHO_REGISTRO = 60;
+    static final int TAMANHO_REGISTRO_V1 = 44;
+    static final int OFFSET_TIMESTAMP = 4;
+    static final int OFFSET_PRESSAO = 12;
+    static final int OFFSET_RADIACAO = 20;
+    static final int OFFSET_TEMPERATURA = 28;
+    static final int OFFSET_UMIDADE = 36;
+    static final int OFFSET_ORIGEM = 44;
+    static final int OFFSET_SEQUENCIA = 52;
+
+    private static final String PREFIXO = "segmento-";
+    private static final String SUFIXO = ".log";
+    private static final String SUFIXO_V2 = ".v2" + SUFIXO;
+    private static final int REGISTROS_POR_BUFFER = 1024;
+
+    private final Path diretorio;
+    private final String regiao;
+    private final long registrosPorSegmento;
+    private final int retencaoSegmentos;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_REGISTRO * REGISTROS_POR_BUFFER);
+    private final CRC32C crc = new CRC32C();
+    // Um force por vez: quem chega durante um force espera por ele e confere se ele já o cobriu.
+    private final Object travaForce = new Object();
+
+    private FileChannel canal;
+    private long numeroSegmento;
+    private long registrosNoSegmento;
+    // Registros anexados desde a abertura e quantos deles já estão no disco; guardados pelo monitor.
+    private long anexados;
+    private long sincronizados;
+
+    private LogSegmentado(Path diretorio, String regiao, long tamanhoSegmentoBytes, int retencaoSegmentos) {
+        this.diretorio = diretorio;
+        this.regiao = regiao;
+        this.registrosPorSegmento = Math.max(1, tamanhoSegmentoBytes / TAMANHO_REGISTRO);
+        this.retencaoSegmentos = retencaoSegmentos;
+    }
+
+    /**
+     * Abre (ou cria) o log da região, reenviando a {@code destino} todos os registros válidos.
+     * Um registro final incompleto ou com CRC inválido indica escrita interrompida: o segmento é
+     * truncado naquele ponto.
+     */
+    static LogSegmentado abrir(Path diretorio, String regiao, long tamanhoSegmentoBytes, int retencaoSegmentos,
+                               Consumer<DadosClimaticos> destino) throws IOException {
+        Files.createDirectories(diretorio);
+        LogSegmentado log = new LogSegmentado(diretorio, regiao, tamanhoSegmentoBytes, retencaoSegmentos);
+        log.recuperar(destino);
+        return log;
+    }
+
+    static List<Path> listarSegmentos(Path diretorio) throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        if (!Files.isDirectory(diretorio)) {
+            return segmentos;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diretorio, PREFIXO + "*" + SUFIXO)) {
+            stream.forEach(segmentos::add);
+        }
+        Collections.sort(segmentos);
+        return segmentos;
+    }
+
+    /** Tamanho dos registros do segmento, pelo formato indicado no nome. */
+    static int tamanhoRegistro(Path segmento) {
+        return segmento.getFileName().toString().endsWith(SUFIXO_V2) ? TAMANHO_REGISTRO : TAMANHO_REGISTRO_V1;
+    }
+
+    String getRegiao() { return regiao; }
+
+    Path getDiretorio() { return diretorio; }
+
+    private void recuperar(Consumer<DadosClimaticos> destino) throws IOException {
+        List<Path> segmentos = listarSegmentos(diretorio);
+        long registrosUltimo = 0;
+        for (Path segmento : segmentos) {
+            registrosUltimo = recuperarSegmento(segmento, destino);
+            numeroSegmento = numeroDoSegmento(segmento);
+        }
+
+        if (segmentos.isEmpty() || registrosUltimo >= registrosPorSegmento
+                || tamanhoRegistro(segmentos.get(segmentos.size() - 1)) != TAMANHO_REGISTRO) {
+            abrirNovoSegmento();
+        } else {
+            canal = FileChannel.open(segmentos.get(segmentos.size() - 1), StandardOpenOption.WRITE);
+            canal.position(registrosUltimo * TAMANHO_REGISTRO);
+            registrosNoSegmento = registrosUltimo;
+        }
+    }
+
+    private long recuperarSegmento(Path segmento, Consumer<DadosClimaticos> destino) throws IOException {
+        int tamanhoRegistro = tamanhoRegistro(segmento);
+        boolean comRastreio = tamanhoRegistro == TAMANHO_REGISTRO;
+        long validos = 0;
+        try (FileChannel leitura = FileChannel.open(segmento, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bloco = ByteBuffer.allocate(tamanhoRegistro * REGISTROS_POR_BUFFER);
+            boolean corrompido = false;
+            while (!corrompido && leitura.read(bloco) > 0) {
+                bloco.flip();
+                while (bloco.remaining() >= tamanhoRegistro) {
+                    int inicio = bloco.position();
+                    int crcGravado = bloco.getInt(inicio);
+                    crc.reset();
+                    crc.update(bloco.array(), inicio + 4, tamanhoRegistro - 4);
+                    if ((int) crc.getValue() != crcGravado) {
+                        corrompido = true;
+                        break;
+                    }
+                    destino.accept(new DadosClimaticos(regiao,
+                            bloco.getDouble(inicio + OFFSET_PRESSAO),
+                            bloco.getDouble(inicio + OFFSET_RADIACAO),
+                            bloco.getDouble(inicio + OFFSET_TEMPERATURA),
+                            bloco.getDouble(inicio + OFFSET_UMIDADE),
+                            bloco.getLong(inicio + OFFSET_TIMESTAMP),
+                            comRastreio ? bloco.getLong(inicio + OFFSET_ORIGEM) : -1,
+                            comRastreio ? bloco.getLong(inicio + OFFSET_SEQUENCIA) : -1,
+                            -1));
+                    bloco.position(inicio + tamanhoRegistro);
+                    validos++;
+                }
+                bloco.compact();
+            }
+            long tamanhoValido = validos * tamanhoRegistro;
+            if (leitura.size() > tamanhoValido) {
+                System.err.println("⚠️ [BD] Segmento " + segmento + " truncado em " + tamanhoValido
+                        + " bytes (registro final inválido).");
+                leitura.truncate(tamanhoValido);
+            }
+        }
+        return validos;
+    }
+
+    /** @param origem origem e sequência do rastreio, -1 sem rastreio */
+    synchronized void anexar(long timestamp, double pressao, double radiacao, double temperatura, double umidade,
+                             long origem, long sequencia) throws IOException {
+        if (registrosNoSegmento >= registrosPorSegmento) {
+            rolarSegmento();
+        }
+        if (buffer.remaining() < TAMANHO_REGISTRO) {
+            descarregar();
+        }
+
+        int inicio = buffer.position();
+        buffer.putInt(0)
+                .putLong(timestamp)
+                .putDouble(pressao)
+                .putDouble(radiacao)
+                .putDouble(temperatura)
+                .putDouble(umidade)
+                .putLong(origem)
+                .putLong(sequencia);
+        crc.reset();
+        crc.update(buffer.array(), inicio + 4, TAMANHO_REGISTRO - 4);
+        buffer.putInt(inicio, (int) crc.getValue());
+        registrosNoSegmento++;
+        anexados++;
+    }
+
+    /**
+     * Retorna só quando tudo o que foi anexado antes da chamada está no disco: por um {@code force}
+     * desta chamada ou por um que começou depois daquele ponto. O {@code force} acontece fora do
+     * monitor para não bloquear quem está anexando.
+     */
+    void sincronizar() throws IOException {
+        long alvo;
+        synchronized (this) {
+            alvo = anexados;
+            if (alvo <= sincronizados) {
+                return;
+            }
+        }
+        synchronized (travaForce) {
+            FileChannel atual;
+            long cobertos;
+            synchronized (this) {
+                if (alvo <= sincronizados) {
+                    return; // o force que estava em andamento já levou estes registros
+                }
+                descarregar();
+                cobertos = anexados;
+                atual = canal;
+            }
+            try {
+                atual.force(false);
+            } catch (ClosedChannelException e) {
+                // Segmento rolado enquanto isso; rolarSegmento já o sincronizou antes de fechar.
+            }
+            synchronized (this) {
+                sincronizados = Math.max(sincronizados, cobertos);
+            }
+        }
+    }
+
+    private void descarregar() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void rolarSegmento() throws IOException {
+        descarregar();
+        canal.force(false);
+        canal.close();
+        // Os registros anteriores estão todos em segmentos já forçados.
+        sincronizados = anexados;
+        abrirNovoSegmento();
+        aplicarRetencao();
+    }
+
+    private void abrirNovoSegmento() throws IOException {
+        numeroSegmento++;
+        Path arquivo = diretorio.resolve(String.format("%s%010d%s", PREFIXO, numeroSegmento, SUFIXO_V2));
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        registrosNoSegmento = 0;
+    }
+
+    private void aplicarRetencao() throws IOException {
+        if (retencaoSegmentos <= 0) {
+            return;
+        }
+        List<Path> segmentos = listarSegmentos(diretorio);
+        for (int i = 0; i < segmentos.size() - retencaoSegmentos; i++) {
+            Files.deleteIfExists(segmentos.get(i));
+        }
+    }
+
+    private static long numeroDoSegmento(Path segmento) {
+        String nome = segmento.getFileName().toString();
+        return Long.parseLong(nome.substring(PREFIXO.length(), nome.indexOf('.', PREFIXO.length())));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        descarregar();
+        canal.force(false);
+        canal.close();
+    }
+}
@@ -0,0 +1,184 @@
+package org.pd.database;
+
+import org.pd.gateway.DadosClimaticos;
+import org.pd.gateway.EstatisticaCorrente;
+import org.pd.gateway.Grandeza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Consultas sobre o {@link ArmazenamentoColunar} sem copiar as séries.
+ * <p>
+ * O intervalo de tempo vira um intervalo de índices por busca binária sobre os blocos da série; as
+ * leituras que chegaram atrasadas depois desse intervalo são achadas pelos blocos que as guardam
+ * ({@link SerieColunar#varrerAtrasadas}), e o tempo continua sendo um filtro. Filtros e agregações
+ * são avaliados direto sobre as colunas, dentro da varredura, e só as leituras que saem no resultado
+ * viram {@link DadosClimaticos}. Leituras já descartadas pela retenção não aparecem; o histórico
+ * completo fica em {@link HistoricoMapeado}.
+ */
+public class MotorConsulta {
+    /** Uma página de resultado; {@code temMais} indica que há leituras depois do limite. */
+    public static final class Pagina {
+        private final List<DadosClimaticos> itens;
+        private final boolean temMais;
+
+        Pagina(List<DadosClimaticos> itens, boolean temMais) {
+            this.itens = itens;
+            this.temMais = temMais;
+        }
+
+        public List<DadosClimaticos> getItens() { return itens; }
+        public boolean isTemMais() { return temMais; }
+    }
+
+    private final ArmazenamentoColunar armazenamento;
+
+    public MotorConsulta(ArmazenamentoColunar armazenamento) {
+        this.armazenamento = armazenamento;
+    }
+
+    /**
+     * Entrega as leituras que satisfazem a consulta, região por região e em ordem de anexação,
+     * respeitando deslocamento e limite. Retorna quantas foram entregues.
+     */
+    public long executar(Consulta consulta, Consumer<DadosClimaticos> destino) {
+        return executar(consulta, consulta.getLimite(), destino);
+    }
+
+    private long executar(Consulta consulta, long limite, Consumer<DadosClimaticos> destino) {
+        long[] pular = {consulta.getDeslocamento()};
+        long[] restantes = {limite};
+        long entregues = 0;
+        for (SerieColunar serie : series(consulta)) {
+            if (restantes[0] <= 0) {
+                break;
+            }
+            long antes = restantes[0];
+            varrer(serie, consulta, pular, (indice, ts, p, r, t, u) -> {
+                if (pular[0] > 0) {
+                    pular[0]--;
+                    return true;
+                }
+                destino.accept(new DadosClimaticos(serie.getRegiao(), p, r, t, u, ts));
+                return --restantes[0] > 0;
+            });
+            entregues += antes - restantes[0];
+        }
+        return entregues;
+    }
+
+    /** Uma página da consulta; busca uma leitura a mais que o limite para saber se há próxima. */
+    public Pagina buscar(Consulta consulta) {
+        long limite = consulta.getLimite();
+        List<DadosClimaticos> itens = new ArrayList<>((int) Math.min(limite, 1024));
+        executar(consulta, limite == Long.MAX_VALUE ? limite : limite + 1, itens::add);
+        boolean temMais = itens.size() > limite;
+        if (temMais) {
+            itens.remove(itens.size() - 1);
+        }
+        return new Pagina(itens, temMais);
+    }
+
+    /** Conta as leituras que satisfazem a consulta (ignora deslocamento e limite). */
+    public long contar(Consulta consulta) {
+        long[] contagem = {0};
+        for (SerieColunar serie : series(consulta)) {
+            varrer(serie, consulta, null, (indice, ts, p, r, t, u) -> {
+                contagem[0]++;
+                return true;
+            });
+        }
+        return contagem[0];
+    }
+
+    /**
+     * Estatísticas de uma grandeza sobre as leituras que satisfazem a consulta, calculadas dentro
+     * da varredura (ignora deslocamento e limite).
+     */
+    public EstatisticaCorrente agregar(Consulta consulta, Grandeza grandeza) {
+        EstatisticaCorrente estatistica = new EstatisticaCorrente();
+        for (SerieColunar serie : series(consulta)) {
+            varrer(serie, consulta, null, (indice, ts, p, r, t, u) -> {
+                estatistica.adicionar(valor(grandeza, p, r, t, u));
+                return true;
+            });
+        }
+        return estatistica;
+    }
+
+    private List<SerieColunar> series(Consulta consulta) {
+        List<SerieColunar> series = new ArrayList<>();
+        if (consulta.getRegioes().isEmpty()) {
+            series.addAll(armazenamento.series());
+        } else {
+            for (String regiao : consulta.getRegioes()) {
+                SerieColunar serie = armazenamento.serie(regiao);
+                if (serie != null) {
+                    series.add(serie);
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Varre a série aplicando intervalo e filtros. Sem filtros e com a série ordenada, cada leitura do
+     * intervalo de índices é um resultado, então o deslocamento em {@code pular} é aplicado direto nos
+     * índices em vez de leitura a leitura.
+     */
+    private static void varrer(SerieColunar serie, Consulta consulta, long[] pular,
+                               SerieColunar.Varredura destino) {
+        long inicio = consulta.getInicio();
+        long fim = consulta.getFim();
+        List<Consulta.Filtro> lista = consulta.getFiltros();
+        Grandeza[] grandezas = new Grandeza[lista.size()];
+        Consulta.Operador[] operadores = new Consulta.Operador[lista.size()];
+        double[] referencias = new double[lista.size()];
+        for (int i = 0; i < grandezas.length; i++) {
+            grandezas[i] = lista.get(i).getGrandeza();
+            operadores[i] = lista.get(i).getOperador();
+            referencias[i] = lista.get(i).getValor();
+        }
+
+        long de = inicio != Long.MIN_VALUE ? serie.buscarPrimeiro(inicio) : serie.inicio();
+        long ate = fim != Long.MAX_VALUE ? serie.buscarFim(fim) : serie.fim();
+        // Lida depois das buscas: ordenada agora, nenhuma atrasada caiu em [de, ate).
+        boolean ordenada = serie.isOrdenada();
+        if (pular != null && pular[0] > 0 && grandezas.length == 0
+                && (ordenada || (inicio == Long.MIN_VALUE && fim == Long.MAX_VALUE))) {
+            long saltar = Math.min(pular[0], Math.max(0, ate - de));
+            de += saltar;
+            pular[0] -= saltar;
+            if (de >= ate) {
+                return;
+            }
+        }
+        SerieColunar.Varredura filtro = (indice, ts, p, r, t, u) -> {
+            // Onde há atrasadas os limites são de bloco inteiro, então o tempo ainda é filtrado.
+            if (ts < inicio || ts >= fim) {
+                return true;
+            }
+            for (int i = 0; i < grandezas.length; i++) {
+                if (!operadores[i].aceita(valor(grandezas[i], p, r, t, u), referencias[i])) {
+                    return true;
+                }
+            }
+            return destino.aceitar(indice, ts, p, r, t, u);
+        };
+        if (serie.varrer(de, ate, filtro) && fim != Long.MAX_VALUE) {
+            serie.varrerAtrasadas(ate, fim, filtro);
+        }
+    }
+
+    private static double valor(Grandeza grandeza, double pressao, double radiacao, double temperatura,
+                                double umidade) {
+        switch (grandeza) {
+            case PRESSAO: return pressao;
+            case RADIACAO: return radiacao;
+            case TEMPERATURA: return temperatura;
+            default: return umidade;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.pd.database;
+
+import org.pd.gateway.DadosClimaticos;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Série temporal de uma região guardada em colunas primitivas.
+ * <p>
+ * As leituras são anexadas em blocos de tamanho fixo ({@link #TAMANHO_BLOCO}); cada bloco tem um
+ * {@code long[]} de timestamps e um {@code double[]} por grandeza. Apenas os escritores se
+ * sincronizam entre si: a contagem publicada é volátil e é escrita depois dos valores, então
+ * leitores enxergam blocos completos sem precisar de trava.
+ * <p>
+ * Os índices são absolutos desde a primeira leitura da série. A retenção descarta blocos inteiros do
+ * começo ({@link #descartarBlocos}), trocando o vetor de blocos por uma cópia sem eles: a escrita não
+ * espera pela retenção, e um leitor que já tinha o vetor antigo continua lendo os blocos que pegou.
+ * <p>
+ * Uma leitura com timestamp menor que o maior já anexado (uma que chegou depois da reordenação)
+ * também vai para o fim, sem cópia. Cada bloco guarda o maior timestamp anexado até ele e o menor
+ * timestamp atrasado que recebeu: as buscas por intervalo de tempo continuam binárias sobre os
+ * blocos, e só os blocos com leituras atrasadas precisam ser varridos inteiros
+ * ({@link #varrerAtrasadas}). A série volta a ser {@link #isOrdenada() ordenada} quando a retenção
+ * descarta o último bloco com leituras atrasadas.
+ */
+public final class SerieColunar {
+    public static final int TAMANHO_BLOCO = 4096;
+    /** Memória de um bloco cheio: um {@code long} e quatro {@code double} por leitura. */
+    public static final long BYTES_POR_BLOCO = TAMANHO_BLOCO * (8L + 4 * 8L);
+
+    /** Vetor imutável de blocos; {@code blocos[0]} é o bloco absoluto {@code primeiroBloco}. */
+    private static final class Estado {
+        final Bloco[] blocos;
+        final long primeiroBloco;
+
+        Estado(Bloco[] blocos, long primeiroBloco) {
+            this.blocos = blocos;
+            this.primeiroBloco = primeiroBloco;
+        }
+
+        Bloco bloco(long indice) {
+            return blocos[(int) (indice / TAMANHO_BLOCO - primeiroBloco)];
+        }
+    }
+
+    /** Recebe uma leitura da varredura; retornar falso interrompe a varredura. */
+    interface Varredura {
+        boolean aceitar(long indice, long timestamp, double pressao, double radiacao,
+                        double temperatura, double umidade);
+    }
+
+    private final String regiao;
+    private final AtomicReference<Estado> estado = new AtomicReference<>(new Estado(new Bloco[0], 0));
+    private final LongAdder descartados = new LongAdder();
+    private volatile long tamanho;
+    // Número absoluto do último bloco que recebeu uma leitura atrasada; -1 se nenhum.
+    private volatile long ultimoBlocoAtrasado = -1;
+    private long maiorTimestamp = Long.MIN_VALUE;
+
+    SerieColunar(String regiao) {
+        this.regiao = regiao;
+    }
+
+    public String getRegiao() { return regiao; }
+
+    /** Índice da leitura mais antiga ainda em memória. */
+    public long inicio() {
+        return Math.min(estado.get().primeiroBloco * TAMANHO_BLOCO, tamanho);
+    }
+
+    /** Índice seguinte ao da leitura mais recente (total de leituras já anexadas). */
+    public long fim() { return tamanho; }
+
+    /** Leituras ainda em memória. */
+    public long tamanho() { return fim() - inicio(); }
+
+    /** Leituras descartadas pela retenção. */
+    public long getDescartados() { return descartados.sum(); }
+
+    /** Verdadeiro se as leituras em memória foram anexadas em ordem não decrescente de timestamp. */
+    public boolean isOrdenada() { return ultimoBlocoAtrasado < estado.get().primeiroBloco; }
+
+    /** Memória ocupada pelos blocos ainda referenciados pela série. */
+    public long bytesEmUso() {
+        return estado.get().blocos.length * BYTES_POR_BLOCO;
+    }
+
+    public synchronized void anexar(long timestamp, double pressao, double radiacao,
+                                    double temperatura, double umidade) {
+        long indice = tamanho;
+        int posicao = posicao(indice);
+
+        Estado atual = estado.get();
+        long numeroBloco = indice / TAMANHO_BLOCO;
+        Bloco bloco;
+        if (numeroBloco - atual.primeiroBloco < atual.blocos.length) {
+            bloco = atual.bloco(indice);
+        } else {
+            // Um bloco novo a cada TAMANHO_BLOCO leituras; o vetor é trocado por CAS porque a
+            // retenção pode ter descartado o começo dele ao mesmo tempo.
+            bloco = new Bloco();
+            Estado novo;
+            do {
+                atual = estado.get();
+                Bloco[] blocos = Arrays.copyOf(atual.blocos, atual.blocos.length + 1);
+                blocos[blocos.length - 1] = bloco;
+                novo = new Estado(blocos, atual.primeiroBloco);
+            } while (!estado.compareAndSet(atual, novo));
+        }
+
+        if (timestamp < maiorTimestamp) {
+            bloco.minimoAtrasado = Math.min(bloco.minimoAtrasado, timestamp);
+            ultimoBlocoAtrasado = numeroBloco;
+        } else {
+            maiorTimestamp = timestamp;
+        }
+        bloco.maximo = maiorTimestamp;
+        bloco.timestamp[posicao] = timestamp;
+        bloco.pressao[posicao] = pressao;
+        bloco.radiacao[posicao] = radiacao;
+        bloco.temperatura[posicao] = temperatura;
+        bloco.umidade[posicao] = umidade;
+
+        // Escrita volátil por último: publica o registro (e um bloco recém-criado) aos leitores.
+        tamanho = indice + 1;
+    }
+
+    /**
+     * Descarta até {@code quantidade} blocos cheios do começo da série; o bloco em escrita nunca é
+     * descartado. Retorna quantas leituras saíram da memória.
+     */
+    public long descartarBlocos(int quantidade) {
+        while (true) {
+            Estado atual = estado.get();
+            long blocosCheios = tamanho / TAMANHO_BLOCO - atual.primeiroBloco;
+            int remover = (int) Math.min(quantidade, Math.min(blocosCheios, atual.blocos.length));
+            if (remover <= 0) {
+                return 0;
+            }
+            Estado novo = new Estado(Arrays.copyOfRange(atual.blocos, remover, atual.blocos.length),
+                    atual.primeiroBloco + remover);
+            if (estado.compareAndSet(atual, novo)) {
+                long removidos = (long) remover * TAMANHO_BLOCO;
+                descartados.add(removidos);
+                return removidos;
+            }
+        }
+    }
+
+    /** Quantos blocos cheios do começo têm todas as leituras anteriores a {@code limite}. */
+    public int blocosAnterioresA(long limite) {
+        Estado atual = estado.get();
+        long blocosCheios = Math.min(tamanho / TAMANHO_BLOCO - atual.primeiroBloco, atual.blocos.length);
+        int quantidade = 0;
+        while (quantidade < blocosCheios
+                && atual.blocos[quantidade].maximo < limite) {
+            quantidade++;
+        }
+        return quantidade;
+    }
+
+    /** Timestamp da leitura mais antiga em memória, ou {@code Long.MAX_VALUE} se a série está vazia. */
+    public long timestampMaisAntigo() {
+        Estado atual = estado.get();
+        long indice = atual.primeiroBloco * TAMANHO_BLOCO;
+        if (indice >= tamanho || atual.blocos.length == 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.min(atual.blocos[0].timestamp[0], atual.blocos[0].minimoAtrasado);
+    }
+
+    /**
+     * Primeiro índice em memória que pode ter timestamp {@code >= alvo}: todas as leituras antes dele
+     * têm timestamp menor. Busca binária pelo maior timestamp de cada bloco e, se o bloco achado não
+     * tem leituras atrasadas, dentro dele; se tem, retorna o começo do bloco.
+     */
+    public long buscarPrimeiro(long alvo) {
+        long fim = tamanho;
+        Estado atual = estado.get();
+        int blocos = blocosAte(atual, fim);
+        int b = primeiroBlocoComMaximo(atual, blocos, alvo);
+        if (b == blocos) {
+            return fim;
+        }
+        long inicioBloco = (atual.primeiroBloco + b) * TAMANHO_BLOCO;
+        if (atual.blocos[b].minimoAtrasado != Long.MAX_VALUE) {
+            return inicioBloco;
+        }
+        return primeiroNoBloco(atual, inicioBloco, Math.min(inicioBloco + TAMANHO_BLOCO, fim), alvo);
+    }
+
+    /**
+     * Índice a partir do qual toda leitura anexada em ordem tem timestamp {@code >= alvo}; as
+     * atrasadas depois dele ficam com {@link #varrerAtrasadas}. Com a série ordenada, é o mesmo que
+     * {@link #buscarPrimeiro}.
+     */
+    public long buscarFim(long alvo) {
+        long fim = tamanho;
+        Estado atual = estado.get();
+        int blocos = blocosAte(atual, fim);
+        int b = primeiroBlocoComMaximo(atual, blocos, alvo);
+        if (b == blocos) {
+            return fim;
+        }
+        long inicioBloco = (atual.primeiroBloco + b) * TAMANHO_BLOCO;
+        long fimBloco = Math.min(inicioBloco + TAMANHO_BLOCO, fim);
+        if (atual.blocos[b].minimoAtrasado != Long.MAX_VALUE) {
+            return fimBloco;
+        }
+        return primeiroNoBloco(atual, inicioBloco, fimBloco, alvo);
+    }
+
+    /** Blocos do vetor com alguma leitura de índice menor que {@code fim}. */
+    private static int blocosAte(Estado atual, long fim) {
+        long ultimo = (fim + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO - atual.primeiroBloco;
+        return (int) Math.max(0, Math.min(atual.blocos.length, ultimo));
+    }
+
+    /** Primeiro dos {@code blocos} cujo maior timestamp até ele é {@code >= alvo}. */
+    private static int primeiroBlocoComMaximo(Estado atual, int blocos, long alvo) {
+        int baixo = 0;
+        int alto = blocos;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (atual.blocos[meio].maximo < alvo) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    /** Primeiro índice em {@code [baixo, alto)}, dentro de um bloco sem atrasadas, com timestamp {@code >= alvo}. */
+    private static long primeiroNoBloco(Estado atual, long baixo, long alto, long alvo) {
+        Bloco bloco = atual.bloco(baixo);
+        while (baixo < alto) {
+            long meio = (baixo + alto) >>> 1;
+            if (bloco.timestamp[posicao(meio)] < alvo) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    /**
+     * Percorre as leituras de índice em {@code [de, ate)} (limitado ao que está em memória) bloco a
+     * bloco, sem criar objetos por leitura. Retorna falso se a varredura foi interrompida.
+     */
+    boolean varrer(long de, long ate, Varredura varredura) {
+        long fim = Math.min(ate, tamanho);
+        return varrer(estado.get(), de, fim, varredura);
+    }
+
+    /**
+     * Percorre, a partir de {@code de}, os blocos com alguma leitura atrasada de timestamp menor que
+     * {@code antesDe}. Os blocos são varridos inteiros, então quem chama ainda filtra pelo tempo.
+     * Retorna falso se a varredura foi interrompida.
+     */
+    boolean varrerAtrasadas(long de, long antesDe, Varredura varredura) {
+        long fim = tamanho;
+        Estado atual = estado.get();
+        if (ultimoBlocoAtrasado < de / TAMANHO_BLOCO) {
+            return true;
+        }
+        int blocos = blocosAte(atual, fim);
+        for (int b = (int) Math.max(0, de / TAMANHO_BLOCO - atual.primeiroBloco); b < blocos; b++) {
+            if (atual.blocos[b].minimoAtrasado < antesDe) {
+                long inicioBloco = (atual.primeiroBloco + b) * TAMANHO_BLOCO;
+                if (!varrer(atual, Math.max(de, inicioBloco), Math.min(inicioBloco + TAMANHO_BLOCO, fim),
+                        varredura)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean varrer(Estado atual, long de, long fim, Varredura varredura) {
+        long indice = Math.max(de, atual.primeiroBloco * TAMANHO_BLOCO);
+        while (indice < fim) {
+            Bloco bloco = atual.bloco(indice);
+            int p = posicao(indice);
+            int ultimo = (int) Math.min(TAMANHO_BLOCO, p + (fim - indice));
+            for (; p < ultimo; p++, indice++) {
+                if (!varredura.aceitar(indice, bloco.timestamp[p], bloco.pressao[p], bloco.radiacao[p],
+                        bloco.temperatura[p], bloco.umidade[p])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public long timestamp(long indice) { return bloco(indice).timestamp[posicao(indice)]; }
+    public double pressao(long indice) { return bloco(indice).pressao[posicao(indice)]; }
+    public double radiacao(long indice) { return bloco(indice).radiacao[posicao(indice)]; }
+    public double temperatura(long indice) { return bloco(indice).temperatura[posicao(indice)]; }
+    public double umidade(long indice) { return bloco(indice).umidade[posicao(indice)]; }
+
+    public DadosClimaticos ler(long indice) {
+        Bloco bloco = bloco(indice);
+        int i = posicao(indice);
+        return new DadosClimaticos(regiao, bloco.pressao[i], bloco.radiacao[i],
+                bloco.temperatura[i], bloco.umidade[i], bloco.timestamp[i]);
+    }
+
+    /**
+     * Visão imutável das leituras em memória no momento da chamada. Os objetos
+     * {@link DadosClimaticos} são criados sob demanda em {@code get}, sem copiar o histórico.
+     */
+    public List<DadosClimaticos> visao() {
+        long fim = tamanho;
+        Estado atual = estado.get();
+        return new Visao(atual, Math.min(atual.primeiroBloco * TAMANHO_BLOCO, fim), fim);
+    }
+
+    private Bloco bloco(long indice) {
+        Estado atual = estado.get();
+        if (indice < atual.primeiroBloco * TAMANHO_BLOCO || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fora da série " + regiao);
+        }
+        return atual.bloco(indice);
+    }
+
+    private static int posicao(long indice) {
+        return (int) (indice % TAMANHO_BLOCO);
+    }
+
+    private static final class Bloco {
+        final long[] timestamp = new long[TAMANHO_BLOCO];
+        final double[] pressao = new double[TAMANHO_BLOCO];
+        final double[] radiacao = new double[TAMANHO_BLOCO];
+        final double[] temperatura = new double[TAMANHO_BLOCO];
+        final double[] umidade = new double[TAMANHO_BLOCO];
+        // Maior timestamp anexado até este bloco (inclusive nos anteriores) e menor timestamp atrasado
+        // dele; escritos sob a trava dos escritores e publicados pela contagem, como os valores.
+        long maximo = Long.MIN_VALUE;
+        long minimoAtrasado = Long.MAX_VALUE;
+    }
+
+    public final class Visao extends AbstractList<DadosClimaticos> implements RandomAccess {
+        private final Estado instantaneo;
+        private final long inicio;
+        private final int tamanhoVisao;
+
+        private Visao(Estado instantaneo, long inicio, long fim) {
+            this.instantaneo = instantaneo;
+            this.inicio = inicio;
+            this.tamanhoVisao = (int) Math.min(Integer.MAX_VALUE, fim - inicio);
+        }
+
+        @Override
+        public DadosClimaticos get(int i) {
+            if (i < 0 || i >= tamanhoVisao) {
+                throw new IndexOutOfBoundsException("Índice " + i + " fora da visão de " + regiao);
+            }
+            long indice = inicio + i;
+            Bloco bloco = instantaneo.bloco(indice);
+            int p = posicao(indice);
+            return new DadosClimaticos(regiao, bloco.pressao[p], bloco.radiacao[p],
+                    bloco.temperatura[p], bloco.umidade[p], bloco.timestamp[p]);
+        }
+
+        @Override
+        public int size() {
+            return tamanhoVisao;
+        }
+    }
+}
@@ -1,169 +1,681 @@
 package org.pd.database;
 
-import com.rabbitmq.client.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.pd.gateway.AgregadorJanelas;
+import org.pd.gateway.CodecBinario;
+import org.pd.gateway.CodecJson;
 import org.pd.gateway.DadosClimaticos;
-
+import org.pd.gateway.EstatisticaCorrente;
+import org.pd.gateway.DuplicatasPorRegiao;
+import org.pd.gateway.Grandeza;
+import org.pd.gateway.ParametrosHttp;
+import org.pd.gateway.PoliticaRetencao;
+import org.pd.gateway.PublicadorRabbit;
+import org.pd.metricas.HistogramaLatencia;
+import org.pd.metricas.RegistroMetricas;
+import org.pd.metricas.Registrador;
+import org.pd.transporte.TransporteAmqp;
+import org.pd.transporte.Transportes;
+
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ServicoBaseDados {
     private static final String RABBIT_EXCHANGE_NAME = "gateway_dados_topic";
     private static final String DATABASE_QUEUE = "database_storage_queue";
-    private static final String LOG_FILE = "base_dados.log";
+    private static final String DEAD_LETTER_EXCHANGE = "database_storage_dlx";
+    private static final String DEAD_LETTER_QUEUE = "database_storage_dlq";
+    private static final String LOG_FILE = System.getProperty("pd.bd.log", "base_dados.log");
+    private static final String DIRETORIO_DADOS = System.getProperty("pd.bd.diretorio", "dados");
+    private static final long TAMANHO_SEGMENTO_BYTES = Long.getLong("pd.bd.segmento.bytes", 64L * 1024 * 1024);
+    private static final int RETENCAO_SEGMENTOS = Integer.getInteger("pd.bd.segmento.retencao", 0);
+    private static final long INTERVALO_FSYNC_MS = Long.getLong("pd.bd.fsync.intervaloMs", 20);
+    private static final int REGISTROS_POR_FSYNC = Integer.getInteger("pd.bd.fsync.registros", 1024);
+    // "manual" confirma cada mensagem só depois de persistida; "auto" é o autoAck original
+    private static final boolean ACK_MANUAL = !"auto".equalsIgnoreCase(System.getProperty("pd.bd.ack", "manual"));
+    private static final int CONSUMIDORES = Integer.getInteger("pd.bd.consumidores",
+            Runtime.getRuntime().availableProcessors());
+    private static final int PREFETCH = Integer.getInteger("pd.bd.prefetch", 256);
+    private static final int LOG_CAPACIDADE_FILA = Integer.getInteger("pd.bd.log.fila", 65536);
+    private static final AppenderLogAssincrono.PoliticaCheio LOG_POLITICA_CHEIO = AppenderLogAssincrono.PoliticaCheio
+            .valueOf(System.getProperty("pd.bd.log.politica", "BLOQUEAR").toUpperCase());
+    private static final long LOG_MAX_BYTES = Long.getLong("pd.bd.log.maxBytes", 100L * 1024 * 1024);
+    private static final long LOG_ROTACAO_MS = Long.getLong("pd.bd.log.rotacaoMs", 24L * 60 * 60 * 1000);
+    private static final boolean LOG_COMPACTAR = Boolean.parseBoolean(System.getProperty("pd.bd.log.gzip", "true"));
+    // Retenção em memória; o histórico completo continua no disco (abrirHistorico)
+    private static final PoliticaRetencao RETENCAO = PoliticaRetencao.dePropriedades("pd.bd.retencao",
+            0, 0, 256L * 1024 * 1024);
+    private static final long INTERVALO_RETENCAO_MS = Long.getLong("pd.bd.retencao.intervaloMs", 1000);
+    private static final int HTTP_PORTA = Integer.getInteger("pd.bd.http.porta", 8083);
+    private static final int HTTP_THREADS = Integer.getInteger("pd.bd.http.threads", 4);
+    private static final long CONSULTA_LIMITE_PADRAO = Long.getLong("pd.bd.consulta.limite", 1000);
+    // Quanto uma leitura espera para entrar em ordem de timestamp; 0 só corrige as que chegam atrasadas.
+    // Com os drones em lote (pd.drone.lote.leituras > 1) uma leitura chega até pd.drone.lote.esperaMs
+    // depois do seu timestamp, então o padrão cobre essa espera; a capacidade abaixo continua
+    // limitando quantas ficam retidas.
+    private static final long REORDENACAO_ATRASO_MS = Long.getLong("pd.bd.reordenacao.atrasoMs",
+            Integer.getInteger("pd.drone.lote.leituras", 1) > 1
+                    ? Long.getLong("pd.drone.lote.esperaMs", 5000) + 10 : 10);
+    // Com ack manual uma retida segura o ack de tudo o que chegou depois dela no canal; o padrão deixa
+    // essas chegadas em no máximo um oitavo do crédito dos consumidores, senão a reordenação
+    // limitaria a vazão. Segurar leituras por todo o atraso pede crédito para a taxa vezes o atraso.
+    private static final int REORDENACAO_CAPACIDADE = Integer.getInteger("pd.bd.reordenacao.capacidade",
+            Math.max(64, PREFETCH * Math.max(1, CONSUMIDORES) / 8));
+    private static final int REORDENACAO_PASSO = Math.max(1, REORDENACAO_CAPACIDADE / 4);
+
+    /** Leitura à espera no {@link BufferReordenacao}, com o que é preciso para confirmá-la depois. */
+    private static final class Recebida {
+        final DadosClimaticos dados;
+        final Map<String, Object> cabecalhos;
+        final String chave;
+        // Nulos com autoAck.
+        final ConsumidorDuravel consumidor;
+        final ConsumidorDuravel.Pendente pendente;
+
+        Recebida(DadosClimaticos dados, Map<String, Object> cabecalhos, String chave,
+                 ConsumidorDuravel consumidor, ConsumidorDuravel.Pendente pendente) {
+            this.dados = dados;
+            this.cabecalhos = cabecalhos;
+            this.chave = chave;
+            this.consumidor = consumidor;
+            this.pendente = pendente;
+        }
+
+        long getTimestamp() {
+            return dados.getTimestamp();
+        }
+    }
 
-    private final Map<String, List<DadosClimaticos>> baseDados = new ConcurrentHashMap<>();
-    private Connection rabbitConnection;
-    private Channel rabbitChannel;
-    private PrintWriter logWriter;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final ArmazenamentoColunar baseDados = new ArmazenamentoColunar();
+    private final AgregadorJanelas janelas = new AgregadorJanelas();
+    private final MotorConsulta motorConsulta = new MotorConsulta(baseDados);
+    private HttpServer servidorHttp;
+    // Gateway->bd usa o cabeçalho de publicação; drone->bd, o timestamp de origem do rastreio.
+    private final HistogramaLatencia latenciaGatewayBd = new HistogramaLatencia("gateway->bd");
+    private final HistogramaLatencia latenciaDroneBd = new HistogramaLatencia("drone->bd (total)");
+    private final HistogramaLatencia latenciaArmazenamento = new HistogramaLatencia("armazenamento");
+    private static final Registrador LOG = new Registrador();
+    private static final Registrador AVISO_INVALIDA = new Registrador();
+    private static final Registrador AVISO_ESCRITA = new Registrador();
+    // Usados só pela thread de resumo.
+    private long resumoArmazenadas;
+    private long resumoInstanteNanos = System.nanoTime();
+    private final RegistroMetricas metricas = RegistroMetricas.padrao();
+    private final RegistroMetricas.FamiliaContadores armazenadas = metricas.contadores(
+            "pd_bd_mensagens_armazenadas_total", "Leituras persistidas e indexadas.", "regiao");
+    private final RegistroMetricas.Contador invalidas = metricas.contador(
+            "pd_bd_mensagens_invalidas_total", "Mensagens que não decodificaram.");
+    private final RegistroMetricas.Contador falhasEscrita = metricas.contador(
+            "pd_bd_falhas_escrita_total", "Falhas ao persistir no armazenamento durável.");
+    private final RegistroMetricas.Contador reconexoesRabbit = metricas.contador(
+            "pd_reconexoes_total", "Reconexões automáticas com o broker.", "broker", "rabbitmq");
+    // Reentregas do RabbitMQ e republicações dos drones chegam aqui repetidas; o rastreio as identifica.
+    // Um filtro por região, como no gateway: os consumidores das filas de região não disputam a trava.
+    private final DuplicatasPorRegiao duplicatas = DuplicatasPorRegiao.dePropriedades("pd.bd.dedup", 4);
+    private final Map<String, BufferReordenacao<Recebida>> reordenacao = new ConcurrentHashMap<>();
+    // Chegadas somando as regiões, e a partir de quantas as outras regiões conferem a capacidade.
+    private final AtomicLong chegadasReordenacao = new AtomicLong();
+    private final AtomicLong proximaConferencia = new AtomicLong(REORDENACAO_PASSO);
+    private final ArmazenamentoDuravel armazenamento = new ArmazenamentoDuravel(Paths.get(DIRETORIO_DADOS),
+            TAMANHO_SEGMENTO_BYTES, RETENCAO_SEGMENTOS, INTERVALO_FSYNC_MS, REGISTROS_POR_FSYNC);
+    private final TransporteAmqp transporteAmqp;
+    private TransporteAmqp.Conexao rabbitConnection;
+    private TransporteAmqp.Canal rabbitChannel;
+    private final List<ConsumidorDuravel> consumidores = new CopyOnWriteArrayList<>();
+    private final AppenderLogAssincrono logAppender = new AppenderLogAssincrono(Paths.get(LOG_FILE),
+            LOG_CAPACIDADE_FILA, LOG_POLITICA_CHEIO, LOG_MAX_BYTES, LOG_ROTACAO_MS, LOG_COMPACTAR);
+    private final ScheduledExecutorService retencao = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bd-retencao");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService drenagem = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bd-reordenacao");
+        t.setDaemon(true);
+        return t;
+    });
 
     public ServicoBaseDados() {
-        baseDados.put("norte", new ArrayList<>());
-        baseDados.put("sul", new ArrayList<>());
-        baseDados.put("leste", new ArrayList<>());
-        baseDados.put("oeste", new ArrayList<>());
+        this(Transportes.amqp());
+    }
+
+    public ServicoBaseDados(TransporteAmqp transporteAmqp) {
+        this.transporteAmqp = transporteAmqp;
+        baseDados.registrarRegiao("norte");
+        baseDados.registrarRegiao("sul");
+        baseDados.registrarRegiao("leste");
+        baseDados.registrarRegiao("oeste");
     }
 
-    public void iniciar() throws IOException, TimeoutException {
+    public void iniciar() throws IOException {
+        registrarMetricas();
         inicializarLog();
+        iniciarRetencao();
+        iniciarReordenacao();
+        abrirArmazenamento();
         conectarRabbitMQ();
         configurarConsumidor();
+        iniciarHttpServer();
+        Registrador.resumoPeriodico(this::imprimirResumo);
         escreverLog("SISTEMA", "Serviço de Base de Dados iniciado e aguardando dados...");
         System.out.println("🗄️ Serviço de Base de Dados iniciado e aguardando dados...");
         System.out.println("📄 Log sendo gravado em: " + LOG_FILE);
     }
 
-    private void conectarRabbitMQ() throws IOException, TimeoutException {
-        ConnectionFactory factory = new ConnectionFactory();
-        factory.setHost("localhost");
-        this.rabbitConnection = factory.newConnection();
-        this.rabbitChannel = this.rabbitConnection.createChannel();
+    private void registrarMetricas() {
+        metricas.registrarJvm();
+        metricas.medidor("pd_bd_registros_memoria", "Leituras retidas em memória.", baseDados::contarTotal);
+        metricas.medidor("pd_bd_memoria_bytes", "Bytes ocupados pelas séries em memória.", baseDados::bytesEmUso);
+        metricas.contadorDerivado("pd_bd_descartados_retencao_total", "Leituras descartadas da memória pela retenção.",
+                baseDados::contarDescartados);
+        metricas.medidor("pd_bd_fila_log", "Linhas aguardando o appender de log.", logAppender::getProfundidadeFila);
+        metricas.contadorDerivado("pd_bd_log_descartadas_total", "Linhas de log descartadas com a fila cheia.",
+                logAppender::getDescartadas);
+        metricas.contadorDerivado("pd_bd_duplicadas_total", "Leituras descartadas por já terem sido recebidas.",
+                duplicatas::getDuplicadas);
+        metricas.medidor("pd_bd_reordenacao_retidas", "Leituras aguardando a ordem de timestamp.",
+                this::contarRetidas);
+        metricas.contadorDerivado("pd_bd_reordenacao_atrasadas_total",
+                "Leituras que chegaram depois da marca d'água e foram guardadas fora de ordem.",
+                this::contarAtrasadas);
+        metricas.histograma("pd_bd_latencia_segundos", "Latência por trecho.", latenciaGatewayBd,
+                "trecho", "gateway_bd");
+        metricas.histograma("pd_bd_latencia_segundos", "Latência por trecho.", latenciaArmazenamento,
+                "trecho", "armazenamento");
+        metricas.histograma("pd_bd_latencia_segundos", "Latência por trecho.", latenciaDroneBd,
+                "trecho", "drone_bd");
+    }
 
-        this.rabbitChannel.exchangeDeclare(RABBIT_EXCHANGE_NAME, "topic");
+    /** A retenção roda fora do caminho de escrita; a recuperação do log já é limitada por ela. */
+    private void iniciarRetencao() {
+        retencao.scheduleWithFixedDelay(() -> {
+            try {
+                long descartados = baseDados.aplicarRetencao(RETENCAO, System.currentTimeMillis());
+                if (descartados > 0) {
+                    escreverLog("SISTEMA", descartados + " registros antigos descartados da memória");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("❌ [BD] Erro na retenção: " + e.getMessage());
+            }
+        }, INTERVALO_RETENCAO_MS, INTERVALO_RETENCAO_MS, TimeUnit.MILLISECONDS);
+        System.out.println("🧹 Retenção em memória: " + RETENCAO);
+    }
 
-        this.rabbitChannel.queueDeclare(DATABASE_QUEUE, true, false, false, null);
-        this.rabbitChannel.queueBind(DATABASE_QUEUE, RABBIT_EXCHANGE_NAME, "#");
+    /** Sem chegadas novas a marca d'água só avança com o relógio; a drenagem solta o que passou dela. */
+    private void iniciarReordenacao() {
+        if (REORDENACAO_ATRASO_MS <= 0) {
+            return;
+        }
+        long periodo = Math.max(1, Math.min(REORDENACAO_ATRASO_MS / 2, 100));
+        drenagem.scheduleWithFixedDelay(() -> {
+            try {
+                for (BufferReordenacao<Recebida> buffer : reordenacao.values()) {
+                    buffer.drenar();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("❌ [BD] Erro ao drenar a reordenação: " + e.getMessage());
+            }
+        }, periodo, periodo, TimeUnit.MILLISECONDS);
+        System.out.println("🔀 Reordenação por timestamp: até " + REORDENACAO_ATRASO_MS + "ms, "
+                + REORDENACAO_CAPACIDADE + " chegadas atrás da retida mais antiga");
+    }
+
+    private void abrirArmazenamento() throws IOException {
+        // O rastreio persistido volta para o filtro: reentregas do que já estava no disco antes da
+        // queda continuam sendo reconhecidas.
+        long recuperados = armazenamento.abrir(dados -> {
+            duplicatas.registrar(dados);
+            indexar(dados);
+        });
+        escreverLog("SISTEMA", "Armazenamento aberto em " + DIRETORIO_DADOS + " - " + recuperados
+                + " registros recuperados");
+        System.out.println("💽 Armazenamento em " + DIRETORIO_DADOS + ": " + recuperados + " registros recuperados");
+    }
+
+    private void conectarRabbitMQ() throws IOException {
+        this.rabbitConnection = transporteAmqp.conectar(reconexoesRabbit::incrementar);
+        this.rabbitChannel = this.rabbitConnection.criarCanal();
+
+        this.rabbitChannel.declararExchange(RABBIT_EXCHANGE_NAME, "topic", false);
+
+        this.rabbitChannel.declararExchange(DEAD_LETTER_EXCHANGE, "fanout", true);
+        this.rabbitChannel.declararFila(DEAD_LETTER_QUEUE, true);
+        this.rabbitChannel.ligarFila(DEAD_LETTER_QUEUE, DEAD_LETTER_EXCHANGE, "");
+
+        // Rejeitadas sem reenfileirar vão para a dead-letter pelo próprio broker.
+        this.rabbitChannel.declararFila(DATABASE_QUEUE, true, DEAD_LETTER_EXCHANGE);
+        this.rabbitChannel.ligarFila(DATABASE_QUEUE, RABBIT_EXCHANGE_NAME, "#");
 
         escreverLog("SISTEMA", "Conectado ao RabbitMQ - Exchange: " + RABBIT_EXCHANGE_NAME);
-        System.out.println("🔌 Serviço de Base de Dados conectado ao RabbitMQ");
+        System.out.println("🔌 Serviço de Base de Dados conectado ao RabbitMQ em " + transporteAmqp);
     }
 
     private void configurarConsumidor() throws IOException {
-        DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-            String message = new String(delivery.getBody(), "UTF-8");
-            String routingKey = delivery.getEnvelope().getRoutingKey();
+        if (ACK_MANUAL) {
+            configurarConsumidoresManuais();
+            return;
+        }
+        TransporteAmqp.Consumidor deliverCallback = delivery -> {
+            byte[] message = delivery.getCorpo();
+            String routingKey = delivery.getChave();
 
-            DadosClimaticos dados = parseJson(message);
+            DadosClimaticos dados = decodificarMensagem(delivery.getContentType(), message);
             if (dados != null) {
-                armazenarDados(dados);
-                escreverLog(routingKey.toUpperCase(), dados.toString());
-                System.out.println("💾 [BD] Dados armazenados: " + routingKey + " -> " + dados.toString());
+                receber(dados, delivery.getCabecalhos(), routingKey, null, -1);
             } else {
-                escreverLog("ERRO", "Falha ao processar JSON: " + message);
+                invalidas.incrementar();
+                escreverLog("ERRO", "Falha ao processar mensagem: " + descreverCorpo(message));
             }
         };
 
-        this.rabbitChannel.basicConsume(DATABASE_QUEUE, true, deliverCallback, consumerTag -> {
-        });
+        this.rabbitChannel.consumir(DATABASE_QUEUE, true, deliverCallback);
     }
 
-    private DadosClimaticos parseJson(String json) {
-        Pattern pattern = Pattern.compile(
-                "\"regiao\":\"(.*?)\", " +
-                        "\"temperatura\":(\\d+\\.\\d+), " +
-                        "\"umidade\":(\\d+\\.\\d+), " +
-                        "\"pressao\":(\\d+\\.\\d+), " +
-                        "\"radiacao\":(\\d+\\.\\d+), " +
-                        "\"timestamp\":(\\d+)");
+    /**
+     * Vários canais consumindo a mesma fila, cada um com {@code prefetch(PREFETCH)} e ack manual.
+     * O ack sai em lote quando o fsync em grupo cobre as mensagens (ver {@link ConsumidorDuravel});
+     * mensagens que não decodificam recebem nack sem reenfileirar e o broker as move para a dead-letter, e
+     * duplicatas são confirmadas na hora.
+     */
+    private void configurarConsumidoresManuais() throws IOException {
+        armazenamento.aoTornarDuravel(sequencia -> {
+            for (ConsumidorDuravel consumidor : consumidores) {
+                try {
+                    consumidor.confirmarAte(sequencia);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ [BD] Erro ao confirmar mensagens: " + e.getMessage());
+                }
+            }
+        });
+
+        for (int i = 0; i < Math.max(1, CONSUMIDORES); i++) {
+            TransporteAmqp.Canal canal = rabbitConnection.criarCanal();
+            canal.prefetch(PREFETCH);
+            ConsumidorDuravel consumidor = new ConsumidorDuravel(canal, armazenamento::getSequenciaDuravel);
+            consumidores.add(consumidor);
+
+            TransporteAmqp.Consumidor deliverCallback = delivery -> {
+                long tag = delivery.getTag();
+                byte[] message = delivery.getCorpo();
+                String routingKey = delivery.getChave();
+
+                DadosClimaticos dados = decodificarMensagem(delivery.getContentType(), message);
+                if (dados == null) {
+                    invalidas.incrementar();
+                    escreverLog("ERRO", "Falha ao processar mensagem: " + descreverCorpo(message));
+                    consumidor.rejeitarInvalida(tag);
+                    return;
+                }
 
-        Matcher matcher = pattern.matcher(json);
+                receber(dados, delivery.getCabecalhos(), routingKey, consumidor, tag);
+            };
+            canal.consumir(DATABASE_QUEUE, false, deliverCallback);
+        }
+        System.out.println("📬 " + consumidores.size() + " consumidores com ack manual (prefetch " + PREFETCH + ")");
+    }
 
-        if (matcher.find()) {
-            try {
-                String regiao = matcher.group(1);
-                double temp = Double.parseDouble(matcher.group(2));
-                double umid = Double.parseDouble(matcher.group(3));
-                double pres = Double.parseDouble(matcher.group(4));
-                double rad = Double.parseDouble(matcher.group(5));
+    /**
+     * Descarta a leitura se o rastreio dela já foi visto; senão ela entra na reordenação da região.
+     * Com ack manual a mensagem é registrada no consumidor agora, em ordem de tag, e só ganha a
+     * sequência durável quando sai do buffer ({@link #guardar}).
+     */
+    private void receber(DadosClimaticos dados, Map<String, Object> cabecalhos, String chave,
+                         ConsumidorDuravel consumidor, long tag) throws IOException {
+        if (!duplicatas.registrar(dados)) {
+            if (consumidor != null) {
+                consumidor.confirmarDuplicata(tag);
+            }
+            LOG.rastrear(() -> "♻️ [BD] Duplicata ignorada: " + chave + " origem=" + dados.getOrigem()
+                    + " sequencia=" + dados.getSequencia());
+            return;
+        }
+        ConsumidorDuravel.Pendente pendente = consumidor != null ? consumidor.registrar(tag) : null;
+        reordenacao.computeIfAbsent(dados.getRegiao(), regiao -> new BufferReordenacao<>(REORDENACAO_ATRASO_MS,
+                        REORDENACAO_CAPACIDADE, chegadasReordenacao, Recebida::getTimestamp, this::guardar))
+                .adicionar(new Recebida(dados, cabecalhos, chave, consumidor, pendente));
+        // A retida mais antiga de uma região sem chegadas também prende o ack das outras.
+        long proxima = proximaConferencia.get();
+        if (chegadasReordenacao.get() >= proxima
+                && proximaConferencia.compareAndSet(proxima, chegadasReordenacao.get() + REORDENACAO_PASSO)) {
+            for (BufferReordenacao<Recebida> buffer : reordenacao.values()) {
+                buffer.drenar();
+            }
+        }
+    }
 
-                return new DadosClimaticos(regiao, pres, rad, temp, umid);
-            } catch (Exception e) {
-                System.err.println("❌ [BD] Erro ao fazer parse do JSON: " + json);
-                return null;
+    /** Destino da reordenação: persiste e, com ack manual, liga a mensagem à sequência durável. */
+    private void guardar(Recebida recebida) {
+        DadosClimaticos dados = recebida.dados;
+        long inicio = System.nanoTime();
+        long sequencia = armazenarDados(dados);
+        try {
+            if (sequencia < 0) {
+                // Volta para a fila; o filtro precisa aceitar a reentrega.
+                duplicatas.esquecer(dados);
+                if (recebida.pendente != null) {
+                    recebida.consumidor.rejeitar(recebida.pendente);
+                }
+                return;
             }
+            registrarLatencias(recebida.cabecalhos, dados, inicio);
+            if (recebida.pendente != null) {
+                recebida.consumidor.persistida(recebida.pendente, sequencia);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ [BD] Erro ao confirmar mensagem: " + e.getMessage());
         }
+        escreverLog(recebida.chave, dados);
+        LOG.rastrear(() -> "💾 [BD] Dados armazenados: " + recebida.chave + " -> " + dados);
+    }
 
-        System.err.println("❌ [BD] JSON inválido: " + json);
-        return null;
+    private long contarRetidas() {
+        long total = 0;
+        for (BufferReordenacao<Recebida> buffer : reordenacao.values()) {
+            total += buffer.getRetidas();
+        }
+        return total;
+    }
+
+    private long contarAtrasadas() {
+        long total = 0;
+        for (BufferReordenacao<Recebida> buffer : reordenacao.values()) {
+            total += buffer.getAtrasadas();
+        }
+        return total;
+    }
+
+    private void registrarLatencias(Map<String, Object> cabecalhos, DadosClimaticos dados, long inicioNanos) {
+        latenciaArmazenamento.registrar(System.nanoTime() - inicioNanos);
+        long agora = System.currentTimeMillis();
+        Object publicada = cabecalhos != null ? cabecalhos.get(PublicadorRabbit.CABECALHO_PUBLICADA_MS) : null;
+        if (publicada instanceof Number) {
+            latenciaGatewayBd.registrar(TimeUnit.MILLISECONDS.toNanos(agora - ((Number) publicada).longValue()));
+        }
+        if (dados.temRastreio()) {
+            latenciaDroneBd.registrar(TimeUnit.MILLISECONDS.toNanos(agora - dados.getTimestampOrigem()));
+        }
     }
 
-    private void armazenarDados(DadosClimaticos dados) {
-        synchronized (baseDados.get(dados.getRegiao())) {
-            baseDados.get(dados.getRegiao()).add(dados);
+    /** Escolhe o decodificador pelo content-type AMQP; mensagens sem content-type são JSON. */
+    private DadosClimaticos decodificarMensagem(String contentType, byte[] corpo) {
+        if (!CodecBinario.CONTENT_TYPE.equals(contentType)) {
+            return parseJson(corpo);
+        }
+        try {
+            return CodecBinario.daThread().decodificar(corpo);
+        } catch (IllegalArgumentException e) {
+            AVISO_INVALIDA.avisoAmostrado(
+                    () -> "❌ [BD] Mensagem binária inválida (" + e.getMessage() + "): " + descreverCorpo(corpo));
+            return null;
+        }
+    }
+
+    private static String descreverCorpo(byte[] corpo) {
+        if (corpo.length > 0 && corpo[0] == '{') {
+            return new String(corpo, StandardCharsets.UTF_8);
+        }
+        StringBuilder sb = new StringBuilder(corpo.length * 2);
+        for (byte b : corpo) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
+        return sb.toString();
+    }
+
+    private DadosClimaticos parseJson(byte[] json) {
+        try {
+            return CodecJson.daThread().decodificar(json);
+        } catch (IllegalArgumentException e) {
+            AVISO_INVALIDA.avisoAmostrado(() -> "❌ [BD] JSON inválido (" + e.getMessage() + "): "
+                    + new String(json, StandardCharsets.UTF_8));
+            return null;
+        }
+    }
+
+    /** Persiste e indexa a leitura; retorna a sequência no armazenamento durável, ou -1 se falhou. */
+    private long armazenarDados(DadosClimaticos dados) {
+        long sequencia;
+        try {
+            sequencia = armazenamento.anexar(dados);
+        } catch (IOException e) {
+            falhasEscrita.incrementar();
+            AVISO_ESCRITA.avisoAmostrado(() -> "❌ [BD] Erro ao persistir dados: " + e.getMessage());
+            escreverLog("ERRO", "Falha ao persistir " + dados + ": " + e.getMessage());
+            return -1;
+        }
+        indexar(dados);
+        armazenadas.com(dados.getRegiao()).incrementar();
+        return sequencia;
+    }
+
+    private void indexar(DadosClimaticos dados) {
+        baseDados.anexar(dados);
+        janelas.registrar(dados);
     }
 
     private void inicializarLog() {
         try {
-            logWriter = new PrintWriter(new FileWriter(LOG_FILE, true));
+            logAppender.abrir();
             escreverLog("SISTEMA", "=== NOVA SESSÃO INICIADA ===");
         } catch (IOException e) {
             System.err.println("❌ [BD] Erro ao inicializar arquivo de log: " + e.getMessage());
         }
     }
 
-    private void escreverLog(String regiao, String mensagem) {
-        if (logWriter != null) {
-            String timestamp = dateFormat.format(new Date());
-            String logEntry = String.format("[%s] [%s] %s", timestamp, regiao, mensagem);
-            logWriter.println(logEntry);
-            logWriter.flush();
-        }
+    /** A mensagem só é convertida em texto na thread de escrita do log. */
+    private void escreverLog(String regiao, Object mensagem) {
+        logAppender.registrar(regiao, mensagem);
     }
 
-    private void fecharLog() {
-        if (logWriter != null) {
-            escreverLog("SISTEMA", "=== SESSÃO FINALIZADA ===");
-            logWriter.close();
+    private void fecharLog() throws IOException {
+        escreverLog("SISTEMA", "=== SESSÃO FINALIZADA ===");
+        logAppender.close();
+    }
+
+    /** Consulta às leituras em memória por região, intervalo de tempo e filtros. */
+    public MotorConsulta.Pagina consultar(Consulta consulta) {
+        return motorConsulta.buscar(consulta);
+    }
+
+    public EstatisticaCorrente agregar(Consulta consulta, Grandeza grandeza) {
+        return motorConsulta.agregar(consulta, grandeza);
+    }
+
+    private void iniciarHttpServer() throws IOException {
+        servidorHttp = HttpServer.create(new InetSocketAddress(HTTP_PORTA), 0);
+        servidorHttp.createContext("/metrics", metricas::responder);
+        servidorHttp.createContext("/consulta", (exchange) -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                try {
+                    responderConsulta(exchange, ParametrosHttp.ler(exchange.getRequestURI().getRawQuery()));
+                } catch (IllegalArgumentException e) {
+                    byte[] erro = (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                    exchange.sendResponseHeaders(400, erro.length);
+                    exchange.getResponseBody().write(erro);
+                }
+            }
+        });
+        servidorHttp.setExecutor(Executors.newFixedThreadPool(HTTP_THREADS, r -> {
+            Thread t = new Thread(r, "bd-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        servidorHttp.start();
+        System.out.println("🔎 Consultas disponíveis em http://localhost:" + HTTP_PORTA + "/consulta"
+                + " (métricas em /metrics)");
+    }
+
+    /**
+     * {@code /consulta?regiao=norte,sul&inicio=<ms>&fim=<ms>&filtro=temperatura>35,umidade<40
+     * &deslocamento=0&limite=100}; filtros separados por vírgula, com ponto decimal. Com
+     * {@code agregar=<grandeza>} responde só as estatísticas da grandeza; com {@code stream=true} as
+     * leituras saem em JSON por linha, à medida que a varredura as encontra, sem limite padrão. Sem
+     * isso, responde uma página com o próximo deslocamento.
+     */
+    private void responderConsulta(HttpExchange exchange, Map<String, String> parametros) throws IOException {
+        boolean stream = Boolean.parseBoolean(parametros.get("stream"));
+        Consulta consulta = new Consulta()
+                .intervalo(ParametrosHttp.lerLong(parametros, "inicio", Long.MIN_VALUE),
+                        ParametrosHttp.lerLong(parametros, "fim", Long.MAX_VALUE))
+                .deslocamento(ParametrosHttp.lerLong(parametros, "deslocamento", 0))
+                .limite(ParametrosHttp.lerLong(parametros, "limite", stream ? -1 : CONSULTA_LIMITE_PADRAO));
+        for (String regiao : parametros.getOrDefault("regiao", "").split(",")) {
+            if (!regiao.isBlank()) {
+                consulta.regiao(regiao.trim());
+            }
+        }
+        for (String filtro : parametros.getOrDefault("filtro", "").split(",")) {
+            if (!filtro.isBlank()) {
+                consulta.filtro(Consulta.Filtro.interpretar(filtro.trim()));
+            }
+        }
+
+        if (parametros.containsKey("agregar")) {
+            Grandeza grandeza = Grandeza.porNome(parametros.get("agregar"));
+            EstatisticaCorrente estatistica = motorConsulta.agregar(consulta, grandeza);
+            String json = String.format(Locale.ROOT, "{\"grandeza\": \"%s\", \"contagem\": %d, \"media\": %s, "
+                            + "\"desvio\": %s, \"minimo\": %s, \"maximo\": %s}\n", grandeza.getNome(),
+                    estatistica.getContagem(), numeroJson(estatistica.getMedia()),
+                    numeroJson(estatistica.getDesvioPadrao()), numeroJson(estatistica.getMinimo()),
+                    numeroJson(estatistica.getMaximo()));
+            byte[] resposta = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CodecJson.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, resposta.length);
+            exchange.getResponseBody().write(resposta);
+            return;
         }
+
+        CodecJson codec = CodecJson.daThread();
+        if (stream) {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream saida = new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024);
+            try {
+                motorConsulta.executar(consulta, dados -> {
+                    try {
+                        saida.write(codec.buffer(), 0, codec.codificar(dados));
+                        saida.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // cliente desconectou no meio da resposta
+            }
+            saida.flush();
+            return;
+        }
+
+        MotorConsulta.Pagina pagina = motorConsulta.buscar(consulta);
+        StringBuilder sb = new StringBuilder("{\"itens\": [");
+        for (int i = 0; i < pagina.getItens().size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(codec.codificarTexto(pagina.getItens().get(i)));
+        }
+        sb.append("], \"proximoDeslocamento\": ").append(pagina.isTemMais()
+                ? Long.toString(consulta.getDeslocamento() + pagina.getItens().size()) : "null").append("}\n");
+        byte[] resposta = sb.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CodecJson.CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, resposta.length);
+        exchange.getResponseBody().write(resposta);
+    }
+
+    private static String numeroJson(double valor) {
+        return Double.isNaN(valor) || Double.isInfinite(valor) ? "null" : String.format(Locale.ROOT, "%.2f", valor);
     }
 
     public List<DadosClimaticos> buscarPorRegiao(String regiao) {
-        List<DadosClimaticos> lista = baseDados.get(regiao.toLowerCase());
-        return lista != null ? new ArrayList<>(lista) : new ArrayList<>();
+        return baseDados.listar(regiao.toLowerCase());
     }
 
     public List<DadosClimaticos> buscarTodos() {
-        List<DadosClimaticos> todos = new ArrayList<>();
-        baseDados.values().forEach(todos::addAll);
-        return todos;
+        return baseDados.listarTodos();
+    }
+
+    /** Abre o histórico em disco da região em modo mapeado, sem carregar registros no heap. */
+    public HistoricoMapeado abrirHistorico(String regiao) throws IOException {
+        String nome = regiao.toLowerCase();
+        return HistoricoMapeado.abrir(armazenamento.diretorioDaRegiao(nome), nome);
+    }
+
+    public HistoricoMapeado.Cursor buscarHistorico(String regiao, long inicio, long fim) throws IOException {
+        return abrirHistorico(regiao).intervalo(inicio, fim);
+    }
+
+    /** Agregados por janela fixa (1s, 1m ou 1h) de uma grandeza da região entre dois instantes. */
+    public List<AgregadorJanelas.PontoJanela> buscarJanelas(String regiao, Grandeza grandeza,
+                                                            AgregadorJanelas.Resolucao resolucao, long inicio, long fim) {
+        return janelas.serie(regiao.toLowerCase(), grandeza, resolucao, inicio, fim);
+    }
+
+    /** Agregado da janela deslizante dos últimos {@code duracaoMs} de uma grandeza da região. */
+    public AgregadorJanelas.PontoJanela buscarUltimos(String regiao, Grandeza grandeza, long duracaoMs) {
+        return janelas.ultimos(regiao.toLowerCase(), grandeza, duracaoMs, System.currentTimeMillis());
     }
 
     public int contarDadosPorRegiao(String regiao) {
-        List<DadosClimaticos> lista = baseDados.get(regiao.toLowerCase());
-        return lista != null ? lista.size() : 0;
+        return (int) Math.min(Integer.MAX_VALUE, baseDados.contar(regiao.toLowerCase()));
+    }
+
+    /** Leituras persistidas desde o início do processo (sem as recuperadas do disco). */
+    public long getArmazenadas() {
+        return armazenadas.total();
+    }
+
+    public HistogramaLatencia getLatenciaDroneBd() {
+        return latenciaDroneBd;
     }
 
     public int contarTotalDados() {
-        return baseDados.values().stream().mapToInt(List::size).sum();
+        return (int) Math.min(Integer.MAX_VALUE, baseDados.contarTotal());
+    }
+
+    /** Uma linha a cada {@code pd.log.resumoMs} no lugar da linha por mensagem armazenada. */
+    private void imprimirResumo() {
+        long agora = System.nanoTime();
+        long total = armazenadas.total();
+        System.out.printf("💾 [BD] +%d armazenadas (%.0f msg/s), inválidas=%d, falhas de escrita=%d"
+                        + " | armazenamento p99=%.1fµs, gateway->bd p99=%.1fms%n",
+                total - resumoArmazenadas, (total - resumoArmazenadas) / ((agora - resumoInstanteNanos) / 1e9),
+                invalidas.valor(), falhasEscrita.valor(), latenciaArmazenamento.percentilNanos(99) / 1000.0,
+                latenciaGatewayBd.percentilNanos(99) / 1e6);
+        resumoArmazenadas = total;
+        resumoInstanteNanos = agora;
     }
 
     public void exibirEstatisticas() {
         System.out.println("\n📊 === ESTATÍSTICAS DA BASE DE DADOS ===");
         System.out.println("Total de registros: " + contarTotalDados());
+        System.out.println("Descartados pela retenção: " + baseDados.contarDescartados()
+                + " (" + baseDados.bytesEmUso() / (1024 * 1024) + " MB em uso)");
         System.out.println("Por região:");
-        baseDados.forEach((regiao, dados) -> System.out
-                .println("  - " + regiao.toUpperCase() + ": " + dados.size() + " registros"));
+        baseDados.series().forEach(serie -> System.out
+                .println("  - " + serie.getRegiao().toUpperCase() + ": " + serie.tamanho() + " registros"));
+        System.out.println("Duplicatas ignoradas: " + duplicatas.getDuplicadas() + " (" + duplicatas.getOrigens()
+                + " drones na janela), reordenação: " + contarRetidas() + " retidas, " + contarAtrasadas()
+                + " atrasadas");
+        System.out.println("Latências:");
+        System.out.println("  " + latenciaGatewayBd);
+        System.out.println("  " + latenciaArmazenamento);
+        System.out.println("  " + latenciaDroneBd);
         System.out.println("=========================================\n");
     }
 
@@ -171,15 +683,30 @@ public class ServicoBaseDados {
         try {
             escreverLog("SISTEMA", "Encerrando Serviço de Base de Dados...");
             System.out.println("🛑 Encerrando Serviço de Base de Dados...");
-            if (rabbitChannel != null && rabbitChannel.isOpen()) {
+            // Solta o que está na reordenação e força tudo ao disco para que os acks pendentes saiam
+            // antes de fechar.
+            drenagem.shutdownNow();
+            for (BufferReordenacao<Recebida> buffer : reordenacao.values()) {
+                buffer.esvaziar();
+            }
+            armazenamento.sincronizar();
+            for (ConsumidorDuravel consumidor : consumidores) {
+                consumidor.getCanal().close();
+            }
+            if (rabbitChannel != null) {
                 rabbitChannel.close();
             }
-            if (rabbitConnection != null && rabbitConnection.isOpen()) {
+            if (rabbitConnection != null) {
                 rabbitConnection.close();
             }
+            if (servidorHttp != null) {
+                servidorHttp.stop(0);
+            }
+            armazenamento.close();
+            retencao.shutdownNow();
             fecharLog();
             System.out.println("✅ Serviço de Base de Dados finalizado.");
-        } catch (IOException | TimeoutException e) {
+        } catch (IOException e) {
             System.err.println("❌ Erro ao encerrar Serviço de Base de Dados: " + e.getMessage());
         }
     }
@@ -0,0 +1,116 @@
+package org.pd.drone;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codifica as quatro leituras no formato de texto de cada região sem {@code String.format}.
+ * <p>
+ * Abertura, separador e fechamento da região são convertidos em bytes uma vez; cada valor é escrito
+ * como inteiro de centésimos com duas casas decimais e ponto, que todos os parsers do Gateway aceitam.
+ * O rastreio opcional vai depois do fechamento como {@code |<origem>|<sequencia>|<timestampOrigem>};
+ * o Gateway o lê se existir e continua aceitando payloads sem ele.
+ */
+public final class CodificadorPayload {
+    private static final byte SEPARADOR_RASTREIO = '|';
+    // Três inteiros de até 19 dígitos, cada um precedido do separador.
+    private static final int MAX_BYTES_RASTREIO = 3 * 20;
+
+    private final byte[] abertura;
+    private final byte[] separador;
+    private final byte[] fechamento;
+    private final byte[] buffer = new byte[128];
+
+    private CodificadorPayload(String abertura, String separador, String fechamento) {
+        this.abertura = abertura.getBytes(StandardCharsets.US_ASCII);
+        this.separador = separador.getBytes(StandardCharsets.US_ASCII);
+        this.fechamento = fechamento.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Não é thread-safe: cada thread usa a sua instância. */
+    public static CodificadorPayload daRegiao(String regiao) {
+        switch (regiao.toLowerCase()) {
+            case "norte": return new CodificadorPayload("", "-", "");
+            case "sul": return new CodificadorPayload("(", "; ", ")");
+            case "leste": return new CodificadorPayload("{", ", ", "}");
+            case "oeste": return new CodificadorPayload("", "#", "");
+            default: throw new IllegalArgumentException("Região inválida: " + regiao);
+        }
+    }
+
+    /** Payload na ordem pressão, radiação, temperatura, umidade. */
+    public byte[] codificar(double pressao, double radiacao, double temperatura, double umidade) {
+        int p = copiar(abertura, 0);
+        p = escreverCentesimos(pressao, p);
+        p = copiar(separador, p);
+        p = escreverCentesimos(radiacao, p);
+        p = copiar(separador, p);
+        p = escreverCentesimos(temperatura, p);
+        p = copiar(separador, p);
+        p = escreverCentesimos(umidade, p);
+        p = copiar(fechamento, p);
+        byte[] resultado = new byte[p];
+        System.arraycopy(buffer, 0, resultado, 0, p);
+        return resultado;
+    }
+
+    /** Payload seguido do rastreio: id do drone, sequência da leitura e instante da publicação (ms). */
+    public byte[] codificar(double pressao, double radiacao, double temperatura, double umidade,
+                            long origem, long sequencia, long timestampOrigem) {
+        return anexarRastreio(codificar(pressao, radiacao, temperatura, umidade), origem, sequencia, timestampOrigem);
+    }
+
+    /** Cópia de um payload já codificado com o rastreio no fim; pode ser chamado de qualquer thread. */
+    public static byte[] anexarRastreio(byte[] payload, long origem, long sequencia, long timestampOrigem) {
+        byte[] resultado = new byte[payload.length + MAX_BYTES_RASTREIO];
+        System.arraycopy(payload, 0, resultado, 0, payload.length);
+        int p = escreverCampoRastreio(resultado, payload.length, origem);
+        p = escreverCampoRastreio(resultado, p, sequencia);
+        p = escreverCampoRastreio(resultado, p, timestampOrigem);
+        return p == resultado.length ? resultado : Arrays.copyOf(resultado, p);
+    }
+
+    private static int escreverCampoRastreio(byte[] destino, int posicao, long valor) {
+        destino[posicao++] = SEPARADOR_RASTREIO;
+        int inicio = posicao;
+        do {
+            destino[posicao++] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+        inverter(destino, inicio, posicao - 1);
+        return posicao;
+    }
+
+    private static void inverter(byte[] bytes, int i, int j) {
+        for (; i < j; i++, j--) {
+            byte troca = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = troca;
+        }
+    }
+
+    private int copiar(byte[] origem, int posicao) {
+        System.arraycopy(origem, 0, buffer, posicao, origem.length);
+        return posicao + origem.length;
+    }
+
+    private int escreverCentesimos(double valor, int posicao) {
+        long centesimos = Math.round(valor * 100);
+        if (centesimos < 0) {
+            buffer[posicao++] = '-';
+            centesimos = -centesimos;
+        }
+        long inteiro = centesimos / 100;
+        int fracao = (int) (centesimos % 100);
+        int inicio = posicao;
+        do {
+            buffer[posicao++] = (byte) ('0' + inteiro % 10);
+            inteiro /= 10;
+        } while (inteiro > 0);
+        inverter(buffer, inicio, posicao - 1);
+        buffer[posicao++] = '.';
+        buffer[posicao++] = (byte) ('0' + fracao / 10);
+        buffer[posicao++] = (byte) ('0' + fracao % 10);
+        return posicao;
+    }
+}
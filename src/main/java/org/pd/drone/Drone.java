@@ -1,7 +1,14 @@
 package org.pd.drone;
 
-import org.eclipse.paho.client.mqttv3.*;
-
+import org.pd.gateway.CodecLote;
+import org.pd.metricas.RegistroMetricas;
+import org.pd.metricas.Registrador;
+import org.pd.transporte.TransporteMqtt;
+import org.pd.transporte.Transportes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.concurrent.Executors;
@@ -9,122 +16,184 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class Drone {
-
-    private final String broker = "tcp://localhost:1883";
-    private MqttClient clienteMqtt;
+    // Métricas do processo, compartilhadas com o GeradorCarga; porta 0 desliga o /metrics.
+    static final int PORTA_METRICAS = Integer.getInteger("pd.drone.metricas.porta", 9101);
+    static final RegistroMetricas METRICAS = RegistroMetricas.padrao();
+    static final RegistroMetricas.FamiliaContadores ENVIADAS = METRICAS.contadores(
+            "pd_drone_mensagens_enviadas_total", "Leituras publicadas no broker.", "regiao");
+    static final RegistroMetricas.FamiliaContadores ERROS = METRICAS.contadores(
+            "pd_drone_erros_publicacao_total", "Falhas ao publicar no broker.", "regiao");
+    static final RegistroMetricas.FamiliaContadores LOTES = METRICAS.contadores(
+            "pd_drone_lotes_enviados_total", "Mensagens com várias leituras publicadas em drones/<regiao>/lote.",
+            "regiao");
+    static final RegistroMetricas.Contador CONEXOES_PERDIDAS = METRICAS.contador(
+            "pd_conexoes_perdidas_total", "Conexões com o broker perdidas.", "broker", "mqtt");
+    static final RegistroMetricas.Contador RECONEXOES = METRICAS.contador(
+            "pd_reconexoes_total", "Reconexões automáticas com o broker.", "broker", "mqtt");
+
+    // Lote (ver CodecLote): até LOTE_LEITURAS leituras ou LOTE_ESPERA_MS numa mensagem só; 1 publica
+    // cada leitura em drones/<regiao>/dados, como antes. Valem também para o GeradorCarga.
+    static final int LOTE_LEITURAS = Integer.getInteger("pd.drone.lote.leituras", 1);
+    static final long LOTE_ESPERA_MS = Long.getLong("pd.drone.lote.esperaMs", 5000);
+    static final boolean LOTE_DELTA = Boolean.parseBoolean(System.getProperty("pd.drone.lote.delta", "true"));
+    static final boolean LOTE_COMPACTAR = Boolean.getBoolean("pd.drone.lote.compactar");
+
+    private static final Registrador LOG = new Registrador();
+    private static final Registrador AVISO_PUBLICACAO = new Registrador();
+
+    private final TransporteMqtt transporte;
+    private TransporteMqtt.Cliente clienteMqtt;
     private final Random random = new Random();
 
     private final String regiao;
-    private final String formato;
+    private final CodificadorPayload codificador;
+    private final CodecLote.Escritor lote = LOTE_LEITURAS > 1 ? new CodecLote.Escritor(LOTE_DELTA, LOTE_COMPACTAR) : null;
+    // Identifica o drone no rastreio; aleatório para que um drone reiniciado seja outra origem.
+    private final long id = 1 + random.nextInt(Integer.MAX_VALUE);
+    private long sequencia;
 
     private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
 
     public Drone(String regiao) {
-        this.regiao = regiao;
+        this(regiao, Transportes.mqtt());
+    }
 
-        switch (regiao.toLowerCase()) {
-            case "norte":
-                this.formato = "%s-%s-%s-%s";
-                break;
-            case "sul":
-                this.formato = "(%s; %s; %s; %s)";
-                break;
-            case "leste":
-                this.formato = "{%s, %s, %s, %s}";
-                break;
-            case "oeste":
-                this.formato = "%s#%s#%s#%s";
-                break;
-            default:
-                throw new IllegalArgumentException("Região inválida: " + regiao);
-        }
+    public Drone(String regiao, TransporteMqtt transporte) {
+        this.regiao = regiao;
+        this.transporte = transporte;
+        this.codificador = CodificadorPayload.daRegiao(regiao);
     }
 
     public void conectar() {
         try {
             String idCliente = "drone-" + this.regiao + "-" + System.currentTimeMillis();
-            this.clienteMqtt = new MqttClient(broker, idCliente);
-            MqttConnectOptions opcoesConexao = new MqttConnectOptions();
-            opcoesConexao.setCleanSession(true);
-
-            opcoesConexao.setAutomaticReconnect(true);
-
-            this.clienteMqtt.setCallback(new MqttCallback() {
-                @Override
-                public void connectionLost(Throwable cause) {
-                    System.out.println(
-                            "🔴 Drone [" + regiao + "] - Conexão perdida! Tentando reconectar automaticamente...");
-                }
-
+            System.out.println("Drone [" + regiao + "] conectando ao broker: " + transporte);
+            this.clienteMqtt = transporte.conectar(idCliente, true, 0, new TransporteMqtt.Ouvinte() {
                 @Override
-                public void messageArrived(String topic, MqttMessage message) throws Exception {
+                public void reconectado() {
+                    RECONEXOES.incrementar();
                 }
 
                 @Override
-                public void deliveryComplete(IMqttDeliveryToken token) {
+                public void conexaoPerdida(Throwable cause) {
+                    CONEXOES_PERDIDAS.incrementar();
+                    System.out.println(
+                            "🔴 Drone [" + regiao + "] - Conexão perdida! Tentando reconectar automaticamente...");
                 }
             });
-
-            System.out.println("Drone [" + regiao + "] conectando ao broker: " + broker);
-            this.clienteMqtt.connect(opcoesConexao);
             System.out.println("Drone [" + regiao + "] conectado!");
 
-        } catch (MqttException e) {
+        } catch (IOException e) {
             System.err.println("Erro ao conectar o Drone [" + regiao + "]: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private String gerarDadosClimaticos() {
+    /** Uma leitura nova: publicada na hora ou acumulada no lote, que sai ao chegar em LOTE_LEITURAS. */
+    private void coletarEEnviar() {
         double pressao = 950 + (1050 - 950) * random.nextDouble();
         double radiacao = 100 + (1000 - 100) * random.nextDouble();
         double temperatura = 15 + (40 - 15) * random.nextDouble();
         double umidade = 30 + (80 - 30) * random.nextDouble();
+        long agora = System.currentTimeMillis();
 
-        return String.format(formato,
-                String.format("%.2f", pressao),
-                String.format("%.2f", radiacao),
-                String.format("%.2f", temperatura),
-                String.format("%.2f", umidade));
+        if (lote != null) {
+            lote.adicionar(sequencia++, agora, pressao, radiacao, temperatura, umidade);
+            if (lote.getQuantidade() >= LOTE_LEITURAS) {
+                publicarLote();
+            }
+            return;
+        }
+        byte[] dados = codificador.codificar(pressao, radiacao, temperatura, umidade, id, sequencia++, agora);
+        String topico = "drones/" + this.regiao + "/dados";
+        if (publicar(topico, dados, 1)) {
+            LOG.rastrear(() -> "Drone [" + this.regiao + "] publicou em [" + topico + "]: "
+                    + new String(dados, StandardCharsets.US_ASCII));
+        }
     }
 
-    public void iniciarEnvioDeDados() {
-        if (clienteMqtt == null || !clienteMqtt.isConnected()) {
-            System.err.println("Drone [" + regiao + "] não está conectado. Não é possível enviar dados.");
+    private void publicarLote() {
+        int leituras = lote.getQuantidade();
+        if (leituras == 0) {
             return;
         }
+        byte[] dados = lote.fechar(id);
+        String topico = "drones/" + this.regiao + CodecLote.SUFIXO_TOPICO;
+        if (publicar(topico, dados, leituras)) {
+            LOTES.com(regiao).incrementar();
+            LOG.rastrear(() -> "Drone [" + this.regiao + "] publicou lote em [" + topico + "]: " + leituras
+                    + " leituras, " + dados.length + " bytes");
+        }
+    }
 
-        Runnable envioTask = () -> {
-            try {
-                String dados = gerarDadosClimaticos();
-                MqttMessage mensagem = new MqttMessage(dados.getBytes());
-                mensagem.setQos(0);
-
-                String topico = "drones/" + this.regiao + "/dados";
-                clienteMqtt.publish(topico, mensagem);
-                System.out.println("Drone [" + this.regiao + "] publicou em [" + topico + "]: " + dados);
+    private boolean publicar(String topico, byte[] dados, int leituras) {
+        try {
+            clienteMqtt.publicar(topico, dados, 0);
+            ENVIADAS.com(regiao).somar(leituras);
+            return true;
+        } catch (IOException e) {
+            ERROS.com(regiao).incrementar();
+            AVISO_PUBLICACAO.avisoAmostrado(
+                    () -> "Erro ao publicar mensagem do Drone [" + regiao + "]: " + e.getMessage());
+            return false;
+        }
+    }
 
-            } catch (MqttException e) {
-                System.err.println("Erro ao publicar mensagem do Drone [" + regiao + "]: " + e.getMessage());
-            }
-        };
+    public void iniciarEnvioDeDados() {
+        if (clienteMqtt == null || !clienteMqtt.isConectado()) {
+            System.err.println("Drone [" + regiao + "] não está conectado. Não é possível enviar dados.");
+            return;
+        }
 
         int intervalo = 2000 + random.nextInt(3001);
-        executor.scheduleAtFixedRate(envioTask, 0, intervalo, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(this::coletarEEnviar, 0, intervalo, TimeUnit.MILLISECONDS);
+        if (lote != null) {
+            // Na mesma thread do envio: nenhuma leitura espera mais que LOTE_ESPERA_MS no lote.
+            executor.scheduleAtFixedRate(this::publicarLote, LOTE_ESPERA_MS, LOTE_ESPERA_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    public void parar() throws MqttException {
+    public void parar() throws IOException {
         System.out.println("Finalizando drone [" + regiao + "]...");
         executor.shutdown();
-        if (clienteMqtt.isConnected()) {
-            clienteMqtt.disconnect();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (lote != null && clienteMqtt != null && clienteMqtt.isConectado()) {
+            publicarLote();
         }
         clienteMqtt.close();
         System.out.println("Drone [" + regiao + "] finalizado.");
     }
 
+    /** Sobe o {@code /metrics} do processo na {@link #PORTA_METRICAS}, se configurada. */
+    static void exporMetricas() {
+        if (PORTA_METRICAS <= 0) {
+            return;
+        }
+        METRICAS.registrarJvm();
+        try {
+            METRICAS.servir(PORTA_METRICAS);
+            System.out.println("📈 Métricas em http://localhost:" + PORTA_METRICAS + "/metrics");
+        } catch (IOException e) {
+            System.err.println("⚠️ Não foi possível expor métricas na porta " + PORTA_METRICAS + ": " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
+        // "carga": muitos drones simulados a uma taxa alvo (ver GeradorCarga).
+        if (args.length > 0 && "carga".equalsIgnoreCase(args[0])) {
+            GeradorCarga.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         System.out.println("Iniciando simulação dos Drones...");
+        if (LOTE_LEITURAS > 1) {
+            System.out.println("📦 Lotes de até " + LOTE_LEITURAS + " leituras ou " + LOTE_ESPERA_MS + "ms em drones/<regiao>"
+                    + CodecLote.SUFIXO_TOPICO);
+        }
+        exporMetricas();
         Drone droneNorte = new Drone("norte");
         Drone droneSul = new Drone("sul");
         Drone droneLeste = new Drone("leste");
@@ -141,6 +210,13 @@ public class Drone {
         }
 
         System.out.println("Iniciando envio de dados...\n");
+        long[] resumoAnterior = {0};
+        Registrador.resumoPeriodico(() -> {
+            long total = ENVIADAS.total();
+            System.out.println("📤 Drones: +" + (total - resumoAnterior[0]) + " leituras publicadas, "
+                    + ERROS.total() + " erros");
+            resumoAnterior[0] = total;
+        });
         droneNorte.iniciarEnvioDeDados();
         droneSul.iniciarEnvioDeDados();
         droneLeste.iniciarEnvioDeDados();
@@ -171,7 +247,7 @@ public class Drone {
                 droneSul.parar();
                 droneLeste.parar();
                 droneOeste.parar();
-            } catch (MqttException e) {
+            } catch (IOException e) {
                 e.printStackTrace();
             }
         }
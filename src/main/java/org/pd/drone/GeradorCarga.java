@@ -0,0 +1,361 @@
+package org.pd.drone;
+
+import org.pd.gateway.CodecLote;
+import org.pd.gateway.PipelineIngestao;
+import org.pd.metricas.HistogramaLatencia;
+import org.pd.metricas.RegistroMetricas;
+import org.pd.transporte.TransporteMqtt;
+import org.pd.transporte.Transportes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Modo gerador de carga: simula muitos drones por região publicando a uma taxa agregada alvo.
+ * <p>
+ * Os drones são multiplexados em {@code pd.carga.conexoes} clientes MQTT. No agendador
+ * "compartilhado" há uma thread por conexão que distribui a taxa entre os seus drones por um balde
+ * de fichas; no agendador "virtual" cada drone é uma thread virtual que dorme até o próximo envio.
+ * Os payloads são codificados antes de começar ({@code pd.carga.variacoes} por região) e no envio
+ * só recebem o rastreio (id do drone, sequência e instante). A taxa segue o perfil: constante, rampa até o alvo ou rajadas periódicas.
+ * A cada intervalo é impressa a taxa atingida e a latência de {@code publish}.
+ * <p>
+ * Com {@code pd.drone.lote.leituras} maior que 1 cada drone simulado acumula as leituras num
+ * {@link CodecLote.Escritor} e publica o lote quando ele enche ou, no envio seguinte, quando a mais
+ * antiga passou de {@code pd.drone.lote.esperaMs}. A taxa e as contagens continuam em leituras.
+ */
+public class GeradorCarga {
+    public enum Perfil { CONSTANTE, RAMPA, RAJADA }
+
+    private static final String[] REGIOES = {"norte", "sul", "leste", "oeste"};
+    private static final int DRONES_POR_REGIAO = Integer.getInteger("pd.carga.dronesPorRegiao", 1000);
+    private static final double TAXA_ALVO = Double.parseDouble(System.getProperty("pd.carga.taxa", "10000"));
+    private static final int CONEXOES = Integer.getInteger("pd.carga.conexoes", 4);
+    private static final boolean AGENDADOR_VIRTUAL = "virtual".equalsIgnoreCase(
+            System.getProperty("pd.carga.agendador", "compartilhado"));
+    private static final Perfil PERFIL = Perfil.valueOf(System.getProperty("pd.carga.perfil", "constante").toUpperCase());
+    private static final long RAMPA_MS = Long.getLong("pd.carga.rampaMs", 30_000);
+    private static final double RAJADA_FATOR = Double.parseDouble(System.getProperty("pd.carga.rajada.fator", "5"));
+    private static final long RAJADA_DURACAO_MS = Long.getLong("pd.carga.rajada.duracaoMs", 2_000);
+    private static final long RAJADA_PERIODO_MS = Long.getLong("pd.carga.rajada.periodoMs", 10_000);
+    private static final long DURACAO_MS = Long.getLong("pd.carga.duracaoMs", 60_000);
+    private static final int QOS = Integer.getInteger("pd.carga.qos", 0);
+    private static final int VARIACOES = Integer.getInteger("pd.carga.variacoes", 256);
+    private static final long RELATORIO_MS = Long.getLong("pd.carga.relatorioMs", 1_000);
+    // Atraso máximo acumulado antes de desistir de alcançar a taxa (evita rajadas de recuperação).
+    private static final long ATRASO_MAXIMO_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class DroneSimulado {
+        final String regiao;
+        final String topico;
+        final String topicoLote;
+        final byte[][] payloads;
+        final double[][] valores;
+        final CodecLote.Escritor lote;
+        final TransporteMqtt.Cliente cliente;
+        final long id;
+        final RegistroMetricas.Contador enviadas;
+        final RegistroMetricas.Contador erros;
+        long sequencia;
+        int variacao;
+
+        DroneSimulado(String regiao, int numero, long id, byte[][] payloads, double[][] valores,
+                      TransporteMqtt.Cliente cliente) {
+            this.regiao = regiao;
+            this.id = id;
+            this.enviadas = Drone.ENVIADAS.com(regiao);
+            this.erros = Drone.ERROS.com(regiao);
+            this.topico = "drones/" + regiao + "/dados";
+            this.topicoLote = "drones/" + regiao + CodecLote.SUFIXO_TOPICO;
+            this.payloads = payloads;
+            this.valores = valores;
+            this.lote = Drone.LOTE_LEITURAS > 1 ? new CodecLote.Escritor(Drone.LOTE_DELTA, Drone.LOTE_COMPACTAR) : null;
+            this.cliente = cliente;
+            this.variacao = numero % payloads.length; // drones da mesma região começam em variações diferentes
+        }
+    }
+
+    private final TransporteMqtt transporte;
+    private final List<TransporteMqtt.Cliente> conexoes = new ArrayList<>();
+    private final List<DroneSimulado> drones = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final HistogramaLatencia latenciaIntervalo = new HistogramaLatencia("publish");
+    private final HistogramaLatencia latenciaTotal = new HistogramaLatencia("publish (total)");
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private volatile boolean ativo = true;
+    private long inicioMs;
+
+    public GeradorCarga() {
+        this(Transportes.mqtt());
+    }
+
+    public GeradorCarga(TransporteMqtt transporte) {
+        this.transporte = transporte;
+    }
+
+    public void conectar() throws IOException {
+        int maxEmVoo = Math.max(10, DRONES_POR_REGIAO * REGIOES.length / Math.max(1, CONEXOES));
+        for (int i = 0; i < Math.max(1, CONEXOES); i++) {
+            conexoes.add(transporte.conectar("carga-" + i + "-" + System.currentTimeMillis(), true, maxEmVoo,
+                    new TransporteMqtt.Ouvinte() {
+                        @Override
+                        public void reconectado() {
+                            Drone.RECONEXOES.incrementar();
+                        }
+
+                        @Override
+                        public void conexaoPerdida(Throwable causa) {
+                            Drone.CONEXOES_PERDIDAS.incrementar();
+                        }
+                    }));
+        }
+        Random random = new Random(42);
+        // Ids de rastreio distintos entre execuções, como no Drone.
+        long primeiroId = 1 + (long) new Random().nextInt(Integer.MAX_VALUE / 2) * 1024;
+        int numero = 0;
+        for (String regiao : REGIOES) {
+            double[][] valores = gerarValores(random);
+            byte[][] payloads = codificarPayloads(regiao, valores);
+            for (int d = 0; d < DRONES_POR_REGIAO; d++, numero++) {
+                drones.add(new DroneSimulado(regiao, d, primeiroId + numero, payloads, valores,
+                        conexoes.get(numero % conexoes.size())));
+            }
+        }
+        System.out.println("🚀 Gerador de carga: " + drones.size() + " drones em " + conexoes.size()
+                + " conexões, alvo " + TAXA_ALVO + " msg/s, perfil " + PERFIL + ", agendador "
+                + (AGENDADOR_VIRTUAL ? "virtual" : "compartilhado"));
+        if (Drone.LOTE_LEITURAS > 1) {
+            System.out.println("📦 Lotes de até " + Drone.LOTE_LEITURAS + " leituras ou " + Drone.LOTE_ESPERA_MS
+                    + "ms por drone" + (Drone.LOTE_DELTA ? ", delta" : "") + (Drone.LOTE_COMPACTAR ? ", deflate" : ""));
+        }
+    }
+
+    /** Pressão, radiação, temperatura e umidade de cada variação. */
+    private static double[][] gerarValores(Random random) {
+        double[][] valores = new double[Math.max(1, VARIACOES)][];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = new double[]{950 + 100 * random.nextDouble(), 100 + 900 * random.nextDouble(),
+                    15 + 25 * random.nextDouble(), 30 + 50 * random.nextDouble()};
+        }
+        return valores;
+    }
+
+    private static byte[][] codificarPayloads(String regiao, double[][] valores) {
+        CodificadorPayload codificador = CodificadorPayload.daRegiao(regiao);
+        byte[][] payloads = new byte[valores.length][];
+        for (int i = 0; i < payloads.length; i++) {
+            double[] v = valores[i];
+            payloads[i] = codificador.codificar(v[0], v[1], v[2], v[3]);
+        }
+        return payloads;
+    }
+
+    public void iniciar() {
+        inicioMs = System.currentTimeMillis();
+        if (AGENDADOR_VIRTUAL) {
+            Random random = new Random();
+            for (DroneSimulado drone : drones) {
+                long atrasoInicial = (long) (random.nextDouble() * intervaloPorDroneNanos(0));
+                threads.add(PipelineIngestao.criarThread("carga-drone-" + drone.regiao, true,
+                        () -> executarDrone(drone, atrasoInicial)));
+            }
+        } else {
+            for (int k = 0; k < conexoes.size(); k++) {
+                List<DroneSimulado> proprios = new ArrayList<>();
+                for (int d = k; d < drones.size(); d += conexoes.size()) {
+                    proprios.add(drones.get(d));
+                }
+                threads.add(PipelineIngestao.criarThread("carga-agendador-" + k, false,
+                        () -> executarAgendador(proprios)));
+            }
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /** Multiplicador da taxa alvo no instante {@code decorridoMs} do teste, conforme o perfil. */
+    private static double fatorPerfil(long decorridoMs) {
+        switch (PERFIL) {
+            case RAMPA:
+                return RAMPA_MS <= 0 ? 1 : Math.min(1.0, Math.max(0.01, (double) decorridoMs / RAMPA_MS));
+            case RAJADA:
+                return decorridoMs % RAJADA_PERIODO_MS < RAJADA_DURACAO_MS ? RAJADA_FATOR : 1;
+            default:
+                return 1;
+        }
+    }
+
+    private double taxaAtual() {
+        return TAXA_ALVO * fatorPerfil(System.currentTimeMillis() - inicioMs);
+    }
+
+    private double intervaloPorDroneNanos(double taxa) {
+        double efetiva = taxa > 0 ? taxa : TAXA_ALVO;
+        return 1e9 * drones.size() / Math.max(1e-3, efetiva);
+    }
+
+    /** Balde de fichas: a cada volta acumula as mensagens devidas desde a anterior e envia. */
+    private void executarAgendador(List<DroneSimulado> proprios) {
+        double devidas = 0;
+        long anterior = System.nanoTime();
+        int proximo = 0;
+        while (ativo) {
+            long agora = System.nanoTime();
+            double taxaThread = taxaAtual() * proprios.size() / drones.size();
+            devidas = Math.min(devidas + taxaThread * (agora - anterior) / 1e9,
+                    Math.max(1, taxaThread * ATRASO_MAXIMO_NANOS / 1e9));
+            anterior = agora;
+            while (devidas >= 1 && ativo) {
+                enviar(proprios.get(proximo));
+                proximo = proximo + 1 == proprios.size() ? 0 : proximo + 1;
+                devidas -= 1;
+            }
+            if (taxaThread > 0) {
+                LockSupport.parkNanos((long) Math.min(1e6, (1 - devidas) / taxaThread * 1e9));
+            }
+        }
+    }
+
+    private void executarDrone(DroneSimulado drone, long atrasoInicialNanos) {
+        long proximo = System.nanoTime() + atrasoInicialNanos;
+        while (ativo) {
+            long espera = proximo - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+                continue;
+            }
+            enviar(drone);
+            long agora = System.nanoTime();
+            proximo += (long) intervaloPorDroneNanos(taxaAtual());
+            if (agora - proximo > ATRASO_MAXIMO_NANOS) {
+                proximo = agora;
+            }
+        }
+    }
+
+    private void enviar(DroneSimulado drone) {
+        int variacao = drone.variacao;
+        drone.variacao = drone.variacao + 1 == drone.payloads.length ? 0 : drone.variacao + 1;
+        if (drone.lote != null) {
+            double[] v = drone.valores[variacao];
+            drone.lote.adicionar(drone.sequencia++, System.currentTimeMillis(), v[0], v[1], v[2], v[3]);
+            if (drone.lote.getQuantidade() >= Drone.LOTE_LEITURAS || drone.lote.idadeMs() >= Drone.LOTE_ESPERA_MS) {
+                publicarLote(drone);
+            }
+            return;
+        }
+        byte[] payload = CodificadorPayload.anexarRastreio(drone.payloads[variacao], drone.id, drone.sequencia++,
+                System.currentTimeMillis());
+        publicar(drone, drone.topico, payload, 1);
+    }
+
+    private void publicarLote(DroneSimulado drone) {
+        int leituras = drone.lote.getQuantidade();
+        if (leituras > 0 && publicar(drone, drone.topicoLote, drone.lote.fechar(drone.id), leituras)) {
+            lotes.increment();
+            Drone.LOTES.com(drone.regiao).incrementar();
+        }
+    }
+
+    private boolean publicar(DroneSimulado drone, String topico, byte[] payload, int leituras) {
+        long inicio = System.nanoTime();
+        try {
+            drone.cliente.publicar(topico, payload, QOS);
+            long latencia = System.nanoTime() - inicio;
+            latenciaIntervalo.registrar(latencia);
+            enviadas.add(leituras);
+            drone.enviadas.somar(leituras);
+            return true;
+        } catch (IOException e) {
+            erros.increment();
+            drone.erros.incrementar();
+            return false;
+        }
+    }
+
+    public long getEnviadas() { return enviadas.sum(); }
+    public long getLotes() { return lotes.sum(); }
+    public long getErros() { return erros.sum(); }
+
+    /** Relatórios periódicos até o fim da duração configurada. */
+    public void acompanhar() throws InterruptedException {
+        long prazo = inicioMs + DURACAO_MS;
+        long enviadasAntes = 0;
+        long instanteAntes = System.nanoTime();
+        while (System.currentTimeMillis() < prazo) {
+            Thread.sleep(Math.min(RELATORIO_MS, Math.max(1, prazo - System.currentTimeMillis())));
+            long agora = System.nanoTime();
+            long total = enviadas.sum();
+            double taxa = (total - enviadasAntes) * 1e9 / (agora - instanteAntes);
+            HistogramaLatencia intervalo = latenciaIntervalo.extrair();
+            latenciaTotal.combinar(intervalo);
+            System.out.printf("📊 alvo=%.0f msg/s atingida=%.0f msg/s enviadas=%d erros=%d | %s%n",
+                    taxaAtual(), taxa, total, erros.sum(), intervalo);
+            enviadasAntes = total;
+            instanteAntes = agora;
+        }
+    }
+
+    public void parar() {
+        ativo = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Com as threads paradas, o que ficou nos lotes sai antes de fechar as conexões.
+        for (DroneSimulado drone : drones) {
+            if (drone.lote != null) {
+                publicarLote(drone);
+            }
+        }
+        if (inicioMs > 0) {
+            relatarTotal();
+        }
+        for (TransporteMqtt.Cliente cliente : conexoes) {
+            try {
+                cliente.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar conexão de carga: " + e.getMessage());
+            }
+        }
+    }
+
+    private void relatarTotal() {
+        latenciaTotal.combinar(latenciaIntervalo.extrair());
+        double segundos = (System.currentTimeMillis() - inicioMs) / 1000.0;
+        System.out.printf("%n✅ Carga finalizada: %d mensagens em %.1fs (%.0f msg/s), %d erros%n",
+                enviadas.sum(), segundos, enviadas.sum() / segundos, erros.sum());
+        if (lotes.sum() > 0) {
+            System.out.printf("   em %d lotes (%.1f leituras por mensagem MQTT)%n", lotes.sum(),
+                    (double) enviadas.sum() / lotes.sum());
+        }
+        System.out.println("   " + latenciaTotal);
+    }
+
+    public static void main(String[] args) {
+        GeradorCarga gerador = new GeradorCarga();
+        Drone.exporMetricas();
+        Drone.METRICAS.histograma("pd_drone_latencia_publish_segundos",
+                "Latência da chamada publish (atualizada a cada relatório).", gerador.latenciaTotal);
+        try {
+            gerador.conectar();
+            gerador.iniciar();
+            gerador.acompanhar();
+        } catch (IOException e) {
+            System.err.println("❌ Erro ao conectar o gerador de carga: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            gerador.parar();
+        }
+    }
+}
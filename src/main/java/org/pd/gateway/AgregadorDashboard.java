@@ -0,0 +1,50 @@
+package org.pd.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Agregados de todas as regiões, na ordem em que foram vistas pela primeira vez.
+ */
+public class AgregadorDashboard {
+    private final Map<String, AgregadosRegiao> porRegiao = new ConcurrentHashMap<>();
+    private final List<AgregadosRegiao> ordem = new CopyOnWriteArrayList<>();
+
+    public AgregadosRegiao regiao(String regiao) {
+        AgregadosRegiao agregados = porRegiao.get(regiao);
+        if (agregados != null) {
+            return agregados;
+        }
+        synchronized (ordem) {
+            return porRegiao.computeIfAbsent(regiao, r -> {
+                AgregadosRegiao novo = new AgregadosRegiao(r);
+                ordem.add(novo);
+                return novo;
+            });
+        }
+    }
+
+    public void registrar(DadosClimaticos dados) {
+        regiao(dados.getRegiao()).registrar(dados);
+    }
+
+    public List<AgregadosRegiao.Instantaneo> instantaneo() {
+        List<AgregadosRegiao.Instantaneo> resultado = new ArrayList<>(ordem.size());
+        for (AgregadosRegiao agregados : ordem) {
+            resultado.add(agregados.instantaneo());
+        }
+        return resultado;
+    }
+
+    /** Total de leituras recebidas, sem trava; cresce a cada ingestão. */
+    public long getVersao() {
+        long total = 0;
+        for (AgregadosRegiao agregados : ordem) {
+            total += agregados.getRecebidas();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,192 @@
+package org.pd.gateway;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agregação por janelas de tempo, por região e grandeza, em três resoluções.
+ * <p>
+ * Cada resolução é um anel de baldes de tamanho fixo: o balde de um instante é
+ * {@code (timestamp / duração) % baldes}, e um balde que pertencia a uma janela antiga é zerado ao ser
+ * reutilizado. Toda leitura alimenta as três resoluções ao mesmo tempo, o que dá o mesmo resultado de
+ * reagregar 1s → 1m → 1h e mantém as séries longas disponíveis mesmo depois que o histórico bruto
+ * foi descartado. Memória fixa por região, independente do volume.
+ */
+public class AgregadorJanelas {
+    public enum Resolucao {
+        SEGUNDO(1_000L, 3_600),      // última hora
+        MINUTO(60_000L, 1_440),      // últimas 24 horas
+        HORA(3_600_000L, 24 * 30);   // últimos 30 dias
+
+        private final long duracaoMs;
+        private final int baldes;
+
+        Resolucao(long duracaoMs, int baldes) {
+            this.duracaoMs = duracaoMs;
+            this.baldes = baldes;
+        }
+
+        public long getDuracaoMs() { return duracaoMs; }
+        public long getHorizonteMs() { return duracaoMs * baldes; }
+
+        public static Resolucao porNome(String nome) {
+            switch (nome.trim().toLowerCase()) {
+                case "1s": case "segundo": return SEGUNDO;
+                case "1m": case "minuto": return MINUTO;
+                case "1h": case "hora": return HORA;
+                default: throw new IllegalArgumentException("Resolução desconhecida: " + nome);
+            }
+        }
+    }
+
+    /** Agregado de uma janela: início, quantidade de leituras, média, mínimo e máximo. */
+    public static final class PontoJanela {
+        private final long inicio;
+        private final long contagem;
+        private final double soma;
+        private final double minimo;
+        private final double maximo;
+
+        PontoJanela(long inicio, long contagem, double soma, double minimo, double maximo) {
+            this.inicio = inicio;
+            this.contagem = contagem;
+            this.soma = soma;
+            this.minimo = minimo;
+            this.maximo = maximo;
+        }
+
+        public long getInicio() { return inicio; }
+        public long getContagem() { return contagem; }
+        public double getSoma() { return soma; }
+        public double getMedia() { return contagem == 0 ? Double.NaN : soma / contagem; }
+        public double getMinimo() { return contagem == 0 ? Double.NaN : minimo; }
+        public double getMaximo() { return contagem == 0 ? Double.NaN : maximo; }
+
+        @Override
+        public String toString() {
+            return String.format("%d contagem=%d média=%.2f mín=%.2f máx=%.2f",
+                    inicio, contagem, getMedia(), getMinimo(), getMaximo());
+        }
+    }
+
+    private static final Grandeza[] GRANDEZAS = Grandeza.values();
+
+    private final Map<String, Anel[]> aneis = new ConcurrentHashMap<>();
+
+    public void registrar(DadosClimaticos dados) {
+        Anel[] daRegiao = aneis.computeIfAbsent(dados.getRegiao(), r -> criarAneis());
+        for (Anel anel : daRegiao) {
+            anel.registrar(dados);
+        }
+    }
+
+    /** Janelas fixas ("tumbling") com dados entre {@code inicio} e {@code fim}, em ordem de tempo. */
+    public List<PontoJanela> serie(String regiao, Grandeza grandeza, Resolucao resolucao, long inicio, long fim) {
+        Anel[] daRegiao = aneis.get(regiao);
+        if (daRegiao == null) {
+            return new ArrayList<>();
+        }
+        return daRegiao[resolucao.ordinal()].serie(grandeza, inicio, fim);
+    }
+
+    /**
+     * Agregado da janela deslizante dos últimos {@code duracaoMs} até {@code agora}, usando a
+     * resolução mais fina cujo horizonte cobre a duração. A borda mais antiga é arredondada para o
+     * balde que a contém.
+     */
+    public PontoJanela ultimos(String regiao, Grandeza grandeza, long duracaoMs, long agora) {
+        Resolucao resolucao = Resolucao.HORA;
+        for (Resolucao candidata : Resolucao.values()) {
+            if (candidata.getHorizonteMs() >= duracaoMs) {
+                resolucao = candidata;
+                break;
+            }
+        }
+        long inicio = agora - duracaoMs;
+        long contagem = 0;
+        double soma = 0;
+        double minimo = Double.POSITIVE_INFINITY;
+        double maximo = Double.NEGATIVE_INFINITY;
+        for (PontoJanela ponto : serie(regiao, grandeza, resolucao, inicio, agora)) {
+            contagem += ponto.contagem;
+            soma += ponto.soma;
+            minimo = Math.min(minimo, ponto.minimo);
+            maximo = Math.max(maximo, ponto.maximo);
+        }
+        return new PontoJanela(inicio, contagem, soma, minimo, maximo);
+    }
+
+    private static Anel[] criarAneis() {
+        Resolucao[] resolucoes = Resolucao.values();
+        Anel[] novos = new Anel[resolucoes.length];
+        for (int i = 0; i < resolucoes.length; i++) {
+            novos[i] = new Anel(resolucoes[i]);
+        }
+        return novos;
+    }
+
+    private static final class Anel {
+        private final Resolucao resolucao;
+        private final int baldes;
+        // janela[b] é o índice (timestamp / duração) que o balde b representa no momento.
+        private final long[] janela;
+        private final long[] contagem;
+        private final double[][] soma;
+        private final double[][] minimo;
+        private final double[][] maximo;
+
+        Anel(Resolucao resolucao) {
+            this.resolucao = resolucao;
+            this.baldes = resolucao.baldes;
+            this.janela = new long[baldes];
+            this.contagem = new long[baldes];
+            this.soma = new double[GRANDEZAS.length][baldes];
+            this.minimo = new double[GRANDEZAS.length][baldes];
+            this.maximo = new double[GRANDEZAS.length][baldes];
+            Arrays.fill(janela, Long.MIN_VALUE);
+        }
+
+        synchronized void registrar(DadosClimaticos dados) {
+            long indice = Math.floorDiv(dados.getTimestamp(), resolucao.duracaoMs);
+            int b = (int) Math.floorMod(indice, (long) baldes);
+            if (janela[b] != indice) {
+                if (janela[b] > indice) {
+                    return; // mais antiga que o horizonte do anel
+                }
+                janela[b] = indice;
+                contagem[b] = 0;
+                for (int g = 0; g < GRANDEZAS.length; g++) {
+                    soma[g][b] = 0;
+                    minimo[g][b] = Double.POSITIVE_INFINITY;
+                    maximo[g][b] = Double.NEGATIVE_INFINITY;
+                }
+            }
+            contagem[b]++;
+            for (int g = 0; g < GRANDEZAS.length; g++) {
+                double valor = GRANDEZAS[g].de(dados);
+                soma[g][b] += valor;
+                if (valor < minimo[g][b]) minimo[g][b] = valor;
+                if (valor > maximo[g][b]) maximo[g][b] = valor;
+            }
+        }
+
+        synchronized List<PontoJanela> serie(Grandeza grandeza, long inicio, long fim) {
+            long primeiro = Math.floorDiv(inicio, resolucao.duracaoMs);
+            long ultimo = Math.floorDiv(fim, resolucao.duracaoMs);
+            primeiro = Math.max(primeiro, ultimo - baldes + 1);
+            List<PontoJanela> pontos = new ArrayList<>();
+            int g = grandeza.ordinal();
+            for (long indice = primeiro; indice <= ultimo; indice++) {
+                int b = (int) Math.floorMod(indice, (long) baldes);
+                if (janela[b] == indice && contagem[b] > 0) {
+                    pontos.add(new PontoJanela(indice * resolucao.duracaoMs, contagem[b], soma[g][b],
+                            minimo[g][b], maximo[g][b]));
+                }
+            }
+            return pontos;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.pd.gateway;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agregados do dashboard de uma instância do Gateway, como ela os publica em
+ * {@code gateway/agregados/<instancia>} para as outras.
+ * <p>
+ * Cada grandeza vai com contagem, média, M2, mínimo e máximo, o bastante para que
+ * {@link #combinar(Collection)} junte as instâncias com {@link EstatisticaCorrente#combinar} e
+ * chegue à mesma média e desvio que uma instância só teria calculado.
+ * <pre>
+ *   versão 1 byte | instância UTF | instante long (ms) | regiões int
+ *   por região: nome UTF, e temperatura, umidade, pressão e radiação:
+ *               contagem long | média, M2, mínimo e máximo double
+ * </pre>
+ */
+public final class AgregadosParciais {
+    public static final String PREFIXO_TOPICO = "gateway/agregados/";
+    private static final int VERSAO = 1;
+    // Uma região corrompida não deve fazer a leitura alocar sem limite.
+    private static final int MAX_REGIOES = 4096;
+
+    private final String instancia;
+    private final long instante;
+    private final List<AgregadosRegiao.Instantaneo> regioes;
+
+    public AgregadosParciais(String instancia, long instante, List<AgregadosRegiao.Instantaneo> regioes) {
+        this.instancia = instancia;
+        this.instante = instante;
+        this.regioes = regioes;
+    }
+
+    public String getInstancia() { return instancia; }
+    public long getInstante() { return instante; }
+    public List<AgregadosRegiao.Instantaneo> getRegioes() { return regioes; }
+
+    public byte[] codificar() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + regioes.size() * 180);
+        try (DataOutputStream saida = new DataOutputStream(bytes)) {
+            saida.writeByte(VERSAO);
+            saida.writeUTF(instancia);
+            saida.writeLong(instante);
+            saida.writeInt(regioes.size());
+            for (AgregadosRegiao.Instantaneo regiao : regioes) {
+                saida.writeUTF(regiao.getRegiao());
+                escrever(saida, regiao.getTemperatura());
+                escrever(saida, regiao.getUmidade());
+                escrever(saida, regiao.getPressao());
+                escrever(saida, regiao.getRadiacao());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** @throws IllegalArgumentException se o payload estiver truncado ou for de outra versão */
+    public static AgregadosParciais decodificar(byte[] payload) {
+        try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int versao = entrada.readUnsignedByte();
+            if (versao != VERSAO) {
+                throw new IllegalArgumentException("Versão de agregados não suportada: " + versao);
+            }
+            String instancia = entrada.readUTF();
+            long instante = entrada.readLong();
+            int quantidade = entrada.readInt();
+            if (quantidade < 0 || quantidade > MAX_REGIOES) {
+                throw new IllegalArgumentException("Quantidade de regiões inválida: " + quantidade);
+            }
+            List<AgregadosRegiao.Instantaneo> regioes = new ArrayList<>(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                regioes.add(new AgregadosRegiao.Instantaneo(entrada.readUTF(), ler(entrada), ler(entrada),
+                        ler(entrada), ler(entrada)));
+            }
+            if (entrada.available() > 0) {
+                throw new IllegalArgumentException("Bytes sobrando no fim dos agregados: " + entrada.available());
+            }
+            return new AgregadosParciais(instancia, instante, regioes);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Agregados truncados: " + e.getMessage());
+        }
+    }
+
+    /** Soma, região a região, os agregados de todas as instâncias; as regiões saem na ordem em que aparecem. */
+    public static List<AgregadosRegiao.Instantaneo> combinar(Collection<AgregadosParciais> parciais) {
+        Map<String, EstatisticaCorrente[]> porRegiao = new LinkedHashMap<>();
+        for (AgregadosParciais parcial : parciais) {
+            for (AgregadosRegiao.Instantaneo regiao : parcial.regioes) {
+                EstatisticaCorrente[] soma = porRegiao.computeIfAbsent(regiao.getRegiao(),
+                        r -> new EstatisticaCorrente[]{new EstatisticaCorrente(), new EstatisticaCorrente(),
+                                new EstatisticaCorrente(), new EstatisticaCorrente()});
+                soma[0].combinar(regiao.getTemperatura());
+                soma[1].combinar(regiao.getUmidade());
+                soma[2].combinar(regiao.getPressao());
+                soma[3].combinar(regiao.getRadiacao());
+            }
+        }
+        List<AgregadosRegiao.Instantaneo> resultado = new ArrayList<>(porRegiao.size());
+        porRegiao.forEach((regiao, soma) -> resultado.add(
+                new AgregadosRegiao.Instantaneo(regiao, soma[0], soma[1], soma[2], soma[3])));
+        return resultado;
+    }
+
+    private static void escrever(DataOutputStream saida, EstatisticaCorrente estatistica) throws IOException {
+        saida.writeLong(estatistica.getContagem());
+        saida.writeDouble(estatistica.getMedia());
+        saida.writeDouble(estatistica.getM2());
+        saida.writeDouble(estatistica.getMinimo());
+        saida.writeDouble(estatistica.getMaximo());
+    }
+
+    private static EstatisticaCorrente ler(DataInputStream entrada) throws IOException {
+        long contagem = entrada.readLong();
+        double media = entrada.readDouble();
+        double m2 = entrada.readDouble();
+        double minimo = entrada.readDouble();
+        double maximo = entrada.readDouble();
+        if (contagem < 0) {
+            throw new IllegalArgumentException("Contagem negativa nos agregados: " + contagem);
+        }
+        return contagem == 0 ? new EstatisticaCorrente() : new EstatisticaCorrente(contagem, media, m2, minimo, maximo);
+    }
+}
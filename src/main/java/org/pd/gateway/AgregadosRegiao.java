@@ -0,0 +1,68 @@
+package org.pd.gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregados de uma região mantidos na ingestão: contagem e estatísticas correntes de cada
+ * grandeza. Ler um {@link Instantaneo} custa O(1), independente de quantas leituras já chegaram.
+ */
+public final class AgregadosRegiao {
+    private final String regiao;
+    private final LongAdder recebidas = new LongAdder();
+    private final EstatisticaCorrente temperatura = new EstatisticaCorrente();
+    private final EstatisticaCorrente umidade = new EstatisticaCorrente();
+    private final EstatisticaCorrente pressao = new EstatisticaCorrente();
+    private final EstatisticaCorrente radiacao = new EstatisticaCorrente();
+
+    public AgregadosRegiao(String regiao) {
+        this.regiao = regiao;
+    }
+
+    public String getRegiao() { return regiao; }
+
+    /**
+     * Contador sem trava, útil como versão dos dados. É incrementado depois das estatísticas, então
+     * um instantâneo tirado após ler a versão nunca fica atrás dela.
+     */
+    public long getRecebidas() { return recebidas.sum(); }
+
+    public void registrar(DadosClimaticos dados) {
+        // Cada região é processada por um único trabalhador da ingestão, então a trava quase nunca
+        // é disputada; ela existe para que o instantâneo veja as quatro grandezas no mesmo ponto.
+        synchronized (this) {
+            temperatura.adicionar(dados.getTemperatura());
+            umidade.adicionar(dados.getUmidade());
+            pressao.adicionar(dados.getPressao());
+            radiacao.adicionar(dados.getRadiacao());
+        }
+        recebidas.increment();
+    }
+
+    public synchronized Instantaneo instantaneo() {
+        return new Instantaneo(regiao, temperatura.copia(), umidade.copia(), pressao.copia(), radiacao.copia());
+    }
+
+    public static final class Instantaneo {
+        private final String regiao;
+        private final EstatisticaCorrente temperatura;
+        private final EstatisticaCorrente umidade;
+        private final EstatisticaCorrente pressao;
+        private final EstatisticaCorrente radiacao;
+
+        public Instantaneo(String regiao, EstatisticaCorrente temperatura, EstatisticaCorrente umidade,
+                           EstatisticaCorrente pressao, EstatisticaCorrente radiacao) {
+            this.regiao = regiao;
+            this.temperatura = temperatura;
+            this.umidade = umidade;
+            this.pressao = pressao;
+            this.radiacao = radiacao;
+        }
+
+        public String getRegiao() { return regiao; }
+        public long getContagem() { return temperatura.getContagem(); }
+        public EstatisticaCorrente getTemperatura() { return temperatura; }
+        public EstatisticaCorrente getUmidade() { return umidade; }
+        public EstatisticaCorrente getPressao() { return pressao; }
+        public EstatisticaCorrente getRadiacao() { return radiacao; }
+    }
+}
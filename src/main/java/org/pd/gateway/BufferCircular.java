@@ -0,0 +1,212 @@
+package org.pd.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Buffer circular de capacidade fixa (potência de dois) para as leituras recentes de uma região.
+ * <p>
+ * Anexar é um {@code getAndIncrement} na cabeça e uma escrita no vetor, sem trava: quando o buffer
+ * está cheio a leitura mais antiga é sobrescrita e contada como descartada. A expiração por idade
+ * roda fora do caminho de escrita ({@link #expirarAnteriores}) e só avança a cauda, liberando as
+ * posições para o GC. Leituras concorrentes com escritas são uma fotografia aproximada.
+ * <p>
+ * As posições ficam em blocos de até {@value #TAMANHO_BLOCO_MAXIMO}, alocados na primeira escrita e
+ * soltos quando a expiração passa deles inteiros, então a memória acompanha o que está retido e não
+ * a capacidade: uma capacidade enorme (retenção sem limite de quantidade) não custa nada de saída.
+ */
+public class BufferCircular<T> {
+    private static final int TAMANHO_BLOCO_MAXIMO = 4096;
+
+    /**
+     * Posições de um bloco com o carimbo de cada uma: {@code posicao + 1} da última escrita, ou 0 se
+     * nunca foi escrita. O carimbo vai depois do item e só cresce, então um carimbo igual ao índice
+     * lido garante que o item é dessa volta, menor diz que a escrita ainda não terminou e maior diz
+     * que a posição já foi sobrescrita.
+     */
+    private static final class Bloco<T> {
+        final AtomicReferenceArray<T> itens;
+        final AtomicLongArray carimbos;
+
+        Bloco(int tamanho) {
+            this.itens = new AtomicReferenceArray<>(tamanho);
+            this.carimbos = new AtomicLongArray(tamanho);
+        }
+
+        void gravar(int slot, long posicao, T item) {
+            if (carimbos.get(slot) > posicao) {
+                return;
+            }
+            itens.set(slot, item);
+            carimbos.accumulateAndGet(slot, posicao + 1, Math::max);
+        }
+
+        long carimbo(int slot) {
+            return carimbos.get(slot) - 1;
+        }
+
+        T ler(int slot, long posicao) {
+            if (carimbo(slot) != posicao) {
+                return null;
+            }
+            T item = itens.get(slot);
+            return carimbo(slot) == posicao ? item : null;
+        }
+    }
+
+    private final AtomicReferenceArray<Bloco<T>> blocos;
+    private final int mascara;
+    private final int bitsBloco;
+    private final int mascaraBloco;
+    private final AtomicLong cabeca = new AtomicLong();
+    private final AtomicLong cauda = new AtomicLong();
+    private final LongAdder sobrescritos = new LongAdder();
+    private final LongAdder expirados = new LongAdder();
+    // Até onde a expiração já tentou soltar blocos; só a thread de expiração usa.
+    private long blocosConferidosAte;
+
+    public BufferCircular(int capacidadeMinima) {
+        int capacidade = Integer.highestOneBit(Math.max(2, capacidadeMinima - 1)) << 1;
+        int tamanhoBloco = Math.min(capacidade, TAMANHO_BLOCO_MAXIMO);
+        this.mascara = capacidade - 1;
+        this.bitsBloco = Integer.numberOfTrailingZeros(tamanhoBloco);
+        this.mascaraBloco = tamanhoBloco - 1;
+        this.blocos = new AtomicReferenceArray<>(capacidade / tamanhoBloco);
+    }
+
+    public int capacidade() {
+        return mascara + 1;
+    }
+
+    public void anexar(T item) {
+        long posicao = cabeca.getAndIncrement();
+        if (posicao >= capacidade() && posicao - capacidade() >= cauda.get()) {
+            sobrescritos.increment();
+        }
+        int indice = (int) (posicao & mascara);
+        int numero = indice >>> bitsBloco;
+        Bloco<T> bloco = bloco(numero);
+        bloco.gravar(indice & mascaraBloco, posicao, item);
+        // A expiração pode ter solto o bloco entre a leitura e a escrita: grava no que ficou no lugar.
+        // Se ela o soltar depois desta conferência, é ela quem copia a escrita (soltarBlocos).
+        Bloco<T> atual;
+        while ((atual = blocos.get(numero)) != bloco) {
+            bloco = atual != null ? atual : bloco(numero);
+            bloco.gravar(indice & mascaraBloco, posicao, item);
+        }
+    }
+
+    private Bloco<T> bloco(int numero) {
+        Bloco<T> bloco;
+        while ((bloco = blocos.get(numero)) == null) {
+            blocos.compareAndSet(numero, null, new Bloco<>(mascaraBloco + 1));
+        }
+        return bloco;
+    }
+
+    private T item(long posicao) {
+        int indice = (int) (posicao & mascara);
+        Bloco<T> bloco = blocos.get(indice >>> bitsBloco);
+        return bloco == null ? null : bloco.ler(indice & mascaraBloco, posicao);
+    }
+
+    /** Índice lógico do item mais antigo ainda retido. */
+    private long inicio(long fim) {
+        return Math.max(cauda.get(), fim - capacidade());
+    }
+
+    public int tamanho() {
+        long fim = cabeca.get();
+        return (int) (fim - inicio(fim));
+    }
+
+    /** Cópia dos itens retidos, do mais antigo para o mais recente. */
+    public List<T> listar() {
+        long fim = cabeca.get();
+        long inicio = inicio(fim);
+        List<T> copia = new ArrayList<>((int) (fim - inicio));
+        for (long i = inicio; i < fim; i++) {
+            T item = item(i);
+            if (item != null) {
+                copia.add(item);
+            }
+        }
+        return copia;
+    }
+
+    /**
+     * Remove do começo os itens com {@code instante(item) < limite}, parando no primeiro mais novo.
+     * Deve ser chamado por uma única thread. Retorna quantos itens expiraram.
+     */
+    public int expirarAnteriores(long limite, ToLongFunction<T> instante) {
+        long fim = cabeca.get();
+        long i = inicio(fim);
+        int removidos = 0;
+        while (i < fim) {
+            int indice = (int) (i & mascara);
+            int slot = indice & mascaraBloco;
+            Bloco<T> bloco = blocos.get(indice >>> bitsBloco);
+            long carimbo = bloco == null ? -1 : bloco.carimbo(slot);
+            if (carimbo > i) {
+                // Já sobrescrita por uma volta seguinte: não há o que expirar aqui.
+                i++;
+                continue;
+            }
+            T item = carimbo == i ? bloco.ler(slot, i) : null;
+            // Carimbo atrasado: a escrita foi reservada mas ainda não aconteceu.
+            if (item == null || instante.applyAsLong(item) >= limite) {
+                break;
+            }
+            // Só limpa a posição se ninguém tiver escrito por cima nesse meio tempo.
+            if (bloco.itens.compareAndSet(slot, item, null)) {
+                removidos++;
+            }
+            i++;
+        }
+        if (i > cauda.get()) {
+            cauda.set(i);
+        }
+        soltarBlocos(cauda.get());
+        expirados.add(removidos);
+        return removidos;
+    }
+
+    /**
+     * Solta os blocos que ficaram inteiros abaixo da cauda. Um bloco que a cabeça já alcançou na
+     * volta seguinte continua em uso. Se a cabeça chegar nele durante a troca, um escritor pode ter
+     * gravado no bloco solto e conferido antes da troca; essas escritas, reconhecidas pelo carimbo,
+     * são copiadas para o bloco que estiver no lugar.
+     */
+    private void soltarBlocos(long ate) {
+        long tamanhoBloco = mascaraBloco + 1L;
+        long inicio = Math.max(blocosConferidosAte, ate - capacidade()) & ~(tamanhoBloco - 1);
+        for (long s = inicio; s + tamanhoBloco <= ate; s += tamanhoBloco) {
+            int numero = (int) ((s & mascara) >>> bitsBloco);
+            Bloco<T> bloco = blocos.get(numero);
+            long proximaVolta = s + capacidade();
+            if (bloco != null && cabeca.get() < proximaVolta && blocos.compareAndSet(numero, bloco, null)
+                    && cabeca.get() >= proximaVolta && !blocos.compareAndSet(numero, null, bloco)) {
+                copiarEscritas(bloco, bloco(numero), proximaVolta);
+            }
+            blocosConferidosAte = s + tamanhoBloco;
+        }
+    }
+
+    private void copiarEscritas(Bloco<T> origem, Bloco<T> destino, long desde) {
+        for (int slot = 0; slot <= mascaraBloco; slot++) {
+            long posicao = origem.carimbo(slot);
+            T item = posicao >= desde ? origem.ler(slot, posicao) : null;
+            if (item != null) {
+                destino.gravar(slot, posicao, item);
+            }
+        }
+    }
+
+    public long getSobrescritos() { return sobrescritos.sum(); }
+    public long getExpirados() { return expirados.sum(); }
+}
@@ -0,0 +1,464 @@
+package org.pd.gateway;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codificação JSON de {@link DadosClimaticos} sem {@code String.format} nem expressões regulares.
+ * <p>
+ * A escrita gera, byte a byte num buffer reaproveitado, o mesmo texto de sempre
+ * ({@code {"regiao":"norte", "temperatura":25.50, ...}}). A leitura é tolerante: aceita os campos
+ * em qualquer ordem, espaços arbitrários, números em qualquer notação JSON e ignora campos
+ * desconhecidos. Cada instância guarda estado de trabalho e deve ser usada por uma thread só.
+ */
+public final class CodecJson {
+    public static final String CONTENT_TYPE = "application/json";
+
+    private static final byte[] CHAVE_REGIAO = bytes("regiao");
+    private static final byte[] CHAVE_TEMPERATURA = bytes("temperatura");
+    private static final byte[] CHAVE_UMIDADE = bytes("umidade");
+    private static final byte[] CHAVE_PRESSAO = bytes("pressao");
+    private static final byte[] CHAVE_RADIACAO = bytes("radiacao");
+    private static final byte[] CHAVE_TIMESTAMP = bytes("timestamp");
+    private static final byte[] CHAVE_ORIGEM = bytes("origem");
+    private static final byte[] CHAVE_SEQUENCIA = bytes("sequencia");
+    private static final byte[] CHAVE_TIMESTAMP_ORIGEM = bytes("timestampOrigem");
+
+    private static final byte[] PREFIXO_REGIAO = bytes("{\"regiao\":\"");
+    private static final byte[] PREFIXO_TEMPERATURA = bytes("\", \"temperatura\":");
+    private static final byte[] PREFIXO_UMIDADE = bytes(", \"umidade\":");
+    private static final byte[] PREFIXO_PRESSAO = bytes(", \"pressao\":");
+    private static final byte[] PREFIXO_RADIACAO = bytes(", \"radiacao\":");
+    private static final byte[] PREFIXO_TIMESTAMP = bytes(", \"timestamp\":");
+    private static final byte[] PREFIXO_ORIGEM = bytes(", \"origem\":");
+    private static final byte[] PREFIXO_SEQUENCIA = bytes(", \"sequencia\":");
+    private static final byte[] PREFIXO_TIMESTAMP_ORIGEM = bytes(", \"timestampOrigem\":");
+    private static final byte[] NULO = bytes("null");
+
+    private static final int MAX_REGIOES_EM_CACHE = 32;
+
+    private static final ThreadLocal<CodecJson> POR_THREAD = ThreadLocal.withInitial(CodecJson::new);
+
+    // --- Escrita ---
+    private byte[] saida = new byte[160];
+    private int tamanho;
+
+    // --- Leitura ---
+    private byte[] entrada;
+    private int posicao;
+    private int limite;
+    private final String[] regioesEmCache = new String[MAX_REGIOES_EM_CACHE];
+    private final byte[][] bytesRegioesEmCache = new byte[MAX_REGIOES_EM_CACHE][];
+    private int proximaRegiaoEmCache;
+
+    /** Instância da thread atual, para quem não quer guardar a sua. */
+    public static CodecJson daThread() {
+        return POR_THREAD.get();
+    }
+
+    // ======================== Escrita ========================
+
+    /** Codifica {@code dados} no buffer interno; o resultado é {@code buffer()[0..tamanho())}. */
+    public int codificar(DadosClimaticos dados) {
+        tamanho = 0;
+        escrever(PREFIXO_REGIAO);
+        escreverTextoEscapado(dados.getRegiao());
+        escrever(PREFIXO_TEMPERATURA);
+        escreverDecimal(dados.getTemperatura());
+        escrever(PREFIXO_UMIDADE);
+        escreverDecimal(dados.getUmidade());
+        escrever(PREFIXO_PRESSAO);
+        escreverDecimal(dados.getPressao());
+        escrever(PREFIXO_RADIACAO);
+        escreverDecimal(dados.getRadiacao());
+        escrever(PREFIXO_TIMESTAMP);
+        escreverInteiro(dados.getTimestamp());
+        if (dados.temRastreio()) {
+            escrever(PREFIXO_ORIGEM);
+            escreverInteiro(dados.getOrigem());
+            escrever(PREFIXO_SEQUENCIA);
+            escreverInteiro(dados.getSequencia());
+            escrever(PREFIXO_TIMESTAMP_ORIGEM);
+            escreverInteiro(dados.getTimestampOrigem());
+        }
+        escreverByte('}');
+        return tamanho;
+    }
+
+    public byte[] buffer() {
+        return saida;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /** Codifica e devolve uma cópia do tamanho exato, para APIs que só aceitam {@code byte[]} inteiro. */
+    public byte[] codificarCopia(DadosClimaticos dados) {
+        codificar(dados);
+        return Arrays.copyOf(saida, tamanho);
+    }
+
+    public String codificarTexto(DadosClimaticos dados) {
+        codificar(dados);
+        return new String(saida, 0, tamanho, StandardCharsets.UTF_8);
+    }
+
+    private void garantirEspaco(int adicional) {
+        if (tamanho + adicional > saida.length) {
+            saida = Arrays.copyOf(saida, Math.max(saida.length * 2, tamanho + adicional));
+        }
+    }
+
+    private void escreverByte(int b) {
+        garantirEspaco(1);
+        saida[tamanho++] = (byte) b;
+    }
+
+    private void escrever(byte[] trecho) {
+        garantirEspaco(trecho.length);
+        System.arraycopy(trecho, 0, saida, tamanho, trecho.length);
+        tamanho += trecho.length;
+    }
+
+    private void escreverTextoEscapado(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"' || c == '\\') {
+                escreverByte('\\');
+                escreverByte(c);
+            } else if (c < 0x20) {
+                escreverByte('\\');
+                escreverByte('u');
+                escreverByte('0');
+                escreverByte('0');
+                escreverByte(Character.forDigit(c >> 4, 16));
+                escreverByte(Character.forDigit(c & 0xF, 16));
+            } else if (c < 0x80) {
+                escreverByte(c);
+            } else {
+                escrever(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /** Duas casas decimais, como o {@code %.2f} usado antes. NaN e infinitos viram {@code null}. */
+    private void escreverDecimal(double valor) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            escrever(NULO);
+            return;
+        }
+        if (valor < 0) {
+            escreverByte('-');
+            valor = -valor;
+        }
+        long centesimos = Math.round(valor * 100);
+        escreverInteiro(centesimos / 100);
+        long fracao = centesimos % 100;
+        escreverByte('.');
+        escreverByte('0' + (int) (fracao / 10));
+        escreverByte('0' + (int) (fracao % 10));
+    }
+
+    private void escreverInteiro(long valor) {
+        if (valor < 0) {
+            if (valor == Long.MIN_VALUE) {
+                escrever(bytes(Long.toString(valor)));
+                return;
+            }
+            escreverByte('-');
+            valor = -valor;
+        }
+        int digitos = 1;
+        for (long v = valor / 10; v > 0; v /= 10) {
+            digitos++;
+        }
+        garantirEspaco(digitos);
+        int fim = tamanho + digitos;
+        for (int i = fim - 1; i >= tamanho; i--) {
+            saida[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        tamanho = fim;
+    }
+
+    // ======================== Leitura ========================
+
+    public DadosClimaticos decodificar(byte[] dados) {
+        return decodificar(dados, 0, dados.length);
+    }
+
+    /**
+     * Lê um objeto JSON com os campos de {@link DadosClimaticos}. Sem {@code timestamp}, usa o
+     * instante atual; {@code origem}, {@code sequencia} e {@code timestampOrigem} são opcionais.
+     *
+     * @throws IllegalArgumentException se o JSON for inválido ou faltar algum campo obrigatório
+     */
+    public DadosClimaticos decodificar(byte[] dados, int inicio, int fim) {
+        this.entrada = dados;
+        this.posicao = inicio;
+        this.limite = fim;
+
+        String regiao = null;
+        double temperatura = Double.NaN;
+        double umidade = Double.NaN;
+        double pressao = Double.NaN;
+        double radiacao = Double.NaN;
+        long timestamp = Long.MIN_VALUE;
+        long origem = -1;
+        long sequencia = -1;
+        long timestampOrigem = -1;
+
+        esperar('{');
+        if (!consumirSe('}')) {
+            do {
+                pularEspacos();
+                esperar('"');
+                int inicioChave = posicao;
+                int fimChave = fimDoTexto();
+                esperar(':');
+                pularEspacos();
+
+                if (chaveIgual(inicioChave, fimChave, CHAVE_REGIAO)) {
+                    regiao = lerTexto();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_TEMPERATURA)) {
+                    temperatura = lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_UMIDADE)) {
+                    umidade = lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_PRESSAO)) {
+                    pressao = lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_RADIACAO)) {
+                    radiacao = lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_TIMESTAMP)) {
+                    timestamp = (long) lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_ORIGEM)) {
+                    origem = (long) lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_SEQUENCIA)) {
+                    sequencia = (long) lerNumero();
+                } else if (chaveIgual(inicioChave, fimChave, CHAVE_TIMESTAMP_ORIGEM)) {
+                    timestampOrigem = (long) lerNumero();
+                } else {
+                    pularValor();
+                }
+            } while (consumirSe(','));
+            esperar('}');
+        }
+
+        if (regiao == null || Double.isNaN(temperatura) || Double.isNaN(umidade)
+                || Double.isNaN(pressao) || Double.isNaN(radiacao)) {
+            throw new IllegalArgumentException("JSON sem todos os campos obrigatórios");
+        }
+        if (timestamp == Long.MIN_VALUE) {
+            timestamp = System.currentTimeMillis();
+        }
+        return new DadosClimaticos(regiao, pressao, radiacao, temperatura, umidade, timestamp,
+                origem, sequencia, timestampOrigem);
+    }
+
+    private void pularEspacos() {
+        while (posicao < limite) {
+            byte b = entrada[posicao];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            posicao++;
+        }
+    }
+
+    private boolean consumirSe(char esperado) {
+        pularEspacos();
+        if (posicao < limite && entrada[posicao] == esperado) {
+            posicao++;
+            return true;
+        }
+        return false;
+    }
+
+    private void esperar(char esperado) {
+        if (!consumirSe(esperado)) {
+            throw erro("esperado '" + esperado + "'");
+        }
+    }
+
+    private IllegalArgumentException erro(String motivo) {
+        return new IllegalArgumentException("JSON inválido na posição " + posicao + ": " + motivo);
+    }
+
+    /** Avança até depois da aspa de fechamento; retorna a posição da aspa. */
+    private int fimDoTexto() {
+        while (posicao < limite) {
+            byte b = entrada[posicao];
+            if (b == '\\') {
+                posicao += 2;
+            } else if (b == '"') {
+                return posicao++;
+            } else {
+                posicao++;
+            }
+        }
+        throw erro("texto sem aspa de fechamento");
+    }
+
+    private boolean chaveIgual(int inicio, int fim, byte[] chave) {
+        if (fim - inicio != chave.length) {
+            return false;
+        }
+        for (int i = 0; i < chave.length; i++) {
+            if (entrada[inicio + i] != chave[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String lerTexto() {
+        if (consumirSe('n')) {
+            if (limite - posicao < 3 || entrada[posicao] != 'u' || entrada[posicao + 1] != 'l'
+                    || entrada[posicao + 2] != 'l') {
+                throw erro("esperado null");
+            }
+            posicao += 3;
+            return null;
+        }
+        esperar('"');
+        int inicio = posicao;
+        int fim = fimDoTexto();
+        for (int i = inicio; i < fim; i++) {
+            if (entrada[i] == '\\') {
+                return textoComEscapes(inicio, fim);
+            }
+        }
+        return textoEmCache(inicio, fim);
+    }
+
+    /** Regiões se repetem em quase toda mensagem; reaproveita a String já criada para os mesmos bytes. */
+    private String textoEmCache(int inicio, int fim) {
+        for (int i = 0; i < MAX_REGIOES_EM_CACHE && bytesRegioesEmCache[i] != null; i++) {
+            if (chaveIgual(inicio, fim, bytesRegioesEmCache[i])) {
+                return regioesEmCache[i];
+            }
+        }
+        String texto = new String(entrada, inicio, fim - inicio, StandardCharsets.UTF_8);
+        int vaga = proximaRegiaoEmCache++ % MAX_REGIOES_EM_CACHE;
+        regioesEmCache[vaga] = texto;
+        bytesRegioesEmCache[vaga] = Arrays.copyOfRange(entrada, inicio, fim);
+        return texto;
+    }
+
+    private String textoComEscapes(int inicio, int fim) {
+        String bruto = new String(entrada, inicio, fim - inicio, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(bruto.length());
+        for (int i = 0; i < bruto.length(); i++) {
+            char c = bruto.charAt(i);
+            if (c != '\\' || i + 1 >= bruto.length()) {
+                sb.append(c);
+                continue;
+            }
+            char escapado = bruto.charAt(++i);
+            switch (escapado) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 >= bruto.length()) {
+                        throw erro("escape \\u incompleto");
+                    }
+                    sb.append((char) Integer.parseInt(bruto.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(escapado);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Número JSON em ponto fixo; com expoente ou muitos dígitos recorre a {@link Double#parseDouble}. */
+    private double lerNumero() {
+        pularEspacos();
+        if (posicao < limite && entrada[posicao] == 'n') {
+            pularValor();
+            return Double.NaN;
+        }
+        int inicio = posicao;
+        boolean negativo = posicao < limite && entrada[posicao] == '-';
+        if (negativo) {
+            posicao++;
+        }
+        long mantissa = 0;
+        int digitos = 0;
+        int escala = 0;
+        boolean fracao = false;
+        boolean simples = true;
+        while (posicao < limite) {
+            byte b = entrada[posicao];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digitos++;
+                if (fracao) {
+                    escala++;
+                }
+            } else if (b == '.' && !fracao) {
+                fracao = true;
+            } else if (b == 'e' || b == 'E' || b == '+' || b == '-') {
+                simples = false;
+            } else {
+                break;
+            }
+            posicao++;
+        }
+        if (digitos == 0) {
+            throw erro("número esperado");
+        }
+        if (!simples || digitos > 18 || escala > 18) {
+            return Double.parseDouble(new String(entrada, inicio, posicao - inicio, StandardCharsets.US_ASCII));
+        }
+        double valor = escala == 0 ? mantissa : mantissa / Math.pow(10, escala);
+        return negativo ? -valor : valor;
+    }
+
+    private void pularValor() {
+        pularEspacos();
+        if (posicao >= limite) {
+            throw erro("valor esperado");
+        }
+        byte b = entrada[posicao];
+        if (b == '"') {
+            posicao++;
+            fimDoTexto();
+        } else if (b == '{' || b == '[') {
+            int profundidade = 0;
+            do {
+                byte atual = entrada[posicao];
+                if (atual == '"') {
+                    posicao++;
+                    fimDoTexto();
+                    continue;
+                }
+                if (atual == '{' || atual == '[') {
+                    profundidade++;
+                } else if (atual == '}' || atual == ']') {
+                    profundidade--;
+                }
+                posicao++;
+            } while (profundidade > 0 && posicao < limite);
+            if (profundidade > 0) {
+                throw erro("objeto ou lista sem fechamento");
+            }
+        } else {
+            while (posicao < limite) {
+                byte atual = entrada[posicao];
+                if (atual == ',' || atual == '}' || atual == ']' || atual == ' '
+                        || atual == '\n' || atual == '\r' || atual == '\t') {
+                    break;
+                }
+                posicao++;
+            }
+        }
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+}
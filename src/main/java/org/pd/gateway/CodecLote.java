@@ -0,0 +1,265 @@
+package org.pd.gateway;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Várias leituras de um drone num único payload MQTT, publicado em {@code drones/<regiao>/lote}
+ * (o sufixo {@link #SUFIXO_TOPICO} marca o formato; {@code /dados} continua com uma leitura por
+ * mensagem no texto da região).
+ * <pre>
+ *   cabeçalho   1 byte: versão nos 4 bits baixos, {@link #FLAG_DELTA} e {@link #FLAG_COMPACTADO}
+ *   quantidade  varint
+ *   origem      varint zigzag, o id do drone
+ *   leituras    comprimidas com Deflate (sem cabeçalho zlib) se {@link #FLAG_COMPACTADO}; cada uma:
+ *     sequência   varint zigzag
+ *     timestamp   varint zigzag, ms desde {@link CodecBinario#EPOCA_BASE} (instante da leitura no drone)
+ *     grandezas   pressão, radiação, temperatura e umidade em centésimos, varint zigzag cada
+ * </pre>
+ * Com {@link #FLAG_DELTA} cada campo é a diferença para o da leitura anterior (a primeira parte de
+ * zero): sequências consecutivas custam 1 byte, e grandezas que variam pouco, 1 ou 2. A precisão é
+ * a dos formatos de texto, duas casas decimais. A região vem do tópico e o instante de chegada do
+ * lote é dado por quem decodifica, como nos payloads de uma leitura; cada leitura chega nele menos a
+ * distância, no relógio do drone, até a última do lote, que esperou menos.
+ * <p>
+ * Deflater e Inflater ficam na instância de cada thread ({@link #daThread()}); um {@link Escritor}
+ * por drone guarda só os bytes das leituras acumuladas.
+ */
+public final class CodecLote {
+    public static final String SUFIXO_TOPICO = "/lote";
+    public static final int VERSAO = 1;
+    public static final int FLAG_DELTA = 0x10;
+    public static final int FLAG_COMPACTADO = 0x20;
+    /** Leituras aceitas num lote; uma contagem maior é tratada como payload inválido. */
+    public static final int MAX_LEITURAS = 65536;
+    private static final int MASCARA_VERSAO = 0x0F;
+    // Seis varints de até 10 bytes por leitura.
+    private static final int MAX_BYTES_LEITURA = 60;
+
+    private static final ThreadLocal<CodecLote> POR_THREAD = ThreadLocal.withInitial(CodecLote::new);
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final Inflater inflater = new Inflater(true);
+    private byte[] area = new byte[1024];
+    private byte[] entrada;
+    private int posicao;
+    private int limite;
+
+    public static CodecLote daThread() {
+        return POR_THREAD.get();
+    }
+
+    /** Acumula as leituras de um drone até virar um lote. Não é thread-safe. */
+    public static final class Escritor {
+        private final boolean delta;
+        private final boolean compactar;
+        private byte[] corpo = new byte[256];
+        private int tamanho;
+        private int quantidade;
+        private long primeiraNanos;
+        private long sequenciaAnterior;
+        private long timestampAnterior;
+        private final long[] anteriores = new long[4];
+
+        public Escritor(boolean delta, boolean compactar) {
+            this.delta = delta;
+            this.compactar = compactar;
+        }
+
+        public void adicionar(long sequencia, long timestamp, double pressao, double radiacao,
+                              double temperatura, double umidade) {
+            if (quantidade == 0) {
+                primeiraNanos = System.nanoTime();
+            }
+            if (tamanho + MAX_BYTES_LEITURA > corpo.length) {
+                corpo = Arrays.copyOf(corpo, Math.max(corpo.length * 2, tamanho + MAX_BYTES_LEITURA));
+            }
+            long instante = timestamp - CodecBinario.EPOCA_BASE;
+            tamanho = escreverVarintZigzag(corpo, tamanho, delta ? sequencia - sequenciaAnterior : sequencia);
+            tamanho = escreverVarintZigzag(corpo, tamanho, delta ? instante - timestampAnterior : instante);
+            sequenciaAnterior = sequencia;
+            timestampAnterior = instante;
+            escreverGrandeza(0, pressao);
+            escreverGrandeza(1, radiacao);
+            escreverGrandeza(2, temperatura);
+            escreverGrandeza(3, umidade);
+            quantidade++;
+        }
+
+        public int getQuantidade() {
+            return quantidade;
+        }
+
+        /** Há quanto tempo a leitura mais antiga do lote está esperando. */
+        public long idadeMs() {
+            return quantidade == 0 ? 0 : (System.nanoTime() - primeiraNanos) / 1_000_000;
+        }
+
+        /** Payload com as leituras acumuladas; o escritor recomeça vazio. */
+        public byte[] fechar(long origem) {
+            byte[] payload = CodecLote.daThread().montar(origem, this);
+            tamanho = 0;
+            quantidade = 0;
+            sequenciaAnterior = 0;
+            timestampAnterior = 0;
+            Arrays.fill(anteriores, 0);
+            return payload;
+        }
+
+        private void escreverGrandeza(int indice, double valor) {
+            long centesimos = Math.round(valor * 100);
+            tamanho = escreverVarintZigzag(corpo, tamanho, delta ? centesimos - anteriores[indice] : centesimos);
+            anteriores[indice] = centesimos;
+        }
+    }
+
+    private byte[] montar(long origem, Escritor escritor) {
+        byte[] cabecalho = new byte[21];
+        cabecalho[0] = (byte) (VERSAO | (escritor.delta ? FLAG_DELTA : 0)
+                | (escritor.compactar ? FLAG_COMPACTADO : 0));
+        int p = escreverVarintZigzag(cabecalho, 1, escritor.quantidade);
+        p = escreverVarintZigzag(cabecalho, p, origem);
+
+        byte[] corpo = escritor.corpo;
+        int tamanhoCorpo = escritor.tamanho;
+        if (escritor.compactar) {
+            deflater.reset();
+            deflater.setInput(escritor.corpo, 0, escritor.tamanho);
+            deflater.finish();
+            int escritos = 0;
+            while (!deflater.finished()) {
+                if (escritos == area.length) {
+                    area = Arrays.copyOf(area, area.length * 2);
+                }
+                escritos += deflater.deflate(area, escritos, area.length - escritos);
+            }
+            corpo = area;
+            tamanhoCorpo = escritos;
+        }
+        byte[] payload = Arrays.copyOf(cabecalho, p + tamanhoCorpo);
+        System.arraycopy(corpo, 0, payload, p, tamanhoCorpo);
+        return payload;
+    }
+
+    /**
+     * Entrega a {@code destino} cada leitura do lote, com a {@code regiao} dada e como timestamp o de
+     * chegada do lote menos a distância entre o timestamp de origem dela e o da última leitura (nunca
+     * depois da chegada); retorna quantas foram. Nada é entregue se o lote for inválido.
+     *
+     * @throws IllegalArgumentException se o lote estiver truncado, corrompido ou for de outra versão
+     */
+    public int decodificar(String regiao, byte[] payload, long timestamp, Consumer<DadosClimaticos> destino) {
+        entrada = payload;
+        posicao = 0;
+        limite = payload.length;
+        int cabecalho = lerByte();
+        if ((cabecalho & MASCARA_VERSAO) != VERSAO) {
+            throw new IllegalArgumentException("Versão de lote não suportada: " + (cabecalho & MASCARA_VERSAO));
+        }
+        long quantidade = lerVarintZigzag();
+        long origem = lerVarintZigzag();
+        if (quantidade <= 0 || quantidade > MAX_LEITURAS || origem < 0) {
+            throw new IllegalArgumentException("Cabeçalho de lote inválido: quantidade=" + quantidade
+                    + " origem=" + origem);
+        }
+        if ((cabecalho & FLAG_COMPACTADO) != 0) {
+            descompactar((int) quantidade * MAX_BYTES_LEITURA);
+        }
+
+        // Valida o lote inteiro antes de entregar a primeira leitura.
+        boolean delta = (cabecalho & FLAG_DELTA) != 0;
+        int inicio = posicao;
+        long origemUltima = 0;
+        for (int passo = 0; passo < 2; passo++) {
+            posicao = inicio;
+            long sequencia = 0;
+            long instante = 0;
+            long pressao = 0;
+            long radiacao = 0;
+            long temperatura = 0;
+            long umidade = 0;
+            for (int i = 0; i < quantidade; i++) {
+                sequencia = delta ? sequencia + lerVarintZigzag() : lerVarintZigzag();
+                instante = delta ? instante + lerVarintZigzag() : lerVarintZigzag();
+                pressao = delta ? pressao + lerVarintZigzag() : lerVarintZigzag();
+                radiacao = delta ? radiacao + lerVarintZigzag() : lerVarintZigzag();
+                temperatura = delta ? temperatura + lerVarintZigzag() : lerVarintZigzag();
+                umidade = delta ? umidade + lerVarintZigzag() : lerVarintZigzag();
+                long timestampOrigem = CodecBinario.EPOCA_BASE + instante;
+                if (sequencia < 0 || timestampOrigem < 0) {
+                    throw new IllegalArgumentException("Leitura " + i + " do lote com rastreio inválido");
+                }
+                if (passo == 0) {
+                    origemUltima = timestampOrigem;
+                } else {
+                    long chegada = timestamp - Math.max(0, origemUltima - timestampOrigem);
+                    destino.accept(new DadosClimaticos(regiao, pressao / 100.0, radiacao / 100.0,
+                            temperatura / 100.0, umidade / 100.0, chegada, origem, sequencia, timestampOrigem));
+                }
+            }
+            if (posicao != limite) {
+                throw new IllegalArgumentException("Bytes sobrando no fim do lote: " + (limite - posicao));
+            }
+        }
+        return (int) quantidade;
+    }
+
+    /** Troca a entrada pelas leituras descomprimidas, com no máximo {@code maximo} bytes. */
+    private void descompactar(int maximo) {
+        inflater.reset();
+        inflater.setInput(entrada, posicao, limite - posicao);
+        int lidos = 0;
+        try {
+            while (!inflater.finished()) {
+                if (lidos == area.length) {
+                    if (area.length >= maximo) {
+                        throw new IllegalArgumentException("Lote descomprimido passa de " + maximo + " bytes");
+                    }
+                    area = Arrays.copyOf(area, Math.min(maximo, area.length * 2));
+                }
+                int n = inflater.inflate(area, lidos, area.length - lidos);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Lote comprimido truncado");
+                }
+                lidos += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Lote comprimido inválido: " + e.getMessage());
+        }
+        entrada = area;
+        posicao = 0;
+        limite = lidos;
+    }
+
+    private static int escreverVarintZigzag(byte[] destino, int p, long valor) {
+        long v = (valor << 1) ^ (valor >> 63);
+        while ((v & ~0x7FL) != 0) {
+            destino[p++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        destino[p++] = (byte) v;
+        return p;
+    }
+
+    private int lerByte() {
+        if (posicao >= limite) {
+            throw new IllegalArgumentException("Lote truncado na posição " + posicao);
+        }
+        return entrada[posicao++] & 0xFF;
+    }
+
+    private long lerVarintZigzag() {
+        long v = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = lerByte();
+            v |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IllegalArgumentException("Varint longo demais na posição " + posicao);
+    }
+}
@@ -0,0 +1,92 @@
+package org.pd.gateway;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A linha de {@link DadosClimaticos#toString()}, {@code [regiao | temperatura | umidade | pressão |
+ * radiação]}, em UTF-8 e sem {@code String.format}: é o que o Gateway republica em
+ * {@code gateway/dados_processados/<regiao>} a cada leitura. Os valores saem com duas casas e ponto
+ * decimal, qualquer que seja o locale. O buffer e os bytes de cada região são reaproveitados por thread
+ * ({@link #daThread()}).
+ */
+final class CodificadorResumo {
+    private static final ThreadLocal<CodificadorResumo> POR_THREAD = ThreadLocal.withInitial(CodificadorResumo::new);
+    private static final byte[] SEPARADOR = " | ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAO_NUMERO = "NaN".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INFINITO = "Infinity".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, byte[]> regioes = new HashMap<>();
+    private byte[] saida = new byte[96];
+    private int tamanho;
+
+    static CodificadorResumo daThread() {
+        return POR_THREAD.get();
+    }
+
+    byte[] codificar(DadosClimaticos dados) {
+        tamanho = 0;
+        escreverByte('[');
+        escrever(regioes.computeIfAbsent(dados.getRegiao(), r -> r.getBytes(StandardCharsets.UTF_8)));
+        escrever(SEPARADOR);
+        escreverDecimal(dados.getTemperatura());
+        escrever(SEPARADOR);
+        escreverDecimal(dados.getUmidade());
+        escrever(SEPARADOR);
+        escreverDecimal(dados.getPressao());
+        escrever(SEPARADOR);
+        escreverDecimal(dados.getRadiacao());
+        escreverByte(']');
+        return Arrays.copyOf(saida, tamanho);
+    }
+
+    private void garantirEspaco(int adicional) {
+        if (tamanho + adicional > saida.length) {
+            saida = Arrays.copyOf(saida, Math.max(saida.length * 2, tamanho + adicional));
+        }
+    }
+
+    private void escreverByte(int b) {
+        garantirEspaco(1);
+        saida[tamanho++] = (byte) b;
+    }
+
+    private void escrever(byte[] trecho) {
+        garantirEspaco(trecho.length);
+        System.arraycopy(trecho, 0, saida, tamanho, trecho.length);
+        tamanho += trecho.length;
+    }
+
+    private void escreverDecimal(double valor) {
+        if (Double.isNaN(valor)) {
+            escrever(NAO_NUMERO);
+            return;
+        }
+        if (valor < 0) {
+            escreverByte('-');
+            valor = -valor;
+        }
+        if (Double.isInfinite(valor)) {
+            escrever(INFINITO);
+            return;
+        }
+        long centesimos = Math.round(valor * 100);
+        long inteiro = centesimos / 100;
+        int digitos = 1;
+        for (long v = inteiro / 10; v > 0; v /= 10) {
+            digitos++;
+        }
+        garantirEspaco(digitos + 3);
+        for (int i = tamanho + digitos - 1; i >= tamanho; i--) {
+            saida[i] = (byte) ('0' + inteiro % 10);
+            inteiro /= 10;
+        }
+        tamanho += digitos;
+        int fracao = (int) (centesimos % 100);
+        saida[tamanho++] = '.';
+        saida[tamanho++] = (byte) ('0' + fracao / 10);
+        saida[tamanho++] = (byte) ('0' + fracao % 10);
+    }
+}
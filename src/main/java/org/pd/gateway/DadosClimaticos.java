@@ -1,7 +1,5 @@
 package org.pd.gateway;
 
-import java.util.Locale;
-
 public class DadosClimaticos {
     private final String regiao;
     private final double pressao;
@@ -9,14 +7,37 @@ public class DadosClimaticos {
     private final double temperatura;
     private final double umidade;
     private final long timestamp;
+    // Rastreio de ponta a ponta, informado pelo drone; -1 quando a leitura não o trouxe.
+    private final long origem;
+    private final long sequencia;
+    private final long timestampOrigem;
 
     public DadosClimaticos(String regiao, double pressao, double radiacao, double temperatura, double umidade) {
+        this(regiao, pressao, radiacao, temperatura, umidade, System.currentTimeMillis());
+    }
+
+    public DadosClimaticos(String regiao, double pressao, double radiacao, double temperatura, double umidade,
+                           long timestamp) {
+        this(regiao, pressao, radiacao, temperatura, umidade, timestamp, -1, -1, -1);
+    }
+
+    /**
+     * @param origem          id do drone que fez a leitura
+     * @param sequencia       número de sequência da leitura naquele drone
+     * @param timestampOrigem instante (ms) em que o drone publicou; {@code timestamp} continua sendo o
+     *                        instante de chegada ao Gateway, que ordena as séries
+     */
+    public DadosClimaticos(String regiao, double pressao, double radiacao, double temperatura, double umidade,
+                           long timestamp, long origem, long sequencia, long timestampOrigem) {
         this.regiao = regiao;
         this.pressao = pressao;
         this.radiacao = radiacao;
         this.temperatura = temperatura;
         this.umidade = umidade;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
+        this.origem = origem;
+        this.sequencia = sequencia;
+        this.timestampOrigem = timestampOrigem;
     }
 
     public String getRegiao() { return regiao; }
@@ -25,6 +46,13 @@ public class DadosClimaticos {
     public double getTemperatura() { return temperatura; }
     public double getUmidade() { return umidade; }
     public long getTimestamp() { return timestamp; }
+    public long getOrigem() { return origem; }
+    public long getSequencia() { return sequencia; }
+    public long getTimestampOrigem() { return timestampOrigem; }
+
+    public boolean temRastreio() {
+        return origem >= 0;
+    }
 
     @Override
     public String toString() {
@@ -33,8 +61,6 @@ public class DadosClimaticos {
     }
 
     public String toJson() {
-        return String.format(Locale.US,
-                "{\"regiao\":\"%s\", \"temperatura\":%.2f, \"umidade\":%.2f, \"pressao\":%.2f, \"radiacao\":%.2f, \"timestamp\":%d}",
-                this.regiao, this.temperatura, this.umidade, this.pressao, this.radiacao, this.timestamp);
+        return CodecJson.daThread().codificarTexto(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package org.pd.gateway;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Um {@link FiltroDuplicatas} por região. O id de um drone só aparece numa região, então filtros
+ * separados reconhecem as mesmas duplicatas que um único, e os trabalhadores de ingestão só disputam
+ * a trava quando processam a mesma região.
+ */
+public final class DuplicatasPorRegiao {
+    private final int janela;
+    private final int maxOrigens;
+    private final long capacidadeBloom;
+    private final Map<String, FiltroDuplicatas> filtros = new ConcurrentHashMap<>();
+
+    /** Os limites de origens e de chaves do Bloom são do total, divididos igualmente entre {@code regioes}. */
+    public DuplicatasPorRegiao(int janela, int maxOrigens, long capacidadeBloom, int regioes) {
+        int partes = Math.max(1, regioes);
+        this.janela = janela;
+        this.maxOrigens = Math.max(1, maxOrigens / partes);
+        this.capacidadeBloom = Math.max(1, capacidadeBloom / partes);
+    }
+
+    /** As mesmas propriedades de {@link FiltroDuplicatas#dePropriedades}, para o total das regiões. */
+    public static DuplicatasPorRegiao dePropriedades(String prefixo, int regioes) {
+        return new DuplicatasPorRegiao(Integer.getInteger(prefixo + ".janela", 1024),
+                Integer.getInteger(prefixo + ".origens", 16384),
+                Long.getLong(prefixo + ".bloom", 1 << 20), regioes);
+    }
+
+    /** Falso se a leitura já foi vista; leituras sem rastreio são sempre novas. */
+    public boolean registrar(DadosClimaticos dados) {
+        return !dados.temRastreio() || filtro(dados.getRegiao()).registrar(dados.getOrigem(), dados.getSequencia());
+    }
+
+    /** {@link FiltroDuplicatas#esquecer} no filtro da região da leitura. */
+    public void esquecer(DadosClimaticos dados) {
+        FiltroDuplicatas filtro = filtros.get(dados.getRegiao());
+        if (filtro != null) {
+            filtro.esquecer(dados.getOrigem(), dados.getSequencia());
+        }
+    }
+
+    public long getDuplicadas() {
+        long total = 0;
+        for (FiltroDuplicatas filtro : filtros.values()) {
+            total += filtro.getDuplicadas();
+        }
+        return total;
+    }
+
+    public int getOrigens() {
+        int total = 0;
+        for (FiltroDuplicatas filtro : filtros.values()) {
+            total += filtro.getOrigens();
+        }
+        return total;
+    }
+
+    private FiltroDuplicatas filtro(String regiao) {
+        FiltroDuplicatas filtro = filtros.get(regiao);
+        return filtro != null ? filtro
+                : filtros.computeIfAbsent(regiao, r -> new FiltroDuplicatas(janela, maxOrigens, capacidadeBloom));
+    }
+}
@@ -0,0 +1,80 @@
+package org.pd.gateway;
+
+/**
+ * Contagem, mínimo, máximo, média e variância de uma grandeza, atualizados a cada valor pelo
+ * algoritmo de Welford. Não é thread-safe; quem compartilha uma instância sincroniza por fora.
+ */
+public final class EstatisticaCorrente {
+    private long contagem;
+    private double media;
+    private double m2;
+    private double minimo = Double.POSITIVE_INFINITY;
+    private double maximo = Double.NEGATIVE_INFINITY;
+
+    public EstatisticaCorrente() {
+    }
+
+    public EstatisticaCorrente(long contagem, double media, double m2, double minimo, double maximo) {
+        this.contagem = contagem;
+        this.media = media;
+        this.m2 = m2;
+        this.minimo = minimo;
+        this.maximo = maximo;
+    }
+
+    public void adicionar(double valor) {
+        if (Double.isNaN(valor)) {
+            return;
+        }
+        contagem++;
+        double delta = valor - media;
+        media += delta / contagem;
+        m2 += delta * (valor - media);
+        if (valor < minimo) minimo = valor;
+        if (valor > maximo) maximo = valor;
+    }
+
+    /** Junta as estatísticas de outra série (fórmula paralela de Chan et al.). */
+    public void combinar(EstatisticaCorrente outra) {
+        if (outra.contagem == 0) {
+            return;
+        }
+        if (contagem == 0) {
+            copiarDe(outra);
+            return;
+        }
+        long total = contagem + outra.contagem;
+        double delta = outra.media - media;
+        media += delta * outra.contagem / total;
+        m2 += outra.m2 + delta * delta * contagem * outra.contagem / total;
+        contagem = total;
+        minimo = Math.min(minimo, outra.minimo);
+        maximo = Math.max(maximo, outra.maximo);
+    }
+
+    public EstatisticaCorrente copia() {
+        return new EstatisticaCorrente(contagem, media, m2, minimo, maximo);
+    }
+
+    private void copiarDe(EstatisticaCorrente outra) {
+        contagem = outra.contagem;
+        media = outra.media;
+        m2 = outra.m2;
+        minimo = outra.minimo;
+        maximo = outra.maximo;
+    }
+
+    public long getContagem() { return contagem; }
+    public double getMedia() { return contagem == 0 ? Double.NaN : media; }
+    public double getM2() { return m2; }
+    public double getMinimo() { return contagem == 0 ? Double.NaN : minimo; }
+    public double getMaximo() { return contagem == 0 ? Double.NaN : maximo; }
+
+    public double getVariancia() {
+        return contagem < 2 ? 0 : m2 / (contagem - 1);
+    }
+
+    public double getDesvioPadrao() {
+        return Math.sqrt(getVariancia());
+    }
+}
@@ -0,0 +1,248 @@
+package org.pd.gateway;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reconhece leituras repetidas pelo par (origem, sequência) do rastreio, com memória fixa.
+ * <p>
+ * Cada origem tem uma janela de bits das últimas {@code janela} sequências, indexada pelos bits
+ * baixos da sequência: uma sequência dentro da janela é testada e marcada num bit; uma maior
+ * que todas desliza a janela, e as sequências marcadas que saem por baixo vão para um filtro de
+ * Bloom. Sequências abaixo da janela só são consultadas no Bloom, que tem duas gerações: quando a
+ * atual recebe {@code capacidadeBloom} chaves ela vira a anterior e a mais antiga é zerada. Cada
+ * chave entra no Bloom uma vez, então o custo por leitura é constante amortizado.
+ * <p>
+ * As janelas ficam num LRU de {@code maxOrigens} origens. A origem que sai do LRU deixa no Bloom o
+ * que a janela tinha visto e numa tabela de endereçamento direto a maior sequência; se ela voltar,
+ * as sequências até essa são conferidas no Bloom. Um falso positivo do Bloom (por volta de 1% com
+ * os padrões, e só para leituras atrasadas mais de uma janela ou de origens que saíram do LRU) é
+ * contado como duplicata.
+ */
+public final class FiltroDuplicatas {
+    private static final int BITS_POR_CHAVE = 10;
+    private static final int FUNCOES_HASH = 7;
+
+    /** Sequências vistas de uma origem: a maior e um bit por sequência da janela abaixo dela. */
+    private static final class Janela {
+        final long[] bits;
+        long maior = -1;
+        // Até aqui a origem já passou pelo LRU antes; o que a janela não marcou pode estar no Bloom.
+        long limiteBloom = -1;
+
+        Janela(int palavras) {
+            this.bits = new long[palavras];
+        }
+    }
+
+    private final int janela;
+    private final Map<Long, Janela> origens;
+    private long[] bloomAtual;
+    private long[] bloomAnterior;
+    private final int mascaraBloom;
+    private final long capacidadeBloom;
+    private long chavesBloomAtual;
+    // Origens que saíram do LRU e a maior sequência de cada uma; colisões sobrescrevem.
+    private final long[] descartadaOrigem;
+    private final long[] descartadaMaior;
+    private long duplicadas;
+    private long origensDescartadas;
+
+    /**
+     * @param janela          sequências por origem guardadas em bits (arredondada para potência de dois,
+     *                        no mínimo 64)
+     * @param maxOrigens      origens com janela própria
+     * @param capacidadeBloom chaves por geração do Bloom
+     */
+    public FiltroDuplicatas(int janela, int maxOrigens, long capacidadeBloom) {
+        this.janela = Math.max(64, Integer.highestOneBit(Math.max(1, janela - 1)) << 1);
+        int limiteOrigens = Math.max(1, maxOrigens);
+        this.origens = new LinkedHashMap<Long, Janela>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Janela> maisAntiga) {
+                if (size() > limiteOrigens) {
+                    origensDescartadas++;
+                    esvaziarNoBloom(maisAntiga.getKey(), maisAntiga.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        int posicoes = Integer.highestOneBit(Math.max(1, limiteOrigens - 1)) << 1;
+        this.descartadaOrigem = new long[posicoes];
+        this.descartadaMaior = new long[posicoes];
+        Arrays.fill(descartadaOrigem, -1);
+        this.capacidadeBloom = Math.max(1, capacidadeBloom);
+        long bits = Long.highestOneBit(Math.max(64, this.capacidadeBloom * BITS_POR_CHAVE - 1)) << 1;
+        this.bloomAtual = new long[(int) Math.min(1 << 24, bits / 64)];
+        this.bloomAnterior = new long[bloomAtual.length];
+        this.mascaraBloom = bloomAtual.length * 64 - 1;
+    }
+
+    /** Lê {@code <prefixo>.janela}, {@code <prefixo>.origens} e {@code <prefixo>.bloom}. */
+    public static FiltroDuplicatas dePropriedades(String prefixo) {
+        return new FiltroDuplicatas(Integer.getInteger(prefixo + ".janela", 1024),
+                Integer.getInteger(prefixo + ".origens", 16384),
+                Long.getLong(prefixo + ".bloom", 1 << 20));
+    }
+
+    /** Falso se a leitura já foi vista; leituras sem rastreio são sempre novas. */
+    public boolean registrar(DadosClimaticos dados) {
+        return !dados.temRastreio() || registrar(dados.getOrigem(), dados.getSequencia());
+    }
+
+    /** Marca (origem, sequência) como vista; falso se já estava. */
+    public synchronized boolean registrar(long origem, long sequencia) {
+        Janela vistas = origens.computeIfAbsent(origem, this::novaJanela);
+        if (sequencia > vistas.maior) {
+            if (sequencia <= vistas.limiteBloom && noBloom(origem, sequencia)) {
+                duplicadas++;
+                return false;
+            }
+            deslizar(origem, vistas, sequencia);
+            marcar(vistas, sequencia);
+            return true;
+        }
+        if (sequencia > vistas.maior - janela) {
+            if (marcada(vistas, sequencia)
+                    || sequencia <= vistas.limiteBloom && noBloom(origem, sequencia)) {
+                duplicadas++;
+                return false;
+            }
+            marcar(vistas, sequencia);
+            return true;
+        }
+        if (noBloom(origem, sequencia)) {
+            duplicadas++;
+            return false;
+        }
+        adicionarAoBloom(origem, sequencia);
+        return true;
+    }
+
+    /**
+     * Desfaz {@link #registrar} de uma leitura que não chegou a ser guardada, para que a reentrega
+     * seja aceita. Só vale enquanto a sequência está na janela; abaixo dela o Bloom não esquece.
+     */
+    public synchronized void esquecer(long origem, long sequencia) {
+        Janela vistas = origens.get(origem);
+        if (vistas != null && sequencia <= vistas.maior && sequencia > vistas.maior - janela) {
+            vistas.bits[indice(sequencia) >>> 6] &= ~(1L << indice(sequencia));
+        }
+    }
+
+    public synchronized long getDuplicadas() {
+        return duplicadas;
+    }
+
+    public synchronized int getOrigens() {
+        return origens.size();
+    }
+
+    public synchronized long getOrigensDescartadas() {
+        return origensDescartadas;
+    }
+
+    /** Leva a janela até {@code nova}; os bits que saem por baixo vão para o Bloom. */
+    private void deslizar(long origem, Janela vistas, long nova) {
+        if (vistas.maior >= 0) {
+            long primeiraQueSai = Math.max(0, vistas.maior - janela + 1);
+            long ultimaQueSai = Math.min(vistas.maior, nova - janela);
+            for (long s = primeiraQueSai; s <= ultimaQueSai; s++) {
+                if (marcada(vistas, s)) {
+                    adicionarAoBloom(origem, s);
+                }
+            }
+        }
+        // Posições entre a maior anterior e a nova ainda guardam bits de uma volta passada.
+        long limpar = Math.min(janela, nova - vistas.maior);
+        for (long s = nova - limpar + 1; s <= nova; s++) {
+            vistas.bits[indice(s) >>> 6] &= ~(1L << indice(s));
+        }
+        vistas.maior = nova;
+    }
+
+    private Janela novaJanela(long origem) {
+        Janela vistas = new Janela(janela / 64);
+        int posicao = posicaoDescartada(origem);
+        if (descartadaOrigem[posicao] == origem) {
+            vistas.limiteBloom = descartadaMaior[posicao];
+            descartadaOrigem[posicao] = -1;
+        }
+        return vistas;
+    }
+
+    /** Uma origem que sai do LRU deixa no Bloom tudo o que a janela dela tinha visto. */
+    private void esvaziarNoBloom(long origem, Janela vistas) {
+        for (long s = Math.max(0, vistas.maior - janela + 1); s <= vistas.maior; s++) {
+            if (marcada(vistas, s)) {
+                adicionarAoBloom(origem, s);
+            }
+        }
+        int posicao = posicaoDescartada(origem);
+        descartadaOrigem[posicao] = origem;
+        descartadaMaior[posicao] = Math.max(vistas.maior, vistas.limiteBloom);
+    }
+
+    private int posicaoDescartada(long origem) {
+        return (int) misturar(origem, -1) & (descartadaOrigem.length - 1);
+    }
+
+    private int indice(long sequencia) {
+        return (int) (sequencia & (janela - 1));
+    }
+
+    private boolean marcada(Janela vistas, long sequencia) {
+        int i = indice(sequencia);
+        return (vistas.bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void marcar(Janela vistas, long sequencia) {
+        int i = indice(sequencia);
+        vistas.bits[i >>> 6] |= 1L << i;
+    }
+
+    private void adicionarAoBloom(long origem, long sequencia) {
+        if (chavesBloomAtual >= capacidadeBloom) {
+            long[] antigo = bloomAnterior;
+            Arrays.fill(antigo, 0);
+            bloomAnterior = bloomAtual;
+            bloomAtual = antigo;
+            chavesBloomAtual = 0;
+        }
+        long hash = misturar(origem, sequencia);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            int bit = (h1 + i * h2) & mascaraBloom;
+            bloomAtual[bit >>> 6] |= 1L << bit;
+        }
+        chavesBloomAtual++;
+    }
+
+    private boolean noBloom(long origem, long sequencia) {
+        long hash = misturar(origem, sequencia);
+        return contem(bloomAtual, hash) || contem(bloomAnterior, hash);
+    }
+
+    private boolean contem(long[] bloom, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            int bit = (h1 + i * h2) & mascaraBloom;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Finalizador do SplitMix64 sobre o par. */
+    private static long misturar(long origem, long sequencia) {
+        long z = origem * 0x9E3779B97F4A7C15L + sequencia;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
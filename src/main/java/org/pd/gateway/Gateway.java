@@ -1,209 +1,804 @@
 package org.pd.gateway;
 
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
-import org.eclipse.paho.client.mqttv3.*;
+import org.pd.metricas.HistogramaLatencia;
+import org.pd.metricas.RegistroMetricas;
+import org.pd.metricas.Registrador;
+import org.pd.transporte.TransporteAmqp;
+import org.pd.transporte.TransporteMqtt;
+import org.pd.transporte.Transportes;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Gateway {
     // --- Configuração ---
-    private static final String MQTT_BROKER = "tcp://localhost:1883";
-    private static final String RABBIT_HOST = "localhost";
     private static final String RABBIT_EXCHANGE_NAME = "gateway_dados_topic";
-    private static final int DASHBOARD_PORT = 8082;
+    // Com partição, cada instância soma o próprio índice; 0 escolhe uma porta livre.
+    private static final int HTTP_PORTA_BASE = Integer.getInteger("pd.gateway.http.porta", 8082);
+    private static final long AGREGADOS_INTERVALO_MS = Long.getLong("pd.gateway.agregados.intervaloMs", 1000);
+    // Agregados de outra instância sem atualização há mais que isso saem do dashboard global.
+    private static final long AGREGADOS_EXPIRACAO_MS = Long.getLong("pd.gateway.agregados.expiracaoMs",
+            3 * AGREGADOS_INTERVALO_MS);
+    private static final long ESPERA_PARAR_MS = 5000;
+    // "json" (padrão, legível por qualquer consumidor) ou "binario" (CodecBinario)
+    private static final String FORMATO_RABBIT = System.getProperty("pd.gateway.formato", "json");
+    private static final boolean PUBLICAR_BINARIO = "binario".equalsIgnoreCase(FORMATO_RABBIT);
+    private static final int RABBIT_CAPACIDADE_FILA = Integer.getInteger("pd.gateway.rabbit.fila", 8192);
+    private static final int RABBIT_TAMANHO_LOTE = Integer.getInteger("pd.gateway.rabbit.lote", 256);
+    private static final long RABBIT_LINGER_MS = Long.getLong("pd.gateway.rabbit.lingerMs", 5);
+    private static final int RABBIT_JANELA_CONFIRMACOES = Integer.getInteger("pd.gateway.rabbit.janela", 1024);
+    private static final PublicadorRabbit.PoliticaCheio RABBIT_POLITICA_CHEIO = PublicadorRabbit.PoliticaCheio
+            .valueOf(System.getProperty("pd.gateway.rabbit.politica", "BLOQUEAR").toUpperCase());
+    private static final int INGESTAO_TRABALHADORES = Integer.getInteger("pd.gateway.trabalhadores",
+            Runtime.getRuntime().availableProcessors());
+    private static final int INGESTAO_PROFUNDIDADE_FILA = Integer.getInteger("pd.gateway.fila.profundidade", 4096);
+    private static final boolean INGESTAO_THREADS_VIRTUAIS = Boolean.getBoolean("pd.gateway.threads.virtuais");
+    private static final PoliticaRetencao RETENCAO = PoliticaRetencao.dePropriedades("pd.gateway.retencao",
+            65536, 60L * 60 * 1000, 64L * 1024 * 1024);
+    private static final long INTERVALO_RETENCAO_MS = Long.getLong("pd.gateway.retencao.intervaloMs", 1000);
+    // Cabeçalho, referência da região, quatro double, um long e a posição no buffer.
+    private static final int BYTES_POR_LEITURA = 64;
+    private static final String[] REGIOES = {"norte", "sul", "leste", "oeste"};
+    private static final String REGIAO_OUTRA = "outra";
+    private static final String HTTP_EXECUTOR = System.getProperty("pd.gateway.http.executor", "pool").toLowerCase();
+    private static final int HTTP_THREADS = Integer.getInteger("pd.gateway.http.threads", 4);
+    private static final String TEXTO = "text/plain; charset=utf-8";
+    private static final int STREAM_BUFFER = Integer.getInteger("pd.gateway.stream.buffer", 1024);
+    private static final int STREAM_MAX_CLIENTES = Integer.getInteger("pd.gateway.stream.maxClientes", 256);
 
     // --- Clientes e Canais ---
-    private MqttClient clienteMqttEntrada;
-    private MqttClient clienteMqttSaida;
-    private Channel rabbitChannel;
+    private final TransporteMqtt transporteMqtt;
+    private final TransporteAmqp transporteAmqp;
+    private final ParticaoGateway particao;
+    private TransporteMqtt.Cliente clienteMqttEntrada;
+    private TransporteMqtt.Cliente clienteMqttSaida;
+    private PublicadorRabbit publicadorRabbit;
+    private final PipelineIngestao pipeline = new PipelineIngestao(INGESTAO_TRABALHADORES,
+            INGESTAO_PROFUNDIDADE_FILA, INGESTAO_THREADS_VIRTUAIS, this::processarMensagem);
+
+    // --- Parsing ---
+    private final RegistroParsers parsers = RegistroParsers.comFormatosPadrao();
+    private static final ThreadLocal<List<DadosClimaticos>> LEITURAS_LOTE = ThreadLocal.withInitial(ArrayList::new);
+    // Drones com sessão persistente e reconexão automática podem reenviar leituras já entregues.
+    private final DuplicatasPorRegiao duplicatas =
+            DuplicatasPorRegiao.dePropriedades("pd.gateway.dedup", REGIOES.length);
+
+    // --- Latência por trecho ---
+    // Drone->gateway compara relógios de máquinas diferentes; só é exato com os relógios sincronizados.
+    private final HistogramaLatencia latenciaDroneGateway = new HistogramaLatencia("drone->gateway");
+    private final HistogramaLatencia latenciaParse = new HistogramaLatencia("parse");
+
+    // --- Console: uma linha por mensagem só no nível RASTREIO e amostrada; avisos repetitivos amostrados ---
+    private static final Registrador LOG = new Registrador();
+    private static final Registrador AVISO_FILA_INGESTAO = new Registrador();
+    private static final Registrador AVISO_FILA_RABBIT = new Registrador();
+    private static final Registrador AVISO_PARSE = new Registrador();
+    private static final Registrador AVISO_MQTT = new Registrador();
+    // Usados só pela thread de resumo.
+    private long resumoRecebidas;
+    private long resumoFalhas;
+    private long resumoInstanteNanos = System.nanoTime();
+
+    // --- Métricas (/metrics) ---
+    // Com partição, cada série leva o rótulo instancia: várias instâncias no mesmo processo (a
+    // bancada) não somam nos mesmos contadores, e as séries lidas de funções não ficam só com a primeira.
+    private final RegistroMetricas metricas = RegistroMetricas.padrao();
+    private final String[] rotuloInstancia;
+    private final RegistroMetricas.FamiliaContadores recebidas;
+    private final RegistroMetricas.FamiliaContadores enviadas;
+    private final RegistroMetricas.Contador lotesRecebidos;
+    private final RegistroMetricas.FamiliaContadores falhasParse;
+    private final RegistroMetricas.Contador errosMqtt;
+    private final RegistroMetricas.Contador conexoesPerdidasMqtt;
+    private final RegistroMetricas.Contador reconexoesMqtt;
+    private final RegistroMetricas.Contador reconexoesRabbit;
 
     // --- Armazenamento em Memória para Dashboard ---
-    private final Map<String, List<DadosClimaticos>> dadosEmMemoria = new ConcurrentHashMap<>();
+    private final Map<String, BufferCircular<DadosClimaticos>> dadosEmMemoria = new ConcurrentHashMap<>();
+    private final AgregadorDashboard agregador = new AgregadorDashboard();
+    private final AgregadorJanelas janelas = new AgregadorJanelas();
+    private final TransmissorEventos transmissor = new TransmissorEventos(STREAM_BUFFER, STREAM_MAX_CLIENTES,
+            INGESTAO_THREADS_VIRTUAIS);
+    private final RespostaHttp.Versionada dashboardTexto = new RespostaHttp.Versionada("dashboard", TEXTO);
+    private final RespostaHttp.Versionada dashboardJson = new RespostaHttp.Versionada("dashboard-json",
+            CodecJson.CONTENT_TYPE);
+    private final ScheduledExecutorService retencao = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gateway-retencao");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // --- Partição entre instâncias ---
+    // Últimos agregados publicados por cada uma das outras instâncias, pelo id.
+    private final Map<String, AgregadosParciais> agregadosRemotos = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService publicacaoAgregados = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gateway-agregados");
+        t.setDaemon(true);
+        return t;
+    });
+    private HttpServer servidorHttp;
+    private volatile int portaHttp;
 
     public Gateway() {
-        dadosEmMemoria.put("norte", new ArrayList<>());
-        dadosEmMemoria.put("sul", new ArrayList<>());
-        dadosEmMemoria.put("leste", new ArrayList<>());
-        dadosEmMemoria.put("oeste", new ArrayList<>());
+        this(Transportes.mqtt(), Transportes.amqp());
+    }
+
+    /** Com transportes em memória, Gateway, drones e base de dados rodam na mesma JVM. */
+    public Gateway(TransporteMqtt transporteMqtt, TransporteAmqp transporteAmqp) {
+        this(transporteMqtt, transporteAmqp, ParticaoGateway.dePropriedades("pd.gateway"));
+    }
+
+    /** Uma de várias instâncias dividindo os drones, conforme {@code particao}. */
+    public Gateway(TransporteMqtt transporteMqtt, TransporteAmqp transporteAmqp, ParticaoGateway particao) {
+        this.transporteMqtt = transporteMqtt;
+        this.transporteAmqp = transporteAmqp;
+        this.particao = particao;
+        this.rotuloInstancia = particao.isParticionado() ? new String[]{"instancia", particao.getId()} : new String[0];
+        this.recebidas = metricas.contadores("pd_gateway_mensagens_recebidas_total",
+                "Leituras recebidas dos drones (cada leitura de um lote conta).", "regiao", rotuloInstancia);
+        this.enviadas = metricas.contadores("pd_gateway_mensagens_enviadas_total",
+                "Leituras processadas e entregues para publicação.", "regiao", rotuloInstancia);
+        this.lotesRecebidos = metricas.contador("pd_gateway_lotes_recebidos_total",
+                "Mensagens com várias leituras de um drone (drones/<regiao>/lote).", rotulos());
+        this.falhasParse = metricas.contadores("pd_gateway_falhas_parse_total",
+                "Payloads que não puderam ser interpretados.", "regiao", rotuloInstancia);
+        this.errosMqtt = metricas.contador("pd_gateway_erros_publicacao_total", "Falhas ao publicar.",
+                rotulos("destino", "mqtt"));
+        this.conexoesPerdidasMqtt = metricas.contador("pd_conexoes_perdidas_total",
+                "Conexões com o broker perdidas.", rotulos("broker", "mqtt"));
+        this.reconexoesMqtt = metricas.contador("pd_reconexoes_total", "Reconexões automáticas com o broker.",
+                rotulos("broker", "mqtt"));
+        this.reconexoesRabbit = metricas.contador("pd_reconexoes_total", "Reconexões automáticas com o broker.",
+                rotulos("broker", "rabbitmq"));
+        for (String regiao : REGIOES) {
+            dadosEmMemoria.put(regiao, criarBuffer());
+            agregador.regiao(regiao);
+        }
+    }
+
+    /**
+     * O limite de memória é dividido igualmente entre as regiões conhecidas. Sem limite de
+     * quantidade nem de bytes a capacidade é só um teto: o buffer aloca os blocos conforme enche.
+     */
+    private static BufferCircular<DadosClimaticos> criarBuffer() {
+        long capacidade = RETENCAO.limitaCapacidade() ? RETENCAO.getCapacidadePorRegiao() : Integer.MAX_VALUE / 4;
+        if (RETENCAO.limitaBytes()) {
+            capacidade = Math.min(capacidade, RETENCAO.getMaxBytes() / REGIOES.length / BYTES_POR_LEITURA);
+        }
+        return new BufferCircular<>((int) Math.max(2, Math.min(capacidade, 1 << 30)));
     }
 
     public void iniciar() throws Exception {
+        registrarMetricas();
+        pipeline.iniciar();
+        iniciarRetencao();
         conectarMqttEntrada();
         conectarMqttSaida();
         conectarRabbitMQ();
         iniciarHttpServer(); // Nova funcionalidade
+        iniciarPublicacaoAgregados();
+        Registrador.resumoPeriodico(this::imprimirResumo);
         System.out.println("\n✅ Gateway em operação. Aguardando e re-publicando dados...");
     }
 
-    private void conectarRabbitMQ() throws IOException, TimeoutException {
-        ConnectionFactory factory = new ConnectionFactory();
-        factory.setHost(RABBIT_HOST);
-        Connection rabbitConnection = factory.newConnection();
-        this.rabbitChannel = rabbitConnection.createChannel();
-        this.rabbitChannel.exchangeDeclare(RABBIT_EXCHANGE_NAME, "topic");
-        System.out.println("🔗 Gateway conectado ao RabbitMQ.");
+    /** Medidores e contadores lidos de objetos que já mantêm os valores, mais os da JVM. */
+    private void registrarMetricas() {
+        metricas.registrarJvm();
+        metricas.medidor("pd_gateway_fila_ingestao", "Mensagens aguardando nas filas de ingestão.",
+                () -> pipeline.getEspera().getProfundidade(), rotulos());
+        metricas.contadorDerivado("pd_gateway_descartadas_total", "Mensagens descartadas.",
+                pipeline::getDescartadas, rotulos("etapa", "ingestao"));
+        metricas.contadorDerivado("pd_gateway_descartadas_total", "Mensagens descartadas.",
+                () -> publicadorRabbit == null ? 0 : publicadorRabbit.getDescartadas(), rotulos("etapa", "rabbit"));
+        metricas.contadorDerivado("pd_gateway_erros_publicacao_total", "Falhas ao publicar.",
+                () -> publicadorRabbit == null ? 0 : publicadorRabbit.getErros(), rotulos("destino", "rabbitmq"));
+        metricas.contadorDerivado("pd_gateway_rejeitadas_rabbit_total", "Publicações rejeitadas pelo broker (nack).",
+                () -> publicadorRabbit == null ? 0 : publicadorRabbit.getRejeitadas(), rotulos());
+        metricas.medidor("pd_gateway_fila_rabbit", "Leituras aguardando publicação no RabbitMQ.",
+                () -> publicadorRabbit == null ? 0 : publicadorRabbit.getProfundidadeFila(), rotulos());
+        metricas.medidor("pd_gateway_pendentes_confirmacao", "Publicações aguardando confirmação do broker.",
+                () -> publicadorRabbit == null ? 0 : publicadorRabbit.getPendentesConfirmacao(), rotulos());
+        metricas.contadorDerivado("pd_gateway_duplicadas_total", "Leituras ignoradas por já terem sido recebidas.",
+                duplicatas::getDuplicadas, rotulos());
+        metricas.medidor("pd_gateway_clientes_stream", "Clientes conectados em /stream.", transmissor::getClientes,
+                rotulos());
+        metricas.histograma("pd_gateway_latencia_segundos", "Latência por trecho.", latenciaDroneGateway,
+                rotulos("trecho", "drone_gateway"));
+        metricas.histograma("pd_gateway_latencia_segundos", "Latência por trecho.", latenciaParse,
+                rotulos("trecho", "parse"));
+    }
+
+    /** Os pares de rótulos dados, mais o da instância com partição. */
+    private String[] rotulos(String... pares) {
+        String[] todos = Arrays.copyOf(pares, pares.length + rotuloInstancia.length);
+        System.arraycopy(rotuloInstancia, 0, todos, pares.length, rotuloInstancia.length);
+        return todos;
+    }
+
+    private void iniciarRetencao() {
+        if (RETENCAO.limitaIdade()) {
+            retencao.scheduleWithFixedDelay(() -> {
+                long limite = System.currentTimeMillis() - RETENCAO.getIdadeMaximaMs();
+                for (BufferCircular<DadosClimaticos> buffer : dadosEmMemoria.values()) {
+                    buffer.expirarAnteriores(limite, DadosClimaticos::getTimestamp);
+                }
+            }, INTERVALO_RETENCAO_MS, INTERVALO_RETENCAO_MS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("🧹 Retenção em memória: " + RETENCAO);
+    }
+
+    private void conectarRabbitMQ() throws IOException {
+        TransporteAmqp.Conexao rabbitConnection = transporteAmqp.conectar(reconexoesRabbit::incrementar);
+        TransporteAmqp.Canal rabbitChannel = rabbitConnection.criarCanal();
+        rabbitChannel.declararExchange(RABBIT_EXCHANGE_NAME, "topic", false);
+        this.publicadorRabbit = new PublicadorRabbit(rabbitChannel, RABBIT_EXCHANGE_NAME, PUBLICAR_BINARIO,
+                RABBIT_CAPACIDADE_FILA, RABBIT_TAMANHO_LOTE, RABBIT_LINGER_MS, RABBIT_JANELA_CONFIRMACOES,
+                RABBIT_POLITICA_CHEIO);
+        this.publicadorRabbit.iniciar();
+        metricas.histograma("pd_gateway_latencia_segundos", "Latência por trecho.",
+                publicadorRabbit.getLatenciaConfirmacao(), rotulos("trecho", "publicacao_confirmacao"));
+        System.out.println("🔗 Gateway conectado ao RabbitMQ em " + transporteAmqp + " (formato "
+                + (PUBLICAR_BINARIO ? "binario" : "json") + ").");
     }
 
-    private void conectarMqttEntrada() throws MqttException {
-        String idCliente = "gateway-consumidor-" + System.currentTimeMillis();
-        clienteMqttEntrada = new MqttClient(MQTT_BROKER, idCliente);
-        MqttConnectOptions opcoesConexao = new MqttConnectOptions();
-        opcoesConexao.setCleanSession(true);
+    private void conectarMqttEntrada() throws IOException {
+        String idCliente = "gateway-consumidor-" + particao.getId() + "-" + System.currentTimeMillis();
+        clienteMqttEntrada = transporteMqtt.conectar(idCliente, true, 0, new TransporteMqtt.Ouvinte() {
+            @Override
+            public void reconectado() {
+                reconexoesMqtt.incrementar();
+                // Sessão limpa: a assinatura precisa ser refeita, fora da thread de callback do cliente.
+                PipelineIngestao.criarThread("gateway-reassinar", false, () -> {
+                    try {
+                        assinarEntrada();
+                        System.out.println("📥 Gateway (entrada) reconectado e subscrito a " + filtrosEntrada());
+                    } catch (IOException e) {
+                        System.err.println("❌ Erro ao refazer a assinatura MQTT: " + e.getMessage());
+                    }
+                }).start();
+            }
 
-        clienteMqttEntrada.setCallback(new MqttCallback() {
             @Override
-            public void connectionLost(Throwable cause) {
+            public void conexaoPerdida(Throwable causa) {
+                conexoesPerdidasMqtt.incrementar();
                 System.err.println("❌ Conexão de entrada com MQTT perdida.");
             }
 
             @Override
-            public void messageArrived(String topico, MqttMessage mensagem) {
-                String payload = new String(mensagem.getPayload(), StandardCharsets.UTF_8);
-                String regiao = topico.split("/")[1];
-
-                System.out.println("📡 Gateway recebeu de [" + regiao + "]: " + payload);
-                DadosClimaticos dados = processarPayload(regiao, payload);
-
-                if (dados != null) {
-                    armazenarDados(dados);
-                    publicarViaMqtt(dados);
-                    publicarViaRabbitMQ(dados);
-                } else {
-                    System.err.println("  ❌ Falha no processamento dos dados de [" + regiao + "]");
+            public void mensagemRecebida(String topico, byte[] payload) {
+                if (topico.startsWith(AgregadosParciais.PREFIXO_TOPICO)) {
+                    receberAgregados(topico, payload);
+                    return;
+                }
+                if (!pipeline.submeter(topico, payload)) {
+                    AVISO_FILA_INGESTAO.avisoAmostrado(
+                            () -> "  ⚠️ Fila de ingestão cheia, mensagem de [" + topico + "] descartada.");
                 }
             }
-
-            @Override
-            public void deliveryComplete(IMqttDeliveryToken token) {}
         });
+        assinarEntrada();
+        System.out.println("📥 Gateway (entrada) conectado a " + transporteMqtt + " e subscrito a " + filtrosEntrada()
+                + " (" + particao + ")");
+    }
 
-        clienteMqttEntrada.connect(opcoesConexao);
-        clienteMqttEntrada.subscribe("drones/#", 0);
-        System.out.println("📥 Gateway (entrada) conectado e subscrito a drones/#");
+    private List<String> filtrosEntrada() {
+        return particao.filtros(REGIOES);
     }
 
-    private void conectarMqttSaida() throws MqttException {
-        String idCliente = "gateway-publicador-" + System.currentTimeMillis();
-        clienteMqttSaida = new MqttClient(MQTT_BROKER, idCliente);
-        MqttConnectOptions opcoesConexao = new MqttConnectOptions();
-        opcoesConexao.setCleanSession(true);
-        clienteMqttSaida.connect(opcoesConexao);
+    /** Os tópicos dos drones desta instância e, com partição, os agregados das outras. */
+    private void assinarEntrada() throws IOException {
+        for (String filtro : filtrosEntrada()) {
+            clienteMqttEntrada.assinar(filtro, 0);
+        }
+        if (particao.isParticionado()) {
+            clienteMqttEntrada.assinar(AgregadosParciais.PREFIXO_TOPICO + "+", 1);
+        }
+    }
+
+    private void conectarMqttSaida() throws IOException {
+        String idCliente = "gateway-publicador-" + particao.getId() + "-" + System.currentTimeMillis();
+        clienteMqttSaida = transporteMqtt.conectar(idCliente, false, 0, new TransporteMqtt.Ouvinte() {});
         System.out.println("📤 Gateway (saída) conectado.");
     }
 
-    private DadosClimaticos processarPayload(String regiao, String payload) {
-        String[] valores;
-        // **Este é o seu código de parsing original, que funcionava**
-        switch (regiao.toLowerCase()) {
-            case "norte":
-                valores = payload.split("-");
-                break;
-            case "sul":
-                valores = payload.replace("(", "").replace(")", "").split("; ");
-                break;
-            case "leste":
-                valores = payload.replace("{", "").replace("}", "").split(", ");
-                break;
-            case "oeste":
-                valores = payload.split("#");
-                break;
-            default:
-                return null;
+    /**
+     * Com partição, publica a cada {@code pd.gateway.agregados.intervaloMs} os agregados desta
+     * instância, retidos, para que uma instância que entra depois já receba os das outras.
+     */
+    private void iniciarPublicacaoAgregados() {
+        if (!particao.isParticionado()) {
+            return;
         }
+        publicacaoAgregados.scheduleAtFixedRate(this::publicarAgregados, 0, Math.max(1, AGREGADOS_INTERVALO_MS),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void publicarAgregados() {
+        if (clienteMqttSaida == null || !clienteMqttSaida.isConectado()) return;
         try {
-            double pressao = Double.parseDouble(valores[0].trim().replace(",", "."));
-            double radiacao = Double.parseDouble(valores[1].trim().replace(",", "."));
-            double temperatura = Double.parseDouble(valores[2].trim().replace(",", "."));
-            double umidade = Double.parseDouble(valores[3].trim().replace(",", "."));
-            return new DadosClimaticos(regiao, pressao, radiacao, temperatura, umidade);
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-            System.err.println("  ❌ Erro ao fazer parsing do payload: " + payload);
+            byte[] payload = new AgregadosParciais(particao.getId(), System.currentTimeMillis(),
+                    agregador.instantaneo()).codificar();
+            clienteMqttSaida.publicar(AgregadosParciais.PREFIXO_TOPICO + particao.getId(), payload, 1, true);
+        } catch (IOException e) {
+            errosMqtt.incrementar();
+            AVISO_MQTT.avisoAmostrado(() -> "  ❌ Erro ao publicar os agregados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chamado na thread do cliente MQTT: decodificar e guardar é barato e não passa pela ingestão.
+     * Um payload vazio é a instância do tópico saindo ({@link #parar()}) e apaga os agregados dela.
+     */
+    private void receberAgregados(String topico, byte[] payload) {
+        if (payload.length == 0) {
+            agregadosRemotos.remove(topico.substring(AgregadosParciais.PREFIXO_TOPICO.length()));
+            return;
+        }
+        try {
+            AgregadosParciais parciais = AgregadosParciais.decodificar(payload);
+            if (!parciais.getInstancia().equals(particao.getId())) {
+                agregadosRemotos.put(parciais.getInstancia(), parciais);
+            }
+        } catch (IllegalArgumentException e) {
+            AVISO_PARSE.avisoAmostrado(() -> "  ⚠️ Agregados de outra instância inválidos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Os agregados desta instância e os últimos recebidos de cada uma das outras. Os de uma instância
+     * sem atualização há mais de {@code pd.gateway.agregados.expiracaoMs} são descartados: ela caiu sem
+     * apagar os retidos, e o que o broker guardou dela não deve somar para sempre.
+     */
+    private List<AgregadosParciais> agregadosDeTodas() {
+        long agora = System.currentTimeMillis();
+        agregadosRemotos.values().removeIf(parciais -> agora - parciais.getInstante() > AGREGADOS_EXPIRACAO_MS);
+        List<AgregadosParciais> todas = new ArrayList<>();
+        todas.add(new AgregadosParciais(particao.getId(), agora, agregador.instantaneo()));
+        todas.addAll(agregadosRemotos.values());
+        return todas;
+    }
+
+    private void processarMensagem(String topico, byte[] payload, long recebidaNanos) {
+        String regiao = extrairRegiao(topico);
+        long inicioParse = System.nanoTime();
+        // Instante de chegada reconstruído a partir do nanoTime de recebimento, antes da fila de ingestão.
+        long recebidaMs = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(inicioParse - recebidaNanos);
+        if (topico.endsWith(CodecLote.SUFIXO_TOPICO)) {
+            processarLote(regiao, payload, inicioParse, recebidaMs);
+            return;
+        }
+        recebidas.com(rotuloRegiao(regiao)).incrementar();
+
+        LOG.rastrear(() -> "📡 Gateway recebeu de [" + regiao + "]: " + new String(payload, StandardCharsets.UTF_8));
+        DadosClimaticos dados = processarPayload(regiao, payload, recebidaMs);
+        latenciaParse.registrar(System.nanoTime() - inicioParse);
+        if (dados != null) {
+            entregar(dados, regiao, recebidaMs);
+        } else {
+            falhasParse.com(rotuloRegiao(regiao)).incrementar();
+        }
+    }
+
+    /** Um lote do drone ({@link CodecLote}) segue leitura a leitura pelo mesmo caminho. */
+    private void processarLote(String regiao, byte[] payload, long inicioParse, long recebidaMs) {
+        lotesRecebidos.incrementar();
+        ParserPayload parser = parsers.buscar(regiao);
+        if (parser == null) {
+            falhasParse.com(rotuloRegiao(regiao)).incrementar();
+            AVISO_PARSE.avisoAmostrado(() -> "  ❌ Nenhum parser para a região [" + regiao + "]");
+            return;
+        }
+        List<DadosClimaticos> leituras = LEITURAS_LOTE.get();
+        leituras.clear();
+        try {
+            CodecLote.daThread().decodificar(parser.regiao(), payload, recebidaMs, leituras::add);
+        } catch (IllegalArgumentException e) {
+            falhasParse.com(rotuloRegiao(regiao)).incrementar();
+            AVISO_PARSE.avisoAmostrado(() -> "  ❌ Lote inválido de [" + regiao + "]: " + e.getMessage());
+            return;
+        }
+        latenciaParse.registrar(System.nanoTime() - inicioParse);
+        recebidas.com(rotuloRegiao(regiao)).somar(leituras.size());
+        LOG.rastrear(() -> "📦 Gateway recebeu lote de [" + regiao + "] com " + leituras.size() + " leituras ("
+                + payload.length + " bytes)");
+        for (DadosClimaticos dados : leituras) {
+            entregar(dados, regiao, recebidaMs);
+        }
+        leituras.clear();
+    }
+
+    private void entregar(DadosClimaticos dados, String regiao, long recebidaMs) {
+        if (!duplicatas.registrar(dados)) {
+            LOG.rastrear(() -> "♻️ Gateway ignorou duplicata de [" + regiao + "]: origem=" + dados.getOrigem()
+                    + " sequencia=" + dados.getSequencia());
+            return;
+        }
+        if (dados.temRastreio()) {
+            latenciaDroneGateway.registrar(TimeUnit.MILLISECONDS.toNanos(recebidaMs - dados.getTimestampOrigem()));
+        }
+        armazenarDados(dados);
+        transmissor.publicar(dados);
+        publicarViaMqtt(dados);
+        publicarViaRabbitMQ(dados);
+        enviadas.com(rotuloRegiao(dados.getRegiao())).incrementar();
+    }
+
+    public void registrarParser(ParserPayload parser) {
+        parsers.registrar(parser);
+    }
+
+    /** Rótulo das métricas por região: um tópico com região desconhecida não cria uma série nova. */
+    private static String rotuloRegiao(String regiao) {
+        for (String conhecida : REGIOES) {
+            if (conhecida.equals(regiao)) {
+                return conhecida;
+            }
+        }
+        return REGIAO_OUTRA;
+    }
+
+    private static String extrairRegiao(String topico) {
+        int inicio = topico.indexOf('/') + 1;
+        int fim = topico.indexOf('/', inicio);
+        return topico.substring(inicio, fim < 0 ? topico.length() : fim);
+    }
+
+    /** @param recebidaMs instante de chegada, medido antes da fila de ingestão como nos lotes */
+    private DadosClimaticos processarPayload(String regiao, byte[] payload, long recebidaMs) {
+        ParserPayload parser = parsers.buscar(regiao);
+        if (parser == null) {
+            AVISO_PARSE.avisoAmostrado(() -> "  ❌ Nenhum parser para a região [" + regiao + "]");
             return null;
         }
+        DadosClimaticos dados = InterpretadorPayload.interpretar(parser, payload, recebidaMs);
+        if (dados == null) {
+            AVISO_PARSE.avisoAmostrado(() -> "  ❌ Erro ao fazer parsing do payload de [" + regiao + "]: "
+                    + new String(payload, StandardCharsets.UTF_8));
+        }
+        return dados;
     }
     
     private void armazenarDados(DadosClimaticos dados) {
-        synchronized (dadosEmMemoria.get(dados.getRegiao())) {
-            dadosEmMemoria.get(dados.getRegiao()).add(dados);
-        }
+        dadosEmMemoria.computeIfAbsent(dados.getRegiao(), r -> criarBuffer()).anexar(dados);
+        agregador.registrar(dados);
+        janelas.registrar(dados);
+    }
+
+    /** Leituras recentes da região ainda retidas em memória, da mais antiga para a mais nova. */
+    public List<DadosClimaticos> listarRecentes(String regiao) {
+        BufferCircular<DadosClimaticos> buffer = dadosEmMemoria.get(regiao.toLowerCase());
+        return buffer != null ? buffer.listar() : new ArrayList<>();
     }
 
     private void publicarViaMqtt(DadosClimaticos dados) {
-        if (clienteMqttSaida == null || !clienteMqttSaida.isConnected()) return;
+        if (clienteMqttSaida == null || !clienteMqttSaida.isConectado()) return;
         try {
             String topicoSaida = "gateway/dados_processados/" + dados.getRegiao();
-            clienteMqttSaida.publish(topicoSaida, dados.toString().getBytes(), 0, false);
-        } catch (MqttException e) {
-            System.err.println("  ❌ Erro ao publicar via MQTT: " + e.getMessage());
+            clienteMqttSaida.publicar(topicoSaida, CodificadorResumo.daThread().codificar(dados), 0);
+        } catch (IOException e) {
+            errosMqtt.incrementar();
+            AVISO_MQTT.avisoAmostrado(() -> "  ❌ Erro ao publicar via MQTT: " + e.getMessage());
         }
     }
 
     private void publicarViaRabbitMQ(DadosClimaticos dados) {
-        if (rabbitChannel == null || !rabbitChannel.isOpen()) return;
-        try {
-            String routingKey = "dados." + dados.getRegiao(); // Routing key mais específica
-            rabbitChannel.basicPublish(RABBIT_EXCHANGE_NAME, routingKey, null, dados.toJson().getBytes("UTF-8"));
-        } catch (IOException e) {
-            System.err.println("  ❌ Erro ao publicar via RabbitMQ: " + e.getMessage());
+        if (publicadorRabbit == null) return;
+        if (!publicadorRabbit.enfileirar(dados)) {
+            AVISO_FILA_RABBIT.avisoAmostrado(() -> "  ⚠️ Fila de publicação RabbitMQ cheia, leitura descartada.");
         }
     }
 
+    private interface TratadorHttp {
+        void tratar(HttpExchange exchange, Map<String, String> parametros) throws IOException;
+    }
+
     private void iniciarHttpServer() throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(DASHBOARD_PORT), 0);
-        server.createContext("/dashboard", (exchange) -> {
-            if ("GET".equals(exchange.getRequestMethod())) {
-                String response = gerarRelatorioDashboard();
-                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(response.getBytes(StandardCharsets.UTF_8));
-                }
+        HttpServer server = HttpServer.create(new InetSocketAddress(
+                HTTP_PORTA_BASE == 0 ? 0 : HTTP_PORTA_BASE + particao.getIndice()), 0);
+        registrarEndpoint(server, "/dashboard", (exchange, parametros) -> {
+            // Versão lida antes de gerar: o corpo guardado nunca é mais antigo que o ETag.
+            long versao = agregador.getVersao();
+            if (RespostaHttp.querJson(exchange, parametros)) {
+                dashboardJson.enviar(exchange, versao, () -> gerarDashboardJson().getBytes(StandardCharsets.UTF_8));
             } else {
+                dashboardTexto.enviar(exchange, versao,
+                        () -> gerarRelatorioDashboard().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        // Com partição, /dashboard mostra só esta instância e /dashboard/global junta todas.
+        registrarEndpoint(server, "/dashboard/global", (exchange, parametros) -> {
+            boolean json = RespostaHttp.querJson(exchange, parametros);
+            String corpo = json ? gerarDashboardGlobalJson() : gerarRelatorioDashboardGlobal();
+            RespostaHttp.enviar(exchange, 200, json ? CodecJson.CONTENT_TYPE : TEXTO,
+                    corpo.getBytes(StandardCharsets.UTF_8));
+        });
+        registrarEndpoint(server, "/pipeline", (exchange, parametros) -> RespostaHttp.enviar(exchange, 200,
+                TEXTO, gerarRelatorioPipeline().getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/metrics", metricas::responder);
+        registrarEndpoint(server, "/janelas", (exchange, parametros) -> {
+            boolean json = RespostaHttp.querJson(exchange, parametros);
+            RespostaHttp.enviar(exchange, 200, json ? CodecJson.CONTENT_TYPE : TEXTO,
+                    gerarRelatorioJanelas(parametros, json).getBytes(StandardCharsets.UTF_8));
+        });
+        // O fluxo continua aberto depois que o tratador retorna, então não passa por registrarEndpoint.
+        server.createContext("/stream", (exchange) -> {
+            if (!"GET".equals(exchange.getRequestMethod())) {
                 exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            Map<String, String> parametros;
+            try {
+                parametros = ParametrosHttp.ler(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                RespostaHttp.enviar(exchange, 400, TEXTO, (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                exchange.close();
+                return;
+            }
+            Set<String> regioes = new HashSet<>();
+            for (String regiao : parametros.getOrDefault("regiao", "").split(",")) {
+                if (!regiao.isBlank()) {
+                    regioes.add(regiao.trim().toLowerCase());
+                }
+            }
+            TransmissorEventos.Modo modo = "ultimo".equalsIgnoreCase(parametros.get("modo"))
+                    ? TransmissorEventos.Modo.ULTIMO : TransmissorEventos.Modo.FILA;
+            if (!transmissor.assinar(exchange, regioes, modo)) {
+                RespostaHttp.enviar(exchange, 503, TEXTO, "Limite de clientes do stream atingido\n"
+                        .getBytes(StandardCharsets.UTF_8));
+                exchange.close();
             }
         });
-        server.setExecutor(null);
+        server.setExecutor(criarExecutorHttp());
         server.start();
-        System.out.println("📈 Dashboard disponível em http://localhost:" + DASHBOARD_PORT + "/dashboard");
+        servidorHttp = server;
+        portaHttp = server.getAddress().getPort();
+        System.out.println("📈 Dashboard disponível em http://localhost:" + portaHttp + "/dashboard"
+                + " (executor HTTP: " + HTTP_EXECUTOR + ")");
+    }
+
+    /** Só GET; parâmetros inválidos viram 400 e a troca é sempre fechada, liberando a conexão. */
+    private static void registrarEndpoint(HttpServer server, String caminho, TratadorHttp tratador) {
+        server.createContext(caminho, (exchange) -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                try {
+                    tratador.tratar(exchange, ParametrosHttp.ler(exchange.getRequestURI().getRawQuery()));
+                } catch (IllegalArgumentException e) {
+                    RespostaHttp.enviar(exchange, 400, TEXTO, (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        });
+    }
+
+    /**
+     * "pool" (padrão): {@code pd.gateway.http.threads} threads fixas; "virtual": uma thread virtual
+     * por requisição (Java 21+); "despachante": tudo na thread do próprio HttpServer, como antes.
+     * Em qualquer caso as requisições não usam os trabalhadores da ingestão.
+     */
+    private static Executor criarExecutorHttp() {
+        switch (HTTP_EXECUTOR) {
+            case "despachante":
+                return null;
+            case "virtual":
+                if (PipelineIngestao.temThreadsVirtuais()) {
+                    return tarefa -> PipelineIngestao.criarThread("gateway-http", true, tarefa).start();
+                }
+                // No Java 17 seria uma thread de plataforma por requisição, sem limite.
+                System.err.println("⚠️ Executor HTTP virtual requer Java 21; usando o pool de "
+                        + Math.max(1, HTTP_THREADS) + " threads.");
+                // fall through
+            default:
+                AtomicInteger contador = new AtomicInteger();
+                return Executors.newFixedThreadPool(Math.max(1, HTTP_THREADS), r -> {
+                    Thread t = new Thread(r, "gateway-http-" + contador.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        }
+    }
+
+    /** Leituras recebidas por esta instância, inclusive as de lotes. */
+    public long getRecebidas() {
+        return recebidas.total();
+    }
+
+    /** Porta em que o servidor HTTP está ouvindo, depois de {@link #iniciar()}. */
+    public int getPortaHttp() {
+        return portaHttp;
     }
 
     private String gerarRelatorioDashboard() {
+        StringBuilder sb = new StringBuilder("--- Dashboard de Dados (Servido pelo Gateway Principal) ---\n\n");
+        return RelatorioDashboard.texto(sb, agregador.instantaneo());
+    }
+
+    /** O dashboard de todas as instâncias, com a idade dos agregados recebidos de cada uma. */
+    public String gerarRelatorioDashboardGlobal() {
+        List<AgregadosParciais> todas = agregadosDeTodas();
+        long agora = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder("--- Dashboard Global (").append(todas.size())
+                .append(todas.size() == 1 ? " instância" : " instâncias").append(" do Gateway) ---\n\n");
+        for (AgregadosParciais parciais : todas) {
+            long contagem = 0;
+            for (AgregadosRegiao.Instantaneo regiao : parciais.getRegioes()) {
+                contagem += regiao.getContagem();
+            }
+            sb.append(String.format("  %-12s %d dados, atualizado há %d ms\n", parciais.getInstancia(), contagem,
+                    Math.max(0, agora - parciais.getInstante())));
+        }
+        return RelatorioDashboard.texto(sb.append('\n'), AgregadosParciais.combinar(todas));
+    }
+
+    private String gerarDashboardJson() {
+        return RelatorioDashboard.json(new StringBuilder("{"), agregador.instantaneo());
+    }
+
+    public String gerarDashboardGlobalJson() {
+        List<AgregadosParciais> todas = agregadosDeTodas();
+        long agora = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder("{\"instancias\": [");
+        for (int i = 0; i < todas.size(); i++) {
+            AgregadosParciais parciais = todas.get(i);
+            sb.append(i == 0 ? "" : ", ").append("{\"id\": \"").append(parciais.getInstancia())
+                    .append("\", \"idadeMs\": ").append(Math.max(0, agora - parciais.getInstante())).append('}');
+        }
+        return RelatorioDashboard.json(sb.append("], "), AgregadosParciais.combinar(todas));
+    }
+
+    /**
+     * {@code /janelas?regiao=norte&grandeza=temperatura&resolucao=1m&ultimosMs=3600000}: série de
+     * janelas fixas da resolução pedida e, no fim, o agregado da janela deslizante inteira.
+     */
+    private String gerarRelatorioJanelas(Map<String, String> parametros, boolean json) {
+        String regiao = parametros.getOrDefault("regiao", "norte").toLowerCase();
+        Grandeza grandeza = Grandeza.porNome(parametros.getOrDefault("grandeza", "temperatura"));
+        AgregadorJanelas.Resolucao resolucao = AgregadorJanelas.Resolucao.porNome(
+                parametros.getOrDefault("resolucao", "1m"));
+        long ultimosMs = ParametrosHttp.lerLong(parametros, "ultimosMs", resolucao.getDuracaoMs() * 60);
+        long agora = System.currentTimeMillis();
+        List<AgregadorJanelas.PontoJanela> pontos = janelas.serie(regiao, grandeza, resolucao, agora - ultimosMs, agora);
+        AgregadorJanelas.PontoJanela total = janelas.ultimos(regiao, grandeza, ultimosMs, agora);
+
+        if (json) {
+            StringBuilder sb = new StringBuilder("{\"regiao\": \"").append(regiao).append("\", \"grandeza\": \"")
+                    .append(grandeza.getNome()).append("\", \"resolucao\": \"").append(resolucao.name().toLowerCase())
+                    .append("\", \"janelas\": [");
+            for (int i = 0; i < pontos.size(); i++) {
+                anexarPontoJson(sb.append(i == 0 ? "" : ", "), pontos.get(i));
+            }
+            anexarPontoJson(sb.append("], \"ultimos\": "), total);
+            return sb.append("}\n").toString();
+        }
+
         StringBuilder sb = new StringBuilder();
-        List<DadosClimaticos> todosOsDados = dadosEmMemoria.values().stream()
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-        long total = todosOsDados.size();
-
-        sb.append("--- Dashboard de Dados (Servido pelo Gateway Principal) ---\n\n");
-        sb.append("Total de dados coletados: ").append(total).append("\n\n");
-
-        if (total > 0) {
-            Map<String, Long> contagemPorRegiao = todosOsDados.stream()
-                .collect(Collectors.groupingBy(DadosClimaticos::getRegiao, Collectors.counting()));
-            
-            contagemPorRegiao.forEach((regiao, count) -> {
-                double percentual = (count * 100.0) / total;
-                sb.append(String.format("- %s: %.2f%% (%d dados)\n", regiao.toUpperCase(), percentual, count));
-            });
+        sb.append(String.format("--- Janelas de %s em %s (%s) ---\n\n", grandeza.getNome(), regiao.toUpperCase(),
+                resolucao.name().toLowerCase()));
+        for (AgregadorJanelas.PontoJanela ponto : pontos) {
+            sb.append(ponto).append("\n");
         }
+        sb.append(String.format("\nÚltimos %d ms: %d leituras | média %.2f | mín %.2f | máx %.2f\n", ultimosMs,
+                total.getContagem(), total.getMedia(), total.getMinimo(), total.getMaximo()));
         return sb.toString();
     }
 
+    private static void anexarPontoJson(StringBuilder sb, AgregadorJanelas.PontoJanela ponto) {
+        sb.append("{\"inicio\": ").append(ponto.getInicio()).append(", \"contagem\": ").append(ponto.getContagem())
+                .append(", \"media\": ").append(RelatorioDashboard.numeroJson(ponto.getMedia()))
+                .append(", \"minimo\": ").append(RelatorioDashboard.numeroJson(ponto.getMinimo()))
+                .append(", \"maximo\": ").append(RelatorioDashboard.numeroJson(ponto.getMaximo())).append('}');
+    }
+
+    /** Uma linha a cada {@code pd.log.resumoMs} no lugar da linha por mensagem. */
+    private void imprimirResumo() {
+        long agora = System.nanoTime();
+        long total = recebidas.total();
+        long falhas = falhasParse.total();
+        double segundos = (agora - resumoInstanteNanos) / 1e9;
+        System.out.printf("📊 Gateway: +%d recebidas (%.0f msg/s), +%d falhas de parse, fila ingestão=%d,"
+                        + " fila rabbit=%d, descartadas=%d | parse p99=%.1fµs%n",
+                total - resumoRecebidas, (total - resumoRecebidas) / segundos, falhas - resumoFalhas,
+                pipeline.getEspera().getProfundidade(),
+                publicadorRabbit == null ? 0 : publicadorRabbit.getProfundidadeFila(),
+                pipeline.getDescartadas() + (publicadorRabbit == null ? 0 : publicadorRabbit.getDescartadas()),
+                latenciaParse.percentilNanos(99) / 1000.0);
+        resumoRecebidas = total;
+        resumoFalhas = falhas;
+        resumoInstanteNanos = agora;
+    }
+
+    /** Filas, latências por trecho e contadores da publicação, como em {@code /pipeline}. */
+    public String gerarRelatorioPipeline() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- Pipeline do Gateway ---\n\n");
+        sb.append("Partição: ").append(particao).append(", filtros ").append(filtrosEntrada());
+        if (particao.isParticionado()) {
+            sb.append(", agregados de ").append(agregadosRemotos.size()).append(" outras instâncias");
+        }
+        sb.append("\n");
+        sb.append("Trabalhadores de ingestão: ").append(pipeline.getQuantidadeTrabalhadores()).append("\n");
+        sb.append(pipeline.getEspera()).append("\n");
+        sb.append(pipeline.getProcessamento()).append("\n");
+        sb.append("Descartadas na ingestão: ").append(pipeline.getDescartadas()).append("\n");
+        sb.append("Lotes recebidos: ").append(lotesRecebidos.valor()).append("\n");
+        sb.append("Duplicatas ignoradas: ").append(duplicatas.getDuplicadas()).append(" (")
+                .append(duplicatas.getOrigens()).append(" drones na janela)\n");
+        sb.append(latenciaDroneGateway).append("\n");
+        sb.append(latenciaParse).append("\n");
+        if (publicadorRabbit != null) {
+            sb.append(publicadorRabbit.getLatenciaConfirmacao()).append("\n");
+        }
+        sb.append(String.format("stream.sse           clientes=%d enviados=%d descartados=%d\n",
+                transmissor.getClientes(), transmissor.getEnviados(), transmissor.getDescartados()));
+        for (Map.Entry<String, BufferCircular<DadosClimaticos>> entrada : dadosEmMemoria.entrySet()) {
+            BufferCircular<DadosClimaticos> buffer = entrada.getValue();
+            sb.append(String.format("retencao.%-12s retidas=%d/%d sobrescritas=%d expiradas=%d\n", entrada.getKey(),
+                    buffer.tamanho(), buffer.capacidade(), buffer.getSobrescritos(), buffer.getExpirados()));
+        }
+        if (publicadorRabbit != null) {
+            sb.append(String.format("publicacao.rabbit    fila=%-6d pendentes=%-6d publicadas=%d confirmadas=%d"
+                            + " rejeitadas=%d descartadas=%d\n",
+                    publicadorRabbit.getProfundidadeFila(), publicadorRabbit.getPendentesConfirmacao(),
+                    publicadorRabbit.getPublicadas(), publicadorRabbit.getConfirmadas(),
+                    publicadorRabbit.getRejeitadas(), publicadorRabbit.getDescartadas()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Para de receber e publicar. Com partição, apaga antes os agregados retidos desta instância, para
+     * que as outras a tirem do dashboard global na hora.
+     */
+    public void parar() {
+        System.out.println("🛑 Encerrando Gateway...");
+        publicacaoAgregados.shutdownNow();
+        retencao.shutdownNow();
+        try {
+            if (particao.isParticionado() && clienteMqttSaida != null && clienteMqttSaida.isConectado()) {
+                clienteMqttSaida.publicar(AgregadosParciais.PREFIXO_TOPICO + particao.getId(), new byte[0], 1, true);
+            }
+            if (clienteMqttEntrada != null) {
+                clienteMqttEntrada.close();
+            }
+            pipeline.parar();
+            if (publicadorRabbit != null) {
+                publicadorRabbit.parar(ESPERA_PARAR_MS);
+            }
+            if (clienteMqttSaida != null) {
+                clienteMqttSaida.close();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Erro ao encerrar Gateway: " + e.getMessage());
+        }
+        if (servidorHttp != null) {
+            servidorHttp.stop(0);
+        }
+        System.out.println("✅ Gateway finalizado.");
+    }
+
     public static void main(String[] args) {
         try {
-            new Gateway().iniciar();
+            Gateway gateway = new Gateway();
+            gateway.iniciar();
+            Runtime.getRuntime().addShutdownHook(new Thread(gateway::parar));
         } catch (Exception e) {
             System.err.println("❌ Erro fatal ao iniciar o Gateway: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,41 @@
+package org.pd.gateway;
+
+/**
+ * As quatro grandezas medidas pelos drones, com acesso ao valor correspondente de uma leitura.
+ */
+public enum Grandeza {
+    PRESSAO("pressao"),
+    RADIACAO("radiacao"),
+    TEMPERATURA("temperatura"),
+    UMIDADE("umidade");
+
+    private final String nome;
+
+    Grandeza(String nome) {
+        this.nome = nome;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public double de(DadosClimaticos dados) {
+        switch (this) {
+            case PRESSAO: return dados.getPressao();
+            case RADIACAO: return dados.getRadiacao();
+            case TEMPERATURA: return dados.getTemperatura();
+            default: return dados.getUmidade();
+        }
+    }
+
+    /** Aceita o nome em qualquer caixa, com ou sem acento ("pressão", "radiação"). */
+    public static Grandeza porNome(String nome) {
+        String normalizado = nome.trim().toLowerCase().replace('ã', 'a').replace('ç', 'c');
+        for (Grandeza grandeza : values()) {
+            if (grandeza.nome.equals(normalizado)) {
+                return grandeza;
+            }
+        }
+        throw new IllegalArgumentException("Grandeza desconhecida: " + nome);
+    }
+}
@@ -0,0 +1,40 @@
+package org.pd.gateway;
+
+/**
+ * Uma leitura de drone a partir do payload MQTT: o formato da região, lido pelo {@link ParserPayload},
+ * seguido opcionalmente do rastreio {@code |<origem>|<sequencia>|<timestampOrigem>}. O leitor e o
+ * vetor de grandezas são reaproveitados por thread; só a {@link DadosClimaticos} é alocada.
+ */
+public final class InterpretadorPayload {
+    private static final ThreadLocal<LeitorBytes> LEITOR = ThreadLocal.withInitial(LeitorBytes::new);
+    private static final ThreadLocal<double[]> VALORES = ThreadLocal.withInitial(() -> new double[4]);
+    private static final byte SEPARADOR_RASTREIO = '|';
+
+    private InterpretadorPayload() {
+    }
+
+    /**
+     * @param timestamp instante de chegada registrado na leitura
+     * @return a leitura, ou null se o payload não estiver no formato do parser ou o rastreio for inválido
+     */
+    public static DadosClimaticos interpretar(ParserPayload parser, byte[] payload, long timestamp) {
+        LeitorBytes leitor = LEITOR.get().reiniciar(payload, 0, payload.length);
+        double[] valores = VALORES.get();
+        long origem = -1;
+        long sequencia = -1;
+        long timestampOrigem = -1;
+        boolean valido = parser.interpretar(leitor, valores);
+        if (valido && leitor.consumir(SEPARADOR_RASTREIO)) {
+            origem = leitor.lerInteiro();
+            sequencia = leitor.consumir(SEPARADOR_RASTREIO) ? leitor.lerInteiro() : -1;
+            timestampOrigem = leitor.consumir(SEPARADOR_RASTREIO) ? leitor.lerInteiro() : -1;
+            valido = origem >= 0 && sequencia >= 0 && timestampOrigem >= 0;
+        }
+        if (!valido || !leitor.consumirFim()) {
+            return null;
+        }
+        return new DadosClimaticos(parser.regiao(), valores[ParserPayload.PRESSAO], valores[ParserPayload.RADIACAO],
+                valores[ParserPayload.TEMPERATURA], valores[ParserPayload.UMIDADE], timestamp,
+                origem, sequencia, timestampOrigem);
+    }
+}
@@ -0,0 +1,135 @@
+package org.pd.gateway;
+
+/**
+ * Cursor sobre um trecho de {@code byte[]} usado pelos parsers de payload. Lê números decimais
+ * em ponto fixo direto dos bytes ASCII, aceitando ',' ou '.' como separador decimal, sem criar
+ * objetos. Cada thread deve usar a sua própria instância.
+ */
+public final class LeitorBytes {
+    private static final int MAX_DIGITOS = 18;
+    private static final double[] POTENCIAS_DE_DEZ = new double[MAX_DIGITOS + 1];
+
+    static {
+        POTENCIAS_DE_DEZ[0] = 1;
+        for (int i = 1; i < POTENCIAS_DE_DEZ.length; i++) {
+            POTENCIAS_DE_DEZ[i] = POTENCIAS_DE_DEZ[i - 1] * 10;
+        }
+    }
+
+    private byte[] dados;
+    private int posicao;
+    private int fim;
+
+    public LeitorBytes reiniciar(byte[] dados, int inicio, int fim) {
+        this.dados = dados;
+        this.posicao = inicio;
+        this.fim = fim;
+        return this;
+    }
+
+    public int posicao() { return posicao; }
+
+    public int fim() { return fim; }
+
+    public boolean temMais() { return posicao < fim; }
+
+    /** Byte na posição atual, ou -1 no fim do trecho. */
+    public int espiar() {
+        return posicao < fim ? dados[posicao] & 0xFF : -1;
+    }
+
+    public void pularEspacos() {
+        while (posicao < fim && (dados[posicao] == ' ' || dados[posicao] == '\t'
+                || dados[posicao] == '\r' || dados[posicao] == '\n')) {
+            posicao++;
+        }
+    }
+
+    /** Pula espaços e consome {@code esperado}, se for o próximo byte. */
+    public boolean consumir(byte esperado) {
+        pularEspacos();
+        if (posicao < fim && dados[posicao] == esperado) {
+            posicao++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Verdadeiro se só restam espaços até o fim do trecho. */
+    public boolean consumirFim() {
+        pularEspacos();
+        return posicao == fim;
+    }
+
+    /**
+     * Lê um decimal como {@code 1013,25} ou {@code -3.5}. Um ',' ou '.' só é tratado como separador
+     * decimal se vier seguido de dígito e ainda não houver parte fracionária, de modo que
+     * {@code "1,5, 2,5"} é lido como 1.5 e depois 2.5. Retorna {@code NaN} se não houver dígitos.
+     */
+    public double lerDecimal(boolean aceitarSinal) {
+        pularEspacos();
+        boolean negativo = false;
+        if (aceitarSinal && posicao < fim && (dados[posicao] == '-' || dados[posicao] == '+')) {
+            negativo = dados[posicao] == '-';
+            posicao++;
+        }
+
+        long mantissa = 0;
+        int digitos = 0;
+        int escala = 0;
+        int expoenteExtra = 0;
+        boolean fracao = false;
+        int inicio = posicao;
+        while (posicao < fim) {
+            byte b = dados[posicao];
+            if (b >= '0' && b <= '9') {
+                if (digitos < MAX_DIGITOS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        digitos++;
+                    }
+                    if (fracao) {
+                        escala++;
+                    }
+                } else if (!fracao) {
+                    expoenteExtra++;
+                }
+                posicao++;
+            } else if ((b == '.' || b == ',') && !fracao && posicao + 1 < fim
+                    && dados[posicao + 1] >= '0' && dados[posicao + 1] <= '9') {
+                fracao = true;
+                posicao++;
+            } else {
+                break;
+            }
+        }
+        if (posicao == inicio) {
+            return Double.NaN;
+        }
+
+        double valor = mantissa;
+        if (escala > 0) {
+            valor /= POTENCIAS_DE_DEZ[escala];
+        }
+        if (expoenteExtra > 0) {
+            valor *= Math.pow(10, expoenteExtra);
+        }
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Lê um inteiro decimal não negativo; retorna -1 se não houver dígitos ou se houver mais de
+     * {@value #MAX_DIGITOS}, que já poderiam estourar um long.
+     */
+    public long lerInteiro() {
+        pularEspacos();
+        long valor = 0;
+        int inicio = posicao;
+        while (posicao < fim && dados[posicao] >= '0' && dados[posicao] <= '9') {
+            valor = valor * 10 + (dados[posicao] - '0');
+            posicao++;
+        }
+        int digitos = posicao - inicio;
+        return digitos == 0 || digitos > MAX_DIGITOS ? -1 : valor;
+    }
+}
@@ -0,0 +1,52 @@
+package org.pd.gateway;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Contadores de um estágio do pipeline do Gateway: itens processados, profundidade da fila e
+ * latência média e máxima em nanossegundos.
+ */
+public class MetricasEstagio {
+    private final String nome;
+    private final IntSupplier profundidade;
+    private final LongAdder itens = new LongAdder();
+    private final LongAdder latenciaTotalNanos = new LongAdder();
+    private final LongAccumulator latenciaMaximaNanos = new LongAccumulator(Math::max, 0);
+
+    public MetricasEstagio(String nome, IntSupplier profundidade) {
+        this.nome = nome;
+        this.profundidade = profundidade;
+    }
+
+    public void registrar(long latenciaNanos) {
+        itens.increment();
+        latenciaTotalNanos.add(latenciaNanos);
+        latenciaMaximaNanos.accumulate(latenciaNanos);
+    }
+
+    public String getNome() { return nome; }
+    public int getProfundidade() { return profundidade.getAsInt(); }
+    public long getItens() { return itens.sum(); }
+
+    public double getLatenciaMediaMicros() {
+        long n = itens.sum();
+        return n == 0 ? 0 : latenciaTotalNanos.sum() / (n * 1000.0);
+    }
+
+    public double getLatenciaMaximaMicros() {
+        return latenciaMaximaNanos.get() / 1000.0;
+    }
+
+    /** Zera a latência máxima, para que ela reflita só o intervalo desde a última leitura. */
+    public long reiniciarMaximaNanos() {
+        return latenciaMaximaNanos.getThenReset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s fila=%-6d itens=%-10d lat.média=%.1fµs lat.máx=%.1fµs",
+                nome, getProfundidade(), getItens(), getLatenciaMediaMicros(), getLatenciaMaximaMicros());
+    }
+}
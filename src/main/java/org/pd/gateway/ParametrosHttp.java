@@ -0,0 +1,48 @@
+package org.pd.gateway;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Leitura dos parâmetros da query string dos endpoints HTTP ({@code a=1&b=2}); o último valor de um
+ * nome repetido prevalece.
+ */
+public final class ParametrosHttp {
+    private ParametrosHttp() {
+    }
+
+    /** @throws IllegalArgumentException com um escape {@code %} malformado */
+    public static Map<String, String> ler(String queryBruta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (queryBruta == null || queryBruta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : queryBruta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                try {
+                    parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                            URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Parâmetro mal codificado: " + par);
+                }
+            }
+        }
+        return parametros;
+    }
+
+    /** Valor numérico do parâmetro, ou {@code padrao} se ausente; lança IllegalArgumentException se inválido. */
+    public static long lerLong(Map<String, String> parametros, String nome, long padrao) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isEmpty()) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nome + " inválido: " + valor);
+        }
+    }
+}
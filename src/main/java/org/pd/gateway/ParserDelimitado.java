@@ -0,0 +1,51 @@
+package org.pd.gateway;
+
+/**
+ * Parser de passada única para os formatos de quatro valores com delimitadores fixos, como
+ * {@code a-b-c-d}, {@code (a; b; c; d)} e {@code {a, b, c, d}}.
+ */
+public final class ParserDelimitado implements ParserPayload {
+    private static final byte SEM_DELIMITADOR = 0;
+
+    private final String regiao;
+    private final byte abertura;
+    private final byte separador;
+    private final byte fechamento;
+    private final boolean aceitarSinal;
+
+    public ParserDelimitado(String regiao, char abertura, char separador, char fechamento) {
+        this.regiao = regiao;
+        this.abertura = (byte) abertura;
+        this.separador = (byte) separador;
+        this.fechamento = (byte) fechamento;
+        // Com '-' como separador não há como distinguir um sinal negativo.
+        this.aceitarSinal = separador != '-';
+    }
+
+    public ParserDelimitado(String regiao, char separador) {
+        this(regiao, (char) SEM_DELIMITADOR, separador, (char) SEM_DELIMITADOR);
+    }
+
+    @Override
+    public String regiao() {
+        return regiao;
+    }
+
+    @Override
+    public boolean interpretar(LeitorBytes leitor, double[] valores) {
+        if (abertura != SEM_DELIMITADOR && !leitor.consumir(abertura)) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (i > 0 && !leitor.consumir(separador)) {
+                return false;
+            }
+            double valor = leitor.lerDecimal(aceitarSinal);
+            if (Double.isNaN(valor)) {
+                return false;
+            }
+            valores[i] = valor;
+        }
+        return fechamento == SEM_DELIMITADOR || leitor.consumir(fechamento);
+    }
+}
@@ -0,0 +1,23 @@
+package org.pd.gateway;
+
+/**
+ * Interpreta o payload MQTT de um formato de drone. Implementações adicionais podem ser
+ * registradas em {@link RegistroParsers#registrar} ou declaradas em
+ * {@code META-INF/services/org.pd.gateway.ParserPayload}.
+ */
+public interface ParserPayload {
+    int PRESSAO = 0;
+    int RADIACAO = 1;
+    int TEMPERATURA = 2;
+    int UMIDADE = 3;
+
+    /** Região (segundo nível do tópico {@code drones/<regiao>/...}) atendida por este parser. */
+    String regiao();
+
+    /**
+     * Lê uma leitura a partir da posição atual de {@code leitor}, gravando as grandezas em
+     * {@code valores} nos índices {@link #PRESSAO}, {@link #RADIACAO}, {@link #TEMPERATURA} e
+     * {@link #UMIDADE}. Deve deixar o leitor logo após a leitura e não alocar objetos.
+     */
+    boolean interpretar(LeitorBytes leitor, double[] valores);
+}
@@ -0,0 +1,121 @@
+package org.pd.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Como várias instâncias do Gateway dividem os drones entre si.
+ * <ul>
+ *   <li>{@link Modo#NENHUMA}: uma instância só, assinando {@code drones/#}.</li>
+ *   <li>{@link Modo#COMPARTILHADA}: todas assinam {@code $share/<grupo>/drones/#} e o broker
+ *       distribui as mensagens entre elas; uma instância que cai tem a parte dela assumida pelas
+ *       outras.</li>
+ *   <li>{@link Modo#REGIAO}: cada instância assina só as suas regiões, {@code drones/<regiao>/#}.
+ *       Sem uma lista explícita, a região de posição {@code k} fica com a instância
+ *       {@code k % instancias}. Cada região tem um dono só, o que mantém a ordem das leituras de um
+ *       drone e o filtro de duplicatas do Gateway completo, mas a carga é a das regiões atribuídas.</li>
+ * </ul>
+ * Com partição, cada instância tem só parte dos agregados; o Gateway publica os seus e junta os das
+ * outras em {@code /dashboard/global}.
+ */
+public final class ParticaoGateway {
+    public enum Modo { NENHUMA, COMPARTILHADA, REGIAO }
+
+    private final Modo modo;
+    private final String grupo;
+    private final int indice;
+    private final int instancias;
+    private final List<String> regioes;
+    private final String id;
+
+    /**
+     * @param regioes regiões desta instância no modo {@link Modo#REGIAO}; vazia distribui as
+     *                conhecidas por posição
+     */
+    public ParticaoGateway(Modo modo, String grupo, int indice, int instancias, List<String> regioes, String id) {
+        if (instancias < 1 || indice < 0 || indice >= instancias) {
+            throw new IllegalArgumentException("Instância " + indice + " fora de 0.." + (instancias - 1));
+        }
+        this.modo = modo;
+        this.grupo = grupo;
+        this.indice = indice;
+        this.instancias = instancias;
+        this.regioes = List.copyOf(regioes);
+        this.id = id != null ? id : "gw-" + indice;
+    }
+
+    /** Uma instância só, como antes da partição. */
+    public static ParticaoGateway unica() {
+        return new ParticaoGateway(Modo.NENHUMA, "gateways", 0, 1, List.of(), null);
+    }
+
+    /**
+     * Lê {@code <prefixo>.particao} (nenhuma, compartilhada ou regiao), {@code <prefixo>.grupo},
+     * {@code <prefixo>.instancia}, {@code <prefixo>.instancias}, {@code <prefixo>.regioes} (separadas
+     * por vírgula) e {@code <prefixo>.id}.
+     *
+     * @throws IllegalArgumentException com partição, se não houver nem {@code <prefixo>.instancias}
+     *                                  maior que 1 nem {@code <prefixo>.id}: todas as instâncias ficariam
+     *                                  com o id {@code gw-0} e apagariam os agregados umas das outras
+     */
+    public static ParticaoGateway dePropriedades(String prefixo) {
+        List<String> regioes = new ArrayList<>();
+        for (String regiao : System.getProperty(prefixo + ".regioes", "").split(",")) {
+            if (!regiao.isBlank()) {
+                regioes.add(regiao.trim().toLowerCase());
+            }
+        }
+        Modo modo = Modo.valueOf(System.getProperty(prefixo + ".particao", "nenhuma").toUpperCase());
+        int instancias = Integer.getInteger(prefixo + ".instancias", 1);
+        String id = System.getProperty(prefixo + ".id");
+        if (modo != Modo.NENHUMA && instancias <= 1 && id == null) {
+            throw new IllegalArgumentException("Partição " + modo.name().toLowerCase() + " precisa de "
+                    + prefixo + ".instancias maior que 1 ou de um " + prefixo + ".id por instância");
+        }
+        return new ParticaoGateway(modo, System.getProperty(prefixo + ".grupo", "gateways"),
+                Integer.getInteger(prefixo + ".instancia", 0), instancias, regioes, id);
+    }
+
+    /** Filtros MQTT que esta instância assina, dadas as regiões conhecidas em ordem fixa. */
+    public List<String> filtros(String[] conhecidas) {
+        List<String> filtros = new ArrayList<>();
+        switch (modo) {
+            case COMPARTILHADA:
+                filtros.add("$share/" + grupo + "/drones/#");
+                break;
+            case REGIAO:
+                for (String regiao : regioesAtribuidas(conhecidas)) {
+                    filtros.add("drones/" + regiao + "/#");
+                }
+                break;
+            default:
+                filtros.add("drones/#");
+        }
+        return filtros;
+    }
+
+    public List<String> regioesAtribuidas(String[] conhecidas) {
+        if (!regioes.isEmpty()) {
+            return regioes;
+        }
+        List<String> atribuidas = new ArrayList<>();
+        for (int k = 0; k < conhecidas.length; k++) {
+            if (k % instancias == indice) {
+                atribuidas.add(conhecidas[k]);
+            }
+        }
+        return atribuidas;
+    }
+
+    public boolean isParticionado() { return modo != Modo.NENHUMA; }
+    public Modo getModo() { return modo; }
+    public int getIndice() { return indice; }
+    public int getInstancias() { return instancias; }
+    public String getId() { return id; }
+
+    @Override
+    public String toString() {
+        return modo == Modo.NENHUMA ? "instância única"
+                : String.format("%s, instância %s (%d de %d)", modo.name().toLowerCase(), id, indice + 1, instancias);
+    }
+}
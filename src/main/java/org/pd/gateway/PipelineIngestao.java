@@ -0,0 +1,159 @@
+package org.pd.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estágio de ingestão do Gateway, separado da thread de callback do Paho.
+ * <p>
+ * O callback só chama {@link #submeter}, que escolhe a fila do trabalhador pela região do tópico
+ * ({@code drones/<regiao>/...}). Todas as mensagens de uma região caem na mesma fila e são
+ * processadas em ordem; regiões diferentes avançam em paralelo. Com a fila do trabalhador cheia a
+ * mensagem é descartada e contada, em vez de travar a entrada de todos os drones.
+ */
+public class PipelineIngestao {
+    private static final boolean THREADS_VIRTUAIS = detectarThreadsVirtuais();
+
+    public interface Processador {
+        void processar(String topico, byte[] payload, long recebidaNanos);
+    }
+
+    private static final class Mensagem {
+        final String topico;
+        final byte[] payload;
+        final long recebidaNanos;
+
+        Mensagem(String topico, byte[] payload, long recebidaNanos) {
+            this.topico = topico;
+            this.payload = payload;
+            this.recebidaNanos = recebidaNanos;
+        }
+    }
+
+    private final List<BlockingQueue<Mensagem>> filas = new ArrayList<>();
+    private final List<Thread> trabalhadores = new ArrayList<>();
+    private final Processador processador;
+    private final MetricasEstagio espera;
+    private final MetricasEstagio processamento;
+    private final LongAdder descartadas = new LongAdder();
+    private volatile boolean ativo = true;
+
+    public PipelineIngestao(int quantidadeTrabalhadores, int capacidadePorFila, boolean threadsVirtuais,
+                            Processador processador) {
+        this.processador = processador;
+        int quantidade = Math.max(1, quantidadeTrabalhadores);
+        for (int i = 0; i < quantidade; i++) {
+            BlockingQueue<Mensagem> fila = new ArrayBlockingQueue<>(capacidadePorFila);
+            filas.add(fila);
+            trabalhadores.add(criarThread("gateway-ingestao-" + i, threadsVirtuais, () -> executar(fila)));
+        }
+        this.espera = new MetricasEstagio("ingestao.fila", this::profundidadeTotal);
+        this.processamento = new MetricasEstagio("ingestao.processamento", () -> 0);
+    }
+
+    public void iniciar() {
+        trabalhadores.forEach(Thread::start);
+    }
+
+    public boolean submeter(String topico, byte[] payload) {
+        Mensagem mensagem = new Mensagem(topico, payload, System.nanoTime());
+        if (filas.get(particao(topico)).offer(mensagem)) {
+            return true;
+        }
+        descartadas.increment();
+        return false;
+    }
+
+    public MetricasEstagio getEspera() { return espera; }
+    public MetricasEstagio getProcessamento() { return processamento; }
+    public long getDescartadas() { return descartadas.sum(); }
+    public int getQuantidadeTrabalhadores() { return filas.size(); }
+
+    private int profundidadeTotal() {
+        int total = 0;
+        for (BlockingQueue<Mensagem> fila : filas) {
+            total += fila.size();
+        }
+        return total;
+    }
+
+    /** Hash do segundo nível do tópico, calculado sobre os caracteres sem criar substring. */
+    private int particao(String topico) {
+        int inicio = topico.indexOf('/') + 1;
+        int fim = topico.indexOf('/', inicio);
+        if (fim < 0) {
+            fim = topico.length();
+        }
+        int hash = 0;
+        for (int i = inicio; i < fim; i++) {
+            hash = 31 * hash + topico.charAt(i);
+        }
+        return Math.floorMod(hash, filas.size());
+    }
+
+    private void executar(BlockingQueue<Mensagem> fila) {
+        while (ativo || !fila.isEmpty()) {
+            Mensagem mensagem;
+            try {
+                mensagem = fila.take();
+            } catch (InterruptedException e) {
+                if (!ativo) {
+                    break;
+                }
+                continue;
+            }
+            long inicio = System.nanoTime();
+            espera.registrar(inicio - mensagem.recebidaNanos);
+            try {
+                processador.processar(mensagem.topico, mensagem.payload, mensagem.recebidaNanos);
+            } catch (RuntimeException e) {
+                System.err.println("  ❌ Erro no processamento de [" + mensagem.topico + "]: " + e.getMessage());
+            }
+            processamento.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    public void parar() {
+        ativo = false;
+        trabalhadores.forEach(Thread::interrupt);
+    }
+
+    /** Verdadeiro se esta JVM cria threads virtuais (Java 21+). */
+    public static boolean temThreadsVirtuais() {
+        return THREADS_VIRTUAIS;
+    }
+
+    private static boolean detectarThreadsVirtuais() {
+        try {
+            Class<?> tipoConstrutor = Class.forName("java.lang.Thread$Builder");
+            Object construtor = Thread.class.getMethod("ofVirtual").invoke(null);
+            tipoConstrutor.getMethod("unstarted", Runnable.class).invoke(construtor, (Runnable) () -> { });
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Threads virtuais só existem a partir do Java 21; o projeto compila para 17, então a fábrica
+     * é obtida por reflexão e, se não existir, usa-se uma thread de plataforma.
+     */
+    public static Thread criarThread(String nome, boolean virtual, Runnable tarefa) {
+        if (virtual) {
+            try {
+                Class<?> tipoConstrutor = Class.forName("java.lang.Thread$Builder");
+                Object construtor = Thread.class.getMethod("ofVirtual").invoke(null);
+                construtor = tipoConstrutor.getMethod("name", String.class).invoke(construtor, nome);
+                return (Thread) tipoConstrutor.getMethod("unstarted", Runnable.class).invoke(construtor, tarefa);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // JVM sem threads virtuais: segue com thread de plataforma.
+            }
+        }
+        Thread thread = new Thread(tarefa, nome);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,41 @@
+package org.pd.gateway;
+
+/**
+ * Limites de retenção das leituras em memória: quantidade por região, idade máxima e memória total.
+ * Qualquer limite {@code <= 0} fica desligado.
+ */
+public final class PoliticaRetencao {
+    private final long capacidadePorRegiao;
+    private final long idadeMaximaMs;
+    private final long maxBytes;
+
+    public PoliticaRetencao(long capacidadePorRegiao, long idadeMaximaMs, long maxBytes) {
+        this.capacidadePorRegiao = capacidadePorRegiao;
+        this.idadeMaximaMs = idadeMaximaMs;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Lê {@code <prefixo>.capacidade}, {@code <prefixo>.idadeMs} e {@code <prefixo>.maxBytes}. */
+    public static PoliticaRetencao dePropriedades(String prefixo, long capacidadePadrao, long idadePadraoMs,
+                                                  long maxBytesPadrao) {
+        return new PoliticaRetencao(Long.getLong(prefixo + ".capacidade", capacidadePadrao),
+                Long.getLong(prefixo + ".idadeMs", idadePadraoMs),
+                Long.getLong(prefixo + ".maxBytes", maxBytesPadrao));
+    }
+
+    public long getCapacidadePorRegiao() { return capacidadePorRegiao; }
+    public long getIdadeMaximaMs() { return idadeMaximaMs; }
+    public long getMaxBytes() { return maxBytes; }
+
+    public boolean limitaCapacidade() { return capacidadePorRegiao > 0; }
+    public boolean limitaIdade() { return idadeMaximaMs > 0; }
+    public boolean limitaBytes() { return maxBytes > 0; }
+
+    @Override
+    public String toString() {
+        return String.format("capacidade=%s idade=%s maxBytes=%s",
+                limitaCapacidade() ? capacidadePorRegiao + "/região" : "ilimitada",
+                limitaIdade() ? idadeMaximaMs + "ms" : "ilimitada",
+                limitaBytes() ? Long.toString(maxBytes) : "ilimitado");
+    }
+}
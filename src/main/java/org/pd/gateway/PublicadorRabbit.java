@@ -0,0 +1,279 @@
+package org.pd.gateway;
+
+import org.pd.metricas.HistogramaLatencia;
+import org.pd.transporte.TransporteAmqp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline de publicação no RabbitMQ com confirmação do broker (entrega "ao menos uma vez").
+ * <p>
+ * Quem produz só coloca a leitura num buffer circular limitado; uma thread dedicada esvazia o
+ * buffer em lotes (até {@code tamanhoLote} mensagens ou {@code lingerMs} de espera), codifica e
+ * publica. Cada publicação ocupa uma vaga numa janela de {@code janelaConfirmacoes} números de
+ * sequência pendentes, liberada quando o broker confirma. Mensagens rejeitadas (nack), ou que
+ * estavam pendentes quando o canal caiu, voltam para a fila de reenvio. Leituras com rastreio levam
+ * no cabeçalho {@link #CABECALHO_PUBLICADA_MS} o instante da publicação, para o consumidor medir o
+ * tempo no broker, e o tempo até a confirmação vai para {@link #getLatenciaConfirmacao()}.
+ */
+public class PublicadorRabbit {
+    public enum PoliticaCheio { BLOQUEAR, DESCARTAR_NOVO, DESCARTAR_ANTIGO }
+
+    public static final String CABECALHO_PUBLICADA_MS = "pd-publicada-ms";
+
+    private static final long ESPERA_APOS_ERRO_MS = 500;
+
+    private final TransporteAmqp.Canal canal;
+    private final String exchange;
+    private final boolean binario;
+    private final int tamanhoLote;
+    private final long lingerNanos;
+    private final PoliticaCheio politica;
+
+    private final ArrayBlockingQueue<DadosClimaticos> fila;
+    private final ConcurrentLinkedQueue<DadosClimaticos> reenvios = new ConcurrentLinkedQueue<>();
+    private final ConcurrentNavigableMap<Long, Pendente> pendentes = new ConcurrentSkipListMap<>();
+    private final Semaphore janela;
+
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder confirmadas = new LongAdder();
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final HistogramaLatencia latenciaConfirmacao = new HistogramaLatencia("publicacao->confirmacao");
+
+    private volatile boolean ativo = true;
+    private Thread publicador;
+
+    private static final class Pendente {
+        final DadosClimaticos dados;
+        final long publicadaNanos;
+
+        Pendente(DadosClimaticos dados, long publicadaNanos) {
+            this.dados = dados;
+            this.publicadaNanos = publicadaNanos;
+        }
+    }
+
+    public PublicadorRabbit(TransporteAmqp.Canal canal, String exchange, boolean binario, int capacidadeFila, int tamanhoLote,
+                            long lingerMs, int janelaConfirmacoes, PoliticaCheio politica) {
+        this.canal = canal;
+        this.exchange = exchange;
+        this.binario = binario;
+        this.tamanhoLote = Math.max(1, tamanhoLote);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.politica = politica;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.janela = new Semaphore(Math.max(1, janelaConfirmacoes));
+    }
+
+    public void iniciar() throws IOException {
+        canal.ativarConfirmacoes(new TransporteAmqp.OuvinteConfirmacoes() {
+            @Override
+            public void confirmadas(long sequencia, boolean multiplas) {
+                confirmadas.add(liberar(sequencia, multiplas, false));
+            }
+
+            @Override
+            public void rejeitadas(long sequencia, boolean multiplas) {
+                rejeitadas.add(liberar(sequencia, multiplas, true));
+            }
+
+            // Com a recuperação automática o canal volta com outra numeração; o que estava pendente
+            // nunca será confirmado e precisa ser reenviado.
+            @Override
+            public void canalFechado() {
+                liberar(Long.MAX_VALUE, true, true);
+            }
+        });
+
+        publicador = new Thread(this::executar, "gateway-publicador-rabbit");
+        publicador.setDaemon(true);
+        publicador.start();
+    }
+
+    /**
+     * Coloca a leitura na fila de publicação, aplicando a política configurada quando a fila está
+     * cheia. Retorna falso se esta leitura foi descartada; com {@code DESCARTAR_ANTIGO} ela sempre
+     * entra, e a mais antiga que saiu para dar lugar só é contada em {@link #getDescartadas()}.
+     */
+    public boolean enfileirar(DadosClimaticos dados) {
+        if (fila.offer(dados)) {
+            return true;
+        }
+        switch (politica) {
+            case BLOQUEAR:
+                try {
+                    fila.put(dados);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    descartadas.increment();
+                    return false;
+                }
+            case DESCARTAR_ANTIGO:
+                while (!fila.offer(dados)) {
+                    if (fila.poll() != null) {
+                        descartadas.increment();
+                    }
+                }
+                return true;
+            default:
+                descartadas.increment();
+                return false;
+        }
+    }
+
+    public int getProfundidadeFila() { return fila.size() + reenvios.size(); }
+    public int getPendentesConfirmacao() { return pendentes.size(); }
+    public long getPublicadas() { return publicadas.sum(); }
+    public long getConfirmadas() { return confirmadas.sum(); }
+    public long getRejeitadas() { return rejeitadas.sum(); }
+    public long getDescartadas() { return descartadas.sum(); }
+    public long getErros() { return erros.sum(); }
+    public HistogramaLatencia getLatenciaConfirmacao() { return latenciaConfirmacao; }
+
+    private int liberar(long sequencia, boolean multiplas, boolean reenviar) {
+        int liberadas = 0;
+        long agora = System.nanoTime();
+        if (multiplas) {
+            Map.Entry<Long, Pendente> entrada;
+            while ((entrada = pendentes.firstEntry()) != null && entrada.getKey() <= sequencia) {
+                if (pendentes.remove(entrada.getKey(), entrada.getValue())) {
+                    liberadas++;
+                    concluir(entrada.getValue(), reenviar, agora);
+                }
+            }
+        } else {
+            Pendente pendente = pendentes.remove(sequencia);
+            if (pendente != null) {
+                liberadas++;
+                concluir(pendente, reenviar, agora);
+            }
+        }
+        janela.release(liberadas);
+        return liberadas;
+    }
+
+    private void concluir(Pendente pendente, boolean reenviar, long agoraNanos) {
+        if (reenviar) {
+            reenvios.add(pendente.dados);
+        } else {
+            latenciaConfirmacao.registrar(agoraNanos - pendente.publicadaNanos);
+        }
+    }
+
+    private void executar() {
+        List<DadosClimaticos> lote = new ArrayList<>(tamanhoLote);
+        while (ativo || !fila.isEmpty() || !reenvios.isEmpty()) {
+            int publicados = 0;
+            try {
+                montarLote(lote);
+                for (; publicados < lote.size(); publicados++) {
+                    publicar(lote.get(publicados));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                // publicar() já devolveu a leitura que falhou; o resto do lote volta junto.
+                for (int i = publicados + 1; i < lote.size(); i++) {
+                    reenvios.add(lote.get(i));
+                }
+                erros.increment();
+                System.err.println("  ❌ Erro ao publicar via RabbitMQ: " + e.getMessage());
+                pausar();
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /** Reenvios primeiro; depois espera a primeira leitura e junta o que chegar até o lote ou o linger. */
+    private void montarLote(List<DadosClimaticos> lote) throws InterruptedException {
+        DadosClimaticos dados;
+        while (lote.size() < tamanhoLote && (dados = reenvios.poll()) != null) {
+            lote.add(dados);
+        }
+        if (lote.isEmpty()) {
+            dados = fila.poll(100, TimeUnit.MILLISECONDS);
+            if (dados == null) {
+                return;
+            }
+            lote.add(dados);
+        }
+        long prazo = System.nanoTime() + lingerNanos;
+        while (lote.size() < tamanhoLote) {
+            if (fila.drainTo(lote, tamanhoLote - lote.size()) > 0) {
+                continue;
+            }
+            long restante = prazo - System.nanoTime();
+            if (restante <= 0 || (dados = fila.poll(restante, TimeUnit.NANOSECONDS)) == null) {
+                break;
+            }
+            lote.add(dados);
+        }
+    }
+
+    private void publicar(DadosClimaticos dados) throws InterruptedException, IOException {
+        janela.acquire();
+        long sequencia = canal.proximaSequencia();
+        Pendente pendente = new Pendente(dados, System.nanoTime());
+        pendentes.put(sequencia, pendente);
+        try {
+            String routingKey = "dados." + dados.getRegiao();
+            // Só leituras rastreadas levam o instante da publicação; as outras seguem sem cabeçalhos.
+            Map<String, Object> cabecalhos = dados.temRastreio()
+                    ? Collections.singletonMap(CABECALHO_PUBLICADA_MS, System.currentTimeMillis()) : null;
+            if (binario) {
+                canal.publicar(exchange, routingKey, CodecBinario.CONTENT_TYPE, cabecalhos,
+                        CodecBinario.daThread().codificarCopia(dados));
+            } else {
+                canal.publicar(exchange, routingKey, CodecJson.CONTENT_TYPE, cabecalhos,
+                        CodecJson.daThread().codificarCopia(dados));
+            }
+            publicadas.increment();
+        } catch (IOException | RuntimeException e) {
+            if (pendentes.remove(sequencia, pendente)) {
+                janela.release();
+                reenvios.add(dados);
+            }
+            throw e;
+        }
+    }
+
+    private void pausar() {
+        try {
+            Thread.sleep(ESPERA_APOS_ERRO_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Para de aceitar novas leituras e espera até {@code esperaMs} pelas confirmações pendentes. */
+    public void parar(long esperaMs) {
+        ativo = false;
+        long prazo = System.currentTimeMillis() + esperaMs;
+        try {
+            if (publicador != null) {
+                publicador.join(esperaMs);
+            }
+            while (!pendentes.isEmpty() && System.currentTimeMillis() < prazo) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.pd.gateway;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsers de payload por região. Além dos quatro formatos dos drones, carrega os plugins
+ * declarados via {@link ServiceLoader}; um plugin com a mesma região substitui o formato padrão.
+ */
+public class RegistroParsers {
+    private final Map<String, ParserPayload> parsers = new ConcurrentHashMap<>();
+
+    public static RegistroParsers comFormatosPadrao() {
+        RegistroParsers registro = new RegistroParsers();
+        registro.registrar(new ParserDelimitado("norte", '-'));
+        registro.registrar(new ParserDelimitado("sul", '(', ';', ')'));
+        registro.registrar(new ParserDelimitado("leste", '{', ',', '}'));
+        registro.registrar(new ParserDelimitado("oeste", '#'));
+        for (ParserPayload plugin : ServiceLoader.load(ParserPayload.class)) {
+            registro.registrar(plugin);
+        }
+        return registro;
+    }
+
+    public void registrar(ParserPayload parser) {
+        parsers.put(parser.regiao().toLowerCase(), parser);
+    }
+
+    public ParserPayload buscar(String regiao) {
+        return parsers.get(regiao.toLowerCase());
+    }
+}
@@ -0,0 +1,80 @@
+package org.pd.gateway;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Texto e JSON do dashboard do Gateway a partir dos agregados por região, os da instância ou os
+ * combinados de todas. O custo depende do número de regiões, não do de leituras.
+ */
+public final class RelatorioDashboard {
+    private RelatorioDashboard() {
+    }
+
+    /** Acrescenta a {@code sb} o total e, por região com dados, a participação e as estatísticas. */
+    public static String texto(StringBuilder sb, List<AgregadosRegiao.Instantaneo> regioes) {
+        long total = 0;
+        for (AgregadosRegiao.Instantaneo regiao : regioes) {
+            total += regiao.getContagem();
+        }
+
+        sb.append("Total de dados coletados: ").append(total).append("\n\n");
+
+        if (total > 0) {
+            for (AgregadosRegiao.Instantaneo regiao : regioes) {
+                long count = regiao.getContagem();
+                if (count == 0) continue;
+                double percentual = (count * 100.0) / total;
+                sb.append(String.format("- %s: %.2f%% (%d dados)\n", regiao.getRegiao().toUpperCase(), percentual, count));
+                anexarEstatistica(sb, "temperatura", regiao.getTemperatura());
+                anexarEstatistica(sb, "umidade", regiao.getUmidade());
+                anexarEstatistica(sb, "pressao", regiao.getPressao());
+                anexarEstatistica(sb, "radiacao", regiao.getRadiacao());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void anexarEstatistica(StringBuilder sb, String nome, EstatisticaCorrente estatistica) {
+        sb.append(String.format("    %-12s média %.2f | desvio %.2f | mín %.2f | máx %.2f\n", nome,
+                estatistica.getMedia(), estatistica.getDesvioPadrao(), estatistica.getMinimo(), estatistica.getMaximo()));
+    }
+
+    /**
+     * Acrescenta a {@code sb} os campos {@code total} e {@code regioes} e fecha o objeto JSON, que
+     * quem chama já deve ter aberto.
+     */
+    public static String json(StringBuilder sb, List<AgregadosRegiao.Instantaneo> regioes) {
+        long total = 0;
+        for (AgregadosRegiao.Instantaneo regiao : regioes) {
+            total += regiao.getContagem();
+        }
+        sb.append("\"total\": ").append(total).append(", \"regioes\": [");
+        boolean primeira = true;
+        for (AgregadosRegiao.Instantaneo regiao : regioes) {
+            long count = regiao.getContagem();
+            if (count == 0) continue;
+            sb.append(primeira ? "" : ", ").append("{\"regiao\": \"").append(regiao.getRegiao())
+                    .append("\", \"contagem\": ").append(count)
+                    .append(", \"percentual\": ").append(numeroJson(count * 100.0 / total));
+            anexarEstatisticaJson(sb, "temperatura", regiao.getTemperatura());
+            anexarEstatisticaJson(sb, "umidade", regiao.getUmidade());
+            anexarEstatisticaJson(sb, "pressao", regiao.getPressao());
+            anexarEstatisticaJson(sb, "radiacao", regiao.getRadiacao());
+            sb.append('}');
+            primeira = false;
+        }
+        return sb.append("]}\n").toString();
+    }
+
+    private static void anexarEstatisticaJson(StringBuilder sb, String nome, EstatisticaCorrente estatistica) {
+        sb.append(", \"").append(nome).append("\": {\"media\": ").append(numeroJson(estatistica.getMedia()))
+                .append(", \"desvio\": ").append(numeroJson(estatistica.getDesvioPadrao()))
+                .append(", \"minimo\": ").append(numeroJson(estatistica.getMinimo()))
+                .append(", \"maximo\": ").append(numeroJson(estatistica.getMaximo())).append('}');
+    }
+
+    static String numeroJson(double valor) {
+        return Double.isNaN(valor) || Double.isInfinite(valor) ? "null" : String.format(Locale.ROOT, "%.2f", valor);
+    }
+}
@@ -0,0 +1,130 @@
+package org.pd.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Envio das respostas HTTP do Gateway: tamanho sempre conhecido (a conexão fica viva entre
+ * requisições), gzip quando o cliente aceita, e ETag/304 para representações versionadas.
+ */
+public final class RespostaHttp {
+    /** Abaixo disso o cabeçalho do gzip não compensa. */
+    private static final int TAMANHO_MINIMO_GZIP = 1024;
+
+    private RespostaHttp() {
+    }
+
+    /**
+     * Corpo de uma representação gerado uma vez por versão dos dados e reaproveitado por todas as
+     * requisições até a versão mudar, junto com a versão compactada (criada na primeira vez que é
+     * pedida).
+     */
+    public static final class Versionada {
+        private static final class Corpo {
+            final long versao;
+            final byte[] bytes;
+            volatile byte[] gzip;
+
+            Corpo(long versao, byte[] bytes) {
+                this.versao = versao;
+                this.bytes = bytes;
+            }
+        }
+
+        private final String nome;
+        private final String contentType;
+        private final AtomicReference<Corpo> atual = new AtomicReference<>();
+
+        public Versionada(String nome, String contentType) {
+            this.nome = nome;
+            this.contentType = contentType;
+        }
+
+        /**
+         * Responde com a representação da {@code versao}, gerando-a se preciso. A versão deve ser
+         * lida antes de gerar, para que o corpo guardado nunca seja mais antigo que ela.
+         */
+        public void enviar(HttpExchange exchange, long versao, Supplier<byte[]> gerar) throws IOException {
+            Corpo corpo = atual.get();
+            if (corpo == null || corpo.versao != versao) {
+                corpo = new Corpo(versao, gerar.get());
+                atual.set(corpo);
+            }
+            boolean gzip = aceitaGzip(exchange) && corpo.bytes.length >= TAMANHO_MINIMO_GZIP;
+            String etag = "\"" + nome + "-" + versao + (gzip ? "-gz" : "") + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            String seNenhum = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (seNenhum != null && seNenhum.contains(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] bytes = corpo.bytes;
+            if (gzip) {
+                byte[] compactado = corpo.gzip;
+                if (compactado == null) {
+                    compactado = compactar(bytes);
+                    corpo.gzip = compactado;
+                }
+                bytes = compactado;
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            escrever(exchange, 200, bytes);
+        }
+    }
+
+    /** Resposta sem versão, compactada se o cliente aceita e o corpo é grande o bastante. */
+    public static void enviar(HttpExchange exchange, int status, String contentType, byte[] corpo) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (aceitaGzip(exchange) && corpo.length >= TAMANHO_MINIMO_GZIP) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            corpo = compactar(corpo);
+        }
+        escrever(exchange, status, corpo);
+    }
+
+    /** JSON quando pedido por {@code ?formato=json} ou pelo cabeçalho Accept; texto caso contrário. */
+    public static boolean querJson(HttpExchange exchange, Map<String, String> parametros) {
+        String formato = parametros.get("formato");
+        if (formato != null) {
+            return "json".equalsIgnoreCase(formato);
+        }
+        String aceita = exchange.getRequestHeaders().getFirst("Accept");
+        return aceita != null && aceita.contains("application/json");
+    }
+
+    public static boolean aceitaGzip(HttpExchange exchange) {
+        String codificacoes = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return codificacoes != null && codificacoes.contains("gzip");
+    }
+
+    private static void escrever(HttpExchange exchange, int status, byte[] corpo) throws IOException {
+        exchange.sendResponseHeaders(status, corpo.length == 0 ? -1 : corpo.length);
+        if (corpo.length > 0) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(corpo);
+            }
+        }
+    }
+
+    private static byte[] compactar(byte[] corpo) {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(corpo.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(saida)) {
+            gzip.write(corpo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,183 @@
+package org.pd.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envio das leituras processadas a clientes HTTP por Server-Sent Events ({@code text/event-stream}).
+ * <p>
+ * A ingestão só chama {@link #publicar}: a leitura é codificada uma vez em JSON, se houver algum
+ * assinante interessado na região, e o mesmo evento é colocado no buffer limitado de cada um. Cada
+ * assinante tem a própria thread de escrita, que esvazia o buffer em lotes e faz um flush por lote;
+ * um cliente lento nunca segura a ingestão nem os outros clientes. Com o buffer cheio, no modo
+ * {@link Modo#FILA} o evento mais antigo é descartado; no modo {@link Modo#ULTIMO} o cliente só
+ * recebe a leitura mais recente de cada região (as intermediárias são coalescidas).
+ */
+public class TransmissorEventos {
+    public enum Modo { FILA, ULTIMO }
+
+    private static final byte[] BATIMENTO = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long INTERVALO_BATIMENTO_MS = 15_000;
+
+    private final int capacidadePorCliente;
+    private final int maxClientes;
+    private final boolean threadsVirtuais;
+    private final List<Assinante> assinantes = new CopyOnWriteArrayList<>();
+    private final AtomicLong proximoId = new AtomicLong();
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+
+    public TransmissorEventos(int capacidadePorCliente, int maxClientes, boolean threadsVirtuais) {
+        this.capacidadePorCliente = Math.max(1, capacidadePorCliente);
+        this.maxClientes = maxClientes;
+        this.threadsVirtuais = threadsVirtuais;
+    }
+
+    public void publicar(DadosClimaticos dados) {
+        if (assinantes.isEmpty()) {
+            return;
+        }
+        byte[] evento = null;
+        String regiao = dados.getRegiao();
+        for (Assinante assinante : assinantes) {
+            if (assinante.aceita(regiao)) {
+                if (evento == null) {
+                    evento = codificarEvento(dados);
+                }
+                assinante.oferecer(regiao, evento);
+            }
+        }
+    }
+
+    /**
+     * Transforma a troca HTTP em um fluxo de eventos. Retorna falso (sem responder) se o limite de
+     * clientes foi atingido. {@code regioes} vazio recebe todas as regiões.
+     */
+    public boolean assinar(HttpExchange exchange, Set<String> regioes, Modo modo) throws IOException {
+        if (assinantes.size() >= maxClientes) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Assinante assinante = new Assinante(exchange, regioes, modo);
+        assinantes.add(assinante);
+        PipelineIngestao.criarThread("gateway-sse-" + exchange.getRemoteAddress(), threadsVirtuais,
+                assinante::executar).start();
+        return true;
+    }
+
+    public int getClientes() { return assinantes.size(); }
+    public long getEnviados() { return enviados.sum(); }
+    public long getDescartados() { return descartados.sum(); }
+
+    private byte[] codificarEvento(DadosClimaticos dados) {
+        CodecJson codec = CodecJson.daThread();
+        int tamanho = codec.codificar(dados);
+        byte[] id = Long.toString(proximoId.incrementAndGet()).getBytes(StandardCharsets.US_ASCII);
+        byte[] evento = new byte[4 + id.length + 7 + tamanho + 2];
+        int p = 0;
+        p = copiar("id: ", evento, p);
+        System.arraycopy(id, 0, evento, p, id.length);
+        p += id.length;
+        p = copiar("\ndata: ", evento, p);
+        System.arraycopy(codec.buffer(), 0, evento, p, tamanho);
+        p += tamanho;
+        evento[p++] = '\n';
+        evento[p] = '\n';
+        return evento;
+    }
+
+    private static int copiar(String ascii, byte[] destino, int posicao) {
+        for (int i = 0; i < ascii.length(); i++) {
+            destino[posicao++] = (byte) ascii.charAt(i);
+        }
+        return posicao;
+    }
+
+    private final class Assinante {
+        private final HttpExchange exchange;
+        private final Set<String> regioes;
+        private final Modo modo;
+        // Guardados por "this"; só um dos dois é usado, conforme o modo.
+        private final ArrayDeque<byte[]> fila = new ArrayDeque<>();
+        private final Map<String, byte[]> ultimos = new LinkedHashMap<>();
+        private final List<byte[]> lote = new ArrayList<>();
+        private volatile boolean ativo = true;
+
+        Assinante(HttpExchange exchange, Set<String> regioes, Modo modo) {
+            this.exchange = exchange;
+            this.regioes = regioes;
+            this.modo = modo;
+        }
+
+        boolean aceita(String regiao) {
+            return ativo && (regioes.isEmpty() || regioes.contains(regiao));
+        }
+
+        synchronized void oferecer(String regiao, byte[] evento) {
+            if (modo == Modo.ULTIMO) {
+                if (ultimos.put(regiao, evento) != null) {
+                    descartados.increment();
+                }
+            } else {
+                if (fila.size() >= capacidadePorCliente) {
+                    fila.poll();
+                    descartados.increment();
+                }
+                fila.add(evento);
+            }
+            notify();
+        }
+
+        private synchronized void esperarLote(long esperaMs) throws InterruptedException {
+            if (fila.isEmpty() && ultimos.isEmpty()) {
+                wait(esperaMs);
+            }
+            lote.addAll(fila);
+            fila.clear();
+            lote.addAll(ultimos.values());
+            ultimos.clear();
+        }
+
+        void executar() {
+            try (OutputStream saida = new BufferedOutputStream(exchange.getResponseBody(), 16 * 1024)) {
+                saida.write(": conectado\n\n".getBytes(StandardCharsets.US_ASCII));
+                saida.flush();
+                while (ativo) {
+                    esperarLote(INTERVALO_BATIMENTO_MS);
+                    if (lote.isEmpty()) {
+                        saida.write(BATIMENTO);
+                    }
+                    for (byte[] evento : lote) {
+                        saida.write(evento);
+                    }
+                    saida.flush();
+                    enviados.add(lote.size());
+                    lote.clear();
+                }
+            } catch (IOException e) {
+                // Cliente desconectou.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ativo = false;
+                assinantes.remove(this);
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.pd.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos com baldes log-lineares, no estilo do HdrHistogram.
+ * <p>
+ * Cada potência de dois é dividida em {@link #SUB_BALDES} baldes iguais, então o erro relativo de
+ * um percentil é de no máximo 1/32 (~3%) em qualquer escala, de nanossegundos a horas, com memória
+ * fixa. {@link #registrar} é um incremento atômico sem trava e pode ser chamado de várias threads.
+ */
+public final class HistogramaLatencia {
+    private static final int BITS_SUB_BALDE = 5;
+    public static final int SUB_BALDES = 1 << BITS_SUB_BALDE;
+    private static final int TOTAL_BALDES = (64 - BITS_SUB_BALDE) * SUB_BALDES;
+
+    private final String nome;
+    private final AtomicLongArray baldes = new AtomicLongArray(TOTAL_BALDES);
+    private final LongAdder contagem = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public HistogramaLatencia(String nome) {
+        this.nome = nome;
+    }
+
+    public String getNome() { return nome; }
+
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        baldes.incrementAndGet(indice(valor));
+        contagem.increment();
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    public long getContagem() { return contagem.sum(); }
+    public long getMaximoNanos() { return maximo.get(); }
+    public long getSomaNanos() { return soma.sum(); }
+
+    public double getMediaNanos() {
+        long n = contagem.sum();
+        return n == 0 ? 0 : (double) soma.sum() / n;
+    }
+
+    /** Valor abaixo do qual está a fração {@code percentil} (0-100) das amostras. */
+    public long percentilNanos(double percentil) {
+        long total = 0;
+        long[] copia = new long[TOTAL_BALDES];
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            copia[i] = baldes.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(total * Math.min(100, percentil) / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                return Math.min(valorMedio(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /** Soma as amostras de outro histograma a este. */
+    public void combinar(HistogramaLatencia outro) {
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            long n = outro.baldes.get(i);
+            if (n != 0) {
+                baldes.addAndGet(i, n);
+            }
+        }
+        contagem.add(outro.contagem.sum());
+        soma.add(outro.soma.sum());
+        maximo.accumulate(outro.maximo.get());
+    }
+
+    /** Copia as amostras para um novo histograma e zera este (para relatórios por intervalo). */
+    public HistogramaLatencia extrair() {
+        HistogramaLatencia copia = new HistogramaLatencia(nome);
+        long n = 0;
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            long valor = baldes.getAndSet(i, 0);
+            if (valor != 0) {
+                copia.baldes.set(i, valor);
+                n += valor;
+            }
+        }
+        copia.contagem.add(n);
+        copia.soma.add(soma.sumThenReset());
+        copia.maximo.accumulate(maximo.getThenReset());
+        contagem.add(-n);
+        return copia;
+    }
+
+    /** Limite superior (exclusivo) de cada balde não vazio e sua contagem, para exportação. */
+    public long[][] baldesNaoVazios() {
+        int quantidade = 0;
+        long[] copia = new long[TOTAL_BALDES];
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            copia[i] = baldes.get(i);
+            if (copia[i] != 0) {
+                quantidade++;
+            }
+        }
+        long[][] resultado = new long[quantidade][];
+        int j = 0;
+        for (int i = 0; i < TOTAL_BALDES; i++) {
+            if (copia[i] != 0) {
+                resultado[j++] = new long[]{limiteSuperior(i), copia[i]};
+            }
+        }
+        return resultado;
+    }
+
+    static int indice(long valor) {
+        if (valor < SUB_BALDES) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int deslocamento = expoente - BITS_SUB_BALDE;
+        int sub = (int) (valor >>> deslocamento) & (SUB_BALDES - 1);
+        return (deslocamento + 1) * SUB_BALDES + sub;
+    }
+
+    private static long limiteInferior(int indice) {
+        if (indice < SUB_BALDES) {
+            return indice;
+        }
+        int deslocamento = indice / SUB_BALDES - 1;
+        return (long) (SUB_BALDES + indice % SUB_BALDES) << deslocamento;
+    }
+
+    private static long limiteSuperior(int indice) {
+        if (indice < SUB_BALDES) {
+            return indice + 1;
+        }
+        long superior = limiteInferior(indice) + (1L << (indice / SUB_BALDES - 1));
+        return superior < 0 ? Long.MAX_VALUE : superior;
+    }
+
+    private static long valorMedio(int indice) {
+        long inferior = limiteInferior(indice);
+        return inferior + (limiteSuperior(indice) - 1 - inferior) / 2;
+    }
+
+    /** Resumo em microssegundos: contagem, média, p50, p90, p99, p99.9 e máximo. */
+    @Override
+    public String toString() {
+        return String.format("%-22s n=%-9d média=%.1fµs p50=%.1fµs p90=%.1fµs p99=%.1fµs p99.9=%.1fµs máx=%.1fµs",
+                nome, getContagem(), getMediaNanos() / 1000.0, percentilNanos(50) / 1000.0,
+                percentilNanos(90) / 1000.0, percentilNanos(99) / 1000.0, percentilNanos(99.9) / 1000.0,
+                getMaximoNanos() / 1000.0);
+    }
+}
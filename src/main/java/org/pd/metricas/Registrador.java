@@ -0,0 +1,127 @@
+package org.pd.metricas;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Saída de console com nível, amostragem e formatação preguiçosa.
+ * <p>
+ * {@code System.out} é sincronizado e descarrega a cada linha; no caminho de cada mensagem isso
+ * limita a vazão. Aqui o texto só é montado (o {@link Supplier} só é chamado) se o nível estiver
+ * ligado e a mensagem for sorteada. Eventos por mensagem usam {@link #rastrear}, que só imprime no
+ * nível {@code RASTREIO} e uma em cada {@code pd.log.amostragem}; erros que podem se repetir a cada
+ * mensagem usam {@link #avisoAmostrado}, que imprime o primeiro e depois um a cada
+ * {@code pd.log.amostragem} ou a cada {@code pd.log.avisoMs}, o que vier antes, com a contagem dos
+ * suprimidos. O acompanhamento normal vem dos resumos
+ * periódicos ({@link #resumoPeriodico}), a cada {@code pd.log.resumoMs}.
+ * <p>
+ * {@code -Dpd.log.nivel=rastreio -Dpd.log.amostragem=1} reproduz a saída antiga, linha por mensagem;
+ * {@code -Dpd.log.nivel=aviso} é o modo silencioso, só com avisos e erros.
+ */
+public final class Registrador {
+    public enum Nivel { DESLIGADO, ERRO, AVISO, INFO, RASTREIO }
+
+    private static final Nivel NIVEL = lerNivel(System.getProperty("pd.log.nivel", "info"));
+    private static final int AMOSTRAGEM = Math.max(1, Integer.getInteger("pd.log.amostragem", 1000));
+    private static final long INTERVALO_RESUMO_MS = Long.getLong("pd.log.resumoMs", 10_000);
+    private static final long INTERVALO_AVISO_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("pd.log.avisoMs", 1000));
+
+    private static final ScheduledExecutorService RESUMOS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "log-resumo");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Avisos desde o último que saiu, contando o atual.
+    private final AtomicLong avisosDesdeUltimo = new AtomicLong();
+    private volatile long ultimoAvisoNanos = System.nanoTime() - INTERVALO_AVISO_NANOS;
+
+    /** Um nível desconhecido não pode impedir a classe de carregar: vale INFO, com um aviso. */
+    private static Nivel lerNivel(String nome) {
+        try {
+            return Nivel.valueOf(nome.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ pd.log.nivel desconhecido: '" + nome + "'; usando info");
+            return Nivel.INFO;
+        }
+    }
+
+    public static boolean habilitado(Nivel nivel) {
+        return nivel != Nivel.DESLIGADO && nivel.ordinal() <= NIVEL.ordinal();
+    }
+
+    public void erro(Supplier<String> mensagem) {
+        if (habilitado(Nivel.ERRO)) {
+            System.err.println(mensagem.get());
+        }
+    }
+
+    public void aviso(Supplier<String> mensagem) {
+        if (habilitado(Nivel.AVISO)) {
+            System.err.println(mensagem.get());
+        }
+    }
+
+    public void info(Supplier<String> mensagem) {
+        if (habilitado(Nivel.INFO)) {
+            System.out.println(mensagem.get());
+        }
+    }
+
+    /** Verdadeiro se um evento por mensagem deve ser impresso agora (nível e sorteio). */
+    public boolean amostrarRastreio() {
+        return habilitado(Nivel.RASTREIO)
+                && (AMOSTRAGEM == 1 || ThreadLocalRandom.current().nextInt(AMOSTRAGEM) == 0);
+    }
+
+    public void rastrear(Supplier<String> mensagem) {
+        if (amostrarRastreio()) {
+            System.out.println(mensagem.get());
+        }
+    }
+
+    /**
+     * Aviso que pode se repetir a cada mensagem: o primeiro sai; depois sai um quando
+     * {@code AMOSTRAGEM} se acumularam ou quando {@code pd.log.avisoMs} se passou desde o último,
+     * com quantos foram suprimidos nesse meio tempo. A contagem é por instância, então cada tipo de
+     * aviso deve ter o seu {@code Registrador}.
+     */
+    public void avisoAmostrado(Supplier<String> mensagem) {
+        if (!habilitado(Nivel.AVISO)) {
+            return;
+        }
+        long agora = System.nanoTime();
+        if (avisosDesdeUltimo.incrementAndGet() < AMOSTRAGEM && agora - ultimoAvisoNanos < INTERVALO_AVISO_NANOS) {
+            return;
+        }
+        ultimoAvisoNanos = agora;
+        // Duas threads podem passar juntas; a segunda encontra o contador zerado.
+        long semelhantes = Math.max(0, avisosDesdeUltimo.getAndSet(0) - 1);
+        System.err.println(semelhantes == 0 ? mensagem.get()
+                : mensagem.get() + " (+" + semelhantes + " semelhantes suprimidos)");
+    }
+
+    /** Executa {@code resumo} a cada {@code pd.log.resumoMs}, se o nível INFO estiver ligado. */
+    public static void resumoPeriodico(Runnable resumo) {
+        if (!habilitado(Nivel.INFO) || INTERVALO_RESUMO_MS <= 0) {
+            return;
+        }
+        RESUMOS.scheduleAtFixedRate(() -> {
+            try {
+                resumo.run();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Erro ao gerar resumo: " + e.getMessage());
+            }
+        }, INTERVALO_RESUMO_MS, INTERVALO_RESUMO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static long getIntervaloResumoMs() {
+        return INTERVALO_RESUMO_MS;
+    }
+}
@@ -0,0 +1,308 @@
+package org.pd.metricas;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro de métricas do processo, exportado no formato de texto do Prometheus.
+ * <p>
+ * Contadores são {@link LongAdder}s que quem instrumenta guarda e incrementa direto, sem busca por
+ * nome nem alocação no caminho quente; contadores com um rótulo variável (a região, por exemplo)
+ * custam uma consulta a um {@link ConcurrentHashMap}. Medidores, contadores derivados e
+ * histogramas são lidos só no momento da exportação, a partir de funções e objetos que já existem.
+ * Histogramas de latência saem como {@code summary}, em segundos.
+ * <p>
+ * Cada série é identificada pelo nome e pelos rótulos. Registrar de novo a mesma série devolve o
+ * {@link Contador} ou a {@link FamiliaContadores} já existente; para as séries lidas de funções vale
+ * a primeira registrada. Assim duas instâncias de um serviço no mesmo processo somam nos mesmos
+ * contadores em vez de exportar linhas repetidas, que o Prometheus rejeita.
+ */
+public final class RegistroMetricas {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final RegistroMetricas PADRAO = new RegistroMetricas();
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    /** Registro compartilhado pelas classes de um mesmo processo. */
+    public static RegistroMetricas padrao() {
+        return PADRAO;
+    }
+
+    public static final class Contador {
+        private final LongAdder valor = new LongAdder();
+
+        public void incrementar() { valor.increment(); }
+        public void somar(long quantidade) { valor.add(quantidade); }
+        public long valor() { return valor.sum(); }
+    }
+
+    /** Contadores de uma métrica com um rótulo cujos valores só são conhecidos em execução. */
+    public static final class FamiliaContadores {
+        private final ConcurrentHashMap<String, Contador> porValor = new ConcurrentHashMap<>();
+
+        public Contador com(String valorRotulo) {
+            Contador contador = porValor.get(valorRotulo);
+            return contador != null ? contador : porValor.computeIfAbsent(valorRotulo, v -> new Contador());
+        }
+
+        /** Soma de todos os valores do rótulo. */
+        public long total() {
+            long total = 0;
+            for (Contador contador : porValor.values()) {
+                total += contador.valor();
+            }
+            return total;
+        }
+    }
+
+    private interface Escritor {
+        void escrever(String nome, StringBuilder sb);
+    }
+
+    private static final class Serie {
+        /** O que foi registrado: o contador, a família, a função ou o histograma. */
+        final Object fonte;
+        final Escritor escritor;
+
+        Serie(Object fonte, Escritor escritor) {
+            this.fonte = fonte;
+            this.escritor = escritor;
+        }
+    }
+
+    private static final class Familia {
+        final String ajuda;
+        final String tipo;
+        // Por texto dos rótulos; numa família de contadores o rótulo variável vale "*".
+        final Map<String, Serie> series = new LinkedHashMap<>();
+
+        Familia(String ajuda, String tipo) {
+            this.ajuda = ajuda;
+            this.tipo = tipo;
+        }
+    }
+
+    private final Map<String, Familia> familias = new LinkedHashMap<>();
+    private boolean jvmRegistrada;
+
+    /** @param rotulos pares chave, valor */
+    public Contador contador(String nome, String ajuda, String... rotulos) {
+        Contador contador = new Contador();
+        String texto = rotulos(rotulos);
+        return adicionar(nome, ajuda, "counter", texto, Contador.class, contador,
+                (n, sb) -> linha(sb, n, texto, contador.valor()));
+    }
+
+    /** @param fixos pares chave, valor que todas as séries da família levam antes de {@code rotulo} */
+    public FamiliaContadores contadores(String nome, String ajuda, String rotulo, String... fixos) {
+        FamiliaContadores familia = new FamiliaContadores();
+        String[] pares = Arrays.copyOf(fixos, fixos.length + 2);
+        pares[fixos.length] = rotulo;
+        pares[fixos.length + 1] = "*";
+        return adicionar(nome, ajuda, "counter", rotulos(pares), FamiliaContadores.class, familia,
+                (n, sb) -> familia.porValor.forEach((valor, contador) -> {
+                    String[] comValor = pares.clone();
+                    comValor[fixos.length + 1] = valor;
+                    linha(sb, n, rotulos(comValor), contador.valor());
+                }));
+    }
+
+    /** Contador mantido por outra classe (um {@code LongAdder} já existente, por exemplo). */
+    public void contadorDerivado(String nome, String ajuda, LongSupplier valor, String... rotulos) {
+        String texto = rotulos(rotulos);
+        adicionar(nome, ajuda, "counter", texto, LongSupplier.class, valor,
+                (n, sb) -> linha(sb, n, texto, valor.getAsLong()));
+    }
+
+    public void medidor(String nome, String ajuda, DoubleSupplier valor, String... rotulos) {
+        String texto = rotulos(rotulos);
+        adicionar(nome, ajuda, "gauge", texto, DoubleSupplier.class, valor,
+                (n, sb) -> linha(sb, n, texto, valor.getAsDouble()));
+    }
+
+    public void histograma(String nome, String ajuda, HistogramaLatencia histograma, String... rotulos) {
+        String texto = rotulos(rotulos);
+        adicionar(nome, ajuda, "summary", texto, HistogramaLatencia.class, histograma, (n, sb) -> {
+            for (double quantil : QUANTIS) {
+                String comQuantil = texto.isEmpty() ? "{quantile=\"" + quantil + "\"}"
+                        : texto.substring(0, texto.length() - 1) + ",quantile=\"" + quantil + "\"}";
+                linha(sb, n, comQuantil, histograma.percentilNanos(quantil * 100) / 1e9);
+            }
+            linha(sb, n + "_sum", texto, histograma.getSomaNanos() / 1e9);
+            linha(sb, n + "_count", texto, histograma.getContagem());
+        });
+    }
+
+    /**
+     * Coletas e tempo de GC por coletor, heap em uso, threads e bytes alocados. A alocação usa o
+     * total da JVM quando disponível (Java 21+); antes disso, a soma das threads vivas. Só a primeira
+     * chamada registra, para que vários serviços no mesmo processo não dupliquem as séries.
+     */
+    public synchronized void registrarJvm() {
+        if (jvmRegistrada) {
+            return;
+        }
+        jvmRegistrada = true;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            contadorDerivado("jvm_gc_colecoes_total", "Coletas de lixo por coletor.",
+                    gc::getCollectionCount, "gc", gc.getName());
+            contadorDerivado("jvm_gc_tempo_ms_total", "Tempo acumulado em coletas de lixo, em ms.",
+                    gc::getCollectionTime, "gc", gc.getName());
+        }
+        medidor("jvm_heap_usado_bytes", "Heap em uso.",
+                () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        medidor("jvm_threads", "Threads de plataforma vivas.", threads::getThreadCount);
+        LongSupplier alocados = bytesAlocados(threads);
+        if (alocados != null) {
+            contadorDerivado("jvm_alocados_bytes_total", "Bytes alocados no heap (use rate() para o ritmo).",
+                    alocados);
+        }
+    }
+
+    private static LongSupplier bytesAlocados(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean estendido = (com.sun.management.ThreadMXBean) threads;
+        if (!estendido.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        estendido.setThreadAllocatedMemoryEnabled(true);
+        try {
+            Method total = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+            return () -> {
+                try {
+                    return (Long) total.invoke(estendido);
+                } catch (ReflectiveOperationException e) {
+                    return -1;
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            return () -> {
+                long soma = 0;
+                for (long bytes : estendido.getThreadAllocatedBytes(estendido.getAllThreadIds())) {
+                    soma += Math.max(0, bytes);
+                }
+                return soma;
+            };
+        }
+    }
+
+    /** Registra a série, ou devolve a fonte da que já existe com o mesmo nome e rótulos. */
+    private synchronized <T> T adicionar(String nome, String ajuda, String tipo, String rotulos, Class<T> classe,
+                                         T fonte, Escritor escritor) {
+        Familia familia = familias.computeIfAbsent(nome, n -> new Familia(ajuda, tipo));
+        if (!familia.tipo.equals(tipo)) {
+            throw new IllegalArgumentException("Métrica " + nome + " já registrada como " + familia.tipo);
+        }
+        Serie existente = familia.series.putIfAbsent(rotulos, new Serie(fonte, escritor));
+        if (existente == null) {
+            return fonte;
+        }
+        if (!classe.isInstance(existente.fonte)) {
+            throw new IllegalArgumentException("Série " + nome + rotulos + " já registrada de outra forma");
+        }
+        return classe.cast(existente.fonte);
+    }
+
+    /** Todas as métricas no formato de exposição de texto do Prometheus (versão 0.0.4). */
+    public synchronized String exportar() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Familia> entrada : familias.entrySet()) {
+            Familia familia = entrada.getValue();
+            sb.append("# HELP ").append(entrada.getKey()).append(' ').append(familia.ajuda).append('\n');
+            sb.append("# TYPE ").append(entrada.getKey()).append(' ').append(familia.tipo).append('\n');
+            for (Serie serie : familia.series.values()) {
+                serie.escritor.escrever(entrada.getKey(), sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Responde uma requisição HTTP com {@link #exportar()}. */
+    public void responder(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] corpo = exportar().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, corpo.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(corpo);
+            }
+        }
+    }
+
+    /** Servidor HTTP próprio com {@code /metrics}, para processos que não têm outro. */
+    public HttpServer servir(int porta) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.createContext("/metrics", this::responder);
+        servidor.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metricas-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        servidor.start();
+        return servidor;
+    }
+
+    private static String rotulos(String... pares) {
+        if (pares.length == 0) {
+            return "";
+        }
+        if (pares.length % 2 != 0) {
+            throw new IllegalArgumentException("Rótulos devem vir em pares chave, valor");
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < pares.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(pares[i]).append("=\"");
+            for (int j = 0; j < pares[i + 1].length(); j++) {
+                char c = pares[i + 1].charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void linha(StringBuilder sb, String nome, String rotulos, long valor) {
+        sb.append(nome).append(rotulos).append(' ').append(valor).append('\n');
+    }
+
+    private static void linha(StringBuilder sb, String nome, String rotulos, double valor) {
+        sb.append(nome).append(rotulos).append(' ');
+        if (Double.isNaN(valor)) {
+            sb.append("NaN");
+        } else if (Double.isInfinite(valor)) {
+            sb.append(valor > 0 ? "+Inf" : "-Inf");
+        } else {
+            sb.append(valor);
+        }
+        sb.append('\n');
+    }
+}
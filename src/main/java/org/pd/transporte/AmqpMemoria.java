@@ -0,0 +1,462 @@
+package org.pd.transporte;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker AMQP dentro da JVM, com a semântica que o Gateway e o Serviço de Base de Dados usam do
+ * RabbitMQ: exchanges {@code topic}, {@code fanout} e {@code direct} (e a padrão, pelo nome da
+ * fila), confirmação de publicação, prefetch por consumidor, ack/nack com {@code multiple} e
+ * devolução à fila das entregas sem ack quando o canal fecha. Uma fila com dead-letter exchange
+ * manda para ela as mensagens rejeitadas sem reenfileirar.
+ * <p>
+ * A publicação roteia na hora e confirma na própria chamada. Cada fila aceita até
+ * {@code pd.memoria.amqp.fila} mensagens; acima disso quem publica espera, como no controle de
+ * fluxo do RabbitMQ. Cada consumidor tem uma thread que faz as entregas do seu canal em ordem.
+ * Nada é durável: as declarações de durabilidade são aceitas e ignoradas.
+ */
+public class AmqpMemoria implements TransporteAmqp {
+    private static final int CAPACIDADE_FILA = Integer.getInteger("pd.memoria.amqp.fila", 1 << 20);
+    private static final long ESPERA_ENTREGA_MS = 100;
+
+    private final Map<String, Exchange> exchanges = new ConcurrentHashMap<>();
+    private final Map<String, Fila> filas = new ConcurrentHashMap<>();
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder naoRoteadas = new LongAdder();
+
+    @Override
+    public Conexao conectar(Runnable aoRecuperar) {
+        return new ConexaoMemoria();
+    }
+
+    public long getPublicadas() { return publicadas.sum(); }
+    /** Publicações sem nenhuma fila ligada à chave; o RabbitMQ também as descarta. */
+    public long getNaoRoteadas() { return naoRoteadas.sum(); }
+
+    public int getProfundidade(String fila) {
+        Fila encontrada = filas.get(fila);
+        return encontrada == null ? 0 : encontrada.mensagens.size();
+    }
+
+    @Override
+    public String toString() {
+        return "amqp em memória";
+    }
+
+    /** Padrão de ligação de exchange topic: palavras separadas por ponto, {@code *} e {@code #}. */
+    static boolean casaTopico(String padrao, String chave) {
+        return casaTopico(padrao.split("\\.", -1), 0, chave.split("\\.", -1), 0);
+    }
+
+    private static boolean casaTopico(String[] padrao, int i, String[] chave, int j) {
+        if (i == padrao.length) {
+            return j == chave.length;
+        }
+        if (padrao[i].equals("#")) {
+            for (int k = j; k <= chave.length; k++) {
+                if (casaTopico(padrao, i + 1, chave, k)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return j < chave.length && (padrao[i].equals("*") || padrao[i].equals(chave[j]))
+                && casaTopico(padrao, i + 1, chave, j + 1);
+    }
+
+    private static final class Mensagem {
+        final String chave;
+        final String contentType;
+        final Map<String, Object> cabecalhos;
+        final byte[] corpo;
+        // Falso para mensagens devolvidas com a fila já cheia: não ocupam vaga de publicação.
+        final boolean ocupaVaga;
+
+        Mensagem(String chave, String contentType, Map<String, Object> cabecalhos, byte[] corpo, boolean ocupaVaga) {
+            this.chave = chave;
+            this.contentType = contentType;
+            this.cabecalhos = cabecalhos;
+            this.corpo = corpo;
+            this.ocupaVaga = ocupaVaga;
+        }
+
+        Mensagem comVaga(boolean vaga) {
+            return new Mensagem(chave, contentType, cabecalhos, corpo, vaga);
+        }
+    }
+
+    private static final class Fila {
+        final LinkedBlockingDeque<Mensagem> mensagens = new LinkedBlockingDeque<>();
+        final Semaphore vagas = new Semaphore(Math.max(1, CAPACIDADE_FILA));
+        final String deadLetter;
+
+        Fila(String deadLetter) {
+            this.deadLetter = deadLetter;
+        }
+
+        void colocar(Mensagem mensagem) throws InterruptedIOException {
+            try {
+                vagas.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrompido esperando vaga na fila");
+            }
+            mensagens.add(mensagem);
+        }
+
+        Mensagem retirar(long esperaMs) throws InterruptedException {
+            Mensagem mensagem = mensagens.poll(esperaMs, TimeUnit.MILLISECONDS);
+            if (mensagem != null && mensagem.ocupaVaga) {
+                vagas.release();
+            }
+            return mensagem;
+        }
+
+        /** Volta para o início da fila; nunca espera, para não travar a thread do consumidor. */
+        void devolver(Mensagem mensagem) {
+            mensagens.addFirst(mensagem.comVaga(vagas.tryAcquire()));
+        }
+
+        /** No fim da fila, também sem esperar; usado na dead-letter, a partir da thread do consumidor. */
+        void acrescentar(Mensagem mensagem) {
+            mensagens.addLast(mensagem.comVaga(vagas.tryAcquire()));
+        }
+    }
+
+    private static final class Exchange {
+        private static final class Ligacao {
+            final Fila fila;
+            final String chave;
+
+            Ligacao(Fila fila, String chave) {
+                this.fila = fila;
+                this.chave = chave;
+            }
+        }
+
+        final String tipo;
+        private final List<Ligacao> ligacoes = new CopyOnWriteArrayList<>();
+        // Destinos já calculados por chave de roteamento; trocado inteiro a cada nova ligação.
+        private volatile Map<String, Fila[]> rotas = new ConcurrentHashMap<>();
+
+        Exchange(String tipo) {
+            this.tipo = tipo;
+        }
+
+        synchronized void ligar(Fila fila, String chave) {
+            for (Ligacao ligacao : ligacoes) {
+                if (ligacao.fila == fila && ligacao.chave.equals(chave)) {
+                    return;
+                }
+            }
+            ligacoes.add(new Ligacao(fila, chave));
+            rotas = new ConcurrentHashMap<>();
+        }
+
+        Fila[] destinos(String chave) {
+            return rotas.computeIfAbsent(chave, this::rotear);
+        }
+
+        private Fila[] rotear(String chave) {
+            List<Fila> destinos = new ArrayList<>();
+            for (Ligacao ligacao : ligacoes) {
+                boolean casa;
+                switch (tipo) {
+                    case "fanout":
+                        casa = true;
+                        break;
+                    case "topic":
+                        casa = casaTopico(ligacao.chave, chave);
+                        break;
+                    default:
+                        casa = ligacao.chave.equals(chave);
+                }
+                if (casa && !destinos.contains(ligacao.fila)) {
+                    destinos.add(ligacao.fila);
+                }
+            }
+            return destinos.toArray(new Fila[0]);
+        }
+    }
+
+    private final class ConexaoMemoria implements Conexao {
+        private final List<CanalMemoria> canais = new CopyOnWriteArrayList<>();
+        private volatile boolean aberta = true;
+
+        @Override
+        public Canal criarCanal() throws IOException {
+            if (!aberta) {
+                throw new IOException("Conexão fechada");
+            }
+            CanalMemoria canal = new CanalMemoria(this);
+            canais.add(canal);
+            return canal;
+        }
+
+        @Override
+        public boolean isAberta() {
+            return aberta;
+        }
+
+        @Override
+        public void close() {
+            aberta = false;
+            for (CanalMemoria canal : canais) {
+                canal.close();
+            }
+        }
+    }
+
+    private final class CanalMemoria implements Canal {
+        private final class Pendente {
+            final Fila fila;
+            final Mensagem mensagem;
+            final Semaphore creditos;
+
+            Pendente(Fila fila, Mensagem mensagem, Semaphore creditos) {
+                this.fila = fila;
+                this.mensagem = mensagem;
+                this.creditos = creditos;
+            }
+        }
+
+        private final ConexaoMemoria conexao;
+        private final AtomicLong proximaSequencia = new AtomicLong(1);
+        private final AtomicLong ultimaTag = new AtomicLong();
+        private final ConcurrentSkipListMap<Long, Pendente> naoConfirmadas = new ConcurrentSkipListMap<>();
+        private final List<Thread> consumidores = new CopyOnWriteArrayList<>();
+        private volatile OuvinteConfirmacoes confirmacoes;
+        private volatile int prefetch;
+        private volatile boolean aberto = true;
+
+        CanalMemoria(ConexaoMemoria conexao) {
+            this.conexao = conexao;
+        }
+
+        @Override
+        public void declararExchange(String nome, String tipo, boolean duravel) throws IOException {
+            verificarAberto();
+            if (!"topic".equals(tipo) && !"fanout".equals(tipo) && !"direct".equals(tipo)) {
+                throw new IOException("Tipo de exchange não suportado: " + tipo);
+            }
+            Exchange existente = exchanges.putIfAbsent(nome, new Exchange(tipo));
+            if (existente != null && !existente.tipo.equals(tipo)) {
+                throw new IOException("Exchange " + nome + " já declarada como " + existente.tipo);
+            }
+        }
+
+        @Override
+        public void declararFila(String nome, boolean duravel, String deadLetterExchange) throws IOException {
+            verificarAberto();
+            Fila existente = filas.putIfAbsent(nome, new Fila(deadLetterExchange));
+            if (existente != null && !Objects.equals(existente.deadLetter, deadLetterExchange)) {
+                // O RabbitMQ também recusa redeclarar uma fila com outros argumentos (406).
+                throw new IOException("Fila " + nome + " já declarada com dead-letter " + existente.deadLetter);
+            }
+        }
+
+        @Override
+        public void ligarFila(String fila, String exchange, String chave) throws IOException {
+            verificarAberto();
+            Exchange origem = exchanges.get(exchange);
+            Fila destino = filas.get(fila);
+            if (origem == null || destino == null) {
+                throw new IOException("Exchange ou fila inexistente: " + exchange + " -> " + fila);
+            }
+            origem.ligar(destino, chave);
+        }
+
+        @Override
+        public void ativarConfirmacoes(OuvinteConfirmacoes ouvinte) throws IOException {
+            verificarAberto();
+            this.confirmacoes = ouvinte;
+        }
+
+        @Override
+        public long proximaSequencia() {
+            return proximaSequencia.get();
+        }
+
+        @Override
+        public void publicar(String exchange, String chave, String contentType, Map<String, Object> cabecalhos,
+                             byte[] corpo) throws IOException {
+            verificarAberto();
+            Fila[] destinos;
+            if (exchange.isEmpty()) {
+                Fila fila = filas.get(chave);
+                destinos = fila == null ? new Fila[0] : new Fila[]{fila};
+            } else {
+                Exchange origem = exchanges.get(exchange);
+                if (origem == null) {
+                    throw new IOException("Exchange inexistente: " + exchange);
+                }
+                destinos = origem.destinos(chave);
+            }
+            for (Fila fila : destinos) {
+                fila.colocar(new Mensagem(chave, contentType, cabecalhos, corpo, true));
+            }
+            if (destinos.length == 0) {
+                naoRoteadas.increment();
+            }
+            publicadas.increment();
+            OuvinteConfirmacoes ouvinte = confirmacoes;
+            if (ouvinte != null) {
+                ouvinte.confirmadas(proximaSequencia.getAndIncrement(), false);
+            }
+        }
+
+        @Override
+        public void prefetch(int quantidade) {
+            this.prefetch = quantidade;
+        }
+
+        @Override
+        public void consumir(String fila, boolean autoAck, Consumidor consumidor) throws IOException {
+            verificarAberto();
+            Fila origem = filas.get(fila);
+            if (origem == null) {
+                throw new IOException("Fila inexistente: " + fila);
+            }
+            Semaphore creditos = autoAck || prefetch <= 0 ? null : new Semaphore(prefetch);
+            Thread thread = new Thread(() -> entregar(origem, autoAck, creditos, consumidor),
+                    "amqp-memoria-" + fila + "-" + consumidores.size());
+            thread.setDaemon(true);
+            consumidores.add(thread);
+            thread.start();
+        }
+
+        private void entregar(Fila fila, boolean autoAck, Semaphore creditos, Consumidor consumidor) {
+            while (aberto) {
+                Mensagem mensagem;
+                try {
+                    if (creditos != null && !creditos.tryAcquire(ESPERA_ENTREGA_MS, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    mensagem = fila.retirar(ESPERA_ENTREGA_MS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (mensagem == null) {
+                    if (creditos != null) {
+                        creditos.release();
+                    }
+                    continue;
+                }
+                long tag = ultimaTag.incrementAndGet();
+                if (!autoAck) {
+                    naoConfirmadas.put(tag, new Pendente(fila, mensagem, creditos));
+                }
+                try {
+                    consumidor.entregar(new Entrega(tag, mensagem.chave, mensagem.contentType, mensagem.cabecalhos,
+                            mensagem.corpo));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ Erro no consumidor AMQP em memória: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void confirmar(long tag, boolean multiplas) throws IOException {
+            verificarAberto();
+            for (Pendente pendente : remover(tag, multiplas)) {
+                liberar(pendente);
+            }
+        }
+
+        @Override
+        public void rejeitar(long tag, boolean multiplas, boolean reenfileirar) throws IOException {
+            verificarAberto();
+            List<Pendente> removidas = remover(tag, multiplas);
+            // De trás para frente, para que as devolvidas voltem na ordem original.
+            for (int i = removidas.size() - 1; i >= 0; i--) {
+                Pendente pendente = removidas.get(i);
+                if (reenfileirar) {
+                    pendente.fila.devolver(pendente.mensagem);
+                } else if (pendente.fila.deadLetter != null) {
+                    Exchange deadLetter = exchanges.get(pendente.fila.deadLetter);
+                    if (deadLetter != null) {
+                        for (Fila destino : deadLetter.destinos(pendente.mensagem.chave)) {
+                            destino.acrescentar(pendente.mensagem);
+                        }
+                    }
+                }
+                liberar(pendente);
+            }
+        }
+
+        private List<Pendente> remover(long tag, boolean multiplas) throws IOException {
+            List<Pendente> removidas = new ArrayList<>();
+            if (multiplas) {
+                Map.Entry<Long, Pendente> entrada;
+                while ((entrada = naoConfirmadas.firstEntry()) != null && entrada.getKey() <= tag) {
+                    if (naoConfirmadas.remove(entrada.getKey(), entrada.getValue())) {
+                        removidas.add(entrada.getValue());
+                    }
+                }
+            } else {
+                Pendente pendente = naoConfirmadas.remove(tag);
+                if (pendente == null) {
+                    throw new IOException("Delivery tag desconhecida: " + tag);
+                }
+                removidas.add(pendente);
+            }
+            return removidas;
+        }
+
+        private void liberar(Pendente pendente) {
+            if (pendente.creditos != null) {
+                pendente.creditos.release();
+            }
+        }
+
+        @Override
+        public boolean isAberto() {
+            return aberto;
+        }
+
+        private void verificarAberto() throws IOException {
+            if (!aberto) {
+                throw new IOException("Canal fechado");
+            }
+        }
+
+        /** Para as entregas e devolve à fila, na ordem, tudo que foi entregue e não recebeu ack. */
+        @Override
+        public void close() {
+            if (!aberto) {
+                return;
+            }
+            aberto = false;
+            // Sem interrupt: o consumidor pode estar escrevendo num FileChannel, que fecharia.
+            for (Thread consumidor : consumidores) {
+                try {
+                    consumidor.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Pendente> pendentes = new ArrayList<>(naoConfirmadas.values());
+            naoConfirmadas.clear();
+            for (int i = pendentes.size() - 1; i >= 0; i--) {
+                pendentes.get(i).fila.devolver(pendentes.get(i).mensagem);
+            }
+            OuvinteConfirmacoes ouvinte = confirmacoes;
+            if (ouvinte != null) {
+                ouvinte.canalFechado();
+            }
+            conexao.canais.remove(this);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.pd.transporte;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/** {@link TransporteAmqp} sobre o cliente oficial do RabbitMQ, com recuperação automática. */
+public class AmqpRabbit implements TransporteAmqp {
+    // Sem cabeçalhos as propriedades só dependem do content type; são imutáveis e podem ser reusadas.
+    private static final Map<String, AMQP.BasicProperties> SEM_CABECALHOS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final int porta;
+
+    public AmqpRabbit(String host, int porta) {
+        this.host = host;
+        this.porta = porta;
+    }
+
+    @Override
+    public Conexao conectar(Runnable aoRecuperar) throws IOException {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(host);
+        factory.setPort(porta);
+        Connection conexao;
+        try {
+            conexao = factory.newConnection();
+        } catch (TimeoutException e) {
+            throw new IOException("Tempo esgotado ao conectar em " + this, e);
+        }
+        if (conexao instanceof Recoverable) {
+            ((Recoverable) conexao).addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recuperada) {
+                    aoRecuperar.run();
+                }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recuperada) {}
+            });
+        }
+        return new ConexaoRabbit(conexao);
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + porta;
+    }
+
+    private static final class ConexaoRabbit implements Conexao {
+        private final Connection conexao;
+
+        ConexaoRabbit(Connection conexao) {
+            this.conexao = conexao;
+        }
+
+        @Override
+        public Canal criarCanal() throws IOException {
+            return new CanalRabbit(conexao.createChannel());
+        }
+
+        @Override
+        public boolean isAberta() {
+            return conexao.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (conexao.isOpen()) {
+                conexao.close();
+            }
+        }
+    }
+
+    private static final class CanalRabbit implements Canal {
+        private final Channel canal;
+
+        CanalRabbit(Channel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public void declararExchange(String nome, String tipo, boolean duravel) throws IOException {
+            canal.exchangeDeclare(nome, tipo, duravel);
+        }
+
+        @Override
+        public void declararFila(String nome, boolean duravel, String deadLetterExchange) throws IOException {
+            canal.queueDeclare(nome, duravel, false, false,
+                    deadLetterExchange == null ? null : Map.of("x-dead-letter-exchange", deadLetterExchange));
+        }
+
+        @Override
+        public void ligarFila(String fila, String exchange, String chave) throws IOException {
+            canal.queueBind(fila, exchange, chave);
+        }
+
+        @Override
+        public void ativarConfirmacoes(OuvinteConfirmacoes ouvinte) throws IOException {
+            canal.confirmSelect();
+            canal.addConfirmListener(new ConfirmListener() {
+                @Override
+                public void handleAck(long sequencia, boolean multiplas) {
+                    ouvinte.confirmadas(sequencia, multiplas);
+                }
+
+                @Override
+                public void handleNack(long sequencia, boolean multiplas) {
+                    ouvinte.rejeitadas(sequencia, multiplas);
+                }
+            });
+            // Com a recuperação automática o canal volta com outra numeração.
+            canal.addShutdownListener(causa -> ouvinte.canalFechado());
+        }
+
+        @Override
+        public long proximaSequencia() {
+            return canal.getNextPublishSeqNo();
+        }
+
+        @Override
+        public void publicar(String exchange, String chave, String contentType, Map<String, Object> cabecalhos,
+                             byte[] corpo) throws IOException {
+            AMQP.BasicProperties propriedades = cabecalhos == null || cabecalhos.isEmpty()
+                    ? SEM_CABECALHOS.computeIfAbsent(contentType,
+                            tipo -> new AMQP.BasicProperties.Builder().contentType(tipo).build())
+                    : new AMQP.BasicProperties.Builder().contentType(contentType).headers(cabecalhos).build();
+            canal.basicPublish(exchange, chave, propriedades, corpo);
+        }
+
+        @Override
+        public void prefetch(int quantidade) throws IOException {
+            canal.basicQos(quantidade);
+        }
+
+        @Override
+        public void consumir(String fila, boolean autoAck, Consumidor consumidor) throws IOException {
+            canal.basicConsume(fila, autoAck, (tagConsumidor, entrega) -> consumidor.entregar(new Entrega(
+                    entrega.getEnvelope().getDeliveryTag(), entrega.getEnvelope().getRoutingKey(),
+                    entrega.getProperties().getContentType(), entrega.getProperties().getHeaders(),
+                    entrega.getBody())), tagConsumidor -> {
+            });
+        }
+
+        @Override
+        public void confirmar(long tag, boolean multiplas) throws IOException {
+            canal.basicAck(tag, multiplas);
+        }
+
+        @Override
+        public void rejeitar(long tag, boolean multiplas, boolean reenfileirar) throws IOException {
+            canal.basicNack(tag, multiplas, reenfileirar);
+        }
+
+        @Override
+        public boolean isAberto() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!canal.isOpen()) {
+                return;
+            }
+            try {
+                canal.close();
+            } catch (TimeoutException e) {
+                throw new IOException("Tempo esgotado ao fechar o canal", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.pd.transporte;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker MQTT dentro da JVM: cada publicação é entregue, na hora, na fila de todo cliente com um
+ * filtro que casa com o tópico ({@code +} e {@code #} como no MQTT).
+ * <p>
+ * Cada cliente que assina tem uma fila limitada ({@code pd.memoria.mqtt.fila}) e uma thread que
+ * chama o ouvinte, como a thread de callback do Paho. Com a fila cheia a mensagem é descartada e
+ * contada, que é o que o Mosquitto faz com QoS 0. O mesmo array é entregue a todos os assinantes,
+ * sem cópia; quem recebe não deve alterá-lo. Não há reconexão: o cliente só cai quando é fechado.
+ * <p>
+ * Mensagens retidas ficam guardadas por tópico (um payload vazio apaga) e são entregues a cada
+ * assinatura nova que casa com o tópico. Numa assinatura {@code $share/<grupo>/<filtro>} cada
+ * mensagem vai para um cliente do grupo, em rodízio; se a fila dele estiver cheia, tenta o próximo.
+ */
+public class MqttMemoria implements TransporteMqtt {
+    private static final int CAPACIDADE_FILA = Integer.getInteger("pd.memoria.mqtt.fila", 65536);
+
+    private static final String PREFIXO_COMPARTILHADA = "$share/";
+
+    private final List<ClienteMemoria> clientes = new CopyOnWriteArrayList<>();
+    private final Map<String, GrupoCompartilhado> grupos = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> retidas = new ConcurrentHashMap<>();
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder entregues = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+
+    @Override
+    public Cliente conectar(String idCliente, boolean reconexaoAutomatica, int maxEmVoo, Ouvinte ouvinte) {
+        ClienteMemoria cliente = new ClienteMemoria(idCliente, ouvinte);
+        clientes.add(cliente);
+        return cliente;
+    }
+
+    public long getPublicadas() { return publicadas.sum(); }
+    public long getEntregues() { return entregues.sum(); }
+    public long getDescartadas() { return descartadas.sum(); }
+
+    @Override
+    public String toString() {
+        return "mqtt em memória";
+    }
+
+    /** Filtro MQTT contra um tópico, sem dividir as strings. */
+    static boolean casa(String filtro, String topico) {
+        int f = 0;
+        int t = 0;
+        while (f < filtro.length()) {
+            char c = filtro.charAt(f);
+            if (c == '#') {
+                return true;
+            }
+            if (c == '+') {
+                int fimNivel = topico.indexOf('/', t);
+                t = fimNivel < 0 ? topico.length() : fimNivel;
+                f++;
+                continue;
+            }
+            if (t == topico.length() && filtro.startsWith("/#", f)) {
+                return true; // "a/#" também casa com "a"
+            }
+            if (t >= topico.length() || topico.charAt(t) != c) {
+                return false;
+            }
+            f++;
+            t++;
+        }
+        return t == topico.length();
+    }
+
+    /** Clientes de uma assinatura compartilhada, com o mesmo grupo e o mesmo filtro. */
+    private static final class GrupoCompartilhado {
+        final String filtro;
+        final List<ClienteMemoria> membros = new CopyOnWriteArrayList<>();
+        final AtomicInteger proximo = new AtomicInteger();
+
+        GrupoCompartilhado(String filtro) {
+            this.filtro = filtro;
+        }
+
+        void oferecer(String topico, byte[] payload) {
+            if (!casa(filtro, topico)) {
+                return;
+            }
+            Object[] atuais = membros.toArray();
+            if (atuais.length == 0) {
+                return;
+            }
+            int inicio = Math.floorMod(proximo.getAndIncrement(), atuais.length);
+            for (int i = 0; i < atuais.length; i++) {
+                if (((ClienteMemoria) atuais[(inicio + i) % atuais.length]).enfileirar(topico, payload)) {
+                    return;
+                }
+            }
+            ((ClienteMemoria) atuais[inicio]).descartada();
+        }
+    }
+
+    private static final class Mensagem {
+        final String topico;
+        final byte[] payload;
+
+        Mensagem(String topico, byte[] payload) {
+            this.topico = topico;
+            this.payload = payload;
+        }
+    }
+
+    private final class ClienteMemoria implements Cliente {
+        private final String id;
+        private final Ouvinte ouvinte;
+        private final List<String> filtros = new CopyOnWriteArrayList<>();
+        private final BlockingQueue<Mensagem> fila = new ArrayBlockingQueue<>(Math.max(1, CAPACIDADE_FILA));
+        private volatile boolean conectado = true;
+        private Thread entrega;
+
+        ClienteMemoria(String id, Ouvinte ouvinte) {
+            this.id = id;
+            this.ouvinte = ouvinte;
+        }
+
+        @Override
+        public void publicar(String topico, byte[] payload, int qos, boolean retida) throws IOException {
+            if (!conectado) {
+                throw new IOException("Cliente " + id + " desconectado");
+            }
+            publicadas.increment();
+            if (retida) {
+                if (payload.length == 0) {
+                    retidas.remove(topico);
+                } else {
+                    retidas.put(topico, payload);
+                }
+            }
+            for (ClienteMemoria cliente : clientes) {
+                cliente.oferecer(topico, payload);
+            }
+            for (GrupoCompartilhado grupo : grupos.values()) {
+                grupo.oferecer(topico, payload);
+            }
+        }
+
+        private void oferecer(String topico, byte[] payload) {
+            for (String filtro : filtros) {
+                if (casa(filtro, topico)) {
+                    if (!enfileirar(topico, payload)) {
+                        descartada();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private boolean enfileirar(String topico, byte[] payload) {
+            if (!fila.offer(new Mensagem(topico, payload))) {
+                return false;
+            }
+            entregues.increment();
+            return true;
+        }
+
+        private void descartada() {
+            descartadas.increment();
+        }
+
+        @Override
+        public synchronized void assinar(String filtro, int qos) throws IOException {
+            if (!conectado) {
+                throw new IOException("Cliente " + id + " desconectado");
+            }
+            if (filtro.startsWith(PREFIXO_COMPARTILHADA)) {
+                int fimGrupo = filtro.indexOf('/', PREFIXO_COMPARTILHADA.length());
+                if (fimGrupo < 0 || fimGrupo == filtro.length() - 1) {
+                    throw new IOException("Assinatura compartilhada inválida: " + filtro);
+                }
+                GrupoCompartilhado grupo = grupos.computeIfAbsent(filtro,
+                        f -> new GrupoCompartilhado(f.substring(fimGrupo + 1)));
+                if (!grupo.membros.contains(this)) {
+                    grupo.membros.add(this);
+                }
+            } else {
+                if (!filtros.contains(filtro)) {
+                    filtros.add(filtro);
+                }
+                // Como no MQTT, retidas não vão para assinaturas compartilhadas.
+                for (Map.Entry<String, byte[]> retida : retidas.entrySet()) {
+                    if (casa(filtro, retida.getKey()) && !enfileirar(retida.getKey(), retida.getValue())) {
+                        descartada();
+                    }
+                }
+            }
+            if (entrega == null) {
+                entrega = new Thread(this::entregar, "mqtt-memoria-" + id);
+                entrega.setDaemon(true);
+                entrega.start();
+            }
+        }
+
+        private void entregar() {
+            while (conectado) {
+                Mensagem mensagem;
+                try {
+                    mensagem = fila.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (mensagem == null) {
+                    continue;
+                }
+                try {
+                    ouvinte.mensagemRecebida(mensagem.topico, mensagem.payload);
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Erro no ouvinte MQTT de " + id + ": " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public boolean isConectado() {
+            return conectado;
+        }
+
+        @Override
+        public synchronized void close() {
+            conectado = false;
+            clientes.remove(this);
+            for (GrupoCompartilhado grupo : grupos.values()) {
+                grupo.membros.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.pd.transporte;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.io.IOException;
+
+/**
+ * {@link TransporteMqtt} sobre o cliente Paho. A persistência é em memória: com sessão limpa e
+ * QoS 0 não há o que recuperar de um arquivo depois de reiniciar.
+ */
+public class MqttPaho implements TransporteMqtt {
+    private final String broker;
+
+    public MqttPaho(String broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public Cliente conectar(String idCliente, boolean reconexaoAutomatica, int maxEmVoo, Ouvinte ouvinte)
+            throws IOException {
+        try {
+            MqttClient cliente = new MqttClient(broker, idCliente, new MemoryPersistence());
+            MqttConnectOptions opcoes = new MqttConnectOptions();
+            opcoes.setCleanSession(true);
+            opcoes.setAutomaticReconnect(reconexaoAutomatica);
+            if (maxEmVoo > 0) {
+                opcoes.setMaxInflight(maxEmVoo);
+            }
+            cliente.setCallback(new MqttCallbackExtended() {
+                @Override
+                public void connectComplete(boolean reconexao, String servidor) {
+                    if (reconexao) {
+                        ouvinte.reconectado();
+                    }
+                }
+
+                @Override
+                public void connectionLost(Throwable causa) {
+                    ouvinte.conexaoPerdida(causa);
+                }
+
+                @Override
+                public void messageArrived(String topico, MqttMessage mensagem) {
+                    ouvinte.mensagemRecebida(topico, mensagem.getPayload());
+                }
+
+                @Override
+                public void deliveryComplete(IMqttDeliveryToken token) {}
+            });
+            cliente.connect(opcoes);
+            return new ClientePaho(cliente);
+        } catch (MqttException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return broker;
+    }
+
+    private static final class ClientePaho implements Cliente {
+        private final MqttClient cliente;
+
+        ClientePaho(MqttClient cliente) {
+            this.cliente = cliente;
+        }
+
+        @Override
+        public void publicar(String topico, byte[] payload, int qos, boolean retida) throws IOException {
+            try {
+                cliente.publish(topico, payload, qos, retida);
+            } catch (MqttException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void assinar(String filtro, int qos) throws IOException {
+            try {
+                cliente.subscribe(filtro, qos);
+            } catch (MqttException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public boolean isConectado() {
+            return cliente.isConnected();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (cliente.isConnected()) {
+                    cliente.disconnect();
+                }
+                cliente.close();
+            } catch (MqttException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+}
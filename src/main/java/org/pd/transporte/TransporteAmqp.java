@@ -0,0 +1,99 @@
+package org.pd.transporte;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A parte do AMQP usada pelo Gateway e pelo Serviço de Base de Dados: exchanges e filas, publicação
+ * com confirmação do broker e consumo com prefetch e ack manual.
+ * <p>
+ * {@link AmqpRabbit} fala com um RabbitMQ ({@code pd.rabbit.host}, {@code pd.rabbit.porta});
+ * {@link AmqpMemoria} faz o roteamento e as filas dentro da JVM.
+ */
+public interface TransporteAmqp {
+    /** @param aoRecuperar chamado depois de cada recuperação automática da conexão */
+    Conexao conectar(Runnable aoRecuperar) throws IOException;
+
+    interface Conexao extends Closeable {
+        Canal criarCanal() throws IOException;
+
+        boolean isAberta();
+    }
+
+    interface Canal extends Closeable {
+        void declararExchange(String nome, String tipo, boolean duravel) throws IOException;
+
+        default void declararFila(String nome, boolean duravel) throws IOException {
+            declararFila(nome, duravel, null);
+        }
+
+        /**
+         * Com {@code deadLetterExchange}, o broker publica nela, com a chave original, toda mensagem
+         * da fila rejeitada sem reenfileirar ({@code x-dead-letter-exchange} do RabbitMQ). Mover para
+         * a dead-letter e tirar da fila acontecem juntos, no broker.
+         */
+        void declararFila(String nome, boolean duravel, String deadLetterExchange) throws IOException;
+
+        void ligarFila(String fila, String exchange, String chave) throws IOException;
+
+        /**
+         * Liga as confirmações do broker. A partir daí cada publicação recebe o número que
+         * {@link #proximaSequencia()} devolvia logo antes dela.
+         */
+        void ativarConfirmacoes(OuvinteConfirmacoes ouvinte) throws IOException;
+
+        long proximaSequencia();
+
+        void publicar(String exchange, String chave, String contentType, Map<String, Object> cabecalhos,
+                      byte[] corpo) throws IOException;
+
+        /** Máximo de entregas sem ack por consumidor deste canal; 0 é sem limite. */
+        void prefetch(int quantidade) throws IOException;
+
+        /** Entregas de um canal chegam em ordem, uma de cada vez, com tags crescentes. */
+        void consumir(String fila, boolean autoAck, Consumidor consumidor) throws IOException;
+
+        void confirmar(long tag, boolean multiplas) throws IOException;
+
+        void rejeitar(long tag, boolean multiplas, boolean reenfileirar) throws IOException;
+
+        boolean isAberto();
+    }
+
+    interface OuvinteConfirmacoes {
+        void confirmadas(long sequencia, boolean multiplas);
+
+        void rejeitadas(long sequencia, boolean multiplas);
+
+        /** O canal fechou: o que estava pendente nunca será confirmado. */
+        void canalFechado();
+    }
+
+    interface Consumidor {
+        void entregar(Entrega entrega) throws IOException;
+    }
+
+    final class Entrega {
+        private final long tag;
+        private final String chave;
+        private final String contentType;
+        private final Map<String, Object> cabecalhos;
+        private final byte[] corpo;
+
+        public Entrega(long tag, String chave, String contentType, Map<String, Object> cabecalhos, byte[] corpo) {
+            this.tag = tag;
+            this.chave = chave;
+            this.contentType = contentType;
+            this.cabecalhos = cabecalhos;
+            this.corpo = corpo;
+        }
+
+        public long getTag() { return tag; }
+        public String getChave() { return chave; }
+        public String getContentType() { return contentType; }
+        /** Pode ser nulo. */
+        public Map<String, Object> getCabecalhos() { return cabecalhos; }
+        public byte[] getCorpo() { return corpo; }
+    }
+}
@@ -0,0 +1,52 @@
+package org.pd.transporte;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A parte do MQTT usada pelos drones e pelo Gateway: conectar, publicar e assinar tópicos.
+ * <p>
+ * {@link MqttPaho} fala com um broker de verdade (Mosquitto, pelo endereço em
+ * {@code pd.mqtt.broker}); {@link MqttMemoria} entrega as mensagens dentro da própria JVM, para
+ * rodar a pipeline inteira num processo só, sem serviços externos.
+ */
+public interface TransporteMqtt {
+    /** Eventos de um cliente. As mensagens chegam numa thread do transporte, uma de cada vez. */
+    interface Ouvinte {
+        default void mensagemRecebida(String topico, byte[] payload) {}
+
+        default void conexaoPerdida(Throwable causa) {}
+
+        /** Reconexão automática concluída; com sessão limpa as assinaturas precisam ser refeitas. */
+        default void reconectado() {}
+    }
+
+    interface Cliente extends Closeable {
+        default void publicar(String topico, byte[] payload, int qos) throws IOException {
+            publicar(topico, payload, qos, false);
+        }
+
+        /** Com {@code retida}, o broker guarda a última mensagem do tópico e a entrega a quem assinar depois. */
+        void publicar(String topico, byte[] payload, int qos, boolean retida) throws IOException;
+
+        /**
+         * Filtros {@code $share/<grupo>/<filtro>} são assinaturas compartilhadas (MQTT 5, e o
+         * Mosquitto também as aceita de clientes 3.1.1): cada mensagem vai para um só cliente do grupo.
+         */
+        void assinar(String filtro, int qos) throws IOException;
+
+        boolean isConectado();
+
+        /** Desconecta, se ainda conectado, e libera o cliente. */
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Conecta um cliente com sessão limpa.
+     *
+     * @param maxEmVoo limite de publicações QoS&gt;0 sem confirmação; 0 usa o padrão do transporte
+     */
+    Cliente conectar(String idCliente, boolean reconexaoAutomatica, int maxEmVoo, Ouvinte ouvinte)
+            throws IOException;
+}
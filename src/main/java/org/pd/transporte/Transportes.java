@@ -0,0 +1,23 @@
+package org.pd.transporte;
+
+/**
+ * Endereços dos brokers e os transportes de rede usados quando nenhum outro é passado.
+ * {@code pd.mqtt.broker} (padrão {@code tcp://localhost:1883}), {@code pd.rabbit.host} (padrão
+ * {@code localhost}) e {@code pd.rabbit.porta} (padrão 5672).
+ */
+public final class Transportes {
+    public static final String MQTT_BROKER = System.getProperty("pd.mqtt.broker", "tcp://localhost:1883");
+    public static final String RABBIT_HOST = System.getProperty("pd.rabbit.host", "localhost");
+    public static final int RABBIT_PORTA = Integer.getInteger("pd.rabbit.porta", 5672);
+
+    private Transportes() {
+    }
+
+    public static TransporteMqtt mqtt() {
+        return new MqttPaho(MQTT_BROKER);
+    }
+
+    public static TransporteAmqp amqp() {
+        return new AmqpRabbit(RABBIT_HOST, RABBIT_PORTA);
+    }
+}
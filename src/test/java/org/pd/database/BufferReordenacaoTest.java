@@ -0,0 +1,71 @@
+package org.pd.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BufferReordenacaoTest {
+    private static final long UMA_HORA_MS = 3_600_000;
+
+    private final List<Long> entregues = new ArrayList<>();
+
+    private BufferReordenacao<Long> buffer(long atrasoMs, int capacidade) {
+        return new BufferReordenacao<>(atrasoMs, capacidade, Long::longValue, entregues::add);
+    }
+
+    @Test
+    void marcaDaguaLiberaEmOrdem() {
+        BufferReordenacao<Long> buffer = buffer(50_000, 100);
+        buffer.adicionar(30_000L);
+        buffer.adicionar(10_000L);
+        buffer.adicionar(20_000L);
+        assertEquals(List.of(), entregues);
+
+        // A marca vai a 50 000: as três saem em ordem e a nova fica retida.
+        buffer.adicionar(100_000L);
+        assertEquals(List.of(10_000L, 20_000L, 30_000L), entregues);
+        assertEquals(1, buffer.getRetidas());
+
+        buffer.esvaziar();
+        assertEquals(List.of(10_000L, 20_000L, 30_000L, 100_000L), entregues);
+    }
+
+    @Test
+    void capacidadeLiberaAteARetidaQueChegouPrimeiro() {
+        BufferReordenacao<Long> buffer = buffer(UMA_HORA_MS, 3);
+        buffer.adicionar(5L);
+        buffer.adicionar(1L);
+        buffer.adicionar(9L);
+        assertEquals(List.of(), entregues);
+
+        // A 5 chegou primeiro e já segura três leituras: sai, depois das de timestamp menor.
+        buffer.adicionar(2L);
+        assertEquals(List.of(1L, 2L, 5L), entregues);
+        assertEquals(1, buffer.getRetidas());
+    }
+
+    @Test
+    void atrasadaSaiNaHoraComOTimestampOriginal() {
+        BufferReordenacao<Long> buffer = buffer(UMA_HORA_MS, 1);
+        buffer.adicionar(10L);
+        buffer.adicionar(20L);
+        assertEquals(List.of(10L), entregues);
+
+        buffer.adicionar(5L);
+        assertEquals(List.of(10L, 5L), entregues);
+        assertEquals(1, buffer.getAtrasadas());
+        assertEquals(1, buffer.getRetidas());
+    }
+
+    @Test
+    void semAtrasoEntregaDireto() {
+        BufferReordenacao<Long> buffer = buffer(0, 100);
+        buffer.adicionar(2L);
+        buffer.adicionar(1L);
+        assertEquals(List.of(2L, 1L), entregues);
+        assertEquals(1, buffer.getAtrasadas());
+    }
+}
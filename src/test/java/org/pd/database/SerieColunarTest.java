@@ -0,0 +1,137 @@
+package org.pd.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SerieColunarTest {
+    private static final int BLOCO = SerieColunar.TAMANHO_BLOCO;
+
+    private static SerieColunar serieCom(int leituras) {
+        SerieColunar serie = new SerieColunar("norte");
+        for (int i = 0; i < leituras; i++) {
+            anexar(serie, 10L * i);
+        }
+        return serie;
+    }
+
+    private static void anexar(SerieColunar serie, long timestamp) {
+        serie.anexar(timestamp, timestamp, 0, 0, 0);
+    }
+
+    /** Timestamps em [inicio, fim) pelo caminho das consultas: busca, varredura e atrasadas. */
+    private static List<Long> buscar(SerieColunar serie, long inicio, long fim) {
+        List<Long> achados = new ArrayList<>();
+        SerieColunar.Varredura filtro = (indice, ts, p, r, t, u) -> {
+            if (ts >= inicio && ts < fim) {
+                achados.add(ts);
+            }
+            return true;
+        };
+        long ate = serie.buscarFim(fim);
+        serie.varrer(serie.buscarPrimeiro(inicio), ate, filtro);
+        serie.varrerAtrasadas(ate, fim, filtro);
+        return achados;
+    }
+
+    @Test
+    void atrasadaVaiParaOFimSemMudarAsOutras() {
+        SerieColunar serie = serieCom(100);
+        anexar(serie, 505);
+
+        assertFalse(serie.isOrdenada());
+        assertEquals(101, serie.fim());
+        assertEquals(510, serie.timestamp(51));
+        assertEquals(505, serie.timestamp(100));
+        assertEquals(505, serie.pressao(100));
+    }
+
+    @Test
+    void buscaContinuaBinariaNosBlocosSemAtrasadas() {
+        SerieColunar serie = serieCom(3 * BLOCO);
+        anexar(serie, 5);
+
+        long alvo = 10L * (BLOCO + 3);
+        assertEquals(BLOCO + 3, serie.buscarPrimeiro(alvo));
+        assertEquals(BLOCO + 3, serie.buscarFim(alvo));
+        assertEquals(List.of(0L, 5L), buscar(serie, 0, 10));
+    }
+
+    @Test
+    void blocoComAtrasadaEhVarridoInteiro() {
+        SerieColunar serie = serieCom(BLOCO + 10);
+        anexar(serie, 10L * BLOCO + 15);
+
+        assertEquals(BLOCO, serie.buscarPrimeiro(10L * BLOCO + 50));
+        assertEquals(BLOCO + 11L, serie.buscarFim(10L * BLOCO + 50));
+        assertEquals(List.of(10L * BLOCO + 10, 10L * BLOCO + 20, 10L * BLOCO + 15),
+                buscar(serie, 10L * BLOCO + 10, 10L * BLOCO + 30));
+    }
+
+    @Test
+    void voltaAOrdenadaQuandoARetencaoDescartaAsAtrasadas() {
+        SerieColunar serie = serieCom(BLOCO - 1);
+        anexar(serie, 5);
+        for (int i = 0; i < BLOCO; i++) {
+            anexar(serie, 10L * (BLOCO + i));
+        }
+        assertFalse(serie.isOrdenada());
+
+        serie.descartarBlocos(1);
+        assertTrue(serie.isOrdenada());
+    }
+
+    @Test
+    void retencaoPorIdadeUsaOMaiorTimestampDoBloco() {
+        SerieColunar serie = serieCom(BLOCO - 1);
+        // Última leitura do bloco atrasada: o bloco ainda tem leituras até 10 * (BLOCO - 2).
+        anexar(serie, 5);
+        anexar(serie, 10L * BLOCO);
+
+        assertEquals(0, serie.blocosAnterioresA(100));
+        assertEquals(1, serie.blocosAnterioresA(10L * BLOCO));
+    }
+
+    @Test
+    void visaoAnteriorNaoMuda() {
+        SerieColunar serie = serieCom(100);
+        List<?> antes = serie.visao();
+        anexar(serie, 5);
+
+        assertEquals(100, antes.size());
+        assertEquals(101, serie.visao().size());
+        assertEquals(5, serie.timestamp(100));
+    }
+
+    @Test
+    void consultasAchamOMesmoQueAVarreduraCompleta() {
+        Random aleatorio = new Random(42);
+        SerieColunar serie = new SerieColunar("norte");
+        List<Long> todos = new ArrayList<>();
+        long relogio = 0;
+        for (int i = 0; i < 5 * BLOCO; i++) {
+            relogio += aleatorio.nextInt(3);
+            long ts = aleatorio.nextInt(50) == 0 ? relogio - aleatorio.nextInt(20_000) : relogio;
+            anexar(serie, ts);
+            todos.add(ts);
+        }
+
+        for (int consulta = 0; consulta < 200; consulta++) {
+            long inicio = aleatorio.nextInt((int) relogio);
+            long fim = inicio + aleatorio.nextInt(5_000);
+            List<Long> esperados = new ArrayList<>();
+            for (long ts : todos) {
+                if (ts >= inicio && ts < fim) {
+                    esperados.add(ts);
+                }
+            }
+            assertEquals(esperados, buscar(serie, inicio, fim), "intervalo [" + inicio + ", " + fim + ")");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.pd.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecLoteTest {
+    private static final long ORIGEM = 42;
+    private static final long INICIO = CodecBinario.EPOCA_BASE + 86_400_000L;
+    private static final long CHEGADA = INICIO + 60_000;
+    private static final int LEITURAS = 50;
+
+    private final List<DadosClimaticos> recebidas = new ArrayList<>();
+
+    private static byte[] lote(boolean delta, boolean compactar) {
+        CodecLote.Escritor escritor = new CodecLote.Escritor(delta, compactar);
+        for (int i = 0; i < LEITURAS; i++) {
+            escritor.adicionar(100 + i, INICIO + 100L * i, 1013.25 + i * 0.01, 450.5 - i, -3.75 + i, 60.0);
+        }
+        return escritor.fechar(ORIGEM);
+    }
+
+    private int decodificar(byte[] payload) {
+        return CodecLote.daThread().decodificar("norte", payload, CHEGADA, recebidas::add);
+    }
+
+    private void assertIdaEVolta(boolean delta, boolean compactar) {
+        byte[] payload = lote(delta, compactar);
+        assertEquals(LEITURAS, decodificar(payload));
+        assertEquals(LEITURAS, recebidas.size());
+        long ultimaOrigem = INICIO + 100L * (LEITURAS - 1);
+        for (int i = 0; i < LEITURAS; i++) {
+            DadosClimaticos dados = recebidas.get(i);
+            assertEquals("norte", dados.getRegiao());
+            assertEquals(ORIGEM, dados.getOrigem());
+            assertEquals(100 + i, dados.getSequencia());
+            assertEquals(INICIO + 100L * i, dados.getTimestampOrigem());
+            // A última chega no instante do lote; as anteriores, tanto antes quanto esperaram a mais.
+            assertEquals(CHEGADA - (ultimaOrigem - dados.getTimestampOrigem()), dados.getTimestamp());
+            assertEquals(1013.25 + i * 0.01, dados.getPressao(), 1e-9);
+            assertEquals(450.5 - i, dados.getRadiacao(), 1e-9);
+            assertEquals(-3.75 + i, dados.getTemperatura(), 1e-9);
+            assertEquals(60.0, dados.getUmidade(), 1e-9);
+        }
+    }
+
+    @Test
+    void idaEVoltaSemDelta() {
+        assertIdaEVolta(false, false);
+    }
+
+    @Test
+    void idaEVoltaComDelta() {
+        assertIdaEVolta(true, false);
+    }
+
+    @Test
+    void idaEVoltaComDeltaCompactado() {
+        assertIdaEVolta(true, true);
+    }
+
+    @Test
+    void deltaCompactadoEhMenor() {
+        assertTrue(lote(true, true).length < lote(true, false).length);
+        assertTrue(lote(true, false).length < lote(false, false).length);
+    }
+
+    @Test
+    void leituraFeitaDepoisDaUltimaNaoChegaNoFuturo() {
+        CodecLote.Escritor escritor = new CodecLote.Escritor(true, false);
+        escritor.adicionar(1, INICIO + 500, 1, 1, 1, 1);
+        escritor.adicionar(2, INICIO, 1, 1, 1, 1);
+        decodificar(escritor.fechar(ORIGEM));
+        assertEquals(CHEGADA, recebidas.get(0).getTimestamp());
+        assertEquals(CHEGADA, recebidas.get(1).getTimestamp());
+    }
+
+    @Test
+    void loteTruncadoNaoEntregaNada() {
+        for (boolean[] formato : new boolean[][]{{false, false}, {true, false}, {true, true}}) {
+            byte[] payload = lote(formato[0], formato[1]);
+            for (int tamanho : new int[]{0, 1, 2, payload.length / 2, payload.length - 1}) {
+                byte[] truncado = Arrays.copyOf(payload, tamanho);
+                assertThrows(IllegalArgumentException.class, () -> decodificar(truncado),
+                        "delta=" + formato[0] + " compactado=" + formato[1] + " tamanho=" + tamanho);
+            }
+        }
+        assertEquals(List.of(), recebidas);
+    }
+
+    @Test
+    void loteCorrompidoNaoEntregaNada() {
+        byte[] outraVersao = lote(false, false);
+        outraVersao[0] = (byte) ((outraVersao[0] & 0xF0) | (CodecLote.VERSAO + 1));
+        assertThrows(IllegalArgumentException.class, () -> decodificar(outraVersao));
+
+        byte[] sobrando = Arrays.copyOf(lote(true, false), lote(true, false).length + 1);
+        assertThrows(IllegalArgumentException.class, () -> decodificar(sobrando));
+
+        // Cabeçalho, quantidade e origem de um lote compactado, seguidos de um bloco Deflate inválido.
+        byte[] compactado = lote(true, true);
+        Arrays.fill(compactado, 3, compactado.length, (byte) 0xFF);
+        assertThrows(IllegalArgumentException.class, () -> decodificar(compactado));
+
+        byte[] varintLongo = new byte[16];
+        varintLongo[0] = (byte) CodecLote.VERSAO;
+        Arrays.fill(varintLongo, 1, varintLongo.length, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> decodificar(varintLongo));
+
+        byte[] vazio = {(byte) CodecLote.VERSAO, 0, (byte) (ORIGEM << 1)};
+        assertThrows(IllegalArgumentException.class, () -> decodificar(vazio));
+
+        assertEquals(List.of(), recebidas);
+    }
+}
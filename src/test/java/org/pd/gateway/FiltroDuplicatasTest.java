@@ -0,0 +1,78 @@
+package org.pd.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroDuplicatasTest {
+
+    @Test
+    void repetidaDentroDaJanelaEhDuplicata() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 16, 1 << 16);
+        for (long s = 0; s < 64; s++) {
+            assertTrue(filtro.registrar(1, s));
+        }
+        assertFalse(filtro.registrar(1, 10));
+        assertTrue(filtro.registrar(2, 10), "outra origem, mesma sequência");
+        assertEquals(1, filtro.getDuplicadas());
+    }
+
+    @Test
+    void janelaDeslizandoLevaAsVistasParaOBloom() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 16, 1 << 16);
+        for (long s = 0; s < 64; s++) {
+            filtro.registrar(1, s);
+        }
+        assertTrue(filtro.registrar(1, 200));
+
+        // 10 saiu da janela por baixo e ficou no Bloom; 150 está na janela nova e nunca foi vista.
+        assertFalse(filtro.registrar(1, 10));
+        assertTrue(filtro.registrar(1, 150));
+        assertFalse(filtro.registrar(1, 150));
+        // Abaixo da janela e nunca vista: entra no Bloom na primeira vez.
+        assertTrue(filtro.registrar(1, 100));
+        assertFalse(filtro.registrar(1, 100));
+    }
+
+    @Test
+    void origemQueSaiDoLruContinuaReconhecida() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 2, 1 << 16);
+        assertTrue(filtro.registrar(1, 5));
+        assertTrue(filtro.registrar(2, 5));
+        assertTrue(filtro.registrar(3, 5));
+        assertEquals(2, filtro.getOrigens());
+        assertEquals(1, filtro.getOrigensDescartadas());
+
+        assertFalse(filtro.registrar(1, 5), "a janela da origem 1 foi para o Bloom");
+        assertTrue(filtro.registrar(1, 6));
+        assertTrue(filtro.registrar(1, 4));
+    }
+
+    @Test
+    void esquecerAceitaAReentrega() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 16, 1 << 16);
+        assertTrue(filtro.registrar(1, 5));
+        filtro.esquecer(1, 5);
+        assertTrue(filtro.registrar(1, 5));
+        assertFalse(filtro.registrar(1, 5));
+    }
+
+    @Test
+    void esquecerAbaixoDaJanelaNaoTemEfeito() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 16, 1 << 16);
+        filtro.registrar(1, 5);
+        filtro.registrar(1, 500);
+        filtro.esquecer(1, 5);
+        assertFalse(filtro.registrar(1, 5));
+    }
+
+    @Test
+    void leituraSemRastreioEhSempreNova() {
+        FiltroDuplicatas filtro = new FiltroDuplicatas(64, 16, 1 << 16);
+        DadosClimaticos semRastreio = new DadosClimaticos("norte", 1000, 200, 25, 60, 1L, -1, -1, -1);
+        assertTrue(filtro.registrar(semRastreio));
+        assertTrue(filtro.registrar(semRastreio));
+    }
+}